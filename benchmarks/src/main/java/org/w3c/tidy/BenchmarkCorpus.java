@@ -0,0 +1,334 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Inputs and helpers shared by the benchmarks. The "corpus" input is made of the html files of the JTidy test
+ * resources, found in the directory set by the <code>jtidy.corpus</code> system property or else in
+ * <code>src/test/resources</code> from the current or the parent directory. The "large" input is a single synthetic
+ * document of about 1 MB, with the usual mistakes tidy has to fix.
+ * @version $Revision$ ($Author$)
+ */
+final class BenchmarkCorpus
+{
+
+    /**
+     * name of the corpus input.
+     */
+    static final String CORPUS = "corpus";
+
+    /**
+     * name of the synthetic input.
+     */
+    static final String LARGE = "large";
+
+    /**
+     * size of the synthetic document.
+     */
+    private static final int LARGE_SIZE = 1 << 20;
+
+    /**
+     * writer discarding tidy messages.
+     */
+    static final PrintWriter NULL_WRITER = new PrintWriter(new Writer()
+    {
+
+        @Override
+        public void write(char[] cbuf, int off, int len)
+        {
+            // discard
+        }
+
+        @Override
+        public void flush()
+        {
+            // nothing to flush
+        }
+
+        @Override
+        public void close()
+        {
+            // nothing to close
+        }
+    });
+
+    /**
+     * stream discarding tidy output.
+     */
+    static final OutputStream NULL_OUTPUT = new OutputStream()
+    {
+
+        @Override
+        public void write(int b)
+        {
+            // discard
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            // discard
+        }
+    };
+
+    /**
+     * A parsed document, with the lexer needed to clean and print it.
+     */
+    static final class ParsedDocument
+    {
+
+        /**
+         * lexer used to parse the document.
+         */
+        final Lexer lexer;
+
+        /**
+         * document root.
+         */
+        final Node document;
+
+        /**
+         * Instantiates a new parsed document.
+         * @param lexer lexer
+         * @param document document root
+         */
+        ParsedDocument(Lexer lexer, Node document)
+        {
+            this.lexer = lexer;
+            this.document = document;
+        }
+    }
+
+    /**
+     * utility class.
+     */
+    private BenchmarkCorpus()
+    {
+        // unused
+    }
+
+    /**
+     * Returns the documents of an input.
+     * @param input input name, {@link #CORPUS} or {@link #LARGE}
+     * @return documents
+     * @throws IOException if the corpus can't be read
+     */
+    static List<byte[]> documents(String input) throws IOException
+    {
+        if (LARGE.equals(input))
+        {
+            return Collections.singletonList(largeDocument());
+        }
+        if (!CORPUS.equals(input))
+        {
+            throw new IllegalArgumentException("Unknown input: " + input);
+        }
+
+        File[] files = corpusDirectory().listFiles((dir, name) -> name.endsWith(".html"));
+        if (files == null || files.length == 0)
+        {
+            throw new IOException("No html file found in " + corpusDirectory());
+        }
+        Arrays.sort(files);
+
+        List<byte[]> documents = new ArrayList<>();
+        for (File file : files)
+        {
+            documents.add(Files.readAllBytes(file.toPath()));
+        }
+        return documents;
+    }
+
+    /**
+     * Finds the directory with the test documents.
+     * @return corpus directory
+     */
+    private static File corpusDirectory()
+    {
+        String dir = System.getProperty("jtidy.corpus");
+        if (dir != null)
+        {
+            return new File(dir);
+        }
+        File resources = new File("src/test/resources");
+        if (!new File(resources, "test.dir").exists())
+        {
+            resources = new File("../src/test/resources");
+        }
+        return resources;
+    }
+
+    /**
+     * Builds the synthetic document.
+     * @return document
+     */
+    private static byte[] largeDocument()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\n");
+        sb.append("<html><head><title>large document</title><style>p { margin: 0 }</style></head><body>\n");
+        for (int j = 0; sb.length() < LARGE_SIZE; j++)
+        {
+            sb.append("<h2 id=\"s").append(j).append("\">Section ").append(j).append("</h2>\n");
+            sb.append("<p class=\"c").append(j % 10).append("\"><font face=\"Arial\" size=\"2\">");
+            sb.append("<b>bold <i>overlapping</b> italic</i> text with entities &amp; &eacute;&nbsp;&copy; &unknown and a ");
+            sb.append("<a href=\"page").append(j).append(".html\" target=_blank>link</a></font>\n");
+            sb.append("<center><table border=1><tr><td>cell ").append(j).append("<td><b><b>more</b></b> text</table>");
+            sb.append("</center>\n");
+            sb.append("<ul><li>one<li>two<dir><li>three</dir></ul>\n");
+            sb.append("<blockquote><blockquote><p>quoted text ").append(j).append("</blockquote></blockquote>\n");
+            sb.append("<pre>  preformatted\n\ttext &lt; ").append(j).append("</pre>\n");
+        }
+        sb.append("</body></html>\n");
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Converts documents to well formed xml, with default options otherwise.
+     * @param documents html documents
+     * @return xml documents
+     */
+    static List<byte[]> toXml(List<byte[]> documents)
+    {
+        Tidy tidy = new Tidy();
+        tidy.setXmlOut(true);
+        tidy.setForceOutput(true);
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        tidy.setErrout(NULL_WRITER);
+
+        List<byte[]> xml = new ArrayList<>(documents.size());
+        for (byte[] document : documents)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            tidy.parse(new ByteArrayInputStream(document), out);
+            xml.add(out.toByteArray());
+        }
+        return xml;
+    }
+
+    /**
+     * Returns a new, adjusted configuration with default options.
+     * @return configuration
+     */
+    static Configuration newConfiguration()
+    {
+        Configuration configuration = new Configuration(new Report());
+        configuration.tt = TagTable.newTagTable();
+        configuration.tt.setConfiguration(configuration);
+        configuration.adjust();
+        return configuration;
+    }
+
+    /**
+     * Returns a new lexer reading a document, with messages discarded.
+     * @param configuration configuration
+     * @param document document
+     * @return lexer
+     */
+    static Lexer newLexer(Configuration configuration, byte[] document)
+    {
+        configuration.tt.freeAnchors();
+        Lexer lexer = new Lexer(
+            StreamInFactory.getStreamIn(configuration, new ByteArrayInputStream(document)),
+            configuration,
+            configuration.report);
+        lexer.errout = NULL_WRITER;
+        return lexer;
+    }
+
+    /**
+     * Parses a document, as html or as xml depending on the configuration.
+     * @param configuration configuration
+     * @param document document
+     * @return parsed document
+     */
+    static ParsedDocument parse(Configuration configuration, byte[] document)
+    {
+        Lexer lexer = newLexer(configuration, document);
+        Node root = configuration.xmlTags ? ParserImpl.parseXMLDocument(lexer) : ParserImpl.parseDocument(lexer);
+        return new ParsedDocument(lexer, root);
+    }
+
+    /**
+     * Parses all the documents of an input.
+     * @param configuration configuration
+     * @param documents documents
+     * @return parsed documents
+     */
+    static List<ParsedDocument> parseAll(Configuration configuration, List<byte[]> documents)
+    {
+        List<ParsedDocument> parsed = new ArrayList<>(documents.size());
+        for (byte[] document : documents)
+        {
+            parsed.add(parse(configuration, document));
+        }
+        return parsed;
+    }
+}
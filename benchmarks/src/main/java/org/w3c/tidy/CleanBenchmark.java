@@ -0,0 +1,183 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Throughput of each clean pass, run on freshly parsed trees of every document of the input. Passes change the tree,
+ * so documents are parsed again before each invocation, outside of the measured time. The allocations of that parse are
+ * still counted by the gc profiler: the "none" pass only parses, and gives the allocations to subtract.
+ * @version $Revision$ ($Author$)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CleanBenchmark
+{
+
+    /**
+     * input name.
+     */
+    @Param({BenchmarkCorpus.CORPUS, BenchmarkCorpus.LARGE})
+    public String input;
+
+    /**
+     * clean pass, named after its Clean method.
+     */
+    @Param({"none", "nestedEmphasis", "list2BQ", "bQ2Div", "emFromI", "dropSections", "cleanWord2000", "cleanTree"})
+    public String pass;
+
+    /**
+     * documents to clean.
+     */
+    private List<byte[]> documents;
+
+    /**
+     * configuration, with the clean options on.
+     */
+    private Configuration configuration;
+
+    /**
+     * trees for the next invocation.
+     */
+    private List<BenchmarkCorpus.ParsedDocument> parsed;
+
+    /**
+     * Loads the documents.
+     * @throws IOException if the corpus can't be read
+     */
+    @Setup
+    public void setup() throws IOException
+    {
+        documents = BenchmarkCorpus.documents(input);
+        configuration = BenchmarkCorpus.newConfiguration();
+        configuration.makeClean = true;
+        configuration.word2000 = true;
+        configuration.logicalEmphasis = true;
+        configuration.adjust();
+    }
+
+    /**
+     * Parses the documents for the next invocation.
+     */
+    @Setup(Level.Invocation)
+    public void parse()
+    {
+        parsed = BenchmarkCorpus.parseAll(configuration, documents);
+    }
+
+    /**
+     * Runs the pass on all the documents.
+     */
+    @Benchmark
+    public void clean()
+    {
+        Clean cleaner = new Clean(configuration.tt);
+        for (BenchmarkCorpus.ParsedDocument document : parsed)
+        {
+            switch (pass)
+            {
+                case "none":
+                    break;
+                case "nestedEmphasis":
+                    cleaner.nestedEmphasis(document.document);
+                    break;
+                case "list2BQ":
+                    cleaner.list2BQ(document.document);
+                    break;
+                case "bQ2Div":
+                    cleaner.bQ2Div(document.document);
+                    break;
+                case "emFromI":
+                    cleaner.emFromI(document.document);
+                    break;
+                case "dropSections":
+                    cleaner.dropSections(document.lexer, document.document);
+                    break;
+                case "cleanWord2000":
+                    // as tidy does, only for documents saved by Word 2000
+                    if (cleaner.isWord2000(document.document))
+                    {
+                        cleaner.cleanWord2000(document.lexer, document.document);
+                    }
+                    break;
+                case "cleanTree":
+                    cleaner.cleanTree(document.lexer, document.document);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown pass: " + pass);
+            }
+        }
+    }
+}
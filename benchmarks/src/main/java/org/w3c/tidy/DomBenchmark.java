@@ -0,0 +1,172 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+
+
+/**
+ * DOM adapter traversal: walks the documents returned by <code>Tidy.parseDOM</code>, reading names, values and
+ * attributes of every node, as a typical DOM client does.
+ * @version $Revision$ ($Author$)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DomBenchmark
+{
+
+    /**
+     * input name.
+     */
+    @Param({BenchmarkCorpus.CORPUS, BenchmarkCorpus.LARGE})
+    public String input;
+
+    /**
+     * documents to walk.
+     */
+    private List<Document> documents;
+
+    /**
+     * Loads and parses the documents.
+     * @throws IOException if the corpus can't be read
+     */
+    @Setup
+    public void setup() throws IOException
+    {
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        tidy.setErrout(BenchmarkCorpus.NULL_WRITER);
+
+        documents = new ArrayList<>();
+        for (byte[] document : BenchmarkCorpus.documents(input))
+        {
+            documents.add(tidy.parseDOM(new ByteArrayInputStream(document), (OutputStream) null));
+        }
+    }
+
+    /**
+     * Walks all the documents.
+     * @return number of nodes and attributes visited
+     */
+    @Benchmark
+    public int traverse()
+    {
+        int count = 0;
+        for (Document document : documents)
+        {
+            count += traverse(document);
+        }
+        return count;
+    }
+
+    /**
+     * Walks a subtree.
+     * @param node subtree root
+     * @return number of nodes and attributes visited
+     */
+    private static int traverse(org.w3c.dom.Node node)
+    {
+        int count = 1 + length(node.getNodeName()) + length(node.getNodeValue());
+
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null)
+        {
+            for (int j = 0; j < attributes.getLength(); j++)
+            {
+                org.w3c.dom.Node attribute = attributes.item(j);
+                count += length(attribute.getNodeName()) + length(attribute.getNodeValue());
+            }
+        }
+
+        for (org.w3c.dom.Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            count += traverse(child);
+        }
+        return count;
+    }
+
+    /**
+     * Length of a name or value.
+     * @param value name or value, can be null
+     * @return length, 0 for null
+     */
+    private static int length(String value)
+    {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Pretty printer throughput: prints the trees of every document of the input, parsed once, to a discarding stream.
+ * The "html" mode uses <code>PPrint.printTree</code>; the "xml" mode first converts the documents to xml with tidy, then
+ * parses them as xml and uses <code>PPrint.printXMLTree</code>.
+ * @version $Revision$ ($Author$)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrintBenchmark
+{
+
+    /**
+     * input name.
+     */
+    @Param({BenchmarkCorpus.CORPUS, BenchmarkCorpus.LARGE})
+    public String input;
+
+    /**
+     * printing mode, "html" or "xml".
+     */
+    @Param({"html", "xml"})
+    public String mode;
+
+    /**
+     * configuration.
+     */
+    private Configuration configuration;
+
+    /**
+     * trees to print.
+     */
+    private List<BenchmarkCorpus.ParsedDocument> parsed;
+
+    /**
+     * Loads and parses the documents.
+     * @throws IOException if the corpus can't be read
+     */
+    @Setup
+    public void setup() throws IOException
+    {
+        List<byte[]> documents = BenchmarkCorpus.documents(input);
+        configuration = BenchmarkCorpus.newConfiguration();
+        if ("xml".equals(mode))
+        {
+            documents = BenchmarkCorpus.toXml(documents);
+            configuration.xmlTags = true;
+            configuration.adjust();
+        }
+        parsed = BenchmarkCorpus.parseAll(configuration, documents);
+    }
+
+    /**
+     * Prints all the documents.
+     */
+    @Benchmark
+    public void print()
+    {
+        for (BenchmarkCorpus.ParsedDocument document : parsed)
+        {
+            Out out = OutFactory.getOut(configuration, BenchmarkCorpus.NULL_OUTPUT);
+            PPrint pprint = new PPrint(configuration);
+            if (configuration.xmlTags)
+            {
+                pprint.printXMLTree(out, (short) 0, 0, document.lexer, document.document);
+            }
+            else
+            {
+                pprint.printTree(out, (short) 0, 0, document.lexer, document.document);
+            }
+            pprint.flushLine(out, 0);
+            out.flush();
+        }
+    }
+}
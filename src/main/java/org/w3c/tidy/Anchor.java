@@ -58,7 +58,9 @@ package org.w3c.tidy;
  * @author hoehrmann
  * @author Fabrizio Giustina
  * @version $Revision$ ($Author$)
+ * @deprecated anchors are now kept in a hash map by TagTable, this class is no longer used
  */
+@Deprecated
 public class Anchor
 {
 
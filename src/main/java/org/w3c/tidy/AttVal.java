@@ -197,6 +197,24 @@ public class AttVal implements Cloneable
 
     }
 
+    /**
+     * Returns the namespace prefix declared by this attribute.
+     * @return "" for xmlns, the prefix for xmlns:prefix, null if this is not a namespace declaration
+     */
+    String getDeclaredPrefix()
+    {
+        String name = this.attribute;
+        if (name == null || !name.startsWith("xmlns"))
+        {
+            return null;
+        }
+        if (name.length() == 5)
+        {
+            return "";
+        }
+        return name.charAt(5) == ':' ? name.substring(6) : null;
+    }
+
     /**
      * Check the attribute value for uppercase letters (only if the value should be lowercase, required for literal
      * values in xhtml).
@@ -290,6 +308,21 @@ public class AttVal implements Cloneable
         return this.adapter;
     }
 
+    /**
+     * Return the org.w3c.dom.Attr adapter of an attribute of the given element.
+     * @param element element the attribute belongs to
+     * @return org.w3c.dom.Attr adapter
+     */
+    protected org.w3c.dom.Attr getAdapter(Node element)
+    {
+        org.w3c.dom.Attr attr = getAdapter();
+        if (attr instanceof DOMAttrImpl)
+        {
+            ((DOMAttrImpl) attr).ownerElement = element;
+        }
+        return attr;
+    }
+
     /**
      * Getter for <code>asp</code>.
      * @return Returns the asp.
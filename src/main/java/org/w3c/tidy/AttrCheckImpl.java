@@ -810,7 +810,7 @@ public final class AttrCheckImpl
             }
             else
             {
-                lexer.configuration.tt.anchorList = lexer.configuration.tt.addAnchor(attval.value, node);
+                lexer.configuration.tt.addAnchor(attval.value, node);
             }
         }
 
@@ -843,7 +843,7 @@ public final class AttrCheckImpl
                 }
                 else
                 {
-                    lexer.configuration.tt.anchorList = lexer.configuration.tt.addAnchor(attval.value, node);
+                    lexer.configuration.tt.addAnchor(attval.value, node);
                 }
             }
         }
@@ -160,7 +160,7 @@ public class AttributeTable
     /**
      * attribute table instance.
      */
-    private static AttributeTable defaultAttributeTable;
+    private static volatile AttributeTable defaultAttributeTable;
 
     /**
      * all the known attributes.
@@ -430,33 +430,42 @@ public class AttributeTable
     {
         if (defaultAttributeTable == null)
         {
-            defaultAttributeTable = new AttributeTable();
-            for (Attribute ATTR : ATTRS)
+            synchronized (AttributeTable.class)
             {
-                defaultAttributeTable.install(ATTR);
+                if (defaultAttributeTable == null)
+                {
+                    AttributeTable attributeTable = new AttributeTable();
+                    for (Attribute ATTR : ATTRS)
+                    {
+                        attributeTable.install(ATTR);
+                    }
+                    attrHref = attributeTable.lookup("href");
+                    attrSrc = attributeTable.lookup("src");
+                    attrId = attributeTable.lookup("id");
+                    attrName = attributeTable.lookup("name");
+                    attrSummary = attributeTable.lookup("summary");
+                    attrAlt = attributeTable.lookup("alt");
+                    attrLongdesc = attributeTable.lookup("longdesc");
+                    attrUsemap = attributeTable.lookup("usemap");
+                    attrIsmap = attributeTable.lookup("ismap");
+                    attrLanguage = attributeTable.lookup("language");
+                    attrType = attributeTable.lookup("type");
+                    attrTitle = attributeTable.lookup("title");
+                    attrXmlns = attributeTable.lookup("xmlns");
+                    attrValue = attributeTable.lookup("value");
+                    attrContent = attributeTable.lookup("content");
+                    attrDatafld = attributeTable.lookup("datafld");
+                    attrWidth = attributeTable.lookup("width");
+                    attrHeight = attributeTable.lookup("height");
+
+                    attrAlt.setNowrap(true);
+                    attrValue.setNowrap(true);
+                    attrContent.setNowrap(true);
+
+                    // published last, so that threads seeing the table also see the attributes above
+                    defaultAttributeTable = attributeTable;
+                }
             }
-            attrHref = defaultAttributeTable.lookup("href");
-            attrSrc = defaultAttributeTable.lookup("src");
-            attrId = defaultAttributeTable.lookup("id");
-            attrName = defaultAttributeTable.lookup("name");
-            attrSummary = defaultAttributeTable.lookup("summary");
-            attrAlt = defaultAttributeTable.lookup("alt");
-            attrLongdesc = defaultAttributeTable.lookup("longdesc");
-            attrUsemap = defaultAttributeTable.lookup("usemap");
-            attrIsmap = defaultAttributeTable.lookup("ismap");
-            attrLanguage = defaultAttributeTable.lookup("language");
-            attrType = defaultAttributeTable.lookup("type");
-            attrTitle = defaultAttributeTable.lookup("title");
-            attrXmlns = defaultAttributeTable.lookup("xmlns");
-            attrValue = defaultAttributeTable.lookup("value");
-            attrContent = defaultAttributeTable.lookup("content");
-            attrDatafld = defaultAttributeTable.lookup("datafld");
-            attrWidth = defaultAttributeTable.lookup("width");
-            attrHeight = defaultAttributeTable.lookup("height");
-
-            attrAlt.setNowrap(true);
-            attrValue.setNowrap(true);
-            attrContent.setNowrap(true);
         }
         return defaultAttributeTable;
     }
@@ -53,6 +53,13 @@
  */
 package org.w3c.tidy;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * Clean up misuse of presentation markup. Filters from other formats such as Microsoft Word often make excessive use of
  * presentation markup such as font tags, B, I, and the align attribute. By applying a set of production rules, it is
@@ -84,9 +91,8 @@ package org.w3c.tidy;
  * </pre>
  * These rules are applied to an element before processing its content and replace the current element by the first
  * element in the exposed content. After applying both sets of rules, you can replace the style attribute by a class
- * value and style rule in the document head. To support this, an association of styles and class names is built. A
- * naive approach is to rely on string matching to test when two property lists are the same. A better approach would be
- * to first sort the properties before matching.
+ * value and style rule in the document head. To support this, an association of styles and class names is built, and
+ * indexed by tag name and property string.
  *
  * @author Dave Raggett <a href="mailto:dsr@w3.org">dsr@w3.org </a>
  * @author Andy Quick <a href="mailto:ac.quick@sympatico.ca">ac.quick@sympatico.ca </a> (translation to Java)
@@ -117,75 +123,14 @@ public class Clean
     }
 
     /**
-     * Insert a css style property.
-     *
-     * @param props StyleProp instance
-     * @param name  property name
-     * @param value property value
-     * @return StyleProp containin the given property
-     */
-    private StyleProp insertProperty(StyleProp props, String name, String value)
-    {
-        StyleProp first, prev, prop;
-        int cmp;
-
-        prev = null;
-        first = props;
-
-        while (props != null)
-        {
-            cmp = props.name.compareTo(name);
-
-            if (cmp == 0)
-            {
-                // this property is already defined, ignore new value
-                return first;
-            }
-
-            if (cmp > 0) // props.name > name
-            {
-                // insert before this
-
-                prop = new StyleProp(name, value, props);
-
-                if (prev != null)
-                {
-                    prev.next = prop;
-                }
-                else
-                {
-                    first = prop;
-                }
-
-                return first;
-            }
-
-            prev = props;
-            props = props.next;
-        }
-
-        prop = new StyleProp(name, value, null);
-
-        if (prev != null)
-        {
-            prev.next = prop;
-        }
-        else
-        {
-            first = prop;
-        }
-
-        return first;
-    }
-
-    /**
-     * Create sorted linked list of properties from style string.
+     * Adds the properties in a style string to a map of declarations sorted by property name. When a property is
+     * already defined, the new value is ignored.
      *
-     * @param prop  StyleProp
+     * @param props declarations, by property name
      * @param style style string
-     * @return StyleProp with given style
+     * @return the given declarations
      */
-    private StyleProp createProps(StyleProp prop, String style)
+    private Map<String, String> createProps(Map<String, String> props, String style)
     {
         int nameEnd;
         int valueEnd;
@@ -238,7 +183,8 @@ public class Clean
                 ++valueEnd;
             }
 
-            prop = insertProperty(prop, style.substring(nameStart, nameEnd), style.substring(valueStart, valueEnd));
+            // this property may be already defined, in which case the new value is ignored
+            props.putIfAbsent(style.substring(nameStart, nameEnd), style.substring(valueStart, valueEnd));
 
             if (more)
             {
@@ -249,44 +195,31 @@ public class Clean
             break;
         }
 
-        return prop;
+        return props;
     }
 
     /**
      * Create a css property.
      *
-     * @param props StyleProp
+     * @param props declarations, by property name
      * @return css property as String
      */
-    private String createPropString(StyleProp props)
+    private String createPropString(Map<String, String> props)
     {
-        String style = "";
-        int len;
-        StyleProp prop;
+        StringBuilder style = new StringBuilder();
 
-        // compute length
-        for (len = 0, prop = props; prop != null; prop = prop.next)
+        for (Iterator<Map.Entry<String, String>> it = props.entrySet().iterator(); it.hasNext();)
         {
-            len += prop.name.length() + 2;
-            len += prop.value.length() + 2;
-        }
-
-        for (prop = props; prop != null; prop = prop.next)
-        {
-            style = style.concat(prop.name);
-            style = style.concat(": ");
+            Map.Entry<String, String> prop = it.next();
+            style.append(prop.getKey()).append(": ").append(prop.getValue());
 
-            style = style.concat(prop.value);
-
-            if (prop.next == null)
+            if (it.hasNext())
             {
-                break;
+                style.append("; ");
             }
-
-            style = style.concat("; ");
         }
 
-        return style;
+        return style.toString();
     }
 
     /**
@@ -298,12 +231,8 @@ public class Clean
      */
     private String addProperty(String style, String property)
     {
-        StyleProp prop;
-
-        prop = createProps(null, style);
-        prop = createProps(prop, property);
-        style = createPropString(prop);
-        return style;
+        Map<String, String> props = createProps(new TreeMap<String, String>(), style);
+        return createPropString(createProps(props, property));
     }
 
     /**
@@ -332,18 +261,23 @@ public class Clean
      */
     private String findStyle(Lexer lexer, String tag, String properties)
     {
-        Style style;
+        Map<String, Style> tagStyles = lexer.styleIndex.get(tag);
+        if (tagStyles == null)
+        {
+            tagStyles = new HashMap<String, Style>();
+            lexer.styleIndex.put(tag, tagStyles);
+        }
 
-        for (style = lexer.styles; style != null; style = style.next)
+        Style style = tagStyles.get(properties);
+        if (style != null)
         {
-            if (style.tag.equals(tag) && style.properties.equals(properties))
-            {
-                return style.tagClass;
-            }
+            return style.tagClass;
         }
 
+        // new classes are numbered in order of first use, and the list keeps the latest first for the style element
         style = new Style(tag, gensymClass(lexer), properties, lexer.styles);
         lexer.styles = style;
+        tagStyles.put(properties, style);
         return style.tagClass;
     }
 
@@ -752,9 +686,8 @@ public class Clean
     }
 
     /**
-     * Create new string that consists of the combined style properties in s1 and s2. To merge property lists, we build
-     * a linked list of property/values and insert properties into the list in order, merging values for the same
-     * property name.
+     * Create new string that consists of the combined style properties in s1 and s2. To merge property lists, we put
+     * the properties in a map sorted by property name, keeping the first value given for the same property name.
      *
      * @param s1 first property
      * @param s2 second property
@@ -762,13 +695,8 @@ public class Clean
      */
     private String mergeProperties(String s1, String s2)
     {
-        String s;
-        StyleProp prop;
-
-        prop = createProps(null, s1);
-        prop = createProps(prop, s2);
-        s = createPropString(prop);
-        return s;
+        Map<String, String> props = createProps(new TreeMap<String, String>(), s1);
+        return createPropString(createProps(props, s2));
     }
 
     /**
@@ -1626,38 +1554,40 @@ public class Clean
     }
 
     /**
-     * Special case: if the current node is destroyed by CleanNode() lower in the tree, this node and its parent no
-     * longer exist. So we must jump back up the CreateStyleProperties() call stack until we have a valid node
-     * reference.
+     * Cleans the content of a node, then the node itself. The tree is walked with an explicit stack of the elements
+     * whose content is being cleaned rather than by recursing, so that the depth of a document is not limited by the
+     * thread stack.
      *
      * @param lexer Lexer
      * @param node  Node
-     * @param prepl passed in as array to allow modifications
      * @return cleaned Node
      */
-    private Node createStyleProperties(Lexer lexer, Node node, Node[] prepl)
+    private Node createStyleProperties(Lexer lexer, Node node)
     {
+        List<Node> parents = new ArrayList<>();
         Node child = node.content;
 
-        if (child != null)
+        while (true)
         {
-            Node[] repl = new Node[1];
-            repl[0] = node;
-            while (child != null)
+            if (child != null)
             {
-                child = createStyleProperties(lexer, child, repl);
-                if (repl[0] != node)
-                {
-                    return repl[0];
-                }
-                if (child != null)
-                {
-                    child = child.next;
-                }
+                parents.add(node);
+                node = child;
+                child = node.content;
+                continue;
             }
-        }
 
-        return cleanNode(lexer, node);
+            // the content of node is clean, the walk goes on after what cleaning it leaves
+            Node cleaned = cleanNode(lexer, node);
+
+            if (parents.isEmpty())
+            {
+                return cleaned;
+            }
+
+            node = parents.remove(parents.size() - 1);
+            child = (cleaned != null) ? cleaned.next : null;
+        }
     }
 
     /**
@@ -1668,19 +1598,29 @@ public class Clean
      */
     private void defineStyleRules(Lexer lexer, Node node)
     {
-        Node child;
+        List<Node> parents = new ArrayList<>();
+        Node child = node.content;
 
-        if (node.content != null)
+        while (true)
         {
-            child = node.content;
-            while (child != null)
+            if (child != null)
             {
-                defineStyleRules(lexer, child);
-                child = child.next;
+                parents.add(node);
+                node = child;
+                child = node.content;
+                continue;
+            }
+
+            style2Rule(lexer, node);
+
+            if (parents.isEmpty())
+            {
+                return;
             }
-        }
 
-        style2Rule(lexer, node);
+            child = node.next;
+            node = parents.remove(parents.size() - 1);
+        }
     }
 
     /**
@@ -1691,9 +1631,7 @@ public class Clean
      */
     public void cleanTree(Lexer lexer, Node doc)
     {
-        Node[] repl = new Node[1];
-        repl[0] = doc;
-        doc = createStyleProperties(lexer, doc, repl);
+        doc = createStyleProperties(lexer, doc);
 
         if (doc != null && lexer.configuration.makeClean)
         {
@@ -1703,7 +1641,8 @@ public class Clean
     }
 
     /**
-     * simplifies {@literal <b><b>... </b> ... </b>} etc.
+     * simplifies {@literal <b><b>... </b> ... </b>} etc. Like the other passes over the whole tree, walks the tree with
+     * an explicit stack rather than by recursing, so that the depth of a document is not limited by the thread stack.
      *
      * @param node root Node
      */
@@ -1711,9 +1650,21 @@ public class Clean
     {
         Node[] o = new Node[1];
         Node next;
+        // where to go on once the content being walked is done, null at the end of a sibling list
+        List<Node> resume = new ArrayList<>();
 
-        while (node != null)
+        while (true)
         {
+            if (node == null)
+            {
+                if (resume.isEmpty())
+                {
+                    return;
+                }
+                node = resume.remove(resume.size() - 1);
+                continue;
+            }
+
             next = node.next;
 
             if ((node.tag == this.tt.tagB || node.tag == this.tt.tagI)
@@ -1730,7 +1681,9 @@ public class Clean
 
             if (node.content != null)
             {
-                nestedEmphasis(node.content);
+                resume.add(next);
+                node = node.content;
+                continue;
             }
 
             node = next;
@@ -1744,8 +1697,20 @@ public class Clean
      */
     public void emFromI(Node node)
     {
-        while (node != null)
+        List<Node> parents = new ArrayList<>();
+
+        while (true)
         {
+            if (node == null)
+            {
+                if (parents.isEmpty())
+                {
+                    return;
+                }
+                node = parents.remove(parents.size() - 1).next;
+                continue;
+            }
+
             if (node.tag == this.tt.tagI)
             {
                 node.element = this.tt.tagEm.name;
@@ -1759,7 +1724,9 @@ public class Clean
 
             if (node.content != null)
             {
-                emFromI(node.content);
+                parents.add(node);
+                node = node.content;
+                continue;
             }
 
             node = node.next;
@@ -1774,11 +1741,21 @@ public class Clean
      */
     public void list2BQ(Node node)
     {
-        while (node != null)
+        List<Node> parents = new ArrayList<>();
+
+        while (node != null || !parents.isEmpty())
         {
-            if (node.content != null)
+            if (node != null && node.content != null)
+            {
+                // its content first
+                parents.add(node);
+                node = node.content;
+                continue;
+            }
+
+            if (node == null)
             {
-                list2BQ(node.content);
+                node = parents.remove(parents.size() - 1);
             }
 
             if (node.tag != null
@@ -1807,9 +1784,20 @@ public class Clean
         int indent;
         String indentBuf;
         AttVal attval;
+        List<Node> parents = new ArrayList<>();
 
-        while (node != null)
+        while (true)
         {
+            if (node == null)
+            {
+                if (parents.isEmpty())
+                {
+                    return;
+                }
+                node = parents.remove(parents.size() - 1).next;
+                continue;
+            }
+
             if (node.tag == this.tt.tagBlockquote && node.implicit)
             {
                 indent = 1;
@@ -1820,11 +1808,7 @@ public class Clean
                     stripOnlyChild(node);
                 }
 
-                if (node.content != null)
-                {
-                    bQ2Div(node.content);
-                }
-
+                // the content is walked next: nothing in it depends on this element being a div yet
                 indentBuf = "margin-left: " + (new Integer(2 * indent)).toString() + "em";
 
                 node.element = this.tt.tagDiv.name;
@@ -1841,9 +1825,12 @@ public class Clean
                     node.addAttribute("style", indentBuf);
                 }
             }
-            else if (node.content != null)
+
+            if (node.content != null)
             {
-                bQ2Div(node.content);
+                parents.add(node);
+                node = node.content;
+                continue;
             }
 
             node = node.next;
@@ -1931,8 +1918,20 @@ public class Clean
      */
     public void dropSections(Lexer lexer, Node node)
     {
-        while (node != null)
+        List<Node> parents = new ArrayList<>();
+
+        while (true)
         {
+            if (node == null)
+            {
+                if (parents.isEmpty())
+                {
+                    return;
+                }
+                node = parents.remove(parents.size() - 1).next;
+                continue;
+            }
+
             if (node.type == Node.SECTION_TAG)
             {
                 // prune up to matching endif
@@ -1951,7 +1950,9 @@ public class Clean
 
             if (node.content != null)
             {
-                dropSections(lexer, node.content);
+                parents.add(node);
+                node = node.content;
+                continue;
             }
 
             node = node.next;
@@ -2069,11 +2070,21 @@ public class Clean
      */
     private void normalizeSpaces(Lexer lexer, Node node)
     {
-        while (node != null)
+        List<Node> parents = new ArrayList<>();
+
+        while (node != null || !parents.isEmpty())
         {
+            if (node == null)
+            {
+                node = parents.remove(parents.size() - 1).next;
+                continue;
+            }
+
             if (node.content != null)
             {
-                normalizeSpaces(lexer, node.content);
+                parents.add(node);
+                node = node.content;
+                continue;
             }
 
             if (node.type == Node.TEXT_NODE)
@@ -2153,7 +2164,7 @@ public class Clean
                 return false;
             }
 
-            if (((node.end - node.start) == 1) && lexer.lexbuf[node.start] == ' ')
+            if (((node.end - node.start) == 1) && lexer.textBuffer(node)[node.start] == ' ')
             {
                 return true;
             }
@@ -2162,7 +2173,7 @@ public class Clean
             {
                 int[] c = new int[1];
 
-                PPrint.getUTF8(lexer.lexbuf, node.start, c);
+                PPrint.getUTF8(lexer.textBuffer(node), node.start, c);
 
                 return c[0] == 160;
             }
@@ -2183,16 +2194,31 @@ public class Clean
     {
         // used to a list from a sequence of bulletted p's
         Node list = null;
+        // elements whose content is being cleaned, and the list of their sibling level
+        List<Node> parents = new ArrayList<>();
+        List<Node> lists = new ArrayList<>();
 
-        while (node != null)
+        while (true)
         {
+            if (node == null)
+            {
+                if (parents.isEmpty())
+                {
+                    return;
+                }
+                node = parents.remove(parents.size() - 1).next;
+                list = lists.remove(lists.size() - 1);
+                continue;
+            }
+
             // get rid of Word's xmlns attributes
             if (node.tag == tt.tagHtml)
             {
-                // check that it's a Word 2000 document
+                // check that it's a Word 2000 document, else leave the rest of this level
                 if ((node.getAttrByName("xmlns:o") == null))
                 {
-                    return;
+                    node = null;
+                    continue;
                 }
                 lexer.configuration.tt.freeAttrs(node);
             }
@@ -2347,7 +2373,11 @@ public class Clean
 
             if (node.content != null)
             {
-                cleanWord2000(lexer, node.content);
+                parents.add(node);
+                lists.add(list);
+                list = null;
+                node = node.content;
+                continue;
             }
 
             node = node.next;
@@ -75,7 +75,7 @@ import java.util.Properties;
  * @author Fabrizio Giustina
  * @version $Revision$ ($Author$)
  */
-public class Configuration implements Serializable
+public class Configuration implements Serializable, Cloneable
 {
 
     /**
@@ -292,6 +292,8 @@ public class Configuration implements Serializable
         addConfigOption(new Flag("only-errors", "onlyErrors", ParsePropertyImpl.BOOL));
         addConfigOption(new Flag("output-raw", "rawOut", ParsePropertyImpl.BOOL));
         addConfigOption(new Flag("trim-empty-elements", "trimEmpty", ParsePropertyImpl.BOOL));
+        addConfigOption(new Flag("buffered-input", "bufferedInput", ParsePropertyImpl.BOOL));
+        addConfigOption(new Flag("stream-output", "streamOutput", ParsePropertyImpl.BOOL));
 
         addConfigOption(new Flag("markup", "onlyErrors", ParsePropertyImpl.INVBOOL));
 
@@ -715,10 +717,20 @@ public class Configuration implements Serializable
     protected boolean rawOut;
 
     /**
-     * number of errors to put out.
+     * maximum nesting of elements, deeper documents are reported as an error.
      */
     protected int maxNesting = 1000;
 
+    /**
+     * read and decode input a block at a time.
+     */
+    protected boolean bufferedInput;
+
+    /**
+     * print completed body content while parsing.
+     */
+    protected boolean streamOutput;
+
     /**
      * configuration properties.
      */
@@ -823,6 +835,30 @@ public class Configuration implements Serializable
         }
     }
 
+    /**
+     * Returns a copy of this configuration for a single parse. Printing changes some options while it runs, so
+     * concurrent parses can't share a configuration. The copy shares the tag definitions, but keeps its own parse
+     * state in a copy of the tag table.
+     * @param report Report instance for the copy
+     * @return configuration copy
+     */
+    Configuration copy(Report report)
+    {
+        Configuration copy;
+        try
+        {
+            copy = (Configuration) clone();
+        }
+        catch (CloneNotSupportedException e)
+        {
+            // can't happen, Configuration is Cloneable
+            throw new RuntimeException(e);
+        }
+        copy.report = report;
+        copy.tt = this.tt.copy(copy);
+        return copy;
+    }
+
     /**
      * Ensure that config is self consistent.
      */
@@ -72,6 +72,11 @@ public class DOMAttrImpl extends DOMNodeImpl implements org.w3c.dom.Attr, Clonea
      */
     protected AttVal avAdaptee;
 
+    /**
+     * element the attribute belongs to, null if it has not been reached through an element.
+     */
+    Node ownerElement;
+
     /**
      * instantiates a new DOMAttrImpl which wraps the given AttVal.
      * @param adaptee wrapped AttVal
@@ -145,6 +150,12 @@ public class DOMAttrImpl extends DOMNodeImpl implements org.w3c.dom.Attr, Clonea
     public void setValue(String value)
     {
         avAdaptee.value = value;
+
+        // the document indexes elements by id
+        if (this.ownerElement != null && isId())
+        {
+            modified(this.ownerElement);
+        }
     }
 
     /**
@@ -277,12 +288,13 @@ public class DOMAttrImpl extends DOMNodeImpl implements org.w3c.dom.Attr, Clonea
     }
 
     /**
-     * TODO DOM level 2 getOwnerElement() Not implemented. Returns null.
+     * Returns the element the attribute has been reached through, null for an attribute created by the document or
+     * removed from its element.
      * @see org.w3c.dom.Attr#getOwnerElement()
      */
     public org.w3c.dom.Element getOwnerElement()
     {
-        return null;
+        return (this.ownerElement != null) ? (org.w3c.dom.Element) this.ownerElement.getAdapter() : null;
     }
 
     /**
@@ -318,6 +330,7 @@ public class DOMAttrImpl extends DOMNodeImpl implements org.w3c.dom.Attr, Clonea
             throw new RuntimeException("Clone not supported");
         }
         clone.avAdaptee = (AttVal) this.avAdaptee.clone();
+        clone.ownerElement = null;
         return clone;
     }
 }
\ No newline at end of file
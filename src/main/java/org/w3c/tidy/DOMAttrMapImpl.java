@@ -57,7 +57,8 @@ import org.w3c.dom.DOMException;
 
 
 /**
- * Tidy implementation of org.w3c.dom.NamedNodeMap.
+ * Tidy implementation of org.w3c.dom.NamedNodeMap. The attributes are copied to an array on first indexed access,
+ * which is reused until the attributes of the element are changed through the DOM.
  * @author Dave Raggett <a href="mailto:dsr@w3.org">dsr@w3.org </a>
  * @author Andy Quick <a href="mailto:ac.quick@sympatico.ca">ac.quick@sympatico.ca </a> (translation to Java)
  * @author Fabrizio Giustina
@@ -67,17 +68,57 @@ public class DOMAttrMapImpl implements org.w3c.dom.NamedNodeMap
 {
 
     /**
-     * wrapped org.w3c.tidy.AttVal.
+     * element whose attributes are wrapped.
      */
-    private AttVal first;
+    private Node element;
 
     /**
-     * instantiates a new DOMAttrMapImpl for the given AttVal.
-     * @param firstAttVal wrapped AttVal
+     * attributes of the element, null until first used.
      */
-    protected DOMAttrMapImpl(AttVal firstAttVal)
+    private AttVal[] attributes;
+
+    /**
+     * modification count of the element when the attributes were copied.
+     */
+    private int modCount;
+
+    /**
+     * instantiates a new DOMAttrMapImpl for the attributes of the given element.
+     * @param element wrapped element
+     */
+    protected DOMAttrMapImpl(Node element)
     {
-        this.first = firstAttVal;
+        this.element = element;
+    }
+
+    /**
+     * Returns the attributes of the element, copying them again if they changed since they were copied.
+     * @return attributes
+     */
+    private AttVal[] getAttributes()
+    {
+        int count = DOMNodeImpl.getModCount(this.element);
+        if (this.attributes != null && this.modCount == count)
+        {
+            return this.attributes;
+        }
+
+        int len = 0;
+        for (AttVal att = this.element.attributes; att != null; att = att.next)
+        {
+            len++;
+        }
+
+        AttVal[] result = new AttVal[len];
+        int i = 0;
+        for (AttVal att = this.element.attributes; att != null; att = att.next)
+        {
+            result[i++] = att;
+        }
+
+        this.attributes = result;
+        this.modCount = count;
+        return result;
     }
 
     /**
@@ -85,7 +126,7 @@ public class DOMAttrMapImpl implements org.w3c.dom.NamedNodeMap
      */
     public org.w3c.dom.Node getNamedItem(String name)
     {
-        AttVal att = this.first;
+        AttVal att = this.element.attributes;
         while (att != null)
         {
             if (att.attribute.equals(name))
@@ -96,7 +137,7 @@ public class DOMAttrMapImpl implements org.w3c.dom.NamedNodeMap
         }
         if (att != null)
         {
-            return att.getAdapter();
+            return att.getAdapter(this.element);
         }
 
         return null;
@@ -107,20 +148,10 @@ public class DOMAttrMapImpl implements org.w3c.dom.NamedNodeMap
      */
     public org.w3c.dom.Node item(int index)
     {
-        int i = 0;
-        AttVal att = this.first;
-        while (att != null)
+        AttVal[] atts = getAttributes();
+        if (index >= 0 && index < atts.length)
         {
-            if (i >= index)
-            {
-                break;
-            }
-            i++;
-            att = att.next;
-        }
-        if (att != null)
-        {
-            return att.getAdapter();
+            return atts[index].getAdapter(this.element);
         }
 
         return null;
@@ -131,14 +162,7 @@ public class DOMAttrMapImpl implements org.w3c.dom.NamedNodeMap
      */
     public int getLength()
     {
-        int len = 0;
-        AttVal att = this.first;
-        while (att != null)
-        {
-            len++;
-            att = att.next;
-        }
-        return len;
+        return getAttributes().length;
     }
 
     /**
@@ -155,7 +179,7 @@ public class DOMAttrMapImpl implements org.w3c.dom.NamedNodeMap
      */
     public org.w3c.dom.Node removeNamedItem(String name) throws DOMException
     {
-        AttVal att = this.first;
+        AttVal att = this.element.attributes;
         AttVal previous = null;
 
         while (att != null)
@@ -164,12 +188,13 @@ public class DOMAttrMapImpl implements org.w3c.dom.NamedNodeMap
             {
                 if (previous == null)
                 {
-                    this.first = att.getNext();
+                    this.element.attributes = att.getNext();
                 }
                 else
                 {
                     previous.setNext(att.getNext());
                 }
+                DOMNodeImpl.modified(this.element);
 
                 break;
             }
@@ -179,7 +204,7 @@ public class DOMAttrMapImpl implements org.w3c.dom.NamedNodeMap
 
         if (att != null)
         {
-            return att.getAdapter();
+            return att.getAdapter(null);
         }
 
         throw new DOMException(DOMException.NOT_FOUND_ERR, "Named item " + name + "Not found");
@@ -53,6 +53,12 @@
  */
 package org.w3c.tidy;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.w3c.dom.DOMConfiguration;
 import org.w3c.dom.DOMException;
 
@@ -72,6 +78,36 @@ public class DOMDocumentImpl extends DOMNodeImpl implements org.w3c.dom.Document
      */
     private TagTable tt;
 
+    /**
+     * number of changes made to the document through the DOM.
+     */
+    private int modCount;
+
+    /**
+     * value of modCount when the element indexes were built.
+     */
+    private int indexModCount;
+
+    /**
+     * elements in document order, by element name, built on first use.
+     */
+    private Map<String, List<Node>> elementsByName;
+
+    /**
+     * all elements in document order.
+     */
+    private List<Node> elements;
+
+    /**
+     * first element with a given id, by id.
+     */
+    private Map<String, Node> elementsById;
+
+    /**
+     * number of times the element indexes have been built.
+     */
+    private int indexBuilds;
+
     /**
      * Instantiates a new Dom document with a default tag table.
      * @param adaptee tidy Node
@@ -79,7 +115,7 @@ public class DOMDocumentImpl extends DOMNodeImpl implements org.w3c.dom.Document
     protected DOMDocumentImpl(Node adaptee)
     {
         super(adaptee);
-        this.tt = new TagTable();
+        this.tt = TagTable.newTagTable();
     }
 
     /**
@@ -281,12 +317,137 @@ public class DOMDocumentImpl extends DOMNodeImpl implements org.w3c.dom.Document
     }
 
     /**
-     * TODO DOM level 2 getElementById() Not implemented. Returns null.
+     * Returns the first element, in document order, with the given <code>id</code> attribute. Elements are looked up in
+     * an index built on first use, and rebuilt after the document is changed through the DOM, ids changed through
+     * <code>Attr.setValue()</code> included.
      * @see org.w3c.dom.Document#getElementById(java.lang.String)
      */
     public org.w3c.dom.Element getElementById(String elementId)
     {
-        return null;
+        buildIndex();
+        Node node = this.elementsById.get(elementId);
+        return (node != null) ? (org.w3c.dom.Element) node.getAdapter() : null;
+    }
+
+    /**
+     * Returns the document which the given node belongs to.
+     * @param node tidy Node
+     * @return document, or null if the node is not in a document tree
+     */
+    static DOMDocumentImpl getDocument(Node node)
+    {
+        while (node.parent != null)
+        {
+            node = node.parent;
+        }
+        return (node.type == Node.ROOT_NODE) ? (DOMDocumentImpl) node.getAdapter() : null;
+    }
+
+    /**
+     * Records a change made through the DOM to the tree or to the attributes of the given node, so that the element
+     * indexes of its document are rebuilt on next use.
+     * @param node changed node
+     */
+    static void modified(Node node)
+    {
+        DOMDocumentImpl document = getDocument(node);
+        if (document != null)
+        {
+            document.modCount++;
+        }
+    }
+
+    /**
+     * Returns the number of changes made to the document through the DOM.
+     * @return modification count
+     */
+    int getModCount()
+    {
+        return this.modCount;
+    }
+
+    /**
+     * Returns the elements with the given name, in document order.
+     * @param name element name, or <code>*</code> for all the elements
+     * @return unmodifiable list of elements
+     */
+    List<Node> getElementsByName(String name)
+    {
+        buildIndex();
+        if ("*".equals(name))
+        {
+            return this.elements;
+        }
+        List<Node> result = this.elementsByName.get(name);
+        return (result != null) ? result : Collections.<Node> emptyList();
+    }
+
+    /**
+     * Returns the number of times the element indexes have been built.
+     * @return number of index builds
+     */
+    int getIndexBuilds()
+    {
+        return this.indexBuilds;
+    }
+
+    /**
+     * Builds the element indexes in a single walk of the tree, unless they are up to date.
+     */
+    private void buildIndex()
+    {
+        if (this.elementsByName != null && this.elementsById != null && this.indexModCount == this.modCount)
+        {
+            return;
+        }
+
+        Map<String, List<Node>> byName = new HashMap<String, List<Node>>();
+        Map<String, Node> byId = new HashMap<String, Node>();
+        List<Node> all = new ArrayList<Node>();
+
+        Node node = this.adaptee;
+        while (node != null)
+        {
+            if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+            {
+                all.add(node);
+                List<Node> named = byName.get(node.element);
+                if (named == null)
+                {
+                    named = new ArrayList<Node>();
+                    byName.put(node.element, named);
+                }
+                named.add(node);
+
+                AttVal id = node.getAttrByName("id");
+                if (id != null && id.value != null && !byId.containsKey(id.value))
+                {
+                    byId.put(id.value, node);
+                }
+            }
+
+            // next node in document order, without recursion
+            if (node.content != null)
+            {
+                node = node.content;
+                continue;
+            }
+            while (node != this.adaptee && node.next == null)
+            {
+                node = node.parent;
+            }
+            node = (node != this.adaptee) ? node.next : null;
+        }
+
+        for (Map.Entry<String, List<Node>> entry : byName.entrySet())
+        {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.elementsByName = byName;
+        this.elements = Collections.unmodifiableList(all);
+        this.elementsById = byId;
+        this.indexModCount = this.modCount;
+        this.indexBuilds++;
     }
 
     /**
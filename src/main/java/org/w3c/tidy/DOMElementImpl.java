@@ -157,6 +157,7 @@ public class DOMElementImpl extends DOMNodeImpl implements org.w3c.dom.Element
                 this.adaptee.attributes = att;
             }
         }
+        modified(this.adaptee);
     }
 
     /**
@@ -190,6 +191,7 @@ public class DOMElementImpl extends DOMNodeImpl implements org.w3c.dom.Element
             {
                 pre.next = att.next;
             }
+            modified(this.adaptee);
         }
     }
 
@@ -214,7 +216,7 @@ public class DOMElementImpl extends DOMNodeImpl implements org.w3c.dom.Element
         }
         if (att != null)
         {
-            return att.getAdapter();
+            return att.getAdapter(this.adaptee);
         }
 
         return null;
@@ -249,7 +251,7 @@ public class DOMElementImpl extends DOMNodeImpl implements org.w3c.dom.Element
         }
         if (att != null)
         {
-            result = att.getAdapter();
+            result = att.getAdapter(null);
             att.adapter = newAttr;
         }
         else
@@ -264,6 +266,8 @@ public class DOMElementImpl extends DOMNodeImpl implements org.w3c.dom.Element
                 this.adaptee.attributes = newatt.avAdaptee;
             }
         }
+        newatt.ownerElement = this.adaptee;
+        modified(this.adaptee);
         return result;
     }
 
@@ -300,6 +304,11 @@ public class DOMElementImpl extends DOMNodeImpl implements org.w3c.dom.Element
                 pre.next = att.next;
             }
             result = oldAttr;
+            if (oldAttr instanceof DOMAttrImpl)
+            {
+                ((DOMAttrImpl) oldAttr).ownerElement = null;
+            }
+            modified(this.adaptee);
         }
         else
         {
@@ -73,6 +73,21 @@ public class DOMNodeImpl implements org.w3c.dom.Node
      */
     protected Node adaptee;
 
+    /**
+     * number of changes made to the children or attributes of this node through the DOM.
+     */
+    private int modCount;
+
+    /**
+     * child list returned by getChildNodes, null until first used.
+     */
+    private DOMNodeListImpl childNodes;
+
+    /**
+     * attribute map returned by getAttributes, null until first used.
+     */
+    private DOMAttrMapImpl attributes;
+
     /**
      * Intantiates a new DOM node.
      * @param adaptee wrapped Tidy node
@@ -179,7 +194,12 @@ public class DOMNodeImpl implements org.w3c.dom.Node
      */
     public org.w3c.dom.NodeList getChildNodes()
     {
-        return new DOMNodeListImpl(adaptee);
+        // the list copies the children again only once they have changed, so keep it for the next call
+        if (this.childNodes == null)
+        {
+            this.childNodes = new DOMNodeListImpl(adaptee);
+        }
+        return this.childNodes;
     }
 
     /**
@@ -235,7 +255,11 @@ public class DOMNodeImpl implements org.w3c.dom.Node
      */
     public org.w3c.dom.NamedNodeMap getAttributes()
     {
-        return new DOMAttrMapImpl(adaptee.attributes);
+        if (this.attributes == null)
+        {
+            this.attributes = new DOMAttrMapImpl(adaptee);
+        }
+        return this.attributes;
     }
 
     /**
@@ -296,6 +320,10 @@ public class DOMNodeImpl implements org.w3c.dom.Node
                 throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR, "newChild cannot be a child of this node");
             }
         }
+        if (newCh.adaptee.parent != null)
+        {
+            modified(newCh.adaptee.parent);
+        }
         newCh.adaptee.removeNode();
         if (refChild == null) {
             this.adaptee.insertNodeAtEnd(newCh.adaptee);
@@ -310,6 +338,7 @@ public class DOMNodeImpl implements org.w3c.dom.Node
             }
             Node.insertNodeBeforeElement(refCh.adaptee, newCh.adaptee);
         }
+        modified(this.adaptee);
         return newChild;
     }
 
@@ -348,6 +377,7 @@ public class DOMNodeImpl implements org.w3c.dom.Node
             throw new DOMException(DOMException.NOT_FOUND_ERR, "refChild not found");
         }
         Node.discardElement(ref);
+        modified(this.adaptee);
 
         if (this.adaptee.content == null && this.adaptee.type == Node.START_TAG)
         {
@@ -396,6 +426,10 @@ public class DOMNodeImpl implements org.w3c.dom.Node
                 throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR, "newChild cannot be a child of this node");
             }
         }
+        if (newCh.adaptee.parent != null)
+        {
+            modified(newCh.adaptee.parent);
+        }
         this.adaptee.insertNodeAtEnd(newCh.adaptee);
 
         if (this.adaptee.type == Node.START_END_TAG)
@@ -403,9 +437,35 @@ public class DOMNodeImpl implements org.w3c.dom.Node
             this.adaptee.setType(Node.START_TAG);
         }
 
+        modified(this.adaptee);
         return newChild;
     }
 
+    /**
+     * Records a change made through the DOM to the children or to the attributes of the given node, so that the child
+     * lists and attribute maps of the node, and the element indexes of its document, are built again on next use.
+     * @param node changed node
+     */
+    static void modified(Node node)
+    {
+        if (node.adapter instanceof DOMNodeImpl)
+        {
+            ((DOMNodeImpl) node.adapter).modCount++;
+        }
+        DOMDocumentImpl.modified(node);
+    }
+
+    /**
+     * Returns the number of changes made to the children or to the attributes of the given node through the DOM.
+     * @param node tidy Node
+     * @return modification count
+     */
+    static int getModCount(Node node)
+    {
+        org.w3c.dom.Node adapter = node.getAdapter();
+        return (adapter instanceof DOMNodeImpl) ? ((DOMNodeImpl) adapter).modCount : 0;
+    }
+
     /**
      * @see org.w3c.dom.Node#hasChildNodes
      */
@@ -54,9 +54,13 @@
 
 package org.w3c.tidy;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * DOMNodeListByTagNameImpl. The items in the <code>NodeList</code> are accessible via an integral index, starting
- * from 0.
+ * from 0. The matching elements are collected once and reused until the document is changed through the DOM; lists
+ * over a whole document use the element index of the document.
  * @author Dave Raggett <a href="mailto:dsr@w3.org">dsr@w3.org </a>
  * @author Andy Quick <a href="mailto:ac.quick@sympatico.ca">ac.quick@sympatico.ca </a> (translation to Java)
  * @author Fabrizio Giustina
@@ -76,19 +80,19 @@ public class DOMNodeListByTagNameImpl implements org.w3c.dom.NodeList
     private String tagName;
 
     /**
-     * Current index.
+     * Matching nodes, in document order.
      */
-    private int currIndex;
+    private List<Node> nodes;
 
     /**
-     * Max index (number of nodes).
+     * Document the nodes were collected from, null if the first node is not in a document.
      */
-    private int maxIndex;
+    private DOMDocumentImpl document;
 
     /**
-     * Current node.
+     * Modification count of the document when the nodes were collected.
      */
-    private Node currNode;
+    private int modCount;
 
     /**
      * Instantiates a new DOMNodeListByTagName.
@@ -106,13 +110,10 @@ public class DOMNodeListByTagNameImpl implements org.w3c.dom.NodeList
      */
     public org.w3c.dom.Node item(int index)
     {
-        currIndex = 0;
-        maxIndex = index;
-        preTraverse(first);
-
-        if (currIndex > maxIndex && currNode != null)
+        List<Node> list = getNodes();
+        if (index >= 0 && index < list.size())
         {
-            return currNode.getAdapter();
+            return list.get(index).getAdapter();
         }
 
         return null;
@@ -123,42 +124,61 @@ public class DOMNodeListByTagNameImpl implements org.w3c.dom.NodeList
      */
     public int getLength()
     {
-        currIndex = 0;
-        maxIndex = Integer.MAX_VALUE;
-        preTraverse(first);
-        return currIndex;
+        return getNodes().size();
     }
 
     /**
-     * Traverse the node list.
-     * @param node Node
+     * Returns the matching nodes, collecting them again if the document changed since they were collected.
+     * @return matching nodes
      */
-    protected void preTraverse(Node node)
+    private List<Node> getNodes()
     {
-        if (node == null)
+        DOMDocumentImpl doc = DOMDocumentImpl.getDocument(first);
+        if (this.nodes != null && doc != null && doc == this.document && doc.getModCount() == this.modCount)
         {
-            return;
+            return this.nodes;
         }
 
-        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+        if (first.type == Node.ROOT_NODE)
         {
-            if (currIndex <= maxIndex && (tagName.equals("*") || tagName.equals(node.element)))
-            {
-                currIndex += 1;
-                currNode = node;
-            }
+            this.nodes = doc.getElementsByName(tagName);
         }
-        if (currIndex > maxIndex)
+        else
         {
-            return;
+            this.nodes = new ArrayList<Node>();
+            preTraverse(first);
         }
+        this.document = doc;
+        this.modCount = (doc != null) ? doc.getModCount() : 0;
+        return this.nodes;
+    }
 
-        node = node.content;
+    /**
+     * Traverse the node list, without recursion.
+     * @param node Node
+     */
+    protected void preTraverse(Node node)
+    {
+        Node top = node;
         while (node != null)
         {
-            preTraverse(node);
-            node = node.next;
+            if ((node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                && (tagName.equals("*") || tagName.equals(node.element)))
+            {
+                this.nodes.add(node);
+            }
+
+            if (node.content != null)
+            {
+                node = node.content;
+                continue;
+            }
+            while (node != top && node.next == null)
+            {
+                node = node.parent;
+            }
+            node = (node != top) ? node.next : null;
         }
     }
 
-}
\ No newline at end of file
+}
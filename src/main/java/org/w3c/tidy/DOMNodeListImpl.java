@@ -54,7 +54,8 @@
 package org.w3c.tidy;
 
 /**
- * DOMNodeListImpl. The items in the <code>NodeList</code> are accessible via an integral index, starting from 0.
+ * DOMNodeListImpl. The items in the <code>NodeList</code> are accessible via an integral index, starting from 0. The
+ * children are copied to an array on first use, which is reused until the children are changed through the DOM.
  * @author Dave Raggett <a href="mailto:dsr@w3.org">dsr@w3.org </a>
  * @author Andy Quick <a href="mailto:ac.quick@sympatico.ca">ac.quick@sympatico.ca </a> (translation to Java)
  * @author Fabrizio Giustina
@@ -68,6 +69,16 @@ public class DOMNodeListImpl implements org.w3c.dom.NodeList
      */
     private Node parent;
 
+    /**
+     * Children of the parent node, null until first used.
+     */
+    private Node[] nodes;
+
+    /**
+     * Modification count of the parent node when the children were copied.
+     */
+    private int modCount;
+
     /**
      * Instantiates a new DOM node list.
      * @param parent parent Node
@@ -87,20 +98,10 @@ public class DOMNodeListImpl implements org.w3c.dom.NodeList
             return null;
         }
 
-        int i = 0;
-        Node node = this.parent.content;
-        while (node != null)
-        {
-            if (i >= index)
-            {
-                break;
-            }
-            i++;
-            node = node.next;
-        }
-        if (node != null)
+        Node[] children = getNodes();
+        if (index >= 0 && index < children.length)
         {
-            return node.getAdapter();
+            return children[index].getAdapter();
         }
 
         return null;
@@ -116,14 +117,37 @@ public class DOMNodeListImpl implements org.w3c.dom.NodeList
             return 0;
         }
 
+        return getNodes().length;
+    }
+
+    /**
+     * Returns the children of the parent node, copying them again if they changed since they were copied.
+     * @return children
+     */
+    private Node[] getNodes()
+    {
+        int count = DOMNodeImpl.getModCount(this.parent);
+        if (this.nodes != null && this.modCount == count)
+        {
+            return this.nodes;
+        }
+
         int len = 0;
-        Node node = this.parent.content;
-        while (node != null)
+        for (Node node = this.parent.content; node != null; node = node.next)
         {
             len++;
-            node = node.next;
         }
-        return len;
+
+        Node[] children = new Node[len];
+        int i = 0;
+        for (Node node = this.parent.content; node != null; node = node.next)
+        {
+            children[i++] = node;
+        }
+
+        this.nodes = children;
+        this.modCount = count;
+        return children;
     }
 
-}
\ No newline at end of file
+}
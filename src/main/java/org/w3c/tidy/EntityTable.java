@@ -53,6 +53,7 @@
  */
 package org.w3c.tidy;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -70,7 +71,7 @@ public final class EntityTable
     /**
      * the default entity table.
      */
-    private static EntityTable defaultEntityTable;
+    private static volatile EntityTable defaultEntityTable;
 
     /**
      * Known entities.
@@ -335,6 +336,11 @@ public final class EntityTable
      */
     private Map<String, Entity> entityMap = new HashMap<>();
 
+    /**
+     * Entity names indexed by code, the first installed entity wins for codes with more than one name.
+     */
+    private String[] entityNames = new String[0];
+
     /**
      * use getDefaultEntityTable to get an entity table instance.
      */
@@ -350,6 +356,18 @@ public final class EntityTable
      */
     private Entity install(Entity ent)
     {
+        int code = ent.getCode();
+        if (code >= 0)
+        {
+            if (code >= this.entityNames.length)
+            {
+                this.entityNames = Arrays.copyOf(this.entityNames, Math.max(code + 1, this.entityNames.length * 2));
+            }
+            if (this.entityNames[code] == null)
+            {
+                this.entityNames[code] = ent.getName();
+            }
+        }
         return this.entityMap.put(ent.getName(), ent);
     }
 
@@ -420,18 +438,11 @@ public final class EntityTable
      */
     public String entityName(short code)
     {
-        String name = null;
-        Entity ent;
-        for (Object o : this.entityMap.values())
+        if (code < 0 || code >= this.entityNames.length)
         {
-            ent = (Entity) o;
-            if (ent.getCode() == code)
-            {
-                name = ent.getName();
-                break;
-            }
+            return null;
         }
-        return name;
+        return this.entityNames[code];
     }
 
     /**
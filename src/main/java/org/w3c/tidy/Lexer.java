@@ -54,10 +54,11 @@
 package org.w3c.tidy;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Stack;
-import java.util.Vector;
+import java.util.Map;
 
 
 /**
@@ -129,6 +130,26 @@ public class Lexer
     
     private int highSurrogate = 0;
 
+    /**
+     * "empty tag" flag of the current token, reused by getToken to avoid an allocation per token.
+     */
+    private final boolean[] tokenEmpty = new boolean[1];
+
+    /**
+     * attribute delimiter, reused by parseAttrs.
+     */
+    private final int[] attrDelim = new int[1];
+
+    /**
+     * asp node found in place of an attribute, reused by parseAttrs.
+     */
+    private final Node[] attrAsp = new Node[1];
+
+    /**
+     * php node found in place of an attribute, reused by parseAttrs.
+     */
+    private final Node[] attrPhp = new Node[1];
+
     /**
      * lists all the known versions.
      */
@@ -147,6 +168,22 @@ public class Lexer
 		new W3CVersionInfo("HTML5", null, null, HtmlVersion.HTML5)
 	};
 
+    /**
+     * Size of a lexer text chunk. A new chunk is started at a token boundary once the current one is nearly full; a
+     * single token longer than the remaining space only grows the chunk it started in.
+     */
+    private static final int TEXT_CHUNK_SIZE = 8192;
+
+    /**
+     * Free space below which a new text chunk is started at the next token boundary.
+     */
+    private static final int TEXT_CHUNK_RESERVE = 1024;
+
+    /**
+     * attributes whose values keep leading and trailing white space.
+     */
+    private static final String[] LITERAL_VALUE_ATTRIBUTES = {"alt", "title", "value", "prompt"};
+
     /**
      * getToken state: content.
      */
@@ -328,18 +365,25 @@ public class Lexer
     protected Node token;
 
     /**
-     * Lexer character buffer parse tree nodes span onto this buffer which contains the concatenated text contents of
-     * all of the elements. Lexsize must be reset for each file. Byte buffer of UTF-8 chars.
+     * Lexer character buffer: the current chunk of the text arena. Parse tree nodes span onto the chunk that was current
+     * when their token was read, through <code>Node.textarray</code>. Chunks are never repointed: once a new chunk is
+     * started, nodes keep referencing the previous one, so only offsets taken within the current token may be used
+     * against this field. Byte buffer of UTF-8 chars.
      */
     protected byte[] lexbuf;
 
     /**
-     * allocated.
+     * first chunk of the text arena, holding the lowest offsets of the lexer text.
+     */
+    private byte[] firstChunk;
+
+    /**
+     * allocated in the current chunk.
      */
     protected int lexlength;
 
     /**
-     * used.
+     * used in the current chunk.
      */
     protected int lexsize;
 
@@ -354,9 +398,9 @@ public class Lexer
     protected int insert;
 
     /**
-     * stack.
+     * stack of inline elements, last element on top. Not synchronized, a lexer is only used by one thread.
      */
-    protected Stack<IStack> istack;
+    protected List<IStack> istack;
 
     /**
      * start of frame.
@@ -368,6 +412,26 @@ public class Lexer
      */
     protected Style styles;
 
+    /**
+     * number of nodes created, for metrics.
+     */
+    protected int nodeCount;
+
+    /**
+     * largest size reached by the text buffer, for metrics.
+     */
+    protected int maxLexlength;
+
+    /**
+     * deepest nesting level reached by the parser, for metrics.
+     */
+    protected int maxNestingLevel;
+
+    /**
+     * styles indexed by tag name and then by properties.
+     */
+    protected Map<String, Map<String, Style>> styleIndex = new HashMap<String, Map<String, Style>>();
+
     /**
      * configuration.
      */
@@ -394,9 +458,9 @@ public class Lexer
     protected Node root;
 
     /**
-     * node list.
+     * printer of the body content completed so far, null unless output is streamed.
      */
-    private List<Node> nodeList;
+    protected StreamingPrinter streamer;
 
     /**
      * Instantiates a new Lexer.
@@ -414,24 +478,22 @@ public class Lexer
         this.versions = Dict.combine(Dict.VERS_ALL, Dict.VERS_PROPRIETARY);
         this.doctype = HtmlVersion.UNKNOWN;
         this.insert = -1;
-        this.istack = new Stack<>();
+        this.istack = new ArrayList<>();
         this.configuration = configuration;
-        this.nodeList = new Vector<>();
     }
 
     /**
-     * Creates a new node and add it to nodelist.
+     * Creates a new node.
      * @return Node
      */
     public Node newNode()
     {
-        Node node = new Node();
-        this.nodeList.add(node);
-        return node;
+        this.nodeCount++;
+        return new Node();
     }
 
     /**
-     * Creates a new node and add it to nodelist.
+     * Creates a new node.
      * @param type node type: Node.ROOT_NODE | Node.DOCTYPE_TAG | Node.COMMENT_TAG | Node.PROC_INS_TAG | Node.TEXT_NODE |
      * Node.START_TAG | Node.END_TAG | Node.START_END_TAG | Node.CDATA_TAG | Node.SECTION_TAG | Node. ASP_TAG |
      * Node.JSTE_TAG | Node.PHP_TAG | Node.XML_DECL
@@ -442,13 +504,12 @@ public class Lexer
      */
     public Node newNode(short type, byte[] textarray, int start, int end)
     {
-        Node node = new Node(type, textarray, start, end);
-        this.nodeList.add(node);
-        return node;
+        this.nodeCount++;
+        return new Node(type, textarray, start, end);
     }
 
     /**
-     * Creates a new node and add it to nodelist.
+     * Creates a new node.
      * @param type node type: Node.ROOT_NODE | Node.DOCTYPE_TAG | Node.COMMENT_TAG | Node.PROC_INS_TAG | Node.TEXT_NODE |
      * Node.START_TAG | Node.END_TAG | Node.START_END_TAG | Node.CDATA_TAG | Node.SECTION_TAG | Node. ASP_TAG |
      * Node.JSTE_TAG | Node.PHP_TAG | Node.XML_DECL
@@ -460,72 +521,28 @@ public class Lexer
      */
     public Node newNode(short type, byte[] textarray, int start, int end, String element)
     {
-        Node node = new Node(type, textarray, start, end, element, this.configuration.tt);
-        this.nodeList.add(node);
-        return node;
+        this.nodeCount++;
+        return new Node(type, textarray, start, end, element, this.configuration.tt);
     }
 
     /**
-     * Clones a node and add it to node list.
+     * Clones a node.
      * @param node Node
      * @return cloned Node
      */
     public Node cloneNode(Node node)
     {
-        Node cnode = node.cloneNode(false);
-        this.nodeList.add(cnode);
-        for (AttVal att = cnode.attributes; att != null; att = att.next)
-        {
-            if (att.asp != null)
-            {
-                this.nodeList.add(att.asp);
-            }
-            if (att.php != null)
-            {
-                this.nodeList.add(att.php);
-            }
-        }
-        return cnode;
+        return node.cloneNode(false);
     }
 
     /**
-     * Clones an attribute value and add eventual asp or php node to node list.
+     * Clones an attribute value, including eventual asp or php nodes.
      * @param attrs original AttVal
      * @return cloned AttVal
      */
     public AttVal cloneAttributes(AttVal attrs)
     {
-        AttVal cattrs = (AttVal) attrs.clone();
-        for (AttVal att = cattrs; att != null; att = att.next)
-        {
-            if (att.asp != null)
-            {
-                this.nodeList.add(att.asp);
-            }
-            if (att.php != null)
-            {
-                this.nodeList.add(att.php);
-            }
-        }
-        return cattrs;
-    }
-
-    /**
-     * Update <code>oldtextarray</code> in the current nodes.
-     * @param oldtextarray previous text array
-     * @param newtextarray new text array
-     */
-    protected void updateNodeTextArrays(byte[] oldtextarray, byte[] newtextarray)
-    {
-        Node node;
-        for (Object aNodeList : this.nodeList)
-        {
-            node = (Node) aNodeList;
-            if (node.textarray == oldtextarray)
-            {
-                node.textarray = newtextarray;
-            }
-        }
+        return (AttVal) attrs.clone();
     }
 
     /**
@@ -536,10 +553,11 @@ public class Lexer
     {
         Node node = newNode();
 
-        node.textarray = this.lexbuf;
         node.start = this.lexsize;
         addCharToLexer('\n');
         node.end = this.lexsize;
+        // the chunk may have grown while adding, so take it afterwards
+        node.textarray = this.lexbuf;
         return node;
     }
 
@@ -552,6 +570,26 @@ public class Lexer
         return this.in.isEndOfStream();
     }
 
+    /**
+     * Starts a new text chunk if the current one is nearly full. Must only be called at a token boundary, when no offset
+     * into the current chunk is still pending: nodes created so far keep referencing the old chunk.
+     */
+    private void startTextChunk()
+    {
+        if (this.lexbuf == null || this.lexlength - this.lexsize < TEXT_CHUNK_RESERVE)
+        {
+            this.lexlength = TEXT_CHUNK_SIZE;
+            this.lexbuf = new byte[this.lexlength];
+            if (this.firstChunk == null)
+            {
+                this.firstChunk = this.lexbuf;
+            }
+            this.lexsize = 0;
+            this.txtstart = 0;
+            this.txtend = 0;
+        }
+    }
+
     /**
      * Adds a byte to lexer buffer.
      * @param c byte to add
@@ -560,24 +598,28 @@ public class Lexer
     {
         if (this.lexsize + 1 >= this.lexlength)
         {
+            // a single token overflowing the current chunk: grow it. Nodes already pointing to the old copy keep it,
+            // its content up to lexsize is identical, so no node needs to be repointed
+            this.lexlength = Math.max(TEXT_CHUNK_SIZE, this.lexlength * 2);
             while (this.lexsize + 1 >= this.lexlength)
             {
-                if (this.lexlength == 0)
-                {
-                    this.lexlength = 8192;
-                }
-                else
-                {
-                    this.lexlength = this.lexlength * 2;
-                }
+                this.lexlength = this.lexlength * 2;
             }
 
+            this.maxLexlength = Math.max(this.maxLexlength, this.lexlength);
+            if (this.lexlength > TEXT_CHUNK_SIZE)
+            {
+                TidyEvents.condition(this, TidyEvents.BUFFER_GROWTH, this.lexlength);
+            }
             byte[] temp = this.lexbuf;
             this.lexbuf = new byte[this.lexlength];
             if (temp != null)
             {
-                System.arraycopy(temp, 0, this.lexbuf, 0, temp.length);
-                updateNodeTextArrays(temp, this.lexbuf);
+                System.arraycopy(temp, 0, this.lexbuf, 0, this.lexsize);
+            }
+            if (temp == this.firstChunk)
+            {
+                this.firstChunk = this.lexbuf;
             }
         }
 
@@ -585,6 +627,22 @@ public class Lexer
         this.lexbuf[this.lexsize] = (byte) '\0'; // debug
     }
 
+    /**
+     * Returns the buffer holding the text of a node at its offsets, as a single lexer buffer would. Nodes in
+     * a text chunk are read in their own chunk; a node with a private array (such as the blank created by
+     * <code>Node.trimInitialSpace</code>) was read at its offsets in the lexer buffer, so it is read in the first chunk.
+     * @param node text node
+     * @return buffer to read the node text from
+     */
+    public byte[] textBuffer(Node node)
+    {
+        if (node.textarray != null && node.textarray.length >= TEXT_CHUNK_SIZE)
+        {
+            return node.textarray;
+        }
+        return (this.firstChunk != null) ? this.firstChunk : node.textarray;
+    }
+
     /**
      * Substitute the last char in buffer.
      * @param c new char
@@ -637,22 +695,39 @@ public class Lexer
         	}
         }
 
-        int i = 0;
-        int[] count = new int[]{0};
-        byte[] buf = new byte[10]; // unsigned char
-
-        boolean err = EncodingUtils.encodeCharToUTF8Bytes(c, buf, null, count);
-        if (err)
+        // encode as UTF-8, with the same checks as EncodingUtils.encodeCharToUTF8Bytes
+        if (c <= 0x7F)
         {
-        	addErrorReplacement();
-        	return;
+            addByte(c);
         }
-
-        for (i = 0; i < count[0]; i++)
+        else if (c <= 0x7FF)
         {
-            addByte(buf[i]); // uint
+            addByte(0xC0 | (c >> 6));
+            addByte(0x80 | (c & 0x3F));
+        }
+        else if (c <= 0xFFFF)
+        {
+            if (c == 0xFFFE || c == 0xFFFF
+                || (c >= EncodingUtils.UTF16_LOW_SURROGATE_BEGIN && c <= EncodingUtils.UTF16_HIGH_SURROGATE_END))
+            {
+                addErrorReplacement();
+                return;
+            }
+            addByte(0xE0 | (c >> 12));
+            addByte(0x80 | ((c >> 6) & 0x3F));
+            addByte(0x80 | (c & 0x3F));
+        }
+        else if (c <= EncodingUtils.MAX_UTF8_FROM_UCS4)
+        {
+            addByte(0xF0 | (c >> 18));
+            addByte(0x80 | ((c >> 12) & 0x3F));
+            addByte(0x80 | ((c >> 6) & 0x3F));
+            addByte(0x80 | (c & 0x3F));
+        }
+        else
+        {
+            addErrorReplacement();
         }
-
     }
 
 	/** 
@@ -1059,7 +1134,7 @@ public class Lexer
     public boolean checkDocTypeKeyWords(Node doctype)
     {
         int len = doctype.end - doctype.start;
-        String s = TidyUtils.getString(this.lexbuf, doctype.start, len);
+        String s = TidyUtils.getString(doctype.textarray, doctype.start, len);
 
         return !(TidyUtils.findBadSubString("SYSTEM", s, s.length())
             || TidyUtils.findBadSubString("PUBLIC", s, s.length())
@@ -1080,9 +1155,10 @@ public class Lexer
         int len;
         String str1;
         String str2;
+        byte[] text = doctype.textarray;
 
         // if root tag for doctype isn't html give up now
-        str1 = TidyUtils.getString(this.lexbuf, doctype.start, 4);
+        str1 = TidyUtils.getString(text, doctype.start, 4);
         if (!("html".equalsIgnoreCase(str1)))
         {
             return HtmlVersion.UNKNOWN;
@@ -1094,13 +1170,13 @@ public class Lexer
         }
 
         // give up if all we are given is the system id for the doctype
-        str1 = TidyUtils.getString(this.lexbuf, doctype.start + 5, 7);
+        str1 = TidyUtils.getString(text, doctype.start + 5, 7);
         if ("SYSTEM ".equalsIgnoreCase(str1))
         {
             // but at least ensure the case is correct
             if (!str1.substring(0, 6).equals("SYSTEM"))
             {
-                System.arraycopy(TidyUtils.getBytes("SYSTEM"), 0, this.lexbuf, doctype.start + 5, 6);
+                System.arraycopy(TidyUtils.getBytes("SYSTEM"), 0, text, doctype.start + 5, 6);
             }
             return HtmlVersion.UNKNOWN; // unrecognized
         }
@@ -1109,7 +1185,7 @@ public class Lexer
         {
             if (!str1.substring(0, 6).equals("PUBLIC"))
             {
-                System.arraycopy(TidyUtils.getBytes("PUBLIC "), 0, this.lexbuf, doctype.start + 5, 6);
+                System.arraycopy(TidyUtils.getBytes("PUBLIC "), 0, text, doctype.start + 5, 6);
             }
         }
         else if (str1.trim().isEmpty())
@@ -1123,19 +1199,19 @@ public class Lexer
 
         for (i = doctype.start; i < doctype.end; ++i)
         {
-            if (this.lexbuf[i] == (byte) '"')
+            if (text[i] == (byte) '"')
             {
-                str1 = TidyUtils.getString(this.lexbuf, i + 1, 12);
-                str2 = TidyUtils.getString(this.lexbuf, i + 1, 13);
+                str1 = TidyUtils.getString(text, i + 1, 12);
+                str2 = TidyUtils.getString(text, i + 1, 13);
                 if (str1.equals("-//W3C//DTD "))
                 {
                     // compute length of identifier e.g. "HTML 4.0 Transitional"
-                    for (j = i + 13; j < doctype.end && this.lexbuf[j] != (byte) '/'; ++j)
+                    for (j = i + 13; j < doctype.end && text[j] != (byte) '/'; ++j)
                     {
                         //
                     }
                     len = j - i - 13;
-                    p = TidyUtils.getString(this.lexbuf, i + 13, len);
+                    p = TidyUtils.getString(text, i + 13, len);
 
                     for (j = 1; j < W3CVERSION.length; ++j)
                     {
@@ -1151,13 +1227,13 @@ public class Lexer
                 else if (str2.equals("-//IETF//DTD "))
                 {
                     // compute length of identifier e.g. "HTML 2.0"
-                    for (j = i + 14; j < doctype.end && this.lexbuf[j] != (byte) '/'; ++j)
+                    for (j = i + 14; j < doctype.end && text[j] != (byte) '/'; ++j)
                     {
                         //
                     }
                     len = j - i - 14;
 
-                    p = TidyUtils.getString(this.lexbuf, i + 14, len);
+                    p = TidyUtils.getString(text, i + 14, len);
                     s = W3CVERSION[0].name;
                     if (len == s.length() && s.equals(p))
                     {
@@ -1205,7 +1281,11 @@ public class Lexer
             {
                 if (!attr.value.equals(profile))
                 {
-                    report.warning(this, node, null, Report.INCONSISTENT_NAMESPACE);
+                    // a streamed document reports it once parsed, like a document printed whole
+                    if (this.streamer == null || !this.streamer.deferNamespaceWarning(node))
+                    {
+                        report.warning(this, node, null, Report.INCONSISTENT_NAMESPACE);
+                    }
                     attr.value = profile;
                 }
             }
@@ -1347,7 +1427,7 @@ public class Lexer
             {
 
                 int len = doctype.end - doctype.start + 1;
-                String start = TidyUtils.getString(this.lexbuf, doctype.start, len);
+                String start = TidyUtils.getString(doctype.textarray, doctype.start, len);
 
                 int dtdbeg = start.indexOf('[');
                 if (dtdbeg >= 0)
@@ -1949,10 +2029,12 @@ public class Lexer
         int c = 0;
         int badcomment = 0;
         // pass by reference
-        boolean[] isempty = new boolean[1];
+        boolean[] isempty = this.tokenEmpty;
         boolean inDTDSubset = false;
         AttVal attributes = null;
 
+        isempty[0] = false;
+
         if (this.pushed)
         {
             // duplicate inlines in preference to pushed text nodes when appropriate
@@ -1973,6 +2055,7 @@ public class Lexer
         this.columns = this.in.getCurcol();
         this.waswhite = false;
 
+        startTextChunk();
         this.txtstart = this.lexsize;
         this.txtend = this.lexsize;
 
@@ -3522,7 +3605,7 @@ public class Lexer
             // --literal-attributes is set to yes
             // #994841 - Whitespace is removed from value attributes
 
-            if (munge && !TidyUtils.isInValuesIgnoreCase(new String[]{"alt", "title", "value", "prompt"}, name))
+            if (munge && !TidyUtils.isInValuesIgnoreCase(LITERAL_VALUE_ATTRIBUTES, name))
             {
                 while (TidyUtils.isWhite((char) this.lexbuf[start + len - 1]))
                 {
@@ -3652,9 +3735,9 @@ public class Lexer
     {
         AttVal av, list;
         String attribute, value;
-        int[] delim = new int[1];
-        Node[] asp = new Node[1];
-        Node[] php = new Node[1];
+        int[] delim = this.attrDelim;
+        Node[] asp = this.attrAsp;
+        Node[] php = this.attrPhp;
 
         list = null;
 
@@ -3759,7 +3842,14 @@ public class Lexer
         {
             is.attributes = cloneAttributes(node.attributes);
         }
-        this.istack.push(is);
+        this.istack.add(is);
+
+        // report runaway unclosed inline elements once per doubling
+        int size = this.istack.size();
+        if (size >= TidyEvents.INLINE_STACK_THRESHOLD && (size & (size - 1)) == 0)
+        {
+            TidyEvents.condition(this, TidyEvents.INLINE_STACK, size);
+        }
     }
 
     /**
@@ -3794,7 +3884,7 @@ public class Lexer
 
                 while (this.istack.size() > 0)
                 {
-                    is = (IStack) this.istack.pop();
+                    is = this.istack.remove(this.istack.size() - 1);
                     if (is.tag == this.configuration.tt.tagA)
                     {
                         break;
@@ -3811,7 +3901,7 @@ public class Lexer
 
         if (this.istack.size() > 0)
         {
-            is = (IStack) this.istack.pop();
+            is = this.istack.remove(this.istack.size() - 1);
             if (this.insert >= this.istack.size())
             {
                 this.insert = -1;
@@ -3831,7 +3921,7 @@ public class Lexer
 
         for (i = this.istack.size() - 1; i >= 0; --i)
         {
-            is = (IStack) this.istack.elementAt(i);
+            is = this.istack.get(i);
             if (is.tag == node.tag)
             {
                 return true;
@@ -3895,7 +3985,7 @@ public class Lexer
 
         // GLP: Bugfix 126261. Remove when this change is fixed in istack.c in the original Tidy
         node.implicit = true;
-        is = (IStack) this.istack.elementAt(this.insert);
+        is = this.istack.get(this.insert);
         node.element = is.element;
         node.tag = is.tag;
         if (is.attributes != null)
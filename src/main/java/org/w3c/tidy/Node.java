@@ -54,8 +54,8 @@
 package org.w3c.tidy;
 
 /**
- * Used for elements and text nodes element name is null for text nodes start and end are offsets into lexbuf which
- * contains the textual content of all elements in the parse tree. Parent and content allow traversal of the parse tree
+ * Used for elements and text nodes element name is null for text nodes start and end are offsets into textarray, the
+ * lexer text chunk which contains the textual content of the element. Parent and content allow traversal of the parse tree
  * in any direction. attributes are represented as a linked list of AttVal nodes which hold the strings for
  * attribute/value pairs.
  * @author Dave Raggett <a href="mailto:dsr@w3.org">dsr@w3.org </a>
@@ -786,7 +786,7 @@ public class Node
             if (last.end > last.start)
 
             {
-                c = lexer.lexbuf[last.end - 1];
+                c = lexer.textBuffer(last)[last.end - 1];
 
                 if (c == 160 || c == (byte) ' ')
                 {
@@ -829,7 +829,6 @@ public class Node
     {
         Node node = lexer.newNode();
         node.start = lexer.lexsize;
-        node.textarray = element.textarray; // TODO check it
         lexer.addByte('<');
 
         if (element.type == END_TAG)
@@ -857,7 +856,7 @@ public class Node
 
             for (i = element.start; i < element.end; ++i)
             {
-                lexer.addByte(lexer.lexbuf[i]);
+                lexer.addByte(element.textarray[i]);
             }
         }
 
@@ -868,6 +867,8 @@ public class Node
 
         lexer.addByte('>');
         node.end = lexer.lexsize;
+        // the lexer chunk may have grown while adding, so take it afterwards
+        node.textarray = lexer.lexbuf;
 
         return node;
     }
@@ -885,7 +886,7 @@ public class Node
             {
                 return true;
             }
-            return this.end == this.start + 1 && lexer.lexbuf[this.end - 1] == ' ';
+            return this.end == this.start + 1 && lexer.textBuffer(this)[this.end - 1] == ' ';
         }
         return false;
     }
@@ -903,7 +904,7 @@ public class Node
     {
         Node prev, node;
 
-        if (text.type == TEXT_NODE && lexer.lexbuf[text.start] == (byte) ' ' && (text.start < text.end))
+        if (text.type == TEXT_NODE && (text.start < text.end) && lexer.textBuffer(text)[text.start] == (byte) ' ')
         {
             if (TidyUtils.toBoolean(element.tag.model & Dict.CM_INLINE)
                 && !TidyUtils.toBoolean(element.tag.model & Dict.CM_FIELD))
@@ -914,6 +915,15 @@ public class Node
                 {
                     if (prev.textarray[prev.end - 1] != (byte) ' ')
                     {
+                        if (prev.end >= prev.textarray.length)
+                        {
+                            // no slot left after prev in its own array: give it a copy with room for the space
+                            byte[] copy = new byte[prev.end - prev.start + 1];
+                            System.arraycopy(prev.textarray, prev.start, copy, 0, prev.end - prev.start);
+                            prev.textarray = copy;
+                            prev.end -= prev.start;
+                            prev.start = 0;
+                        }
                         prev.textarray[prev.end++] = (byte) ' ';
                     }
 
@@ -1006,6 +1016,12 @@ public class Node
 
         lexer.report.warning(lexer, element, doctype, Report.DOCTYPE_AFTER_TAGS);
 
+        if (lexer.streamer != null && lexer.streamer.isStarted() && lexer.streamer.isDocTypeGiven())
+        {
+            // only the first doctype given is printed with the start of the document
+            lexer.report.warning(lexer, element, doctype, Report.CONTENT_AFTER_STREAMED_HEAD);
+        }
+
         while (element.tag != tt.tagHtml)
         {
             element = element.parent;
@@ -1275,13 +1291,55 @@ public class Node
     }
 
     /**
-     * Checks for node integrity.
+     * Checks for node integrity. The tree is walked through the links just checked rather than by recursing, so that
+     * the depth of a document is not limited by the thread stack.
      * @return false if node is not consistent
      */
     public boolean checkNodeIntegrity()
     {
-        Node child;
+        Node node = this;
+
+        while (true)
+        {
+            if (!node.checkLinks())
+            {
+                return false;
+            }
 
+            if (node.content != null)
+            {
+                if (node.content.parent != node)
+                {
+                    return false;
+                }
+                node = node.content;
+                continue;
+            }
+
+            while (node != this && node.next == null)
+            {
+                node = node.parent;
+            }
+
+            if (node == this)
+            {
+                return true;
+            }
+
+            if (node.next.parent != node.parent)
+            {
+                return false;
+            }
+            node = node.next;
+        }
+    }
+
+    /**
+     * Checks the links of a node to its siblings and to its parent.
+     * @return false if a link is not consistent
+     */
+    private boolean checkLinks()
+    {
         if (this.prev != null)
         {
             if (this.prev.next != this)
@@ -1310,14 +1368,6 @@ public class Node
                 return false;
             }
         }
-
-        for (child = this.content; child != null; child = child.next)
-        {
-            if (child.parent != this || !child.checkNodeIntegrity())
-            {
-                return false;
-            }
-        }
         return true;
     }
 
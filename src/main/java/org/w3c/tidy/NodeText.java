@@ -0,0 +1,232 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Reads the text of nodes for the SAX and StAX readers: decodes text arrays into a reused char buffer, and splits
+ * doctypes and processing instructions into their parts.
+ * @version $Revision$ ($Author$)
+ */
+final class NodeText
+{
+
+    /**
+     * decoder, reused.
+     */
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8
+        .newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * decoded text.
+     */
+    private char[] chars = new char[256];
+
+    /**
+     * buffer over chars.
+     */
+    private CharBuffer charBuffer = CharBuffer.wrap(this.chars);
+
+    /**
+     * buffer over the text array of the last decoded node, which is usually shared with the next one.
+     */
+    private ByteBuffer byteBuffer;
+
+    /**
+     * Decodes the text of a node. The chars are valid until the next call.
+     * @param node text, comment, cdata or processing instruction node
+     * @return number of chars, starting at 0 in {@link #getChars()}
+     */
+    int decode(Node node)
+    {
+        if (node.textarray == null || node.start >= node.end)
+        {
+            return 0;
+        }
+
+        int length = Math.min(node.end, node.textarray.length) - node.start;
+        if (this.chars.length < length)
+        {
+            this.chars = new char[Math.max(length, this.chars.length * 2)];
+            this.charBuffer = CharBuffer.wrap(this.chars);
+        }
+        if (this.byteBuffer == null || this.byteBuffer.array() != node.textarray)
+        {
+            this.byteBuffer = ByteBuffer.wrap(node.textarray);
+        }
+
+        this.byteBuffer.limit(node.start + length).position(node.start);
+        this.charBuffer.clear();
+        this.decoder.reset();
+        this.decoder.decode(this.byteBuffer, this.charBuffer, true);
+        this.decoder.flush(this.charBuffer);
+        return this.charBuffer.position();
+    }
+
+    /**
+     * Returns the chars of the last decoded node.
+     * @return decoded chars
+     */
+    char[] getChars()
+    {
+        return this.chars;
+    }
+
+    /**
+     * Returns the text of a node as a string.
+     * @param node node
+     * @return text, empty if the node has none
+     */
+    static String getString(Node node)
+    {
+        if (node.textarray == null || node.start >= node.end)
+        {
+            return "";
+        }
+        return TidyUtils.getString(node.textarray, node.start, node.end - node.start);
+    }
+
+    /**
+     * Splits a processing instruction at the first white space, leaving out the final question mark.
+     * @param node processing instruction
+     * @return target and data
+     */
+    static String[] processingInstruction(Node node)
+    {
+        String text = getString(node);
+        int length = text.length();
+        if (length > 0 && text.charAt(length - 1) == '?')
+        {
+            length--;
+        }
+        int target = 0;
+        while (target < length && !Character.isWhitespace(text.charAt(target)))
+        {
+            target++;
+        }
+        int data = target;
+        while (data < length && Character.isWhitespace(text.charAt(data)))
+        {
+            data++;
+        }
+        return new String[]{text.substring(0, target), text.substring(data, length)};
+    }
+
+    /**
+     * Splits a doctype into its name, public and system identifiers.
+     * @param node doctype
+     * @return name, public identifier and system identifier, null where missing
+     */
+    static String[] docType(Node node)
+    {
+        String text = getString(node).trim();
+
+        int end = 0;
+        while (end < text.length() && !Character.isWhitespace(text.charAt(end)))
+        {
+            end++;
+        }
+        String[] parts = new String[3];
+        parts[0] = text.substring(0, end);
+        String rest = text.substring(end).trim();
+
+        if (rest.regionMatches(true, 0, "PUBLIC", 0, 6))
+        {
+            quotedStrings(rest, 6, parts, 1);
+        }
+        else if (rest.regionMatches(true, 0, "SYSTEM", 0, 6))
+        {
+            quotedStrings(rest, 6, parts, 2);
+        }
+        return parts;
+    }
+
+    /**
+     * Reads quoted strings, each separated by white space, until the end of the parts or of the text.
+     * @param text text
+     * @param pos start position
+     * @param parts where to store the strings
+     * @param index index of the first string in parts
+     */
+    private static void quotedStrings(String text, int pos, String[] parts, int index)
+    {
+        for (int j = index; j < parts.length; j++)
+        {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+            {
+                pos++;
+            }
+            if (pos == text.length() || (text.charAt(pos) != '"' && text.charAt(pos) != '\''))
+            {
+                return;
+            }
+            int close = text.indexOf(text.charAt(pos), pos + 1);
+            if (close < 0)
+            {
+                return;
+            }
+            parts[j] = text.substring(pos + 1, close);
+            pos = close + 1;
+        }
+    }
+
+}
@@ -75,13 +75,54 @@ public interface Out
      */
     void outc(byte c);
 
+    /**
+     * writes a range of chars.
+     * @param c array holding the chars to write
+     * @param offset index of the first char to write
+     * @param length number of chars to write
+     */
+    default void outc(int[] c, int offset, int length)
+    {
+        for (int i = offset; i < offset + length; i++)
+        {
+            outc(c[i]);
+        }
+    }
+
+    /**
+     * writes a range of a string made only of ASCII chars.
+     * @param str string holding the chars to write
+     * @param offset index of the first char to write
+     * @param length number of chars to write
+     */
+    default void outAscii(String str, int offset, int length)
+    {
+        for (int i = offset; i < offset + length; i++)
+        {
+            outc(str.charAt(i));
+        }
+    }
+
     /**
      * writes a newline.
      */
     void newline();
 
+    /**
+     * writes a run of newlines.
+     * @param count number of newlines to write
+     */
+    default void newline(int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            newline();
+        }
+    }
+
     /**
      * Flush the stream.
+     * @throws java.io.UncheckedIOException wrapping the first error met when writing to the underlying stream
      */
     void flush();
 
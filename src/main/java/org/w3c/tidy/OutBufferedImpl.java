@@ -0,0 +1,412 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+
+/**
+ * Output implementation encoding into a reusable byte buffer, which is written to the stream only when full or
+ * flushed. UTF-8, ASCII and Latin-1 output is encoded directly into the buffer; other encodings, and surrogates, go
+ * through a <code>CharsetEncoder</code>. The bytes written are the same an <code>OutputStreamWriter</code> would
+ * produce.
+ * @version $Revision$ ($Author$)
+ */
+public class OutBufferedImpl implements Out
+{
+
+    /**
+     * size of the byte buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * size of the char buffer feeding the encoder.
+     */
+    private static final int CHAR_BUFFER_SIZE = 1024;
+
+    /**
+     * fast encoding: none, use the encoder.
+     */
+    private static final int FAST_NONE = 0;
+
+    /**
+     * fast encoding: ASCII.
+     */
+    private static final int FAST_ASCII = 1;
+
+    /**
+     * fast encoding: Latin-1.
+     */
+    private static final int FAST_LATIN1 = 2;
+
+    /**
+     * fast encoding: UTF-8.
+     */
+    private static final int FAST_UTF8 = 3;
+
+    /**
+     * output stream.
+     */
+    private OutputStream stream;
+
+    /**
+     * encoded bytes not yet written to the stream.
+     */
+    private ByteBuffer bytes;
+
+    /**
+     * chars waiting for the encoder. With a fast encoding this only ever holds a high surrogate waiting for its pair.
+     */
+    private CharBuffer chars;
+
+    /**
+     * encoder for <code>chars</code>.
+     */
+    private CharsetEncoder encoder;
+
+    /**
+     * fast encoding in use.
+     */
+    private int fastEncoding;
+
+    /**
+     * byte written for chars the fast encoding can't represent.
+     */
+    private byte replacement;
+
+    /**
+     * Newline string.
+     */
+    private char[] newline;
+
+    /**
+     * first error met when writing to the stream, null if none.
+     */
+    private IOException error;
+
+    /**
+     * Constructor.
+     * @param configuration actual configuration instance (needed for newline configuration)
+     * @param encoding encoding name
+     * @param out output stream
+     * @throws UnsupportedEncodingException if the requested encoding is not supported
+     */
+    protected OutBufferedImpl(Configuration configuration, String encoding, OutputStream out)
+        throws UnsupportedEncodingException
+    {
+        Charset charset;
+        try
+        {
+            charset = Charset.forName(encoding);
+        }
+        catch (IllegalCharsetNameException | UnsupportedCharsetException e)
+        {
+            throw new UnsupportedEncodingException(encoding);
+        }
+        // same behaviour as OutputStreamWriter
+        this.encoder = charset.newEncoder();
+        this.encoder.onMalformedInput(CodingErrorAction.REPLACE);
+        this.encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        if (StandardCharsets.UTF_8.equals(charset))
+        {
+            this.fastEncoding = FAST_UTF8;
+        }
+        else if (StandardCharsets.ISO_8859_1.equals(charset))
+        {
+            this.fastEncoding = FAST_LATIN1;
+        }
+        else if (StandardCharsets.US_ASCII.equals(charset))
+        {
+            this.fastEncoding = FAST_ASCII;
+        }
+        this.replacement = this.encoder.replacement()[0];
+
+        this.stream = out;
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        this.chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        this.newline = configuration.newline;
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(int)
+     */
+    public void outc(int c)
+    {
+        if (this.fastEncoding == FAST_NONE
+            || this.chars.position() > 0
+            || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)
+            || !Character.isValidCodePoint(c))
+        {
+            encode(c);
+            return;
+        }
+
+        if (this.bytes.remaining() < 4)
+        {
+            writeBytes();
+        }
+
+        byte[] buf = this.bytes.array();
+        int pos = this.bytes.position();
+        if (c < 0x80)
+        {
+            buf[pos++] = (byte) c;
+        }
+        else if (this.fastEncoding == FAST_LATIN1)
+        {
+            // a supplementary char is a single unmappable sequence, replaced once
+            buf[pos++] = c <= 0xFF ? (byte) c : this.replacement;
+        }
+        else if (this.fastEncoding == FAST_ASCII)
+        {
+            buf[pos++] = this.replacement;
+        }
+        else if (c < 0x800)
+        {
+            buf[pos++] = (byte) (0xC0 | (c >> 6));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        else if (c < 0x10000)
+        {
+            buf[pos++] = (byte) (0xE0 | (c >> 12));
+            buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        else
+        {
+            buf[pos++] = (byte) (0xF0 | (c >> 18));
+            buf[pos++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+            buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        this.bytes.position(pos);
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(byte)
+     */
+    public void outc(byte c)
+    {
+        // as Writer.write(int), which only keeps the low 16 bits
+        outc((int) (char) c);
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(int[], int, int)
+     */
+    public void outc(int[] c, int offset, int length)
+    {
+        int i = offset;
+        int end = offset + length;
+        while (i < end)
+        {
+            if (this.fastEncoding != FAST_NONE && this.chars.position() == 0)
+            {
+                // copy a run of ASCII chars straight into the buffer
+                byte[] buf = this.bytes.array();
+                int pos = this.bytes.position();
+                int limit = Math.min(buf.length, pos + end - i);
+                int ch;
+                while (pos < limit && (ch = c[i]) >= 0 && ch < 0x80)
+                {
+                    buf[pos++] = (byte) ch;
+                    i++;
+                }
+                this.bytes.position(pos);
+                if (i == end)
+                {
+                    break;
+                }
+            }
+            outc(c[i++]);
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outAscii(String, int, int)
+     */
+    public void outAscii(String str, int offset, int length)
+    {
+        for (int i = offset; i < offset + length; i++)
+        {
+            outc(str.charAt(i));
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#newline()
+     */
+    public void newline()
+    {
+        for (int i = 0; i < this.newline.length; i++)
+        {
+            outc(this.newline[i]);
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#newline(int)
+     */
+    public void newline(int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            newline();
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#flush()
+     */
+    public void flush()
+    {
+        encodeChars();
+        writeBytes();
+        if (this.error == null)
+        {
+            try
+            {
+                this.stream.flush();
+            }
+            catch (IOException e)
+            {
+                this.error = e;
+            }
+        }
+        if (this.error != null)
+        {
+            throw new UncheckedIOException(this.error);
+        }
+    }
+
+    /**
+     * Queues a char for the encoder. With a fast encoding it is encoded at once, so that output stays in order.
+     * @param c char to write
+     */
+    private void encode(int c)
+    {
+        if (this.chars.remaining() < 2)
+        {
+            encodeChars();
+        }
+
+        if (Character.isBmpCodePoint(c))
+        {
+            this.chars.put((char) c);
+        }
+        else if (Character.isValidCodePoint(c))
+        {
+            this.chars.put(Character.highSurrogate(c));
+            this.chars.put(Character.lowSurrogate(c));
+        }
+        else
+        {
+            // fails as OutJavaImpl does
+            this.chars.put(Character.toChars(c));
+        }
+
+        if (this.fastEncoding != FAST_NONE)
+        {
+            encodeChars();
+        }
+    }
+
+    /**
+     * Encodes the queued chars into the byte buffer. A trailing high surrogate is kept until its pair is written, as
+     * <code>OutputStreamWriter</code> does; the encoder is never told the input has ended.
+     */
+    private void encodeChars()
+    {
+        this.chars.flip();
+        while (this.encoder.encode(this.chars, this.bytes, false).isOverflow())
+        {
+            writeBytes();
+        }
+        this.chars.compact();
+    }
+
+    /**
+     * Writes the bytes in the buffer to the stream and empties the buffer. Once the stream has failed, the bytes are
+     * dropped and the error is kept for flush().
+     */
+    private void writeBytes()
+    {
+        if (this.error == null)
+        {
+            try
+            {
+                this.stream.write(this.bytes.array(), 0, this.bytes.position());
+            }
+            catch (IOException e)
+            {
+                this.error = e;
+            }
+        }
+        this.bytes.clear();
+    }
+
+}
@@ -84,7 +84,7 @@ public final class OutFactory
     {
         try
         {
-            return new OutJavaImpl(config, config.getOutCharEncodingName(), stream);
+            return new OutBufferedImpl(config, config.getOutCharEncodingName(), stream);
         }
         catch (UnsupportedEncodingException e)
         {
@@ -54,6 +54,7 @@
 package org.w3c.tidy;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
@@ -78,6 +79,16 @@ public class OutJavaImpl implements Out
      */
     private char[] newline;
 
+    /**
+     * scratch buffer for bulk writes.
+     */
+    private char[] scratch = new char[256];
+
+    /**
+     * first error met when writing, null if none.
+     */
+    private IOException error;
+
     /**
      * Constructor.
      * @param configuration actual configuration instance (needed for newline configuration)
@@ -114,8 +125,7 @@ public class OutJavaImpl implements Out
         }
         catch (IOException e)
         {
-            // TODO throws exception
-            System.err.println("OutJavaImpl.outc: " + e.getMessage());
+            fail(e);
         }
     }
 
@@ -130,8 +140,47 @@ public class OutJavaImpl implements Out
         }
         catch (IOException e)
         {
-            // TODO throws exception
-            System.err.println("OutJavaImpl.outc: " + e.getMessage());
+            fail(e);
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(int[], int, int)
+     */
+    public void outc(int[] c, int offset, int length)
+    {
+        int n = 0;
+        try
+        {
+            for (int i = offset; i < offset + length; i++)
+            {
+                if (n + 2 > this.scratch.length)
+                {
+                    writer.write(this.scratch, 0, n);
+                    n = 0;
+                }
+                n += Character.toChars(c[i], this.scratch, n);
+            }
+            writer.write(this.scratch, 0, n);
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outAscii(String, int, int)
+     */
+    public void outAscii(String str, int offset, int length)
+    {
+        try
+        {
+            writer.write(str, offset, length);
+        }
+        catch (IOException e)
+        {
+            fail(e);
         }
     }
 
@@ -146,8 +195,25 @@ public class OutJavaImpl implements Out
         }
         catch (IOException e)
         {
-            // TODO throws exception
-            System.err.println("OutJavaImpl.newline: " + e.getMessage());
+            fail(e);
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#newline(int)
+     */
+    public void newline(int count)
+    {
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                writer.write(this.newline);
+            }
+        }
+        catch (IOException e)
+        {
+            fail(e);
         }
     }
 
@@ -162,7 +228,23 @@ public class OutJavaImpl implements Out
         }
         catch (IOException e)
         {
-            System.err.println("OutJavaImpl.flush: " + e.getMessage());
+            fail(e);
+        }
+        if (this.error != null)
+        {
+            throw new UncheckedIOException(this.error);
+        }
+    }
+
+    /**
+     * Keeps the first error met when writing, thrown by flush().
+     * @param e error
+     */
+    private void fail(IOException e)
+    {
+        if (this.error == null)
+        {
+            this.error = e;
         }
     }
 
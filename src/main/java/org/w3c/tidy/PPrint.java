@@ -152,6 +152,11 @@ public class PPrint
      */
     private static final String DEFAULT_COMMENT_END = "";
 
+    /**
+     * spaces written for indentation, a slice at a time.
+     */
+    private static final String SPACES = "                                                                ";
+
     private int[] linebuf;
 
     private int lbufsize;
@@ -184,6 +189,151 @@ public class PPrint
      */
     private Configuration configuration;
 
+    /**
+     * printing while the document is parsed, as if the end of the html element had been seen.
+     */
+    boolean streaming;
+
+    /**
+     * A line being built, put aside while other output is printed.
+     */
+    static final class Line
+    {
+
+        /**
+         * chars of the line.
+         */
+        int[] linebuf;
+
+        /**
+         * allocated in linebuf.
+         */
+        int lbufsize;
+
+        /**
+         * used in linebuf.
+         */
+        int linelen;
+
+        /**
+         * where the line may be wrapped.
+         */
+        int wraphere;
+
+        /**
+         * whether the line ends in an attribute value.
+         */
+        boolean inAttVal;
+
+        /**
+         * whether the line ends in a string.
+         */
+        boolean inString;
+    }
+
+    /**
+     * An element whose start tag has been printed, and whose children are being printed.
+     */
+    private static final class Frame
+    {
+
+        /**
+         * children only, nothing printed after them.
+         */
+        static final int CHILDREN = 0;
+
+        /**
+         * pre element.
+         */
+        static final int PRE = 1;
+
+        /**
+         * inline element.
+         */
+        static final int INLINE = 2;
+
+        /**
+         * inline element whose content is indented.
+         */
+        static final int INDENTED_INLINE = 3;
+
+        /**
+         * other container element.
+         */
+        static final int CONTAINER = 4;
+
+        /**
+         * xml element.
+         */
+        static final int XML = 5;
+
+        /**
+         * xml element with text content.
+         */
+        static final int XML_MIXED = 6;
+
+        /**
+         * the element.
+         */
+        final Node node;
+
+        /**
+         * mode of the element.
+         */
+        final short mode;
+
+        /**
+         * indent of the element.
+         */
+        final int indent;
+
+        /**
+         * mode of the children.
+         */
+        final short childMode;
+
+        /**
+         * indent of the children.
+         */
+        final int childIndent;
+
+        /**
+         * what is printed around the children.
+         */
+        final int kind;
+
+        /**
+         * frame of the parent, null for the element the walk started from.
+         */
+        final Frame enclosing;
+
+        /**
+         * last child printed, null if none.
+         */
+        Node last;
+
+        /**
+         * Instantiates a new frame.
+         * @param node the element
+         * @param mode mode of the element
+         * @param indent indent of the element
+         * @param childMode mode of the children
+         * @param childIndent indent of the children
+         * @param kind what is printed around the children
+         * @param enclosing frame of the parent
+         */
+        Frame(Node node, short mode, int indent, short childMode, int childIndent, int kind, Frame enclosing)
+        {
+            this.node = node;
+            this.mode = mode;
+            this.indent = indent;
+            this.childMode = childMode;
+            this.childIndent = childIndent;
+            this.kind = kind;
+            this.enclosing = enclosing;
+        }
+    }
+
     /**
      * Instantiates a new PPrint.
      *
@@ -194,6 +344,31 @@ public class PPrint
         this.configuration = configuration;
     }
 
+    /**
+     * Replaces the line being built.
+     * @param line line to go on with, null for an empty one
+     * @return the line being built so far
+     */
+    Line swapLine(Line line)
+    {
+        Line current = new Line();
+        current.linebuf = this.linebuf;
+        current.lbufsize = this.lbufsize;
+        current.linelen = this.linelen;
+        current.wraphere = this.wraphere;
+        current.inAttVal = this.inAttVal;
+        current.inString = this.inString;
+
+        Line next = (line != null) ? line : new Line();
+        this.linebuf = next.linebuf;
+        this.lbufsize = next.lbufsize;
+        this.linelen = next.linelen;
+        this.wraphere = next.wraphere;
+        this.inAttVal = next.inAttVal;
+        this.inString = next.inString;
+        return current;
+    }
+
     /**
      * Wrap length.
      *
@@ -355,6 +530,20 @@ public class PPrint
         return index + len;
     }
 
+    /**
+     * Writes indentation spaces.
+     *
+     * @param fout   where to write output
+     * @param indent the indent amount
+     */
+    private static void printIndent(Out fout, int indent)
+    {
+        for (int i = indent; i > 0; i -= SPACES.length())
+        {
+            fout.outAscii(SPACES, 0, Math.min(i, SPACES.length()));
+        }
+    }
+
     /**
      * Wrap line.
      *
@@ -363,22 +552,16 @@ public class PPrint
      */
     private void wrapLine(Out fout, int indent)
     {
-        int i, p, q;
+        int p, q;
 
         if (wraphere == 0)
         {
             return;
         }
 
-        for (i = 0; i < indent; ++i)
-        {
-            fout.outc(' ');
-        }
+        printIndent(fout, indent);
 
-        for (i = 0; i < wraphere; ++i)
-        {
-            fout.outc(linebuf[i]);
-        }
+        fout.outc(linebuf, 0, wraphere);
 
         if (inString)
         {
@@ -429,17 +612,11 @@ public class PPrint
      */
     private void wrapAttrVal(Out fout, int indent, boolean inString)
     {
-        int i, p, q;
+        int p, q;
 
-        for (i = 0; i < indent; ++i)
-        {
-            fout.outc(' ');
-        }
+        printIndent(fout, indent);
 
-        for (i = 0; i < wraphere; ++i)
-        {
-            fout.outc(linebuf[i]);
-        }
+        fout.outc(linebuf, 0, wraphere);
 
         fout.outc(' ');
 
@@ -491,8 +668,6 @@ public class PPrint
      */
     public void flushLine(Out fout, int indent, boolean shouldAddNewLine)
     {
-        int i;
-
         if (linelen > 0)
         {
             if (indent + linelen >= this.configuration.wraplen)
@@ -502,16 +677,10 @@ public class PPrint
 
             if (!inAttVal || this.configuration.indentAttributes)
             {
-                for (i = 0; i < indent; ++i)
-                {
-                    fout.outc(' ');
-                }
+                printIndent(fout, indent);
             }
 
-            for (i = 0; i < linelen; ++i)
-            {
-                fout.outc(linebuf[i]);
-            }
+            fout.outc(linebuf, 0, linelen);
         }
 
         if(shouldAddNewLine) {
@@ -542,8 +711,6 @@ public class PPrint
      */
     public void condFlushLine(Out fout, int indent, boolean shouldAddNewLine)
     {
-        int i;
-
         if (linelen > 0)
         {
             if (indent + linelen >= this.configuration.wraplen)
@@ -553,16 +720,10 @@ public class PPrint
 
             if (!inAttVal || this.configuration.indentAttributes)
             {
-                for (i = 0; i < indent; ++i)
-                {
-                    fout.outc(' ');
-                }
+                printIndent(fout, indent);
             }
 
-            for (i = 0; i < linelen; ++i)
-            {
-                fout.outc(linebuf[i]);
-            }
+            fout.outc(linebuf, 0, linelen);
 
             if(shouldAddNewLine) {
               fout.newline();
@@ -1015,9 +1176,21 @@ public class PPrint
     {
         int i, c;
         int[] ci = new int[1];
+        boolean utf8 = "UTF8".equals(this.configuration.getOutCharEncodingName());
+        boolean rawSpace = TidyUtils.toBoolean(mode & (PREFORMATTED | COMMENT | ATTRIBVALUE | CDATA));
 
         for (i = start; textarray != null && i < end; ++i)
         {
+            // copy plain text in one go, stopping where printChar or a wrap check would be needed
+            if (indent + linelen < this.configuration.wraplen)
+            {
+                i = addPlainText(textarray, i, end, this.configuration.wraplen - indent - linelen, rawSpace, utf8);
+                if (i >= end)
+                {
+                    break;
+                }
+            }
+
             if (indent + linelen >= this.configuration.wraplen)
             {
                 wrapLine(fout, indent);
@@ -1042,6 +1215,63 @@ public class PPrint
         }
     }
 
+    /**
+     * Adds to the line a run of text which printChar would add unchanged: printable ASCII other than markup and quote
+     * chars, tabs, spaces where they are not wrap points and, for UTF-8 output, two byte UTF-8 sequences other than
+     * &amp;nbsp;. At most <code>maxChars</code> chars are added, so the run never crosses the wrap margin.
+     *
+     * @param textarray text to copy
+     * @param start     index of the first byte
+     * @param end       end index
+     * @param maxChars  maximum number of chars to add
+     * @param rawSpace  whether spaces are added unchanged in the current mode
+     * @param utf8      whether the output encoding is UTF-8
+     * @return index of the first byte not added
+     */
+    private int addPlainText(byte[] textarray, int start, int end, int maxChars, boolean rawSpace, boolean utf8)
+    {
+        int i = start;
+        int stop = linelen + Math.min(maxChars, end - start);
+
+        while (i < end && linelen < stop)
+        {
+            int c = textarray[i];
+            if (c > ' ' && c < 127)
+            {
+                if (c == '<' || c == '>' || c == '&' || c == '"' || c == '\'')
+                {
+                    break;
+                }
+                addC(c, linelen++);
+                i++;
+            }
+            else if (c == '\t' || (c == ' ' && rawSpace))
+            {
+                addC(c, linelen++);
+                i++;
+            }
+            else if (utf8
+                && (c & 0xFF) >= 0xC2
+                && (c & 0xFF) <= 0xDF
+                && i + 1 < end
+                && (textarray[i + 1] & 0xC0) == 0x80)
+            {
+                c = ((c & 0x1F) << 6) | (textarray[i + 1] & 0x3F);
+                if (c == 160)
+                {
+                    break;
+                }
+                addC(c, linelen++);
+                i += 2;
+            }
+            else
+            {
+                break;
+            }
+        }
+        return i;
+    }
+
     /**
      * @param str the string to print
      */
@@ -1372,26 +1602,29 @@ public class PPrint
         Node prev;
         int c;
 
-        if (node == null || node.tag == null || !TidyUtils.toBoolean(node.tag.model & Dict.CM_INLINE))
+        for (; node != null; node = node.parent)
         {
-            return true;
-        }
+            if (node.tag == null || !TidyUtils.toBoolean(node.tag.model & Dict.CM_INLINE))
+            {
+                return true;
+            }
 
-        prev = node.prev;
+            prev = node.prev;
 
-        if (prev != null)
-        {
-            if (prev.type == Node.TEXT_NODE && prev.end > prev.start && prev.textarray != null)
+            if (prev != null)
             {
-                c = (prev.textarray[prev.end - 1]) & 0xFF; // Convert to unsigned.
+                if (prev.type == Node.TEXT_NODE && prev.end > prev.start && prev.textarray != null)
+                {
+                    c = (prev.textarray[prev.end - 1]) & 0xFF; // Convert to unsigned.
 
-                return c == 160 || c == ' ' || c == '\n';
-            }
+                    return c == 160 || c == ' ' || c == '\n';
+                }
 
-            return false;
+                return false;
+            }
         }
 
-        return afterSpace(node.parent);
+        return true;
     }
 
     /**
@@ -1869,14 +2102,12 @@ public class PPrint
      */
     private boolean insideHead(Node node)
     {
-        if (node.tag == this.configuration.tt.tagHead)
+        for (; node != null; node = node.parent)
         {
-            return true;
-        }
-
-        if (node.parent != null)
-        {
-            return insideHead(node.parent);
+            if (node.tag == this.configuration.tt.tagHead)
+            {
+                return true;
+            }
         }
         return false;
     }
@@ -2178,12 +2409,67 @@ public class PPrint
      */
     public void printTree(Out fout, short mode, int indent, Lexer lexer, Node node)
     {
-        Node content, last;
+        printFrames(fout, lexer, printStart(fout, mode, indent, lexer, node, null), false);
+    }
+
+    /**
+     * Prints the children and the end tags of the elements started, down from a frame. The elements are printed on an
+     * explicit stack of frames rather than by recursing, so the depth of a document is not limited by the thread
+     * stack.
+     * @param fout   where to write output
+     * @param lexer  the Lexer to use
+     * @param bottom frame of the element the walk started from, null if nothing is left to print
+     * @param xml    whether to print xml
+     */
+    private void printFrames(Out fout, Lexer lexer, Frame bottom, boolean xml)
+    {
+        Frame frame = bottom;
+
+        while (frame != null)
+        {
+            Node content = (frame.last == null) ? frame.node.content : frame.last.next;
+
+            if (content == null)
+            {
+                printEnd(fout, lexer, frame);
+                frame = frame.enclosing;
+                continue;
+            }
+
+            if (frame.kind == Frame.CONTAINER)
+            {
+                printContentBreak(fout, frame.indent, frame.last, content);
+            }
+            frame.last = content;
+
+            Frame child = xml
+                ? printXMLStart(fout, frame.childMode, frame.childIndent, lexer, content, frame)
+                : printStart(fout, frame.childMode, frame.childIndent, lexer, content, frame);
+
+            if (child != null)
+            {
+                frame = child;
+            }
+        }
+    }
+
+    /**
+     * Prints a node, or the start of an element with children.
+     * @param fout      where to write output
+     * @param mode      the mode to use
+     * @param indent    the indent amount
+     * @param lexer     the Lexer to use
+     * @param node      the node to use
+     * @param enclosing frame of the parent
+     * @return frame of the element whose children are to be printed, null if the node has been printed
+     */
+    private Frame printStart(Out fout, short mode, int indent, Lexer lexer, Node node, Frame enclosing)
+    {
         TagTable tt = this.configuration.tt;
 
         if (node == null)
         {
-            return;
+            return null;
         }
 
         if (node.type == Node.TEXT_NODE || (node.type == Node.CDATA_TAG && lexer.configuration.escapeCdata))
@@ -2196,10 +2482,7 @@ public class PPrint
         }
         else if (node.type == Node.ROOT_NODE)
         {
-            for (content = node.content; content != null; content = content.next)
-            {
-                printTree(fout, mode, indent, lexer, content);
-            }
+            return new Frame(node, mode, indent, mode, indent, Frame.CHILDREN, enclosing);
         }
         else if (node.type == Node.DOCTYPE_TAG)
         {
@@ -2284,19 +2567,8 @@ public class PPrint
                 printTag(lexer, fout, mode, indent, node);
                 flushLine(fout, indent, false);
 
-                for (content = node.content; content != null; content = content.next)
-                {
-                    printTree(fout, (short) (mode | PREFORMATTED | NOWRAP), indent, lexer, content);
-                }
-
-                condFlushLine(fout, indent, false);
-                printEndTag(mode, indent, node);
-                flushLine(fout, indent, false);
-
-                if (!this.configuration.indentContent && node.next != null)
-                {
-                    flushLine(fout, indent);
-                }
+                short preMode = (short) (mode | PREFORMATTED | NOWRAP);
+                return new Frame(node, mode, indent, preMode, indent, Frame.PRE, enclosing);
             }
             else if (node.tag == tt.tagStyle || node.tag == tt.tagScript)
             {
@@ -2309,21 +2581,14 @@ public class PPrint
                     // discards <font> and </font> tags
                     if (node.tag == tt.tagFont)
                     {
-                        for (content = node.content; content != null; content = content.next)
-                        {
-                            printTree(fout, mode, indent, lexer, content);
-                        }
-                        return;
+                        return new Frame(node, mode, indent, mode, indent, Frame.CHILDREN, enclosing);
                     }
 
                     // replace <nobr> ... </nobr> by &nbsp; or &#160; etc.
                     if (node.tag == tt.tagNobr)
                     {
-                        for (content = node.content; content != null; content = content.next)
-                        {
-                            printTree(fout, (short) (mode | NOWRAP), indent, lexer, content);
-                        }
-                        return;
+                        short nobrMode = (short) (mode | NOWRAP);
+                        return new Frame(node, mode, indent, nobrMode, indent, Frame.CHILDREN, enclosing);
                     }
                 }
 
@@ -2336,121 +2601,33 @@ public class PPrint
                 if (shouldIndent(node))
                 {
                     condFlushLine(fout, indent);
-                    indent += this.configuration.spaces;
-
-                    for (content = node.content; content != null; content = content.next)
-                    {
-                        printTree(fout, mode, indent, lexer, content);
-                    }
-
-                    condFlushLine(fout, indent);
-                    indent -= this.configuration.spaces;
-                    condFlushLine(fout, indent);
-                }
-                else
-                {
-
-                    for (content = node.content; content != null; content = content.next)
-                    {
-                        printTree(fout, mode, indent, lexer, content);
-                    }
+                    return new Frame(
+                        node,
+                        mode,
+                        indent,
+                        mode,
+                        indent + this.configuration.spaces,
+                        Frame.INDENTED_INLINE,
+                        enclosing);
                 }
 
-                printEndTag(mode, indent, node);
+                return new Frame(node, mode, indent, mode, indent, Frame.INLINE, enclosing);
             }
             else
             {
                 // other tags
-                condFlushLine(fout, indent);
-
-                if (this.configuration.smartIndent && node.prev != null)
-                {
-                    flushLine(fout, indent);
-                }
-
-                // do not omit elements with attributes
-                if (!this.configuration.hideEndTags
-                    || !(node.tag != null && TidyUtils.toBoolean(node.tag.model & Dict.CM_OMITST))
-                    || node.attributes != null)
-                {
-                    printTag(lexer, fout, mode, indent, node);
-
-                    if (shouldIndent(node))
-                    {
-                        condFlushLine(fout, indent);
-                    }
-                    else if (TidyUtils.toBoolean(node.tag.model & Dict.CM_HTML)
-                        || node.tag == tt.tagNoframes
-                        || (TidyUtils.toBoolean(node.tag.model & Dict.CM_HEAD) && !(node.tag == tt.tagTitle)))
-                    {
-                        flushLine(fout, indent);
-                    }
-                }
+                printContainerStart(fout, mode, indent, lexer, node);
 
                 if (node.tag == tt.tagBody && this.configuration.burstSlides)
                 {
                     printSlide(fout, mode, (this.configuration.indentContent
                         ? indent + this.configuration.spaces
                         : indent), lexer);
+                    printContainerEnd(fout, mode, indent, lexer, node);
                 }
                 else
                 {
-                    last = null;
-
-                    for (content = node.content; content != null; content = content.next)
-                    {
-                        // kludge for naked text before block level tag
-                        if (last != null
-                            && !this.configuration.indentContent
-                            && last.type == Node.TEXT_NODE
-                            && content.tag != null
-                            && !TidyUtils.toBoolean(content.tag.model & Dict.CM_INLINE))
-                        {
-                            flushLine(fout, indent);
-                        }
-
-                        printTree(
-                            fout,
-                            mode,
-                            (shouldIndent(node) ? indent + this.configuration.spaces : indent),
-                            lexer,
-                            content);
-
-                        last = content;
-                    }
-                }
-
-                // don't flush line for td and th
-                if (shouldIndent(node)
-                    || ((TidyUtils.toBoolean(node.tag.model & Dict.CM_HTML) || node.tag == tt.tagNoframes || //
-                    (TidyUtils.toBoolean(node.tag.model & Dict.CM_HEAD) && !(node.tag == tt.tagTitle))) && //
-                    !this.configuration.hideEndTags))
-                {
-                    condFlushLine(
-                        fout,
-                        (this.configuration.indentContent ? indent + this.configuration.spaces : indent));
-
-                    if (!this.configuration.hideEndTags || !TidyUtils.toBoolean(node.tag.model & Dict.CM_OPT))
-                    {
-                        printEndTag(mode, indent, node);
-
-                        // #603128 tidy adds newslines after </html> tag
-                        // Fix by Fabrizio Giustina 12-02-2004
-                        // fix is different from the one in original tidy
-                        if (!lexer.seenEndHtml)
-                        {
-                            flushLine(fout, indent);
-                        }
-                    }
-                }
-                else
-                {
-                    if (!this.configuration.hideEndTags || !TidyUtils.toBoolean(node.tag.model & Dict.CM_OPT))
-                    {
-                        printEndTag(mode, indent, node);
-                    }
-
-                    flushLine(fout, indent);
+                    return new Frame(node, mode, indent, mode, childIndent(node, indent), Frame.CONTAINER, enclosing);
                 }
 
                 // FG commented out: double newlines
@@ -2464,6 +2641,177 @@ public class PPrint
                 // }
             }
         }
+        return null;
+    }
+
+    /**
+     * Prints what follows the children of an element.
+     * @param fout  where to write output
+     * @param lexer the Lexer to use
+     * @param frame frame of the element
+     */
+    private void printEnd(Out fout, Lexer lexer, Frame frame)
+    {
+        Node node = frame.node;
+
+        switch (frame.kind)
+        {
+            case Frame.PRE :
+                condFlushLine(fout, frame.indent, false);
+                printEndTag(frame.mode, frame.indent, node);
+                flushLine(fout, frame.indent, false);
+
+                if (!this.configuration.indentContent && node.next != null)
+                {
+                    flushLine(fout, frame.indent);
+                }
+                break;
+
+            case Frame.INDENTED_INLINE :
+                condFlushLine(fout, frame.childIndent);
+                condFlushLine(fout, frame.indent);
+                printEndTag(frame.mode, frame.indent, node);
+                break;
+
+            case Frame.INLINE :
+                printEndTag(frame.mode, frame.indent, node);
+                break;
+
+            case Frame.CONTAINER :
+                printContainerEnd(fout, frame.mode, frame.indent, lexer, node);
+                break;
+
+            case Frame.XML :
+                if (node.content != null)
+                {
+                    condFlushLine(fout, frame.childIndent);
+                }
+                printEndTag(frame.mode, frame.indent, node);
+                break;
+
+            case Frame.XML_MIXED :
+                printEndTag(frame.mode, frame.indent, node);
+                break;
+
+            default :
+                break;
+        }
+    }
+
+    /**
+     * Prints the start tag of a container element, before its content.
+     * @param fout   where to write output
+     * @param mode   the mode to use
+     * @param indent the indent amount
+     * @param lexer  the Lexer to use
+     * @param node   the container element
+     */
+    void printContainerStart(Out fout, short mode, int indent, Lexer lexer, Node node)
+    {
+        TagTable tt = this.configuration.tt;
+
+        condFlushLine(fout, indent);
+
+        if (this.configuration.smartIndent && node.prev != null)
+        {
+            flushLine(fout, indent);
+        }
+
+        // do not omit elements with attributes
+        if (!this.configuration.hideEndTags
+            || !(node.tag != null && TidyUtils.toBoolean(node.tag.model & Dict.CM_OMITST))
+            || node.attributes != null)
+        {
+            printTag(lexer, fout, mode, indent, node);
+
+            if (shouldIndent(node))
+            {
+                condFlushLine(fout, indent);
+            }
+            else if (TidyUtils.toBoolean(node.tag.model & Dict.CM_HTML)
+                || node.tag == tt.tagNoframes
+                || (TidyUtils.toBoolean(node.tag.model & Dict.CM_HEAD) && !(node.tag == tt.tagTitle)))
+            {
+                flushLine(fout, indent);
+            }
+        }
+    }
+
+    /**
+     * Breaks the line before a child of a container element if needed.
+     * @param fout    where to write output
+     * @param indent  the indent amount of the container
+     * @param last    previous child, null for the first one
+     * @param content the child about to be printed
+     */
+    void printContentBreak(Out fout, int indent, Node last, Node content)
+    {
+        // kludge for naked text before block level tag
+        if (last != null
+            && !this.configuration.indentContent
+            && last.type == Node.TEXT_NODE
+            && content.tag != null
+            && !TidyUtils.toBoolean(content.tag.model & Dict.CM_INLINE))
+        {
+            flushLine(fout, indent);
+        }
+    }
+
+    /**
+     * Returns the indent of the children of a container element.
+     * @param node   the container element
+     * @param indent the indent amount of the container
+     * @return indent amount of its children
+     */
+    int childIndent(Node node, int indent)
+    {
+        return shouldIndent(node) ? indent + this.configuration.spaces : indent;
+    }
+
+    /**
+     * Prints the end tag of a container element, after its content.
+     * @param fout   where to write output
+     * @param mode   the mode to use
+     * @param indent the indent amount
+     * @param lexer  the Lexer to use
+     * @param node   the container element
+     */
+    void printContainerEnd(Out fout, short mode, int indent, Lexer lexer, Node node)
+    {
+        TagTable tt = this.configuration.tt;
+
+        // don't flush line for td and th
+        if (shouldIndent(node)
+            || ((TidyUtils.toBoolean(node.tag.model & Dict.CM_HTML) || node.tag == tt.tagNoframes || //
+            (TidyUtils.toBoolean(node.tag.model & Dict.CM_HEAD) && !(node.tag == tt.tagTitle))) && //
+            !this.configuration.hideEndTags))
+        {
+            condFlushLine(
+                fout,
+                (this.configuration.indentContent ? indent + this.configuration.spaces : indent));
+
+            if (!this.configuration.hideEndTags || !TidyUtils.toBoolean(node.tag.model & Dict.CM_OPT))
+            {
+                printEndTag(mode, indent, node);
+
+                // #603128 tidy adds newslines after </html> tag
+                // Fix by Fabrizio Giustina 12-02-2004
+                // fix is different from the one in original tidy
+                if (!lexer.seenEndHtml && !this.streaming)
+                {
+                    flushLine(fout, indent);
+                }
+            }
+        }
+        else
+        {
+            if (!this.configuration.hideEndTags || !TidyUtils.toBoolean(node.tag.model & Dict.CM_OPT))
+            {
+                printEndTag(mode, indent, node);
+            }
+
+            flushLine(fout, indent);
+        }
     }
 
     /**
@@ -2474,12 +2822,27 @@ public class PPrint
      * @param node   the node to use
      */
     public void printXMLTree(Out fout, short mode, int indent, Lexer lexer, Node node)
+    {
+        printFrames(fout, lexer, printXMLStart(fout, mode, indent, lexer, node, null), true);
+    }
+
+    /**
+     * Prints a node as xml, or the start of an element with children.
+     * @param fout      where to write output
+     * @param mode      the mode to use
+     * @param indent    the indent amount
+     * @param lexer     the Lexer to use
+     * @param node      the node to use
+     * @param enclosing frame of the parent
+     * @return frame of the element whose children are to be printed, null if the node has been printed
+     */
+    private Frame printXMLStart(Out fout, short mode, int indent, Lexer lexer, Node node, Frame enclosing)
     {
         TagTable tt = this.configuration.tt;
 
         if (node == null)
         {
-            return;
+            return null;
         }
 
         if (node.type == Node.TEXT_NODE || (node.type == Node.CDATA_TAG && lexer.configuration.escapeCdata))
@@ -2494,12 +2857,7 @@ public class PPrint
         }
         else if (node.type == Node.ROOT_NODE)
         {
-            Node content;
-
-            for (content = node.content; content != null; content = content.next)
-            {
-                printXMLTree(fout, mode, indent, lexer, content);
-            }
+            return new Frame(node, mode, indent, mode, indent, Frame.CHILDREN, enclosing);
         }
         else if (node.type == Node.DOCTYPE_TAG)
         {
@@ -2586,22 +2944,12 @@ public class PPrint
                 flushLine(fout, indent);
             }
 
-            for (content = node.content; content != null; content = content.next)
-            {
-                printXMLTree(fout, mode, cindent, lexer, content);
-            }
-
-            if (!mixed && node.content != null)
-            {
-                condFlushLine(fout, cindent);
-            }
-            printEndTag(mode, indent, node);
-            // condFlushLine(fout, indent);
-
             // CPR: folks don't want so much vertical spacing in XML
             // if (node.next != null) { flushLine(fout, indent); }
 
+            return new Frame(node, mode, indent, mode, cindent, mixed ? Frame.XML_MIXED : Frame.XML, enclosing);
         }
+        return null;
     }
 
     /**
@@ -2877,6 +3225,7 @@ public class PPrint
 
                 printTree(out, (short) 0, 0, lexer, root);
                 flushLine(out, 0);
+                out.flush();
 
                 fis.close();
             }
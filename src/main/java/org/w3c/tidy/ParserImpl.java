@@ -174,86 +174,89 @@ public final class ParserImpl
     }
 
     /**
-     * Parse tag.
+     * Parses the element of the given frame and all its content. Elements are parsed on an explicit stack of frames
+     * rather than by recursing, so the depth of a document is only limited by max-nesting and not by the thread
+     * stack.
      * @param lexer the Lexer to use
-     * @param node the node to use
-     * @param mode the mode to use
-     * @param nestingLevel The current nesting level of the document. Extremely nested documents are considered an error. 
+     * @param bottom frame of the element to parse
      * @throws ExcessiveNesting When excessive nesting is detected.
      */
-    protected static void parseTag(Lexer lexer, Node node, short mode, int nestingLevel) throws ExcessiveNesting
+    static void parseFrames(Lexer lexer, ParserFrame bottom) throws ExcessiveNesting
     {
-    	if (nestingLevel > lexer.configuration.maxNesting) {
-    		throw new ExcessiveNesting();
-    	}
-    	
-        // Fix by GLP 2000-12-21. Need to reset insertspace if this
-        // is both a non-inline and empty tag (base, link, meta, isindex, hr, area).
-        if ((node.tag.model & Dict.CM_EMPTY) != 0)
-        {
-            lexer.waswhite = false;
-        }
-        else if ((node.tag.model & Dict.CM_INLINE) == 0)
-        {
-            lexer.insertspace = false;
-        }
+        ParserFrame frame = bottom;
 
-        if (node.tag.getParser() == null)
+        while (true)
         {
-            return;
-        }
+            if (frame.state == ParserFrame.END || frame.parse(lexer))
+            {
+                if (frame == bottom)
+                {
+                    return;
+                }
 
-        if (node.type == Node.START_END_TAG)
-        {
-            Node.trimEmptyElement(lexer, node);
-            return;
-        }
+                frame = frame.enclosing;
+                continue;
+            }
 
-        node.tag.getParser().parse(lexer, node, mode, nestingLevel + 1);
-    }
+            Node node = frame.childNode;
+            if (node == null)
+            {
+                continue;
+            }
 
-    /**
-     * Move node to the head, where element is used as starting point in hunt for head. 
-     * Normally called during parsing.
-     * @param lexer the Lexer to use
-     * @param element the element to use
-     * @param node the node to use
-     * @param nestingLevel The current nesting level of the document. Extremely nested documents are considered an error. 
-     * @throws ExcessiveNesting When excessive nesting is detected.
-     */
-    protected static void moveToHead(Lexer lexer, Node element, Node node, int nestingLevel) throws ExcessiveNesting
-    {
-        Node head;
-        node.removeNode(); // make sure that node is isolated
+            Parser parser = frame.childParser;
+            int nestingLevel = frame.nestingLevel;
+            frame.childNode = null;
+            frame.childParser = null;
 
-        TagTable tt = lexer.configuration.tt;
+            if (parser == null)
+            {
+                if (nestingLevel > lexer.configuration.maxNesting)
+                {
+                    TidyEvents.condition(lexer, TidyEvents.EXCESSIVE_NESTING, nestingLevel);
+                    throw new ExcessiveNesting();
+                }
 
-        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
-        {
-            lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
+                // Fix by GLP 2000-12-21. Need to reset insertspace if this
+                // is both a non-inline and empty tag (base, link, meta, isindex, hr, area).
+                if ((node.tag.model & Dict.CM_EMPTY) != 0)
+                {
+                    lexer.waswhite = false;
+                }
+                else if ((node.tag.model & Dict.CM_INLINE) == 0)
+                {
+                    lexer.insertspace = false;
+                }
 
-            while (element.tag != tt.tagHtml)
-            {
-                element = element.parent;
-            }
+                parser = node.tag.getParser();
+                if (parser == null)
+                {
+                    continue;
+                }
 
-            for (head = element.content; head != null; head = head.next)
-            {
-                if (head.tag == tt.tagHead)
+                if (node.type == Node.START_END_TAG)
                 {
-                    head.insertNodeAtEnd(node);
-                    break;
+                    Node.trimEmptyElement(lexer, node);
+                    continue;
+                }
+
+                nestingLevel++;
+                if (nestingLevel > lexer.maxNestingLevel)
+                {
+                    lexer.maxNestingLevel = nestingLevel;
                 }
             }
 
-            if (node.tag.getParser() != null)
+            if (parser instanceof StackParser)
             {
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
+                ParserFrame child = ((StackParser) parser).newFrame(node, frame.childMode, nestingLevel);
+                child.enclosing = frame;
+                frame = child;
+            }
+            else
+            {
+                parser.parse(lexer, node, frame.childMode, nestingLevel);
             }
-        }
-        else
-        {
-            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
         }
     }
 
@@ -270,148 +273,308 @@ public final class ParserImpl
     }
 
     /**
-     * Parser for HTML.
+     * Parser of elements with content, parsed on the explicit stack of {@link #parseFrames(Lexer, ParserFrame)}.
      */
-    public static class ParseHTML implements Parser
+    abstract static class StackParser implements Parser
     {
 
         /**
          * @throws ExcessiveNesting When excessive nesting is detected.
          * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node html, short mode, int nestingLevel) throws ExcessiveNesting
+        public void parse(Lexer lexer, Node node, short mode, int nestingLevel) throws ExcessiveNesting
+        {
+            parseFrames(lexer, newFrame(node, mode, nestingLevel));
+        }
+
+        /**
+         * Creates the frame parsing the given element.
+         * @param node node created by the lexer upon seeing the start tag, or by the parser when the start tag is
+         * inferred
+         * @param mode content mode
+         * @param nestingLevel nesting level of the element
+         * @return frame, not parsed yet
+         */
+        abstract ParserFrame newFrame(Node node, short mode, int nestingLevel);
+    }
+
+    /**
+     * An element being parsed by a {@link StackParser}. The frame holds what the parser needs to resume once a child
+     * element has been parsed: the parser asks for a child with {@link #parseTag(Node, short)} and returns, and is
+     * called again when the child is complete.
+     */
+    abstract static class ParserFrame
+    {
+
+        /**
+         * frame not parsed yet.
+         */
+        static final int START = 0;
+
+        /**
+         * parsing the content of the element.
+         */
+        static final int CONTENT = 1;
+
+        /**
+         * element complete once the requested child is.
+         */
+        static final int END = 2;
+
+        /**
+         * frame of the enclosing element.
+         */
+        ParserFrame enclosing;
+
+        /**
+         * nesting level of the element.
+         */
+        final int nestingLevel;
+
+        /**
+         * where parsing resumes.
+         */
+        int state = START;
+
+        /**
+         * child to parse before resuming, if any.
+         */
+        Node childNode;
+
+        /**
+         * content mode of the child.
+         */
+        short childMode;
+
+        /**
+         * parser called for the child without the checks of parseTag, at the same nesting level.
+         */
+        Parser childParser;
+
+        /**
+         * Instantiates a new frame.
+         * @param nestingLevel nesting level of the element
+         */
+        ParserFrame(int nestingLevel)
+        {
+            this.nestingLevel = nestingLevel;
+        }
+
+        /**
+         * Parses the element until it is complete or a child needs to be parsed.
+         * @param lexer the Lexer to use
+         * @return <code>true</code> if the element is complete, <code>false</code> to be called again once the
+         * requested child, if any, has been parsed
+         */
+        abstract boolean parse(Lexer lexer);
+
+        /**
+         * Asks for a child element to be parsed before parsing resumes.
+         * @param node the node to parse
+         * @param mode the mode to use
+         * @return <code>false</code>, to be returned by parse
+         */
+        final boolean parseTag(Node node, short mode)
+        {
+            this.childNode = node;
+            this.childMode = mode;
+            return false;
+        }
+
+        /**
+         * Asks for a child element to be parsed before parsing resumes at the given state.
+         * @param node the node to parse
+         * @param mode the mode to use
+         * @param resume where parsing resumes
+         * @return <code>false</code>, to be returned by parse
+         */
+        final boolean parseTag(Node node, short mode, int resume)
+        {
+            this.state = resume;
+            return parseTag(node, mode);
+        }
+
+        /**
+         * Asks for a child element to be parsed by the given parser, at the same nesting level.
+         * @param parser the parser to use
+         * @param node the node to parse
+         * @param mode the mode to use
+         * @param resume where parsing resumes
+         * @return <code>false</code>, to be returned by parse
+         */
+        final boolean parseWith(Parser parser, Node node, short mode, int resume)
+        {
+            this.childParser = parser;
+            return parseTag(node, mode, resume);
+        }
+
+        /**
+         * Move node to the head, where element is used as starting point in hunt for head, and asks for it to be
+         * parsed.
+         * @param lexer the Lexer to use
+         * @param element the element to use
+         * @param node the node to use
+         * @return <code>false</code>, to be returned by parse
+         */
+        final boolean moveToHead(Lexer lexer, Node element, Node node)
         {
-            Node node, head;
-            Node frameset = null;
-            Node noframes = null;
+            Node head;
+            node.removeNode(); // make sure that node is isolated
 
-            lexer.configuration.xmlTags = false;
-            lexer.seenEndBody = false;
             TagTable tt = lexer.configuration.tt;
 
-            while (true)
+            if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
             {
-                node = lexer.getToken(Lexer.IGNORE_WHITESPACE);
+                lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
 
-                if (node == null)
+                if (lexer.streamer != null && lexer.streamer.isStarted())
                 {
-                    node = lexer.inferredTag("head");
-                    break;
+                    // still parsed into the head, but the head has been printed
+                    lexer.report.warning(lexer, element, node, Report.CONTENT_AFTER_STREAMED_HEAD);
                 }
 
-                if (node.tag == tt.tagHead)
+                while (element.tag != tt.tagHtml)
                 {
-                    break;
+                    element = element.parent;
                 }
 
-                if (node.tag == html.tag && node.type == Node.END_TAG)
+                for (head = element.content; head != null; head = head.next)
                 {
-                    lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
+                    if (head.tag == tt.tagHead)
+                    {
+                        head.insertNodeAtEnd(node);
+                        break;
+                    }
                 }
 
-                // deal with comments etc.
-                if (Node.insertMisc(html, node))
+                if (node.tag.getParser() != null)
                 {
-                    continue;
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                 }
-
-                lexer.ungetToken();
-                node = lexer.inferredTag("head");
-                break;
             }
-
-            head = node;
-            html.insertNodeAtEnd(head);
-            HEAD.parse(lexer, head, mode, nestingLevel);
-
-            while (true)
+            else
             {
-                node = lexer.getToken(Lexer.IGNORE_WHITESPACE);
+                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+            }
+            return false;
+        }
+    }
 
-                if (node == null)
-                {
-                    if (frameset == null)
-                    {
-                        // implied body
-                        node = lexer.inferredTag("body");
-                        html.insertNodeAtEnd(node);
-                        BODY.parse(lexer, node, mode, nestingLevel);
-                    }
+    /**
+     * Parser for HTML.
+     */
+    public static class ParseHTML extends StackParser
+    {
 
-                    return;
-                }
+        /**
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
+         */
+        ParserFrame newFrame(Node html, short mode, int nestingLevel)
+        {
+            return new Frame(html, mode, nestingLevel);
+        }
 
-                // robustly handle html tags
-                if (node.tag == html.tag)
-                {
-                    if (node.type != Node.START_TAG && frameset == null)
-                    {
-                        lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
-                    }
-                    else if (node.type == Node.END_TAG)
-                    {
-                        lexer.seenEndHtml = true;
-                    }
+        /**
+         * State of the html element being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
 
-                    continue;
-                }
+            /**
+             * parsing the frameset element.
+             */
+            private static final int IN_FRAMESET = 3;
+
+            /**
+             * parsing the body element.
+             */
+            private static final int IN_BODY = 4;
+
+            /**
+             * the html element.
+             */
+            private Node html;
+
+            /**
+             * content mode.
+             */
+            private short mode;
+
+            /**
+             * the frameset element, if any.
+             */
+            private Node frameset;
+
+            /**
+             * the noframes element content is added to.
+             */
+            private Node noframes;
+
+            /**
+             * Instantiates a new frame.
+             * @param html the html element
+             * @param mode content mode
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node html, short mode, int nestingLevel)
+            {
+                super(nestingLevel);
+                this.html = html;
+                this.mode = mode;
+            }
 
-                // deal with comments etc.
-                if (Node.insertMisc(html, node))
-                {
-                    continue;
-                }
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
+            {
+                Node node, head;
+                TagTable tt = lexer.configuration.tt;
 
-                // if frameset document coerce <body> to <noframes>
-                if (node.tag == tt.tagBody)
+                if (state == START)
                 {
-                    if (node.type != Node.START_TAG)
-                    {
-                        lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
-                    }
+                    lexer.configuration.xmlTags = false;
+                    lexer.seenEndBody = false;
 
-                    if (frameset != null)
+                    while (true)
                     {
-                        lexer.ungetToken();
+                        node = lexer.getToken(Lexer.IGNORE_WHITESPACE);
 
-                        if (noframes == null)
+                        if (node == null)
                         {
-                            noframes = lexer.inferredTag("noframes");
-                            frameset.insertNodeAtEnd(noframes);
-                            lexer.report.warning(lexer, html, noframes, Report.INSERTING_TAG);
+                            node = lexer.inferredTag("head");
+                            break;
                         }
 
-                        parseTag(lexer, noframes, mode, nestingLevel);
-                        continue;
-                    }
+                        if (node.tag == tt.tagHead)
+                        {
+                            break;
+                        }
 
-                    lexer.constrainVersion(Dict.NOT_FRAMESET);
-                    break; // to parse body
-                }
+                        if (node.tag == html.tag && node.type == Node.END_TAG)
+                        {
+                            lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
 
-                // flag an error if we see more than one frameset
-                if (node.tag == tt.tagFrameset)
-                {
-                    if (node.type != Node.START_TAG)
-                    {
-                        lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
-                    }
+                        // deal with comments etc.
+                        if (Node.insertMisc(html, node))
+                        {
+                            continue;
+                        }
 
-                    if (frameset != null)
-                    {
-                        lexer.report.error(lexer, html, node, Report.DUPLICATE_FRAMESET);
-                    }
-                    else
-                    {
-                        frameset = node;
+                        lexer.ungetToken();
+                        node = lexer.inferredTag("head");
+                        break;
                     }
 
-                    html.insertNodeAtEnd(node);
-                    parseTag(lexer, node, mode, nestingLevel);
+                    head = node;
+                    html.insertNodeAtEnd(head);
+                    return parseWith(HEAD, head, mode, CONTENT);
+                }
 
+                if (state == IN_FRAMESET)
+                {
                     // see if it includes a noframes element so that we can merge subsequent noframes elements
 
                     for (node = frameset.content; node != null; node = node.next)
@@ -421,178 +584,306 @@ public final class ParserImpl
                             noframes = node;
                         }
                     }
-                    continue;
+                    state = CONTENT;
+                }
+                else if (state == IN_BODY)
+                {
+                    lexer.seenEndHtml = true;
+                    return true;
                 }
 
-                // if not a frameset document coerce <noframes> to <body>
-                if (node.tag == tt.tagNoframes)
+                while (true)
                 {
-                    if (node.type != Node.START_TAG)
-                    {
-                        lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
-                    }
+                    node = lexer.getToken(Lexer.IGNORE_WHITESPACE);
 
-                    if (frameset == null)
+                    if (node == null)
                     {
-                        lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
-                        node = lexer.inferredTag("body");
-                        break;
-                    }
+                        if (frameset == null)
+                        {
+                            // implied body
+                            node = lexer.inferredTag("body");
+                            html.insertNodeAtEnd(node);
+                            return parseWith(BODY, node, mode, END);
+                        }
 
-                    if (noframes == null)
-                    {
-                        noframes = node;
-                        frameset.insertNodeAtEnd(noframes);
+                        return true;
                     }
 
-                    parseTag(lexer, noframes, mode, nestingLevel);
-                    continue;
-                }
-
-                if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
-                {
-                    if (node.tag != null && (node.tag.model & Dict.CM_HEAD) != 0)
+                    // robustly handle html tags
+                    if (node.tag == html.tag)
                     {
-                        moveToHead(lexer, html, node, nestingLevel);
+                        if (node.type != Node.START_TAG && frameset == null)
+                        {
+                            lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
+                        }
+                        else if (node.type == Node.END_TAG)
+                        {
+                            lexer.seenEndHtml = true;
+                        }
+
                         continue;
                     }
 
-                    // #427675 - discard illegal frame element following a frameset - fix by Randy Waki 11 Oct 00
-                    if (frameset != null && node.tag == tt.tagFrame)
+                    // deal with comments etc.
+                    if (Node.insertMisc(html, node))
                     {
-                        lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
                         continue;
                     }
-                }
-
-                lexer.ungetToken();
 
-                // insert other content into noframes element
-                if (frameset != null)
-                {
-                    if (noframes == null)
-                    {
-                        noframes = lexer.inferredTag("noframes");
-                        frameset.insertNodeAtEnd(noframes);
-                    }
-                    else
+                    // if frameset document coerce <body> to <noframes>
+                    if (node.tag == tt.tagBody)
                     {
-                        lexer.report.warning(lexer, html, node, Report.NOFRAMES_CONTENT);
-                    }
+                        if (node.type != Node.START_TAG)
+                        {
+                            lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
 
-                    lexer.constrainVersion(Dict.VERS_FRAMESET);
-                    parseTag(lexer, noframes, mode, nestingLevel);
-                    continue;
-                }
+                        if (frameset != null)
+                        {
+                            lexer.ungetToken();
 
-                node = lexer.inferredTag("body");
-                lexer.constrainVersion(Dict.NOT_FRAMESET);
-                break;
-            }
+                            if (noframes == null)
+                            {
+                                noframes = lexer.inferredTag("noframes");
+                                frameset.insertNodeAtEnd(noframes);
+                                lexer.report.warning(lexer, html, noframes, Report.INSERTING_TAG);
+                            }
 
-            // node must be body
-            html.insertNodeAtEnd(node);
-            parseTag(lexer, node, mode, nestingLevel);
-            lexer.seenEndHtml = true;
-        }
+                            return parseTag(noframes, mode);
+                        }
 
-    }
+                        lexer.constrainVersion(Dict.NOT_FRAMESET);
+                        break; // to parse body
+                    }
 
-    /**
-     * Parser for HEAD.
-     */
-    public static class ParseHead implements Parser
-    {
+                    // flag an error if we see more than one frameset
+                    if (node.tag == tt.tagFrameset)
+                    {
+                        if (node.type != Node.START_TAG)
+                        {
+                            lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
 
-        /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
-         */
-        public void parse(Lexer lexer, Node head, short mode, int nestingLevel) throws ExcessiveNesting
-        {
-            Node node;
-            int hasTitle = 0;
-            int hasBase = 0;
-            TagTable tt = lexer.configuration.tt;
+                        if (frameset != null)
+                        {
+                            lexer.report.error(lexer, html, node, Report.DUPLICATE_FRAMESET);
+                        }
+                        else
+                        {
+                            frameset = node;
+                        }
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
-            {
-                if (node.tag == head.tag && node.type == Node.END_TAG)
-                {
-                    head.closed = true;
-                    break;
-                }
+                        html.insertNodeAtEnd(node);
+                        return parseTag(node, mode, IN_FRAMESET);
+                    }
+
+                    // if not a frameset document coerce <noframes> to <body>
+                    if (node.tag == tt.tagNoframes)
+                    {
+                        if (node.type != Node.START_TAG)
+                        {
+                            lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+
+                        if (frameset == null)
+                        {
+                            lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
+                            node = lexer.inferredTag("body");
+                            break;
+                        }
+
+                        if (noframes == null)
+                        {
+                            noframes = node;
+                            frameset.insertNodeAtEnd(noframes);
+                        }
+
+                        return parseTag(noframes, mode);
+                    }
+
+                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                    {
+                        if (node.tag != null && (node.tag.model & Dict.CM_HEAD) != 0)
+                        {
+                            return moveToHead(lexer, html, node);
+                        }
+
+                        // #427675 - discard illegal frame element following a frameset - fix by Randy Waki 11 Oct 00
+                        if (frameset != null && node.tag == tt.tagFrame)
+                        {
+                            lexer.report.warning(lexer, html, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+                    }
 
-                if (node.type == Node.TEXT_NODE)
-                {
-                    lexer.report.warning(lexer, head, node, Report.TAG_NOT_ALLOWED_IN);
                     lexer.ungetToken();
+
+                    // insert other content into noframes element
+                    if (frameset != null)
+                    {
+                        if (noframes == null)
+                        {
+                            noframes = lexer.inferredTag("noframes");
+                            frameset.insertNodeAtEnd(noframes);
+                        }
+                        else
+                        {
+                            lexer.report.warning(lexer, html, node, Report.NOFRAMES_CONTENT);
+                        }
+
+                        lexer.constrainVersion(Dict.VERS_FRAMESET);
+                        return parseTag(noframes, mode);
+                    }
+
+                    node = lexer.inferredTag("body");
+                    lexer.constrainVersion(Dict.NOT_FRAMESET);
                     break;
                 }
 
-                // deal with comments etc.
-                if (Node.insertMisc(head, node))
-                {
-                    continue;
-                }
+                // node must be body
+                html.insertNodeAtEnd(node);
+                return parseTag(node, mode, IN_BODY);
+            }
+        }
 
-                if (node.type == Node.DOCTYPE_TAG)
-                {
-                    Node.insertDocType(lexer, head, node);
-                    continue;
-                }
+    }
 
-                // discard unknown tags
-                if (node.tag == null)
-                {
-                    lexer.report.warning(lexer, head, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
+    /**
+     * Parser for HEAD.
+     */
+    public static class ParseHead extends StackParser
+    {
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
+         */
+        ParserFrame newFrame(Node head, short mode, int nestingLevel)
+        {
+            return new Frame(head, nestingLevel);
+        }
+
+        /**
+         * State of the head element being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
+
+            /**
+             * the head element.
+             */
+            private Node head;
+
+            /**
+             * title elements seen.
+             */
+            private int hasTitle;
+
+            /**
+             * base elements seen.
+             */
+            private int hasBase;
+
+            /**
+             * Instantiates a new frame.
+             * @param head the head element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node head, int nestingLevel)
+            {
+                super(nestingLevel);
+                this.head = head;
+            }
 
-                if (!TidyUtils.toBoolean(node.tag.model & Dict.CM_HEAD))
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
+            {
+                Node node;
+                TagTable tt = lexer.configuration.tt;
+
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    // #545067 Implicit closing of head broken - warn only for XHTML input
-                    if (lexer.isvoyager)
+                    if (node.tag == head.tag && node.type == Node.END_TAG)
+                    {
+                        head.closed = true;
+                        break;
+                    }
+
+                    if (node.type == Node.TEXT_NODE)
                     {
                         lexer.report.warning(lexer, head, node, Report.TAG_NOT_ALLOWED_IN);
+                        lexer.ungetToken();
+                        break;
                     }
-                    lexer.ungetToken();
-                    break;
-                }
 
-                if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
-                {
-                    if (node.tag == tt.tagTitle)
+                    // deal with comments etc.
+                    if (Node.insertMisc(head, node))
                     {
-                        ++hasTitle;
+                        continue;
+                    }
 
-                        if (hasTitle > 1)
-                        {
-                            lexer.report.warning(lexer, head, node, Report.TOO_MANY_ELEMENTS);
-                        }
+                    if (node.type == Node.DOCTYPE_TAG)
+                    {
+                        Node.insertDocType(lexer, head, node);
+                        continue;
                     }
-                    else if (node.tag == tt.tagBase)
+
+                    // discard unknown tags
+                    if (node.tag == null)
                     {
-                        ++hasBase;
+                        lexer.report.warning(lexer, head, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
+                    }
 
-                        if (hasBase > 1)
+                    if (!TidyUtils.toBoolean(node.tag.model & Dict.CM_HEAD))
+                    {
+                        // #545067 Implicit closing of head broken - warn only for XHTML input
+                        if (lexer.isvoyager)
                         {
-                            lexer.report.warning(lexer, head, node, Report.TOO_MANY_ELEMENTS);
+                            lexer.report.warning(lexer, head, node, Report.TAG_NOT_ALLOWED_IN);
                         }
+                        lexer.ungetToken();
+                        break;
                     }
-                    else if (node.tag == tt.tagNoscript)
+
+                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
                     {
-                        lexer.report.warning(lexer, head, node, Report.TAG_NOT_ALLOWED_IN);
+                        if (node.tag == tt.tagTitle)
+                        {
+                            ++hasTitle;
+
+                            if (hasTitle > 1)
+                            {
+                                lexer.report.warning(lexer, head, node, Report.TOO_MANY_ELEMENTS);
+                            }
+                        }
+                        else if (node.tag == tt.tagBase)
+                        {
+                            ++hasBase;
+
+                            if (hasBase > 1)
+                            {
+                                lexer.report.warning(lexer, head, node, Report.TOO_MANY_ELEMENTS);
+                            }
+                        }
+                        else if (node.tag == tt.tagNoscript)
+                        {
+                            lexer.report.warning(lexer, head, node, Report.TAG_NOT_ALLOWED_IN);
+                        }
+
+                        head.insertNodeAtEnd(node);
+                        return parseTag(node, Lexer.IGNORE_WHITESPACE);
                     }
 
-                    head.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
-                    continue;
+                    // discard unexpected text nodes and end tags
+                    lexer.report.warning(lexer, head, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // discard unexpected text nodes and end tags
-                lexer.report.warning(lexer, head, node, Report.DISCARDING_UNEXPECTED);
+                return true;
             }
         }
     }
@@ -700,271 +991,186 @@ public final class ParserImpl
     /**
      * Parser for BODY.
      */
-    public static class ParseBody implements Parser
+    public static class ParseBody extends StackParser
     {
 
         private static final EnumSet<HtmlVersion> NEITHER_HTML40_STRICT_NOR_HTML20 = 
         		Dict.allExcept(Dict.combine(Dict.VERS_HTML40_STRICT, Dict.VERS_HTML20));
 
-		/**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-		 * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+        /**
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node body, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node body, short mode, int nestingLevel)
         {
-            Node node;
-            boolean checkstack, iswhitenode;
+            return new Frame(body, mode, nestingLevel);
+        }
 
-            mode = Lexer.IGNORE_WHITESPACE;
-            checkstack = true;
-            TagTable tt = lexer.configuration.tt;
+        /**
+         * State of the body element being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
 
-            Clean.bumpObject(lexer, body.parent);
+            /**
+             * the body element.
+             */
+            private Node body;
+
+            /**
+             * content mode.
+             */
+            private short mode;
+
+            /**
+             * whether inline elements on the stack may have to be inserted.
+             */
+            private boolean checkstack;
+
+            /**
+             * Instantiates a new frame.
+             * @param body the body element
+             * @param mode content mode
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node body, short mode, int nestingLevel)
+            {
+                super(nestingLevel);
+                this.body = body;
+                this.mode = mode;
+            }
 
-            while ((node = lexer.getToken(mode)) != null)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-              if (node.tag == null)
-              {
-              	if(!lexer.configuration.dropProprietaryTags) 
-              	{
-              		node.tag = new Dict(node.element, Dict.VERS_ALL, Dict.CM_BLOCK, ParserImpl.BLOCK, null);
-              	}
-              }
+                Node node;
+                boolean iswhitenode;
+                TagTable tt = lexer.configuration.tt;
 
-                // #538536 Extra endtags not detected
-                if (node.tag == tt.tagHtml)
+                if (state == START)
                 {
-                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG || lexer.seenEndHtml)
-                    {
-                        lexer.report.warning(lexer, body, node, Report.DISCARDING_UNEXPECTED);
-                    }
-                    else
-                    {
-                        lexer.seenEndHtml = true;
-                    }
-
-                    continue;
+                    mode = Lexer.IGNORE_WHITESPACE;
+                    checkstack = true;
+                    Clean.bumpObject(lexer, body.parent);
+                    state = CONTENT;
                 }
 
-                if (lexer.seenEndBody
-                    && (node.type == Node.START_TAG || node.type == Node.END_TAG || node.type == Node.START_END_TAG))
+                if (lexer.streamer != null)
                 {
-                    lexer.report.warning(lexer, body, node, Report.CONTENT_AFTER_BODY);
+                    lexer.streamer.flush(body);
                 }
 
-                if (node.tag == body.tag && node.type == Node.END_TAG)
+                while ((node = lexer.getToken(mode)) != null)
                 {
-                    body.closed = true;
-                    Node.trimSpaces(lexer, body);
-                    lexer.seenEndBody = true;
-                    mode = Lexer.IGNORE_WHITESPACE;
+                  if (node.tag == null)
+                  {
+                  	if(!lexer.configuration.dropProprietaryTags) 
+                  	{
+                  		node.tag = new Dict(node.element, Dict.VERS_ALL, Dict.CM_BLOCK, ParserImpl.BLOCK, null);
+                  	}
+                  }
 
-                    if (body.parent.tag == tt.tagNoframes)
+                    // #538536 Extra endtags not detected
+                    if (node.tag == tt.tagHtml)
                     {
-                        break;
-                    }
-
-                    continue;
-                }
+                        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG || lexer.seenEndHtml)
+                        {
+                            lexer.report.warning(lexer, body, node, Report.DISCARDING_UNEXPECTED);
+                        }
+                        else
+                        {
+                            lexer.seenEndHtml = true;
+                        }
 
-                if (node.tag == tt.tagNoframes)
-                {
-                    if (node.type == Node.START_TAG)
-                    {
-                        body.insertNodeAtEnd(node);
-                        BLOCK.parse(lexer, node, mode, nestingLevel);
                         continue;
                     }
 
-                    if (node.type == Node.END_TAG && body.parent.tag == tt.tagNoframes)
+                    if (lexer.seenEndBody
+                        && (node.type == Node.START_TAG || node.type == Node.END_TAG || node.type == Node.START_END_TAG))
                     {
-                        Node.trimSpaces(lexer, body);
-                        lexer.ungetToken();
-                        break;
+                        lexer.report.warning(lexer, body, node, Report.CONTENT_AFTER_BODY);
                     }
-                }
 
-                if ((node.tag == tt.tagFrame || node.tag == tt.tagFrameset) && body.parent.tag == tt.tagNoframes)
-                {
-                    Node.trimSpaces(lexer, body);
-                    lexer.ungetToken();
-                    break;
-                }
-
-                iswhitenode = node.type == Node.TEXT_NODE
-                    && node.end <= node.start + 1
-                    && node.textarray[node.start] == (byte) ' ';
-
-                // deal with comments etc.
-                if (Node.insertMisc(body, node))
-                {
-                    continue;
-                }
-
-                // #538536 Extra endtags not detected
-                // if (lexer.seenEndBody && !iswhitenode)
-                // {
-                // lexer.seenEndBody = true;
-                // lexer.report.warning(lexer, body, node, Report.CONTENT_AFTER_BODY);
-                // }
-
-                // mixed content model permits text
-                if (node.type == Node.TEXT_NODE)
-                {
-                    if (iswhitenode && mode == Lexer.IGNORE_WHITESPACE)
+                    if (node.tag == body.tag && node.type == Node.END_TAG)
                     {
-                        continue;
-                    }
+                        body.closed = true;
+                        Node.trimSpaces(lexer, body);
+                        lexer.seenEndBody = true;
+                        mode = Lexer.IGNORE_WHITESPACE;
 
-                    if (lexer.configuration.encloseBodyText && !iswhitenode)
-                    {
-                        Node para;
+                        if (body.parent.tag == tt.tagNoframes)
+                        {
+                            break;
+                        }
 
-                        lexer.ungetToken();
-                        para = lexer.inferredTag("p");
-                        body.insertNodeAtEnd(para);
-                        parseTag(lexer, para, mode, nestingLevel);
-                        mode = Lexer.MIXED_CONTENT;
                         continue;
                     }
 
-                    // HTML2 and HTML4 strict doesn't allow text here
-                    lexer.constrainVersion(NEITHER_HTML40_STRICT_NOR_HTML20);
-
-                    if (checkstack)
+                    if (node.tag == tt.tagNoframes)
                     {
-                        checkstack = false;
-
-                        if (lexer.inlineDup(node) > 0)
+                        if (node.type == Node.START_TAG)
                         {
-                            continue;
+                            body.insertNodeAtEnd(node);
+                            return parseWith(BLOCK, node, mode, CONTENT);
                         }
-                    }
-
-                    body.insertNodeAtEnd(node);
-                    mode = Lexer.MIXED_CONTENT;
-                    continue;
-                }
-
-                if (node.type == Node.DOCTYPE_TAG)
-                {
-                    Node.insertDocType(lexer, body, node);
-                    continue;
-                }
-                // discard unknown and PARAM tags
-                if (node.tag == null || node.tag == tt.tagParam)
-                {
-                    lexer.report.warning(lexer, body, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
-
-                // Netscape allows LI and DD directly in BODY We infer UL or DL respectively and use this boolean to
-                // exclude block-level elements so as to match Netscape's observed behaviour.
-
-                lexer.excludeBlocks = false;
 
-                if (((node.tag.model & Dict.CM_BLOCK) == 0 && (node.tag.model & Dict.CM_INLINE) == 0)
-                    || node.tag == tt.tagInput)
-                {
-                    // avoid this error message being issued twice
-                    if ((node.tag.model & Dict.CM_HEAD) == 0)
-                    {
-                        lexer.report.warning(lexer, body, node, Report.TAG_NOT_ALLOWED_IN);
-                    }
-
-                    if ((node.tag.model & Dict.CM_HTML) != 0)
-                    {
-                        // copy body attributes if current body was inferred
-                        if (node.tag == tt.tagBody && body.implicit && body.attributes == null)
+                        if (node.type == Node.END_TAG && body.parent.tag == tt.tagNoframes)
                         {
-                            body.attributes = node.attributes;
-                            node.attributes = null;
+                            Node.trimSpaces(lexer, body);
+                            lexer.ungetToken();
+                            break;
                         }
-
-                        continue;
                     }
 
-                    if ((node.tag.model & Dict.CM_HEAD) != 0)
-                    {
-                        moveToHead(lexer, body, node, nestingLevel);
-                        continue;
-                    }
-
-                    if ((node.tag.model & Dict.CM_LIST) != 0)
-                    {
-                        lexer.ungetToken();
-                        node = lexer.inferredTag("ul");
-                        node.addClass("noindent");
-                        lexer.excludeBlocks = true;
-                    }
-                    else if ((node.tag.model & Dict.CM_DEFLIST) != 0)
-                    {
-                        lexer.ungetToken();
-                        node = lexer.inferredTag("dl");
-                        lexer.excludeBlocks = true;
-                    }
-                    else if ((node.tag.model & (Dict.CM_TABLE | Dict.CM_ROWGRP | Dict.CM_ROW)) != 0)
-                    {
-                        // Issue 2855511
-                        if (node.type != Node.END_TAG) {
-                        	lexer.ungetToken();
-                        	node = lexer.inferredTag("table");
-                        }
-                        lexer.excludeBlocks = true;
-                    }
-                    else if (node.tag == tt.tagInput)
+                    if ((node.tag == tt.tagFrame || node.tag == tt.tagFrameset) && body.parent.tag == tt.tagNoframes)
                     {
+                        Node.trimSpaces(lexer, body);
                         lexer.ungetToken();
-                        node = lexer.inferredTag("form");
-                        lexer.excludeBlocks = true;
+                        break;
                     }
-                    else
-                    {
-                        if ((node.tag.model & (Dict.CM_ROW | Dict.CM_FIELD)) == 0)
-                        {
-                            lexer.ungetToken();
-                            return;
-                        }
 
-                        // ignore </td></th> <option> etc.
-                        continue;
-                    }
-                }
+                    iswhitenode = node.type == Node.TEXT_NODE
+                        && node.end <= node.start + 1
+                        && node.textarray[node.start] == (byte) ' ';
 
-                if (node.type == Node.END_TAG)
-                {
-                    if (node.tag == tt.tagBr)
-                    {
-                        node.type = Node.START_TAG;
-                    }
-                    else if (node.tag == tt.tagP)
+                    // deal with comments etc.
+                    if (Node.insertMisc(body, node))
                     {
-                        Node.coerceNode(lexer, node, tt.tagBr);
-                        body.insertNodeAtEnd(node);
-                        node = lexer.inferredTag("br");
-                    }
-                    else if ((node.tag.model & Dict.CM_INLINE) != 0)
-                    {
-                        lexer.popInline(node);
+                        continue;
                     }
-                }
 
-                if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
-                {
-                    if (((node.tag.model & Dict.CM_INLINE) != 0) && (node.tag.model & Dict.CM_MIXED) == 0)
+                    // #538536 Extra endtags not detected
+                    // if (lexer.seenEndBody && !iswhitenode)
+                    // {
+                    // lexer.seenEndBody = true;
+                    // lexer.report.warning(lexer, body, node, Report.CONTENT_AFTER_BODY);
+                    // }
+
+                    // mixed content model permits text
+                    if (node.type == Node.TEXT_NODE)
                     {
-                        // HTML4 strict doesn't allow inline content here
-                        // but HTML2 does allow img elements as children of body
-                        if (node.tag == tt.tagImg)
+                        if (iswhitenode && mode == Lexer.IGNORE_WHITESPACE)
                         {
-                            lexer.constrainVersion(Dict.NOT_HTML40_STRICT);
+                            continue;
                         }
-                        else
+
+                        if (lexer.configuration.encloseBodyText && !iswhitenode)
                         {
-                            lexer.constrainVersion(NEITHER_HTML40_STRICT_NOR_HTML20);
+                            Node para;
+
+                            lexer.ungetToken();
+                            para = lexer.inferredTag("p");
+                            body.insertNodeAtEnd(para);
+                            parseTag(para, mode);
+                            mode = Lexer.MIXED_CONTENT;
+                            return false;
                         }
 
-                        if (checkstack && !node.implicit)
+                        // HTML2 and HTML4 strict doesn't allow text here
+                        lexer.constrainVersion(NEITHER_HTML40_STRICT_NOR_HTML20);
+
+                        if (checkstack)
                         {
                             checkstack = false;
 
@@ -974,26 +1180,164 @@ public final class ParserImpl
                             }
                         }
 
+                        body.insertNodeAtEnd(node);
                         mode = Lexer.MIXED_CONTENT;
-                    }
-                    else
-                    {
-                        checkstack = true;
-                        mode = Lexer.IGNORE_WHITESPACE;
+                        continue;
                     }
 
-                    if (node.implicit)
+                    if (node.type == Node.DOCTYPE_TAG)
                     {
-                        lexer.report.warning(lexer, body, node, Report.INSERTING_TAG);
+                        Node.insertDocType(lexer, body, node);
+                        continue;
+                    }
+                    // discard unknown and PARAM tags
+                    if (node.tag == null || node.tag == tt.tagParam)
+                    {
+                        lexer.report.warning(lexer, body, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
                     }
 
-                    body.insertNodeAtEnd(node);
-                    parseTag(lexer, node, mode, nestingLevel);
-                    continue;
+                    // Netscape allows LI and DD directly in BODY We infer UL or DL respectively and use this boolean to
+                    // exclude block-level elements so as to match Netscape's observed behaviour.
+
+                    lexer.excludeBlocks = false;
+
+                    if (((node.tag.model & Dict.CM_BLOCK) == 0 && (node.tag.model & Dict.CM_INLINE) == 0)
+                        || node.tag == tt.tagInput)
+                    {
+                        // avoid this error message being issued twice
+                        if ((node.tag.model & Dict.CM_HEAD) == 0)
+                        {
+                            lexer.report.warning(lexer, body, node, Report.TAG_NOT_ALLOWED_IN);
+                        }
+
+                        if ((node.tag.model & Dict.CM_HTML) != 0)
+                        {
+                            // copy body attributes if current body was inferred
+                            if (node.tag == tt.tagBody && body.implicit && body.attributes == null)
+                            {
+                                if (node.attributes != null && lexer.streamer != null && lexer.streamer.isStarted())
+                                {
+                                    lexer.report.warning(lexer, body, node, Report.CONTENT_AFTER_STREAMED_HEAD);
+                                }
+                                body.attributes = node.attributes;
+                                node.attributes = null;
+                            }
+
+                            continue;
+                        }
+
+                        if ((node.tag.model & Dict.CM_HEAD) != 0)
+                        {
+                            return moveToHead(lexer, body, node);
+                        }
+
+                        if ((node.tag.model & Dict.CM_LIST) != 0)
+                        {
+                            lexer.ungetToken();
+                            node = lexer.inferredTag("ul");
+                            node.addClass("noindent");
+                            lexer.excludeBlocks = true;
+                        }
+                        else if ((node.tag.model & Dict.CM_DEFLIST) != 0)
+                        {
+                            lexer.ungetToken();
+                            node = lexer.inferredTag("dl");
+                            lexer.excludeBlocks = true;
+                        }
+                        else if ((node.tag.model & (Dict.CM_TABLE | Dict.CM_ROWGRP | Dict.CM_ROW)) != 0)
+                        {
+                            // Issue 2855511
+                            if (node.type != Node.END_TAG) {
+                            	lexer.ungetToken();
+                            	node = lexer.inferredTag("table");
+                            }
+                            lexer.excludeBlocks = true;
+                        }
+                        else if (node.tag == tt.tagInput)
+                        {
+                            lexer.ungetToken();
+                            node = lexer.inferredTag("form");
+                            lexer.excludeBlocks = true;
+                        }
+                        else
+                        {
+                            if ((node.tag.model & (Dict.CM_ROW | Dict.CM_FIELD)) == 0)
+                            {
+                                lexer.ungetToken();
+                                return true;
+                            }
+
+                            // ignore </td></th> <option> etc.
+                            continue;
+                        }
+                    }
+
+                    if (node.type == Node.END_TAG)
+                    {
+                        if (node.tag == tt.tagBr)
+                        {
+                            node.type = Node.START_TAG;
+                        }
+                        else if (node.tag == tt.tagP)
+                        {
+                            Node.coerceNode(lexer, node, tt.tagBr);
+                            body.insertNodeAtEnd(node);
+                            node = lexer.inferredTag("br");
+                        }
+                        else if ((node.tag.model & Dict.CM_INLINE) != 0)
+                        {
+                            lexer.popInline(node);
+                        }
+                    }
+
+                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                    {
+                        if (((node.tag.model & Dict.CM_INLINE) != 0) && (node.tag.model & Dict.CM_MIXED) == 0)
+                        {
+                            // HTML4 strict doesn't allow inline content here
+                            // but HTML2 does allow img elements as children of body
+                            if (node.tag == tt.tagImg)
+                            {
+                                lexer.constrainVersion(Dict.NOT_HTML40_STRICT);
+                            }
+                            else
+                            {
+                                lexer.constrainVersion(NEITHER_HTML40_STRICT_NOR_HTML20);
+                            }
+
+                            if (checkstack && !node.implicit)
+                            {
+                                checkstack = false;
+
+                                if (lexer.inlineDup(node) > 0)
+                                {
+                                    continue;
+                                }
+                            }
+
+                            mode = Lexer.MIXED_CONTENT;
+                        }
+                        else
+                        {
+                            checkstack = true;
+                            mode = Lexer.IGNORE_WHITESPACE;
+                        }
+
+                        if (node.implicit)
+                        {
+                            lexer.report.warning(lexer, body, node, Report.INSERTING_TAG);
+                        }
+
+                        body.insertNodeAtEnd(node);
+                        return parseTag(node, mode);
+                    }
+
+                    // discard unexpected tags
+                    lexer.report.warning(lexer, body, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // discard unexpected tags
-                lexer.report.warning(lexer, body, node, Report.DISCARDING_UNEXPECTED);
+                return true;
             }
         }
 
@@ -1002,75 +1346,108 @@ public final class ParserImpl
     /**
      * Parser for FRAMESET.
      */
-    public static class ParseFrameSet implements Parser
+    public static class ParseFrameSet extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node frameset, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node frameset, short mode, int nestingLevel)
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
+            return new Frame(frameset, nestingLevel);
+        }
 
-            lexer.badAccess |= Report.USING_FRAMES;
+        /**
+         * State of a frameset element being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * the frameset element.
+             */
+            private Node frameset;
+
+            /**
+             * Instantiates a new frame.
+             * @param frameset the frameset element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node frameset, int nestingLevel)
             {
-                if (node.tag == frameset.tag && node.type == Node.END_TAG)
-                {
-                    frameset.closed = true;
-                    Node.trimSpaces(lexer, frameset);
-                    return;
-                }
+                super(nestingLevel);
+                this.frameset = frameset;
+            }
 
-                // deal with comments etc.
-                if (Node.insertMisc(frameset, node))
-                {
-                    continue;
-                }
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
+            {
+                Node node;
+                TagTable tt = lexer.configuration.tt;
 
-                if (node.tag == null)
+                if (state == START)
                 {
-                    lexer.report.warning(lexer, frameset, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
+                    lexer.badAccess |= Report.USING_FRAMES;
+                    state = CONTENT;
                 }
 
-                if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    if (node.tag != null && (node.tag.model & Dict.CM_HEAD) != 0)
+                    if (node.tag == frameset.tag && node.type == Node.END_TAG)
+                    {
+                        frameset.closed = true;
+                        Node.trimSpaces(lexer, frameset);
+                        return true;
+                    }
+
+                    // deal with comments etc.
+                    if (Node.insertMisc(frameset, node))
                     {
-                        moveToHead(lexer, frameset, node, nestingLevel);
                         continue;
                     }
-                }
 
-                if (node.tag == tt.tagBody)
-                {
-                    lexer.ungetToken();
-                    node = lexer.inferredTag("noframes");
-                    lexer.report.warning(lexer, frameset, node, Report.INSERTING_TAG);
-                }
+                    if (node.tag == null)
+                    {
+                        lexer.report.warning(lexer, frameset, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
+                    }
 
-                if (node.type == Node.START_TAG && (node.tag.model & Dict.CM_FRAMES) != 0)
-                {
-                    frameset.insertNodeAtEnd(node);
-                    lexer.excludeBlocks = false;
-                    parseTag(lexer, node, Lexer.MIXED_CONTENT, nestingLevel);
-                    continue;
-                }
-                else if (node.type == Node.START_END_TAG && (node.tag.model & Dict.CM_FRAMES) != 0)
-                {
-                    frameset.insertNodeAtEnd(node);
-                    continue;
+                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                    {
+                        if (node.tag != null && (node.tag.model & Dict.CM_HEAD) != 0)
+                        {
+                            return moveToHead(lexer, frameset, node);
+                        }
+                    }
+
+                    if (node.tag == tt.tagBody)
+                    {
+                        lexer.ungetToken();
+                        node = lexer.inferredTag("noframes");
+                        lexer.report.warning(lexer, frameset, node, Report.INSERTING_TAG);
+                    }
+
+                    if (node.type == Node.START_TAG && (node.tag.model & Dict.CM_FRAMES) != 0)
+                    {
+                        frameset.insertNodeAtEnd(node);
+                        lexer.excludeBlocks = false;
+                        return parseTag(node, Lexer.MIXED_CONTENT);
+                    }
+                    else if (node.type == Node.START_END_TAG && (node.tag.model & Dict.CM_FRAMES) != 0)
+                    {
+                        frameset.insertNodeAtEnd(node);
+                        continue;
+                    }
+
+                    // discard unexpected tags
+                    lexer.report.warning(lexer, frameset, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // discard unexpected tags
-                lexer.report.warning(lexer, frameset, node, Report.DISCARDING_UNEXPECTED);
+                lexer.report.warning(lexer, frameset, node, Report.MISSING_ENDTAG_FOR);
+                return true;
             }
-
-            lexer.report.warning(lexer, frameset, node, Report.MISSING_ENDTAG_FOR);
         }
 
     }
@@ -1078,664 +1455,743 @@ public final class ParserImpl
     /**
      * Parser for INLINE.
      */
-    public static class ParseInline implements Parser
+    public static class ParseInline extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node element, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node element, short mode, int nestingLevel)
         {
-            Node node, parent;
-            TagTable tt = lexer.configuration.tt;
-
-            if (TidyUtils.toBoolean(element.tag.model & Dict.CM_EMPTY))
-            {
-                return;
-            }
+            return new Frame(element, mode, nestingLevel);
+        }
 
-            // ParseInline is used for some block level elements like H1 to H6 For such elements we need to insert
-            // inline emphasis tags currently on the inline stack. For Inline elements, we normally push them onto the
-            // inline stack provided they aren't implicit or OBJECT/APPLET. This test is carried out in PushInline and
-            // PopInline, see istack.c We don't push SPAN to replicate current browser behavior
+        /**
+         * State of an inline element being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
 
-            if (TidyUtils.toBoolean(element.tag.model & Dict.CM_BLOCK) || (element.tag == tt.tagDt))
+            /**
+             * the element, replaced by its copy when split.
+             */
+            private Node element;
+
+            /**
+             * content mode.
+             */
+            private short mode;
+
+            /**
+             * Instantiates a new frame.
+             * @param element the element, replaced by its copy when split
+             * @param mode content mode
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node element, short mode, int nestingLevel)
             {
-                lexer.inlineDup(null);
-            }
-            else if (TidyUtils.toBoolean(element.tag.model & Dict.CM_INLINE)
-                    // EUNYEE: Add back this condition 
-                    // because this causes the infinite loop problem when the span does not have the ending tag.
-                    && element.tag != tt.tagA && element.tag != tt.tagSpan)
-            {
-                // && element.tag != tt.tagSpan #540571 Inconsistent behaviour with span inline element
-                lexer.pushInline(element);
+                super(nestingLevel);
+                this.element = element;
+                this.mode = mode;
             }
 
-            if (element.tag == tt.tagNobr)
-            {
-                lexer.badLayout |= Report.USING_NOBR;
-            }
-            else if (element.tag == tt.tagFont)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                lexer.badLayout |= Report.USING_FONT;
-            }
+                Node node, parent;
+                TagTable tt = lexer.configuration.tt;
 
-            // Inline elements may or may not be within a preformatted element
-            if (mode != Lexer.PREFORMATTED)
-            {
-                mode = Lexer.MIXED_CONTENT;
-            }
-
-            while ((node = lexer.getToken(mode)) != null)
-            {
-                // end tag for current element
-                if (node.tag == element.tag && node.type == Node.END_TAG)
+                if (state == START)
                 {
-                    if (TidyUtils.toBoolean(element.tag.model & Dict.CM_INLINE))
+                    if (TidyUtils.toBoolean(element.tag.model & Dict.CM_EMPTY))
                     {
-                        lexer.popInline(node);
+                        return true;
                     }
 
-                    if (!TidyUtils.toBoolean(mode & Lexer.PREFORMATTED))
+                    // ParseInline is used for some block level elements like H1 to H6 For such elements we need to insert
+                    // inline emphasis tags currently on the inline stack. For Inline elements, we normally push them onto the
+                    // inline stack provided they aren't implicit or OBJECT/APPLET. This test is carried out in PushInline and
+                    // PopInline, see istack.c We don't push SPAN to replicate current browser behavior
+
+                    if (TidyUtils.toBoolean(element.tag.model & Dict.CM_BLOCK) || (element.tag == tt.tagDt))
                     {
-                        Node.trimSpaces(lexer, element);
+                        lexer.inlineDup(null);
+                    }
+                    else if (TidyUtils.toBoolean(element.tag.model & Dict.CM_INLINE)
+                            // EUNYEE: Add back this condition 
+                            // because this causes the infinite loop problem when the span does not have the ending tag.
+                            && element.tag != tt.tagA && element.tag != tt.tagSpan)
+                    {
+                        // && element.tag != tt.tagSpan #540571 Inconsistent behaviour with span inline element
+                        lexer.pushInline(element);
                     }
 
-                    // if a font element wraps an anchor and nothing else then move the font element inside the anchor
-                    // since otherwise it won't alter the anchor text color
+                    if (element.tag == tt.tagNobr)
+                    {
+                        lexer.badLayout |= Report.USING_NOBR;
+                    }
+                    else if (element.tag == tt.tagFont)
+                    {
+                        lexer.badLayout |= Report.USING_FONT;
+                    }
 
-                    if (element.tag == tt.tagFont && element.content != null && element.content == element.last)
+                    // Inline elements may or may not be within a preformatted element
+                    if (mode != Lexer.PREFORMATTED)
                     {
-                        Node child = element.content;
+                        mode = Lexer.MIXED_CONTENT;
+                    }
+                    state = CONTENT;
+                }
 
-                        if (child.tag == tt.tagA)
+                while ((node = lexer.getToken(mode)) != null)
+                {
+                    // end tag for current element
+                    if (node.tag == element.tag && node.type == Node.END_TAG)
+                    {
+                        if (TidyUtils.toBoolean(element.tag.model & Dict.CM_INLINE))
                         {
-                            child.parent = element.parent;
-                            child.next = element.next;
-                            child.prev = element.prev;
+                            lexer.popInline(node);
+                        }
 
-                            if (child.prev != null)
-                            {
-                                child.prev.next = child;
-                            }
-                            else
-                            {
-                                child.parent.content = child;
-                            }
+                        if (!TidyUtils.toBoolean(mode & Lexer.PREFORMATTED))
+                        {
+                            Node.trimSpaces(lexer, element);
+                        }
 
-                            if (child.next != null)
-                            {
-                                child.next.prev = child;
-                            }
-                            else
-                            {
-                                child.parent.last = child;
-                            }
+                        // if a font element wraps an anchor and nothing else then move the font element inside the anchor
+                        // since otherwise it won't alter the anchor text color
+
+                        if (element.tag == tt.tagFont && element.content != null && element.content == element.last)
+                        {
+                            Node child = element.content;
 
-                            element.next = null;
-                            element.prev = null;
-                            element.parent = child;
-                            element.content = child.content;
-                            element.last = child.last;
-                            child.content = element;
-                            child.last = element;
-                            for (child = element.content; child != null; child = child.next)
+                            if (child.tag == tt.tagA)
                             {
-                                child.parent = element;
+                                child.parent = element.parent;
+                                child.next = element.next;
+                                child.prev = element.prev;
+
+                                if (child.prev != null)
+                                {
+                                    child.prev.next = child;
+                                }
+                                else
+                                {
+                                    child.parent.content = child;
+                                }
+
+                                if (child.next != null)
+                                {
+                                    child.next.prev = child;
+                                }
+                                else
+                                {
+                                    child.parent.last = child;
+                                }
+
+                                element.next = null;
+                                element.prev = null;
+                                element.parent = child;
+                                element.content = child.content;
+                                element.last = child.last;
+                                child.content = element;
+                                child.last = element;
+                                for (child = element.content; child != null; child = child.next)
+                                {
+                                    child.parent = element;
+                                }
                             }
                         }
-                    }
-                    element.closed = true;
-                    Node.trimSpaces(lexer, element);
-                    Node.trimEmptyElement(lexer, element);
-                    return;
-                }
+                        element.closed = true;
+                        Node.trimSpaces(lexer, element);
+                        Node.trimEmptyElement(lexer, element);
+                        return true;
+                    }
+
+                    // <u> ... <u> map 2nd <u> to </u> if 1st is explicit
+                    // otherwise emphasis nesting is probably unintentional
+                    // big and small have cumulative effect to leave them alone
+                    if (node.type == Node.START_TAG
+                        && node.tag == element.tag
+                        && lexer.isPushed(node)
+                        && !node.implicit
+                        && !element.implicit
+                        && node.tag != null
+                        && ((node.tag.model & Dict.CM_INLINE) != 0)
+                        && node.tag != tt.tagA
+                        && node.tag != tt.tagFont
+                        && node.tag != tt.tagBig
+                        && node.tag != tt.tagSmall
+                        && node.tag != tt.tagQ)
+                    {
+                        if (element.content != null && node.attributes == null)
+                        {
+                            lexer.report.warning(lexer, element, node, Report.COERCE_TO_ENDTAG);
+                            node.type = Node.END_TAG;
+                            lexer.ungetToken();
+                            continue;
+                        }
 
-                // <u> ... <u> map 2nd <u> to </u> if 1st is explicit
-                // otherwise emphasis nesting is probably unintentional
-                // big and small have cumulative effect to leave them alone
-                if (node.type == Node.START_TAG
-                    && node.tag == element.tag
-                    && lexer.isPushed(node)
-                    && !node.implicit
-                    && !element.implicit
-                    && node.tag != null
-                    && ((node.tag.model & Dict.CM_INLINE) != 0)
-                    && node.tag != tt.tagA
-                    && node.tag != tt.tagFont
-                    && node.tag != tt.tagBig
-                    && node.tag != tt.tagSmall
-                    && node.tag != tt.tagQ)
-                {
-                    if (element.content != null && node.attributes == null)
+                        lexer.report.warning(lexer, element, node, Report.NESTED_EMPHASIS);
+                    }
+                    else if (lexer.isPushed(node) && node.type == Node.START_TAG && node.tag == tt.tagQ)
                     {
-                        lexer.report.warning(lexer, element, node, Report.COERCE_TO_ENDTAG);
-                        node.type = Node.END_TAG;
-                        lexer.ungetToken();
-                        continue;
+                        lexer.report.warning(lexer, element, node, Report.NESTED_QUOTATION);
                     }
 
-                    lexer.report.warning(lexer, element, node, Report.NESTED_EMPHASIS);
-                }
-                else if (lexer.isPushed(node) && node.type == Node.START_TAG && node.tag == tt.tagQ)
-                {
-                    lexer.report.warning(lexer, element, node, Report.NESTED_QUOTATION);
-                }
-
-                if (node.type == Node.TEXT_NODE)
-                {
-                    // only called for 1st child
-                    if (element.content == null && !TidyUtils.toBoolean(mode & Lexer.PREFORMATTED))
+                    if (node.type == Node.TEXT_NODE)
                     {
-                        Node.trimSpaces(lexer, element);
+                        // only called for 1st child
+                        if (element.content == null && !TidyUtils.toBoolean(mode & Lexer.PREFORMATTED))
+                        {
+                            Node.trimSpaces(lexer, element);
+                        }
+
+                        if (node.start >= node.end)
+                        {
+                            continue;
+                        }
+
+                        element.insertNodeAtEnd(node);
+                        continue;
                     }
 
-                    if (node.start >= node.end)
+                    // mixed content model so allow text
+                    if (Node.insertMisc(element, node))
                     {
                         continue;
                     }
 
-                    element.insertNodeAtEnd(node);
-                    continue;
-                }
+                    // deal with HTML tags
+                    if (node.tag == tt.tagHtml)
+                    {
+                        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                        {
+                            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
 
-                // mixed content model so allow text
-                if (Node.insertMisc(element, node))
-                {
-                    continue;
-                }
+                        // otherwise infer end of inline element
+                        lexer.ungetToken();
+                        if ((mode & Lexer.PREFORMATTED) == 0)
+                        {
+                            Node.trimSpaces(lexer, element);
+                        }
+                        Node.trimEmptyElement(lexer, element);
+                        return true;
+                    }
 
-                // deal with HTML tags
-                if (node.tag == tt.tagHtml)
-                {
-                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                    // within <dt> or <pre> map <p> to <br>
+                    if (node.tag == tt.tagP
+                        && node.type == Node.START_TAG
+                        && ((mode & Lexer.PREFORMATTED) != 0 || element.tag == tt.tagDt || element.isDescendantOf(tt.tagDt)))
                     {
-                        lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                        node.tag = tt.tagBr;
+                        node.element = "br";
+                        Node.trimSpaces(lexer, element);
+                        element.insertNodeAtEnd(node);
                         continue;
                     }
 
-                    // otherwise infer end of inline element
-                    lexer.ungetToken();
-                    if ((mode & Lexer.PREFORMATTED) == 0)
+                    // ignore unknown and PARAM tags
+                    if (node.tag == null || node.tag == tt.tagParam)
                     {
-                        Node.trimSpaces(lexer, element);
+                    	// Unknown self enclosing tags
+                    	if(!lexer.configuration.dropProprietaryTags) {
+                    		node.tag = new Dict(node.element, Dict.VERS_ALL, Dict.CM_INLINE, ParserImpl.INLINE, null);
+                    	} else {
+                    		lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                    	}
                     }
-                    Node.trimEmptyElement(lexer, element);
-                    return;
-                }
 
-                // within <dt> or <pre> map <p> to <br>
-                if (node.tag == tt.tagP
-                    && node.type == Node.START_TAG
-                    && ((mode & Lexer.PREFORMATTED) != 0 || element.tag == tt.tagDt || element.isDescendantOf(tt.tagDt)))
-                {
-                    node.tag = tt.tagBr;
-                    node.element = "br";
-                    Node.trimSpaces(lexer, element);
-                    element.insertNodeAtEnd(node);
-                    continue;
-                }
+                    if (node.tag == tt.tagBr && node.type == Node.END_TAG)
+                    {
+                        node.type = Node.START_TAG;
+                    }
 
-                // ignore unknown and PARAM tags
-                if (node.tag == null || node.tag == tt.tagParam)
-                {
-                	// Unknown self enclosing tags
-                	if(!lexer.configuration.dropProprietaryTags) {
-                		node.tag = new Dict(node.element, Dict.VERS_ALL, Dict.CM_INLINE, ParserImpl.INLINE, null);
-                	} else {
-                		lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
-                	}
-                }
+                    if (node.type == Node.END_TAG)
+                    {
+                        // coerce </br> to <br>
+                        if (node.tag == tt.tagBr)
+                        {
+                            node.type = Node.START_TAG;
+                        }
+                        else if (node.tag == tt.tagP)
+                        {
+                            // coerce unmatched </p> to <br><br>
+                            if (!element.isDescendantOf(tt.tagP))
+                            {
+                                Node.coerceNode(lexer, node, tt.tagBr);
+                                Node.trimSpaces(lexer, element);
+                                element.insertNodeAtEnd(node);
+                                node = lexer.inferredTag("br");
+                                continue;
+                            }
+                        }
+                        else if ((node.tag.model & Dict.CM_INLINE) != 0
+                            && node.tag != tt.tagA
+                            && (node.tag.model & Dict.CM_OBJECT) == 0
+                            && (element.tag.model & Dict.CM_INLINE) != 0)
+                        {
+                            // allow any inline end tag to end current element
+                            lexer.popInline(element);
 
-                if (node.tag == tt.tagBr && node.type == Node.END_TAG)
-                {
-                    node.type = Node.START_TAG;
-                }
+                            if (element.tag != tt.tagA)
+                            {
+                                if (node.tag == tt.tagA && node.tag != element.tag)
+                                {
+                                    lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
+                                    lexer.ungetToken();
+                                }
+                                else
+                                {
+                                    lexer.report.warning(lexer, element, node, Report.NON_MATCHING_ENDTAG);
+                                }
 
-                if (node.type == Node.END_TAG)
-                {
-                    // coerce </br> to <br>
-                    if (node.tag == tt.tagBr)
-                    {
-                        node.type = Node.START_TAG;
+                                if ((mode & Lexer.PREFORMATTED) == 0)
+                                {
+                                    Node.trimSpaces(lexer, element);
+                                }
+                                Node.trimEmptyElement(lexer, element);
+                                return true;
+                            }
+
+                            // if parent is <a> then discard unexpected inline end tag
+                            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        } // special case </tr> etc. for stuff moved in front of table
+                        else if (lexer.exiled && node.tag.model != 0 && (node.tag.model & Dict.CM_TABLE) != 0)
+                        {
+                            lexer.ungetToken();
+                            Node.trimSpaces(lexer, element);
+                            Node.trimEmptyElement(lexer, element);
+                            return true;
+                        }
                     }
-                    else if (node.tag == tt.tagP)
+
+                    // allow any header tag to end current header
+                    if ((node.tag.model & Dict.CM_HEADING) != 0 && (element.tag.model & Dict.CM_HEADING) != 0)
                     {
-                        // coerce unmatched </p> to <br><br>
-                        if (!element.isDescendantOf(tt.tagP))
+                        if (node.tag == element.tag)
+                        {
+                            lexer.report.warning(lexer, element, node, Report.NON_MATCHING_ENDTAG);
+                        }
+                        else
+                        {
+                            lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
+                            lexer.ungetToken();
+                        }
+                        if ((mode & Lexer.PREFORMATTED) == 0)
                         {
-                            Node.coerceNode(lexer, node, tt.tagBr);
                             Node.trimSpaces(lexer, element);
-                            element.insertNodeAtEnd(node);
-                            node = lexer.inferredTag("br");
+                        }
+                        Node.trimEmptyElement(lexer, element);
+                        return true;
+                    }
+
+                    // an <A> tag to ends any open <A> element but <A href=...> is mapped to </A><A href=...>
+
+                    // #427827 - fix by Randy Waki and Bjoern Hoehrmann 23 Aug 00
+                    // if (node.tag == tt.tagA && !node.implicit && lexer.isPushed(node))
+                    if (node.tag == tt.tagA
+                        && !node.implicit
+                        && (element.tag == tt.tagA || element.isDescendantOf(tt.tagA)))
+                    {
+                        // coerce <a> to </a> unless it has some attributes
+                        // #427827 - fix by Randy Waki and Bjoern Hoehrmann 23 Aug 00
+                        // other fixes by Dave Raggett
+                        // if (node.attributes == null)
+                        if (node.type != Node.END_TAG && node.attributes == null)
+                        {
+                            node.type = Node.END_TAG;
+                            lexer.report.warning(lexer, element, node, Report.COERCE_TO_ENDTAG);
+                            // lexer.popInline(node);
+                            lexer.ungetToken();
                             continue;
                         }
+
+                        lexer.ungetToken();
+                        lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
+                        // lexer.popInline(element);
+                        if ((mode & Lexer.PREFORMATTED) == 0)
+                        {
+                            Node.trimSpaces(lexer, element);
+                        }
+                        Node.trimEmptyElement(lexer, element);
+                        return true;
                     }
-                    else if ((node.tag.model & Dict.CM_INLINE) != 0
-                        && node.tag != tt.tagA
-                        && (node.tag.model & Dict.CM_OBJECT) == 0
-                        && (element.tag.model & Dict.CM_INLINE) != 0)
-                    {
-                        // allow any inline end tag to end current element
-                        lexer.popInline(element);
 
-                        if (element.tag != tt.tagA)
+                    if ((element.tag.model & Dict.CM_HEADING) != 0)
+                    {
+                        if (node.tag == tt.tagCenter || node.tag == tt.tagDiv)
                         {
-                            if (node.tag == tt.tagA && node.tag != element.tag)
+                            if (node.type != Node.START_TAG && node.type != Node.START_END_TAG)
                             {
-                                lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
-                                lexer.ungetToken();
+                                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                                continue;
                             }
-                            else
+
+                            lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
+
+                            // insert center as parent if heading is empty
+                            if (element.content == null)
                             {
-                                lexer.report.warning(lexer, element, node, Report.NON_MATCHING_ENDTAG);
+                                Node.insertNodeAsParent(element, node);
+                                continue;
                             }
 
+                            // split heading and make center parent of 2nd part
+                            element.insertNodeAfterElement(node);
+
                             if ((mode & Lexer.PREFORMATTED) == 0)
                             {
                                 Node.trimSpaces(lexer, element);
                             }
-                            Node.trimEmptyElement(lexer, element);
-                            return;
+
+                            element = lexer.cloneNode(element);
+                            element.start = lexer.lexsize;
+                            element.end = lexer.lexsize;
+                            node.insertNodeAtEnd(element);
+                            continue;
                         }
 
-                        // if parent is <a> then discard unexpected inline end tag
-                        lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
-                    } // special case </tr> etc. for stuff moved in front of table
-                    else if (lexer.exiled && node.tag.model != 0 && (node.tag.model & Dict.CM_TABLE) != 0)
-                    {
-                        lexer.ungetToken();
-                        Node.trimSpaces(lexer, element);
-                        Node.trimEmptyElement(lexer, element);
-                        return;
-                    }
-                }
+                        if (node.tag == tt.tagHr)
+                        {
+                            if (node.type != Node.START_TAG && node.type != Node.START_END_TAG)
+                            {
+                                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                                continue;
+                            }
 
-                // allow any header tag to end current header
-                if ((node.tag.model & Dict.CM_HEADING) != 0 && (element.tag.model & Dict.CM_HEADING) != 0)
-                {
-                    if (node.tag == element.tag)
-                    {
-                        lexer.report.warning(lexer, element, node, Report.NON_MATCHING_ENDTAG);
-                    }
-                    else
-                    {
-                        lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
-                        lexer.ungetToken();
-                    }
-                    if ((mode & Lexer.PREFORMATTED) == 0)
-                    {
-                        Node.trimSpaces(lexer, element);
-                    }
-                    Node.trimEmptyElement(lexer, element);
-                    return;
-                }
+                            lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
+
+                            // insert hr before heading if heading is empty
+                            if (element.content == null)
+                            {
+                                Node.insertNodeBeforeElement(element, node);
+                                continue;
+                            }
 
-                // an <A> tag to ends any open <A> element but <A href=...> is mapped to </A><A href=...>
+                            // split heading and insert hr before 2nd part
+                            element.insertNodeAfterElement(node);
 
-                // #427827 - fix by Randy Waki and Bjoern Hoehrmann 23 Aug 00
-                // if (node.tag == tt.tagA && !node.implicit && lexer.isPushed(node))
-                if (node.tag == tt.tagA
-                    && !node.implicit
-                    && (element.tag == tt.tagA || element.isDescendantOf(tt.tagA)))
-                {
-                    // coerce <a> to </a> unless it has some attributes
-                    // #427827 - fix by Randy Waki and Bjoern Hoehrmann 23 Aug 00
-                    // other fixes by Dave Raggett
-                    // if (node.attributes == null)
-                    if (node.type != Node.END_TAG && node.attributes == null)
-                    {
-                        node.type = Node.END_TAG;
-                        lexer.report.warning(lexer, element, node, Report.COERCE_TO_ENDTAG);
-                        // lexer.popInline(node);
-                        lexer.ungetToken();
-                        continue;
-                    }
+                            if ((mode & Lexer.PREFORMATTED) == 0)
+                            {
+                                Node.trimSpaces(lexer, element);
+                            }
 
-                    lexer.ungetToken();
-                    lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
-                    // lexer.popInline(element);
-                    if ((mode & Lexer.PREFORMATTED) == 0)
-                    {
-                        Node.trimSpaces(lexer, element);
+                            element = lexer.cloneNode(element);
+                            element.start = lexer.lexsize;
+                            element.end = lexer.lexsize;
+                            node.insertNodeAfterElement(element);
+                            continue;
+                        }
                     }
-                    Node.trimEmptyElement(lexer, element);
-                    return;
-                }
 
-                if ((element.tag.model & Dict.CM_HEADING) != 0)
-                {
-                    if (node.tag == tt.tagCenter || node.tag == tt.tagDiv)
+                    if (element.tag == tt.tagDt)
                     {
-                        if (node.type != Node.START_TAG && node.type != Node.START_END_TAG)
+                        if (node.tag == tt.tagHr)
                         {
-                            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                            continue;
-                        }
+                            Node dd;
+
+                            if (node.type != Node.START_TAG && node.type != Node.START_END_TAG)
+                            {
+                                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                                continue;
+                            }
 
-                        lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
+                            lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
+                            dd = lexer.inferredTag("dd");
 
-                        // insert center as parent if heading is empty
-                        if (element.content == null)
-                        {
-                            Node.insertNodeAsParent(element, node);
-                            continue;
-                        }
+                            // insert hr within dd before dt if dt is empty
+                            if (element.content == null)
+                            {
+                                Node.insertNodeBeforeElement(element, dd);
+                                dd.insertNodeAtEnd(node);
+                                continue;
+                            }
 
-                        // split heading and make center parent of 2nd part
-                        element.insertNodeAfterElement(node);
+                            // split dt and insert hr within dd before 2nd part
+                            element.insertNodeAfterElement(dd);
+                            dd.insertNodeAtEnd(node);
 
-                        if ((mode & Lexer.PREFORMATTED) == 0)
-                        {
-                            Node.trimSpaces(lexer, element);
-                        }
+                            if ((mode & Lexer.PREFORMATTED) == 0)
+                            {
+                                Node.trimSpaces(lexer, element);
+                            }
 
-                        element = lexer.cloneNode(element);
-                        element.start = lexer.lexsize;
-                        element.end = lexer.lexsize;
-                        node.insertNodeAtEnd(element);
-                        continue;
+                            element = lexer.cloneNode(element);
+                            element.start = lexer.lexsize;
+                            element.end = lexer.lexsize;
+                            dd.insertNodeAfterElement(element);
+                            continue;
+                        }
                     }
 
-                    if (node.tag == tt.tagHr)
+                    // if this is the end tag for an ancestor element then infer end tag for this element
+
+                    if (node.type == Node.END_TAG)
                     {
-                        if (node.type != Node.START_TAG && node.type != Node.START_END_TAG)
+                        for (parent = element.parent; parent != null; parent = parent.parent)
                         {
-                            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                            continue;
-                        }
+                            if (node.tag == parent.tag)
+                            {
+                                if ((element.tag.model & Dict.CM_OPT) == 0 && !element.implicit)
+                                {
+                                    lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
+                                }
 
-                        lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
+                                if (element.tag == tt.tagA)
+                                {
+                                    lexer.popInline(element);
+                                }
 
-                        // insert hr before heading if heading is empty
-                        if (element.content == null)
-                        {
-                            Node.insertNodeBeforeElement(element, node);
-                            continue;
-                        }
+                                lexer.ungetToken();
 
-                        // split heading and insert hr before 2nd part
-                        element.insertNodeAfterElement(node);
+                                if ((mode & Lexer.PREFORMATTED) == 0)
+                                {
+                                    Node.trimSpaces(lexer, element);
+                                }
 
-                        if ((mode & Lexer.PREFORMATTED) == 0)
-                        {
-                            Node.trimSpaces(lexer, element);
+                                Node.trimEmptyElement(lexer, element);
+                                return true;
+                            }
                         }
-
-                        element = lexer.cloneNode(element);
-                        element.start = lexer.lexsize;
-                        element.end = lexer.lexsize;
-                        node.insertNodeAfterElement(element);
-                        continue;
                     }
-                }
 
-                if (element.tag == tt.tagDt)
-                {
-                    if (node.tag == tt.tagHr)
+                    // block level tags end this element
+                    if ((node.tag.model & Dict.CM_INLINE) == 0)
                     {
-                        Node dd;
-
-                        if (node.type != Node.START_TAG && node.type != Node.START_END_TAG)
+                        if (node.type != Node.START_TAG)
                         {
                             lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
                             continue;
                         }
 
-                        lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
-                        dd = lexer.inferredTag("dd");
-
-                        // insert hr within dd before dt if dt is empty
-                        if (element.content == null)
+                        if ((element.tag.model & Dict.CM_OPT) == 0)
                         {
-                            Node.insertNodeBeforeElement(element, dd);
-                            dd.insertNodeAtEnd(node);
-                            continue;
+                            lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
                         }
 
-                        // split dt and insert hr within dd before 2nd part
-                        element.insertNodeAfterElement(dd);
-                        dd.insertNodeAtEnd(node);
-
-                        if ((mode & Lexer.PREFORMATTED) == 0)
+                        if ((node.tag.model & Dict.CM_HEAD) != 0 && (node.tag.model & Dict.CM_BLOCK) == 0)
                         {
-                            Node.trimSpaces(lexer, element);
+                            return moveToHead(lexer, element, node);
                         }
 
-                        element = lexer.cloneNode(element);
-                        element.start = lexer.lexsize;
-                        element.end = lexer.lexsize;
-                        dd.insertNodeAfterElement(element);
-                        continue;
-                    }
-                }
-
-                // if this is the end tag for an ancestor element then infer end tag for this element
+                        // prevent anchors from propagating into block tags except for headings h1 to h6
 
-                if (node.type == Node.END_TAG)
-                {
-                    for (parent = element.parent; parent != null; parent = parent.parent)
-                    {
-                        if (node.tag == parent.tag)
+                        if (element.tag == tt.tagA)
                         {
-                            if ((element.tag.model & Dict.CM_OPT) == 0 && !element.implicit)
-                            {
-                                lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
-                            }
-
-                            if (element.tag == tt.tagA)
+                            if (node.tag != null && (node.tag.model & Dict.CM_HEADING) == 0)
                             {
                                 lexer.popInline(element);
                             }
-
-                            lexer.ungetToken();
-
-                            if ((mode & Lexer.PREFORMATTED) == 0)
+                            else if (element.content == null)
                             {
-                                Node.trimSpaces(lexer, element);
+                                Node.discardElement(element);
+                                lexer.ungetToken();
+                                return true;
                             }
-
-                            Node.trimEmptyElement(lexer, element);
-                            return;
                         }
-                    }
-                }
 
-                // block level tags end this element
-                if ((node.tag.model & Dict.CM_INLINE) == 0)
-                {
-                    if (node.type != Node.START_TAG)
-                    {
-                        lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
-                    }
+                        lexer.ungetToken();
 
-                    if ((element.tag.model & Dict.CM_OPT) == 0)
-                    {
-                        lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
-                    }
+                        if ((mode & Lexer.PREFORMATTED) == 0)
+                        {
+                            Node.trimSpaces(lexer, element);
+                        }
 
-                    if ((node.tag.model & Dict.CM_HEAD) != 0 && (node.tag.model & Dict.CM_BLOCK) == 0)
-                    {
-                        moveToHead(lexer, element, node, nestingLevel);
-                        continue;
+                        Node.trimEmptyElement(lexer, element);
+                        return true;
                     }
 
-                    // prevent anchors from propagating into block tags except for headings h1 to h6
-
-                    if (element.tag == tt.tagA)
+                    // parse inline element
+                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
                     {
-                        if (node.tag != null && (node.tag.model & Dict.CM_HEADING) == 0)
+                        if (node.implicit)
                         {
-                            lexer.popInline(element);
+                            lexer.report.warning(lexer, element, node, Report.INSERTING_TAG);
                         }
-                        else if (element.content == null)
+
+                        // trim white space before <br>
+                        if (node.tag == tt.tagBr)
                         {
-                            Node.discardElement(element);
-                            lexer.ungetToken();
-                            return;
+                            Node.trimSpaces(lexer, element);
                         }
-                    }
-
-                    lexer.ungetToken();
 
-                    if ((mode & Lexer.PREFORMATTED) == 0)
-                    {
-                        Node.trimSpaces(lexer, element);
+                        element.insertNodeAtEnd(node);
+                        return parseTag(node, mode);
                     }
 
-                    Node.trimEmptyElement(lexer, element);
-                    return;
+                    // discard unexpected tags
+                    lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // parse inline element
-                if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                if ((element.tag.model & Dict.CM_OPT) == 0)
                 {
-                    if (node.implicit)
-                    {
-                        lexer.report.warning(lexer, element, node, Report.INSERTING_TAG);
-                    }
-
-                    // trim white space before <br>
-                    if (node.tag == tt.tagBr)
-                    {
-                        Node.trimSpaces(lexer, element);
-                    }
-
-                    element.insertNodeAtEnd(node);
-                    parseTag(lexer, node, mode, nestingLevel);
-                    continue;
+                    lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_FOR);
                 }
 
-                // discard unexpected tags
-                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-            }
-
-            if ((element.tag.model & Dict.CM_OPT) == 0)
-            {
-                lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_FOR);
+                Node.trimEmptyElement(lexer, element);
+                return true;
             }
-
-            Node.trimEmptyElement(lexer, element);
         }
     }
 
     /**
      * Parser for LIST.
      */
-    public static class ParseList implements Parser
+    public static class ParseList extends StackParser
     {
 
-        public void parse(Lexer lexer, Node list, short mode, int nestingLevel) throws ExcessiveNesting
+        /**
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
+         */
+        ParserFrame newFrame(Node list, short mode, int nestingLevel)
+        {
+            return new Frame(list, nestingLevel);
+        }
+
+        /**
+         * State of a list element being parsed.
+         */
+        private static final class Frame extends ParserFrame
         {
-            Node node;
-            Node parent;
-            TagTable tt = lexer.configuration.tt;
 
-            if ((list.tag.model & Dict.CM_EMPTY) != 0)
+            /**
+             * the list element.
+             */
+            private Node list;
+
+            /**
+             * Instantiates a new frame.
+             * @param list the list element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node list, int nestingLevel)
             {
-                return;
+                super(nestingLevel);
+                this.list = list;
             }
 
-            lexer.insert = -1; // defer implicit inline start tags
-
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                if (node.tag == list.tag && node.type == Node.END_TAG)
+                Node node;
+                Node parent;
+                TagTable tt = lexer.configuration.tt;
+
+                if (state == START)
                 {
-                    if ((list.tag.model & Dict.CM_OBSOLETE) != 0)
+                    if ((list.tag.model & Dict.CM_EMPTY) != 0)
                     {
-                        Node.coerceNode(lexer, list, tt.tagUl);
+                        return true;
                     }
 
-                    list.closed = true;
-                    Node.trimEmptyElement(lexer, list);
-                    return;
-                }
-
-                // deal with comments etc.
-                if (Node.insertMisc(list, node))
-                {
-                    continue;
+                    lexer.insert = -1; // defer implicit inline start tags
+                    state = CONTENT;
                 }
 
-                if (node.type != Node.TEXT_NODE && node.tag == null)
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
+                    if (node.tag == list.tag && node.type == Node.END_TAG)
+                    {
+                        if ((list.tag.model & Dict.CM_OBSOLETE) != 0)
+                        {
+                            Node.coerceNode(lexer, list, tt.tagUl);
+                        }
 
-                // if this is the end tag for an ancestor element then infer end tag for this element
+                        list.closed = true;
+                        Node.trimEmptyElement(lexer, list);
+                        return true;
+                    }
 
-                if (node.type == Node.END_TAG)
-                {
-                    if (node.tag == tt.tagForm)
+                    // deal with comments etc.
+                    if (Node.insertMisc(list, node))
                     {
-                        badForm(lexer);
-                        lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
                         continue;
                     }
 
-                    if (node.tag != null && (node.tag.model & Dict.CM_INLINE) != 0)
+                    if (node.type != Node.TEXT_NODE && node.tag == null)
                     {
                         lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
-                        lexer.popInline(node);
                         continue;
                     }
 
-                    for (parent = list.parent; parent != null; parent = parent.parent)
+                    // if this is the end tag for an ancestor element then infer end tag for this element
+
+                    if (node.type == Node.END_TAG)
                     {
-                        if (node.tag == parent.tag)
+                        if (node.tag == tt.tagForm)
                         {
-                            lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_BEFORE);
-                            lexer.ungetToken();
+                            badForm(lexer);
+                            lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+
+                        if (node.tag != null && (node.tag.model & Dict.CM_INLINE) != 0)
+                        {
+                            lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
+                            lexer.popInline(node);
+                            continue;
+                        }
 
-                            if ((list.tag.model & Dict.CM_OBSOLETE) != 0)
+                        for (parent = list.parent; parent != null; parent = parent.parent)
+                        {
+                            if (node.tag == parent.tag)
                             {
-                                Node.coerceNode(lexer, list, tt.tagUl);
-                            }
+                                lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_BEFORE);
+                                lexer.ungetToken();
 
-                            Node.trimEmptyElement(lexer, list);
-                            return;
+                                if ((list.tag.model & Dict.CM_OBSOLETE) != 0)
+                                {
+                                    Node.coerceNode(lexer, list, tt.tagUl);
+                                }
+
+                                Node.trimEmptyElement(lexer, list);
+                                return true;
+                            }
                         }
+
+                        lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
                     }
 
-                    lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
+                    if (node.tag != tt.tagLi)
+                    {
+                        lexer.ungetToken();
 
-                if (node.tag != tt.tagLi)
-                {
-                    lexer.ungetToken();
+                        if (node.tag != null && (node.tag.model & Dict.CM_BLOCK) != 0 && lexer.excludeBlocks)
+                        {
+                            lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_BEFORE);
+                            Node.trimEmptyElement(lexer, list);
+                            return true;
+                        }
 
-                    if (node.tag != null && (node.tag.model & Dict.CM_BLOCK) != 0 && lexer.excludeBlocks)
-                    {
-                        lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_BEFORE);
-                        Node.trimEmptyElement(lexer, list);
-                        return;
+                        node = lexer.inferredTag("li");
+                        node.addAttribute("style", "list-style: none");
+                        lexer.report.warning(lexer, list, node, Report.MISSING_STARTTAG);
                     }
 
-                    node = lexer.inferredTag("li");
-                    node.addAttribute("style", "list-style: none");
-                    lexer.report.warning(lexer, list, node, Report.MISSING_STARTTAG);
+                    // node should be <LI>
+                    list.insertNodeAtEnd(node);
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                 }
 
-                // node should be <LI>
-                list.insertNodeAtEnd(node);
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
-            }
+                if ((list.tag.model & Dict.CM_OBSOLETE) != 0)
+                {
+                    Node.coerceNode(lexer, list, tt.tagUl);
+                }
 
-            if ((list.tag.model & Dict.CM_OBSOLETE) != 0)
-            {
-                Node.coerceNode(lexer, list, tt.tagUl);
+                lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_FOR);
+                Node.trimEmptyElement(lexer, list);
+                return true;
             }
-
-            lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_FOR);
-            Node.trimEmptyElement(lexer, list);
         }
 
     }
@@ -1766,137 +2222,193 @@ public final class ParserImpl
     /**
      * Parser for DEFLIST.
      */
-    public static class ParseDefList implements Parser
+    public static class ParseDefList extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node list, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node list, short mode, int nestingLevel)
         {
-            Node node, parent;
-            TagTable tt = lexer.configuration.tt;
+            return new Frame(list, mode, nestingLevel);
+        }
 
-            if ((list.tag.model & Dict.CM_EMPTY) != 0)
+        /**
+         * State of a definition list being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
+
+            /**
+             * parsing a center element splitting the list.
+             */
+            private static final int CENTER = 3;
+
+            /**
+             * the definition list, replaced by a new one when split.
+             */
+            private Node list;
+
+            /**
+             * content mode.
+             */
+            private short mode;
+
+            /**
+             * the center element splitting the list.
+             */
+            private Node center;
+
+            /**
+             * Instantiates a new frame.
+             * @param list the definition list, replaced by a new one when split
+             * @param mode content mode
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node list, short mode, int nestingLevel)
             {
-                return;
+                super(nestingLevel);
+                this.list = list;
+                this.mode = mode;
             }
 
-            lexer.insert = -1; // defer implicit inline start tags
-
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                if (node.tag == list.tag && node.type == Node.END_TAG)
-                {
-                    list.closed = true;
-                    Node.trimEmptyElement(lexer, list);
-                    return;
-                }
+                Node node, parent;
+                TagTable tt = lexer.configuration.tt;
 
-                // deal with comments etc.
-                if (Node.insertMisc(list, node))
+                if (state == START)
                 {
-                    continue;
-                }
+                    if ((list.tag.model & Dict.CM_EMPTY) != 0)
+                    {
+                        return true;
+                    }
 
-                if (node.type == Node.TEXT_NODE)
+                    lexer.insert = -1; // defer implicit inline start tags
+                    state = CONTENT;
+                }
+                else if (state == CENTER)
                 {
-                    lexer.ungetToken();
-                    node = lexer.inferredTag("dt");
-                    lexer.report.warning(lexer, list, node, Report.MISSING_STARTTAG);
+                    // now create a new dl element
+                    list = lexer.inferredTag("dl");
+                    center.insertNodeAfterElement(list);
+                    center = null;
+                    state = CONTENT;
                 }
 
-                if (node.tag == null)
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
+                    if (node.tag == list.tag && node.type == Node.END_TAG)
+                    {
+                        list.closed = true;
+                        Node.trimEmptyElement(lexer, list);
+                        return true;
+                    }
 
-                // if this is the end tag for an ancestor element then infer end tag for this element
+                    // deal with comments etc.
+                    if (Node.insertMisc(list, node))
+                    {
+                        continue;
+                    }
 
-                if (node.type == Node.END_TAG)
-                {
-                    if (node.tag == tt.tagForm)
+                    if (node.type == Node.TEXT_NODE)
+                    {
+                        lexer.ungetToken();
+                        node = lexer.inferredTag("dt");
+                        lexer.report.warning(lexer, list, node, Report.MISSING_STARTTAG);
+                    }
+
+                    if (node.tag == null)
                     {
-                        badForm(lexer);
                         lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
                         continue;
                     }
 
-                    for (parent = list.parent; parent != null; parent = parent.parent)
+                    // if this is the end tag for an ancestor element then infer end tag for this element
+
+                    if (node.type == Node.END_TAG)
                     {
-                        if (node.tag == parent.tag)
+                        if (node.tag == tt.tagForm)
                         {
-                            lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_BEFORE);
+                            badForm(lexer);
+                            lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
 
-                            lexer.ungetToken();
-                            Node.trimEmptyElement(lexer, list);
-                            return;
+                        for (parent = list.parent; parent != null; parent = parent.parent)
+                        {
+                            if (node.tag == parent.tag)
+                            {
+                                lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_BEFORE);
+
+                                lexer.ungetToken();
+                                Node.trimEmptyElement(lexer, list);
+                                return true;
+                            }
                         }
                     }
-                }
 
-                // center in a dt or a dl breaks the dl list in two
-                if (node.tag == tt.tagCenter)
-                {
-                    if (list.content != null)
-                    {
-                        list.insertNodeAfterElement(node);
-                    }
-                    else
+                    // center in a dt or a dl breaks the dl list in two
+                    if (node.tag == tt.tagCenter)
                     {
-                        // trim empty dl list
-                        Node.insertNodeBeforeElement(list, node);
+                        if (list.content != null)
+                        {
+                            list.insertNodeAfterElement(node);
+                        }
+                        else
+                        {
+                            // trim empty dl list
+                            Node.insertNodeBeforeElement(list, node);
+
+                            // #540296 tidy dumps with empty definition list
+                            Node.discardElement(list);
+                        }
 
-                        // #540296 tidy dumps with empty definition list
-                        Node.discardElement(list);
+                        // and parse contents of center
+                        center = node;
+                        return parseTag(node, mode, CENTER);
                     }
 
-                    // and parse contents of center
-                    parseTag(lexer, node, mode, nestingLevel);
+                    if (!(node.tag == tt.tagDt || node.tag == tt.tagDd))
+                    {
+                        lexer.ungetToken();
 
-                    // now create a new dl element
-                    list = lexer.inferredTag("dl");
-                    node.insertNodeAfterElement(list);
-                    continue;
-                }
+                        if ((node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) == 0)
+                        {
+                            lexer.report.warning(lexer, list, node, Report.TAG_NOT_ALLOWED_IN);
+                            Node.trimEmptyElement(lexer, list);
+                            return true;
+                        }
 
-                if (!(node.tag == tt.tagDt || node.tag == tt.tagDd))
-                {
-                    lexer.ungetToken();
+                        // if DD appeared directly in BODY then exclude blocks
+                        if ((node.tag.model & Dict.CM_INLINE) == 0 && lexer.excludeBlocks)
+                        {
+                            Node.trimEmptyElement(lexer, list);
+                            return true;
+                        }
 
-                    if ((node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) == 0)
-                    {
-                        lexer.report.warning(lexer, list, node, Report.TAG_NOT_ALLOWED_IN);
-                        Node.trimEmptyElement(lexer, list);
-                        return;
+                        node = lexer.inferredTag("dd");
+                        lexer.report.warning(lexer, list, node, Report.MISSING_STARTTAG);
                     }
 
-                    // if DD appeared directly in BODY then exclude blocks
-                    if ((node.tag.model & Dict.CM_INLINE) == 0 && lexer.excludeBlocks)
+                    if (node.type == Node.END_TAG)
                     {
-                        Node.trimEmptyElement(lexer, list);
-                        return;
+                        lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
                     }
 
-                    node = lexer.inferredTag("dd");
-                    lexer.report.warning(lexer, list, node, Report.MISSING_STARTTAG);
-                }
-
-                if (node.type == Node.END_TAG)
-                {
-                    lexer.report.warning(lexer, list, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
+                    // node should be <DT> or <DD>
+                    list.insertNodeAtEnd(node);
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                 }
 
-                // node should be <DT> or <DD>
-                list.insertNodeAtEnd(node);
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
+                lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_FOR);
+                Node.trimEmptyElement(lexer, list);
+                return true;
             }
-
-            lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_FOR);
-            Node.trimEmptyElement(lexer, list);
         }
 
     }
@@ -1904,126 +2416,160 @@ public final class ParserImpl
     /**
      * Parser for PRE.
      */
-    public static class ParsePre implements Parser
+    public static class ParsePre extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting 
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
+         */
+        ParserFrame newFrame(Node pre, short mode, int nestingLevel)
+        {
+            return new Frame(pre, nestingLevel);
+        }
+
+        /**
+         * State of a pre element being parsed.
          */
-        public void parse(Lexer lexer, Node pre, short mode, int nestingLevel) throws ExcessiveNesting
+        private static final class Frame extends ParserFrame
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
 
-            if ((pre.tag.model & Dict.CM_EMPTY) != 0)
+            /**
+             * the pre element.
+             */
+            private Node pre;
+
+            /**
+             * Instantiates a new frame.
+             * @param pre the pre element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node pre, int nestingLevel)
             {
-                return;
+                super(nestingLevel);
+                this.pre = pre;
             }
 
-            if ((pre.tag.model & Dict.CM_OBSOLETE) != 0)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                Node.coerceNode(lexer, pre, tt.tagPre);
-            }
-
-            lexer.inlineDup(null); // tell lexer to insert inlines if needed
+                Node node;
+                TagTable tt = lexer.configuration.tt;
 
-            while ((node = lexer.getToken(Lexer.PREFORMATTED)) != null)
-            {
-                if (node.tag == pre.tag && node.type == Node.END_TAG)
+                if (state == START)
                 {
-                    Node.trimSpaces(lexer, pre);
-                    pre.closed = true;
-                    Node.trimEmptyElement(lexer, pre);
-                    return;
-                }
+                    if ((pre.tag.model & Dict.CM_EMPTY) != 0)
+                    {
+                        return true;
+                    }
 
-                if (node.tag == tt.tagHtml)
-                {
-                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                    if ((pre.tag.model & Dict.CM_OBSOLETE) != 0)
                     {
-                        lexer.report.warning(lexer, pre, node, Report.DISCARDING_UNEXPECTED);
+                        Node.coerceNode(lexer, pre, tt.tagPre);
                     }
 
-                    continue;
+                    lexer.inlineDup(null); // tell lexer to insert inlines if needed
+                    state = CONTENT;
                 }
 
-                if (node.type == Node.TEXT_NODE)
+                while ((node = lexer.getToken(Lexer.PREFORMATTED)) != null)
                 {
-                    // if first check for inital newline
-                    if (pre.content == null)
+                    if (node.tag == pre.tag && node.type == Node.END_TAG)
                     {
-                        if (node.textarray[node.start] == (byte) '\n')
-                        {
-                            ++node.start;
-                        }
+                        Node.trimSpaces(lexer, pre);
+                        pre.closed = true;
+                        Node.trimEmptyElement(lexer, pre);
+                        return true;
+                    }
 
-                        if (node.start >= node.end)
+                    if (node.tag == tt.tagHtml)
+                    {
+                        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
                         {
-                            continue;
+                            lexer.report.warning(lexer, pre, node, Report.DISCARDING_UNEXPECTED);
                         }
-                    }
 
-                    pre.insertNodeAtEnd(node);
-                    continue;
-                }
+                        continue;
+                    }
 
-                // deal with comments etc.
-                if (Node.insertMisc(pre, node))
-                {
-                    continue;
-                }
+                    if (node.type == Node.TEXT_NODE)
+                    {
+                        // if first check for inital newline
+                        if (pre.content == null)
+                        {
+                            if (node.textarray[node.start] == (byte) '\n')
+                            {
+                                ++node.start;
+                            }
 
-                // strip unexpected tags
-                if (!lexer.preContent(node))
-                {
-                    Node newnode;
+                            if (node.start >= node.end)
+                            {
+                                continue;
+                            }
+                        }
 
-                    lexer.report.warning(lexer, pre, node, Report.UNESCAPED_ELEMENT);
-                    newnode = Node.escapeTag(lexer, node);
-                    pre.insertNodeAtEnd(newnode);
-                    continue;
-                }
+                        pre.insertNodeAtEnd(node);
+                        continue;
+                    }
 
-                if (node.tag == tt.tagP)
-                {
-                    if (node.type == Node.START_TAG)
+                    // deal with comments etc.
+                    if (Node.insertMisc(pre, node))
                     {
-                        lexer.report.warning(lexer, pre, node, Report.USING_BR_INPLACE_OF);
+                        continue;
+                    }
 
-                        // trim white space before <p> in <pre>
-                        Node.trimSpaces(lexer, pre);
+                    // strip unexpected tags
+                    if (!lexer.preContent(node))
+                    {
+                        Node newnode;
 
-                        // coerce both <p> and </p> to <br>
-                        Node.coerceNode(lexer, node, tt.tagBr);
-                        pre.insertNodeAtEnd(node);
+                        lexer.report.warning(lexer, pre, node, Report.UNESCAPED_ELEMENT);
+                        newnode = Node.escapeTag(lexer, node);
+                        pre.insertNodeAtEnd(newnode);
+                        continue;
                     }
-                    else
+
+                    if (node.tag == tt.tagP)
                     {
-                        lexer.report.warning(lexer, pre, node, Report.DISCARDING_UNEXPECTED);
+                        if (node.type == Node.START_TAG)
+                        {
+                            lexer.report.warning(lexer, pre, node, Report.USING_BR_INPLACE_OF);
+
+                            // trim white space before <p> in <pre>
+                            Node.trimSpaces(lexer, pre);
+
+                            // coerce both <p> and </p> to <br>
+                            Node.coerceNode(lexer, node, tt.tagBr);
+                            pre.insertNodeAtEnd(node);
+                        }
+                        else
+                        {
+                            lexer.report.warning(lexer, pre, node, Report.DISCARDING_UNEXPECTED);
+                        }
+                        continue;
                     }
-                    continue;
-                }
 
-                if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
-                {
-                    // trim white space before <br>
-                    if (node.tag == tt.tagBr)
+                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
                     {
-                        Node.trimSpaces(lexer, pre);
+                        // trim white space before <br>
+                        if (node.tag == tt.tagBr)
+                        {
+                            Node.trimSpaces(lexer, pre);
+                        }
+
+                        pre.insertNodeAtEnd(node);
+                        return parseTag(node, Lexer.PREFORMATTED);
                     }
 
-                    pre.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.PREFORMATTED, nestingLevel);
-                    continue;
+                    // discard unexpected tags
+                    lexer.report.warning(lexer, pre, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // discard unexpected tags
-                lexer.report.warning(lexer, pre, node, Report.DISCARDING_UNEXPECTED);
+                lexer.report.warning(lexer, pre, node, Report.MISSING_ENDTAG_FOR);
+                Node.trimEmptyElement(lexer, pre);
+                return true;
             }
-
-            lexer.report.warning(lexer, pre, node, Report.MISSING_ENDTAG_FOR);
-            Node.trimEmptyElement(lexer, pre);
         }
 
     }
@@ -2031,508 +2577,558 @@ public final class ParserImpl
     /**
      * Parser for block elements.
      */
-    public static class ParseBlock implements Parser
+    public static class ParseBlock extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node element, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node element, short mode, int nestingLevel)
         {
-            // element is node created by the lexer upon seeing the start tag, or by the parser when the start tag is
-            // inferred.
-            Node node, parent;
-            boolean checkstack;
-            int istackbase = 0;
-            TagTable tt = lexer.configuration.tt;
+            return new Frame(element, mode, nestingLevel);
+        }
 
-            checkstack = true;
+        /**
+         * State of a block element being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
 
-            if ((element.tag.model & Dict.CM_EMPTY) != 0)
+            /**
+             * the block element.
+             */
+            private Node element;
+
+            /**
+             * content mode.
+             */
+            private short mode;
+
+            /**
+             * whether inline elements on the stack may have to be inserted.
+             */
+            private boolean checkstack;
+
+            /**
+             * inline stack base of the enclosing element, for object elements.
+             */
+            private int istackbase;
+
+            /**
+             * Instantiates a new frame.
+             * @param element the block element
+             * @param mode content mode
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node element, short mode, int nestingLevel)
             {
-                return;
+                super(nestingLevel);
+                this.element = element;
+                this.mode = mode;
             }
 
-            if (element.tag == tt.tagForm && element.isDescendantOf(tt.tagForm))
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                lexer.report.warning(lexer, element, null, Report.ILLEGAL_NESTING);
-            }
+                // element is node created by the lexer upon seeing the start tag, or by the parser when the start tag is
+                // inferred.
+                Node node, parent;
+                TagTable tt = lexer.configuration.tt;
 
-            // InlineDup() asks the lexer to insert inline emphasis tags currently pushed on the istack, but take care
-            // to avoid propagating inline emphasis inside OBJECT or APPLET. For these elements a fresh inline stack
-            // context is created and disposed of upon reaching the end of the element. They thus behave like table
-            // cells in this respect.
-
-            if ((element.tag.model & Dict.CM_OBJECT) != 0)
-            {
-                istackbase = lexer.istackbase;
-                lexer.istackbase = lexer.istack.size();
-            }
+                if (state == START)
+                {
+                    checkstack = true;
 
-            if ((element.tag.model & Dict.CM_MIXED) == 0)
-            {
-                lexer.inlineDup(null);
-            }
+                    if ((element.tag.model & Dict.CM_EMPTY) != 0)
+                    {
+                        return true;
+                    }
 
-            mode = Lexer.IGNORE_WHITESPACE;
+                    if (element.tag == tt.tagForm && element.isDescendantOf(tt.tagForm))
+                    {
+                        lexer.report.warning(lexer, element, null, Report.ILLEGAL_NESTING);
+                    }
 
-            while ((node = lexer.getToken(mode)) != null)
-            {
-            	// Closing unrecognized tags
-            	if(node.tag == null 
-            			&& node.type == Node.END_TAG 
-            			&& element.element.equals(node.element)
-            			&& !lexer.configuration.dropProprietaryTags) {
-            		node.tag = element.tag;
-            	}
-                // end tag for this element
-                if (node.type == Node.END_TAG
-                    && node.tag != null
-                    && (node.tag == element.tag || element.was == node.tag))
-                {
+                    // InlineDup() asks the lexer to insert inline emphasis tags currently pushed on the istack, but take care
+                    // to avoid propagating inline emphasis inside OBJECT or APPLET. For these elements a fresh inline stack
+                    // context is created and disposed of upon reaching the end of the element. They thus behave like table
+                    // cells in this respect.
 
                     if ((element.tag.model & Dict.CM_OBJECT) != 0)
                     {
-                        // pop inline stack
-                        while (lexer.istack.size() > lexer.istackbase)
-                        {
-                            lexer.popInline(null);
-                        }
-                        lexer.istackbase = istackbase;
+                        istackbase = lexer.istackbase;
+                        lexer.istackbase = lexer.istack.size();
                     }
 
-                    element.closed = true;
-                    Node.trimSpaces(lexer, element);
-                    Node.trimEmptyElement(lexer, element);
-                    return;
-                }
-
-                if (node.tag == tt.tagHtml || node.tag == tt.tagHead || node.tag == tt.tagBody)
-                {
-                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                    if ((element.tag.model & Dict.CM_MIXED) == 0)
                     {
-                        lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                        lexer.inlineDup(null);
                     }
 
-                    continue;
+                    mode = Lexer.IGNORE_WHITESPACE;
+                    state = CONTENT;
                 }
 
-                if (node.type == Node.END_TAG)
+                if (lexer.streamer != null)
                 {
-                    if (node.tag == null)
-                    {
-                        lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                    lexer.streamer.flush(element);
+                }
 
-                        continue;
-                    }
-                    else if (node.tag == tt.tagBr)
+                while ((node = lexer.getToken(mode)) != null)
+                {
+                	// Closing unrecognized tags
+                	if(node.tag == null 
+                			&& node.type == Node.END_TAG 
+                			&& element.element.equals(node.element)
+                			&& !lexer.configuration.dropProprietaryTags) {
+                		node.tag = element.tag;
+                	}
+                    // end tag for this element
+                    if (node.type == Node.END_TAG
+                        && node.tag != null
+                        && (node.tag == element.tag || element.was == node.tag))
                     {
-                        node.type = Node.START_TAG;
+
+                        if ((element.tag.model & Dict.CM_OBJECT) != 0)
+                        {
+                            // pop inline stack
+                            while (lexer.istack.size() > lexer.istackbase)
+                            {
+                                lexer.popInline(null);
+                            }
+                            lexer.istackbase = istackbase;
+                        }
+
+                        element.closed = true;
+                        Node.trimSpaces(lexer, element);
+                        Node.trimEmptyElement(lexer, element);
+                        return true;
                     }
-                    else if (node.tag == tt.tagP)
+
+                    if (node.tag == tt.tagHtml || node.tag == tt.tagHead || node.tag == tt.tagBody)
                     {
-                        Node.coerceNode(lexer, node, tt.tagBr);
-                        element.insertNodeAtEnd(node);
-                        node = lexer.inferredTag("br");
+                        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                        {
+                            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                        }
+
+                        continue;
                     }
-                    else
+
+                    if (node.type == Node.END_TAG)
                     {
-                        // if this is the end tag for an ancestor element then infer end tag for this element
+                        if (node.tag == null)
+                        {
+                            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
 
-                        for (parent = element.parent; parent != null; parent = parent.parent)
+                            continue;
+                        }
+                        else if (node.tag == tt.tagBr)
                         {
-                            if (node.tag == parent.tag)
+                            node.type = Node.START_TAG;
+                        }
+                        else if (node.tag == tt.tagP)
+                        {
+                            Node.coerceNode(lexer, node, tt.tagBr);
+                            element.insertNodeAtEnd(node);
+                            node = lexer.inferredTag("br");
+                        }
+                        else
+                        {
+                            // if this is the end tag for an ancestor element then infer end tag for this element
+
+                            for (parent = element.parent; parent != null; parent = parent.parent)
                             {
-                                if ((element.tag.model & Dict.CM_OPT) == 0)
+                                if (node.tag == parent.tag)
                                 {
-                                    lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
-                                }
+                                    if ((element.tag.model & Dict.CM_OPT) == 0)
+                                    {
+                                        lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
+                                    }
 
-                                lexer.ungetToken();
+                                    lexer.ungetToken();
 
-                                if ((element.tag.model & Dict.CM_OBJECT) != 0)
-                                {
-                                    // pop inline stack
-                                    while (lexer.istack.size() > lexer.istackbase)
+                                    if ((element.tag.model & Dict.CM_OBJECT) != 0)
                                     {
-                                        lexer.popInline(null);
+                                        // pop inline stack
+                                        while (lexer.istack.size() > lexer.istackbase)
+                                        {
+                                            lexer.popInline(null);
+                                        }
+                                        lexer.istackbase = istackbase;
                                     }
-                                    lexer.istackbase = istackbase;
-                                }
 
+                                    Node.trimSpaces(lexer, element);
+                                    Node.trimEmptyElement(lexer, element);
+                                    return true;
+                                }
+                            }
+                            // special case </tr> etc. for stuff moved in front of table
+                            if (lexer.exiled && node.tag.model != 0 && (node.tag.model & Dict.CM_TABLE) != 0)
+                            {
+                                lexer.ungetToken();
                                 Node.trimSpaces(lexer, element);
                                 Node.trimEmptyElement(lexer, element);
-                                return;
+                                return true;
                             }
                         }
-                        // special case </tr> etc. for stuff moved in front of table
-                        if (lexer.exiled && node.tag.model != 0 && (node.tag.model & Dict.CM_TABLE) != 0)
-                        {
-                            lexer.ungetToken();
-                            Node.trimSpaces(lexer, element);
-                            Node.trimEmptyElement(lexer, element);
-                            return;
-                        }
                     }
-                }
-
-                // mixed content model permits text
-                if (node.type == Node.TEXT_NODE)
-                {
-                    boolean iswhitenode = false;
 
-                    if (node.type == Node.TEXT_NODE
-                        && node.end <= node.start + 1
-                        && lexer.lexbuf[node.start] == (byte) ' ')
+                    // mixed content model permits text
+                    if (node.type == Node.TEXT_NODE)
                     {
-                        iswhitenode = true;
-                    }
+                        boolean iswhitenode = false;
 
-                    if (lexer.configuration.encloseBlockText && !iswhitenode)
-                    {
-                        lexer.ungetToken();
-                        node = lexer.inferredTag("p");
-                        element.insertNodeAtEnd(node);
-                        parseTag(lexer, node, Lexer.MIXED_CONTENT, nestingLevel);
-                        continue;
-                    }
+                        if (node.type == Node.TEXT_NODE
+                            && node.end <= node.start + 1
+                            && lexer.textBuffer(node)[node.start] == (byte) ' ')
+                        {
+                            iswhitenode = true;
+                        }
 
-                    if (checkstack)
-                    {
-                        checkstack = false;
+                        if (lexer.configuration.encloseBlockText && !iswhitenode)
+                        {
+                            lexer.ungetToken();
+                            node = lexer.inferredTag("p");
+                            element.insertNodeAtEnd(node);
+                            return parseTag(node, Lexer.MIXED_CONTENT);
+                        }
 
-                        if ((element.tag.model & Dict.CM_MIXED) == 0)
+                        if (checkstack)
                         {
-                            if (lexer.inlineDup(node) > 0)
+                            checkstack = false;
+
+                            if ((element.tag.model & Dict.CM_MIXED) == 0)
                             {
-                                continue;
+                                if (lexer.inlineDup(node) > 0)
+                                {
+                                    continue;
+                                }
                             }
                         }
-                    }
-
-                    element.insertNodeAtEnd(node);
-                    mode = Lexer.MIXED_CONTENT;
-
-                    // HTML4 strict doesn't allow mixed content for elements with %block; as their content model
-                    // But only body, map, blockquote, form and noscript have content model %block;
-                    if (element.tag == tt.tagBody
-                        || element.tag == tt.tagMap
-                        || element.tag == tt.tagBlockquote
-                        || element.tag == tt.tagForm
-                        || element.tag == tt.tagNoscript)
-                    {
-                        lexer.constrainVersion(Dict.NOT_HTML40_STRICT);
-                    }
-                    continue;
-                }
-
-                if (Node.insertMisc(element, node))
-                {
-                    continue;
-                }
 
-                // allow PARAM elements?
-                if (node.tag == tt.tagParam)
-                {
-                    if (((element.tag.model & Dict.CM_PARAM) != 0)
-                        && (node.type == Node.START_TAG || node.type == Node.START_END_TAG))
-                    {
                         element.insertNodeAtEnd(node);
+                        mode = Lexer.MIXED_CONTENT;
+
+                        // HTML4 strict doesn't allow mixed content for elements with %block; as their content model
+                        // But only body, map, blockquote, form and noscript have content model %block;
+                        if (element.tag == tt.tagBody
+                            || element.tag == tt.tagMap
+                            || element.tag == tt.tagBlockquote
+                            || element.tag == tt.tagForm
+                            || element.tag == tt.tagNoscript)
+                        {
+                            lexer.constrainVersion(Dict.NOT_HTML40_STRICT);
+                        }
                         continue;
                     }
 
-                    // otherwise discard it
-                    lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
-
-                // allow AREA elements?
-                if (node.tag == tt.tagArea)
-                {
-                    if ((element.tag == tt.tagMap) && (node.type == Node.START_TAG || node.type == Node.START_END_TAG))
+                    if (Node.insertMisc(element, node))
                     {
-                        element.insertNodeAtEnd(node);
                         continue;
                     }
 
-                    // otherwise discard it
-                    lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
-
-                // ignore unknown start/end tags
-                if (node.tag == null)
-                {
-                	if(!lexer.configuration.dropProprietaryTags) {
-                		node.tag = new Dict(node.element, Dict.VERS_ALL, Dict.CM_BLOCK, ParserImpl.BLOCK, null);
-                	} else {
-                		lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
-                	}
-                }
-
-                // Allow Dict.CM_INLINE elements here. Allow Dict.CM_BLOCK elements here unless lexer.excludeBlocks is
-                // yes. LI and DD are special cased. Otherwise infer end tag for this element.
-
-                if ((node.tag.model & Dict.CM_INLINE) == 0)
-                {
-                    if (node.type != Node.START_TAG && node.type != Node.START_END_TAG)
+                    // allow PARAM elements?
+                    if (node.tag == tt.tagParam)
                     {
-                        if (node.tag == tt.tagForm)
+                        if (((element.tag.model & Dict.CM_PARAM) != 0)
+                            && (node.type == Node.START_TAG || node.type == Node.START_END_TAG))
                         {
-                            badForm(lexer);
+                            element.insertNodeAtEnd(node);
+                            continue;
                         }
+
+                        // otherwise discard it
                         lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
                         continue;
                     }
 
-                    // #427671 - Fix by Randy Waki - 10 Aug 00
-                    // If an LI contains an illegal FRAME, FRAMESET, OPTGROUP, or OPTION start tag, discard the start
-                    // tag and let the subsequent content get parsed as content of the enclosing LI. This seems to
-                    // mimic IE and Netscape, and avoids an infinite loop: without this check, ParseBlock (which is
-                    // parsing the LI's content) and ParseList (which is parsing the LI's parent's content) repeatedly
-                    // defer to each other to parse the illegal start tag, each time inferring a missing </li> or <li>
-                    // respectively. NOTE: This check is a bit fragile. It specifically checks for the four tags that
-                    // happen to weave their way through the current series of tests performed by ParseBlock and
-                    // ParseList to trigger the infinite loop.
-
-                    if (element.tag == tt.tagLi)
+                    // allow AREA elements?
+                    if (node.tag == tt.tagArea)
                     {
-                        if (node.tag == tt.tagFrame
-                            || node.tag == tt.tagFrameset
-                            || node.tag == tt.tagOptgroup
-                            || node.tag == tt.tagOption)
+                        if ((element.tag == tt.tagMap) && (node.type == Node.START_TAG || node.type == Node.START_END_TAG))
                         {
-                            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                            element.insertNodeAtEnd(node);
                             continue;
                         }
+
+                        // otherwise discard it
+                        lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
                     }
 
-                    if (element.tag == tt.tagTd || element.tag == tt.tagTh)
+                    // ignore unknown start/end tags
+                    if (node.tag == null)
                     {
-                        // if parent is a table cell, avoid inferring the end of the cell
+                    	if(!lexer.configuration.dropProprietaryTags) {
+                    		node.tag = new Dict(node.element, Dict.VERS_ALL, Dict.CM_BLOCK, ParserImpl.BLOCK, null);
+                    	} else {
+                    		lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                    	}
+                    }
 
-                        if ((node.tag.model & Dict.CM_HEAD) != 0)
+                    // Allow Dict.CM_INLINE elements here. Allow Dict.CM_BLOCK elements here unless lexer.excludeBlocks is
+                    // yes. LI and DD are special cased. Otherwise infer end tag for this element.
+
+                    if ((node.tag.model & Dict.CM_INLINE) == 0)
+                    {
+                        if (node.type != Node.START_TAG && node.type != Node.START_END_TAG)
                         {
-                            moveToHead(lexer, element, node, nestingLevel);
+                            if (node.tag == tt.tagForm)
+                            {
+                                badForm(lexer);
+                            }
+                            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
                             continue;
                         }
 
-                        if ((node.tag.model & Dict.CM_LIST) != 0)
-                        {
-                            lexer.ungetToken();
-                            node = lexer.inferredTag("ul");
-                            node.addClass("noindent");
-                            lexer.excludeBlocks = true;
-                        }
-                        else if ((node.tag.model & Dict.CM_DEFLIST) != 0)
+                        // #427671 - Fix by Randy Waki - 10 Aug 00
+                        // If an LI contains an illegal FRAME, FRAMESET, OPTGROUP, or OPTION start tag, discard the start
+                        // tag and let the subsequent content get parsed as content of the enclosing LI. This seems to
+                        // mimic IE and Netscape, and avoids an infinite loop: without this check, ParseBlock (which is
+                        // parsing the LI's content) and ParseList (which is parsing the LI's parent's content) repeatedly
+                        // defer to each other to parse the illegal start tag, each time inferring a missing </li> or <li>
+                        // respectively. NOTE: This check is a bit fragile. It specifically checks for the four tags that
+                        // happen to weave their way through the current series of tests performed by ParseBlock and
+                        // ParseList to trigger the infinite loop.
+
+                        if (element.tag == tt.tagLi)
                         {
-                            lexer.ungetToken();
-                            node = lexer.inferredTag("dl");
-                            lexer.excludeBlocks = true;
+                            if (node.tag == tt.tagFrame
+                                || node.tag == tt.tagFrameset
+                                || node.tag == tt.tagOptgroup
+                                || node.tag == tt.tagOption)
+                            {
+                                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                                continue;
+                            }
                         }
 
-                        // infer end of current table cell
-                        if ((node.tag.model & Dict.CM_BLOCK) == 0)
-                        {
-                            lexer.ungetToken();
-                            Node.trimSpaces(lexer, element);
-                            Node.trimEmptyElement(lexer, element);
-                            return;
-                        }
-                    }
-                    else if ((node.tag.model & Dict.CM_BLOCK) != 0)
-                    {
-                        if (lexer.excludeBlocks)
+                        if (element.tag == tt.tagTd || element.tag == tt.tagTh)
                         {
-                            if ((element.tag.model & Dict.CM_OPT) == 0)
+                            // if parent is a table cell, avoid inferring the end of the cell
+
+                            if ((node.tag.model & Dict.CM_HEAD) != 0)
                             {
-                                lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
+                                return moveToHead(lexer, element, node);
                             }
 
-                            lexer.ungetToken();
-
-                            if ((element.tag.model & Dict.CM_OBJECT) != 0)
+                            if ((node.tag.model & Dict.CM_LIST) != 0)
                             {
-                                lexer.istackbase = istackbase;
+                                lexer.ungetToken();
+                                node = lexer.inferredTag("ul");
+                                node.addClass("noindent");
+                                lexer.excludeBlocks = true;
+                            }
+                            else if ((node.tag.model & Dict.CM_DEFLIST) != 0)
+                            {
+                                lexer.ungetToken();
+                                node = lexer.inferredTag("dl");
+                                lexer.excludeBlocks = true;
                             }
 
-                            Node.trimSpaces(lexer, element);
-                            Node.trimEmptyElement(lexer, element);
-                            return;
+                            // infer end of current table cell
+                            if ((node.tag.model & Dict.CM_BLOCK) == 0)
+                            {
+                                lexer.ungetToken();
+                                Node.trimSpaces(lexer, element);
+                                Node.trimEmptyElement(lexer, element);
+                                return true;
+                            }
                         }
-                    }
-                    else
-                    {
-                        // things like list items
-
-                        if ((node.tag.model & Dict.CM_HEAD) != 0)
+                        else if ((node.tag.model & Dict.CM_BLOCK) != 0)
                         {
-                            moveToHead(lexer, element, node, nestingLevel);
-                            continue;
-                        }
+                            if (lexer.excludeBlocks)
+                            {
+                                if ((element.tag.model & Dict.CM_OPT) == 0)
+                                {
+                                    lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
+                                }
+
+                                lexer.ungetToken();
+
+                                if ((element.tag.model & Dict.CM_OBJECT) != 0)
+                                {
+                                    lexer.istackbase = istackbase;
+                                }
 
-                        // special case where a form start tag occurs in a tr and is followed by td or th
-                        if (element.tag == tt.tagForm && element.parent.tag == tt.tagTd && element.parent.implicit)
+                                Node.trimSpaces(lexer, element);
+                                Node.trimEmptyElement(lexer, element);
+                                return true;
+                            }
+                        }
+                        else
                         {
-                            if (node.tag == tt.tagTd)
+                            // things like list items
+
+                            if ((node.tag.model & Dict.CM_HEAD) != 0)
                             {
-                                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                                continue;
+                                return moveToHead(lexer, element, node);
                             }
 
-                            if (node.tag == tt.tagTh)
+                            // special case where a form start tag occurs in a tr and is followed by td or th
+                            if (element.tag == tt.tagForm && element.parent.tag == tt.tagTd && element.parent.implicit)
                             {
-                                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-                                node = element.parent;
-                                node.element = "th";
-                                node.tag = tt.tagTh;
-                                continue;
+                                if (node.tag == tt.tagTd)
+                                {
+                                    lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                                    continue;
+                                }
+
+                                if (node.tag == tt.tagTh)
+                                {
+                                    lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+                                    node = element.parent;
+                                    node.element = "th";
+                                    node.tag = tt.tagTh;
+                                    continue;
+                                }
                             }
-                        }
 
-                        if ((element.tag.model & Dict.CM_OPT) == 0 && !element.implicit)
-                        {
-                            lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
-                        }
+                            if ((element.tag.model & Dict.CM_OPT) == 0 && !element.implicit)
+                            {
+                                lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_BEFORE);
+                            }
 
-                        lexer.ungetToken();
+                            lexer.ungetToken();
 
-                        if ((node.tag.model & Dict.CM_LIST) != 0)
-                        {
-                            if (element.parent != null
-                                && element.parent.tag != null
-                                && element.parent.tag.getParser() == LIST)
+                            if ((node.tag.model & Dict.CM_LIST) != 0)
+                            {
+                                if (element.parent != null
+                                    && element.parent.tag != null
+                                    && element.parent.tag.getParser() == LIST)
+                                {
+                                    Node.trimSpaces(lexer, element);
+                                    Node.trimEmptyElement(lexer, element);
+                                    return true;
+                                }
+
+                                node = lexer.inferredTag("ul");
+                                node.addClass("noindent");
+                            }
+                            else if ((node.tag.model & Dict.CM_DEFLIST) != 0)
+                            {
+                                if (element.parent.tag == tt.tagDl)
+                                {
+                                    Node.trimSpaces(lexer, element);
+                                    Node.trimEmptyElement(lexer, element);
+                                    return true;
+                                }
+
+                                node = lexer.inferredTag("dl");
+                            }
+                            else if ((node.tag.model & Dict.CM_TABLE) != 0 || (node.tag.model & Dict.CM_ROW) != 0)
+                            {
+                                node = lexer.inferredTag("table");
+                            }
+                            else if ((element.tag.model & Dict.CM_OBJECT) != 0)
                             {
+                                // pop inline stack
+                                while (lexer.istack.size() > lexer.istackbase)
+                                {
+                                    lexer.popInline(null);
+                                }
+                                lexer.istackbase = istackbase;
                                 Node.trimSpaces(lexer, element);
                                 Node.trimEmptyElement(lexer, element);
-                                return;
-                            }
+                                return true;
 
-                            node = lexer.inferredTag("ul");
-                            node.addClass("noindent");
-                        }
-                        else if ((node.tag.model & Dict.CM_DEFLIST) != 0)
-                        {
-                            if (element.parent.tag == tt.tagDl)
+                            }
+                            else
                             {
                                 Node.trimSpaces(lexer, element);
                                 Node.trimEmptyElement(lexer, element);
-                                return;
+                                return true;
                             }
-
-                            node = lexer.inferredTag("dl");
-                        }
-                        else if ((node.tag.model & Dict.CM_TABLE) != 0 || (node.tag.model & Dict.CM_ROW) != 0)
-                        {
-                            node = lexer.inferredTag("table");
                         }
-                        else if ((element.tag.model & Dict.CM_OBJECT) != 0)
+                    }
+
+                    // parse known element
+                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                    {
+                        if (TidyUtils.toBoolean(node.tag.model & Dict.CM_INLINE))
                         {
-                            // pop inline stack
-                            while (lexer.istack.size() > lexer.istackbase)
+                            // DSR - 27Apr02 ensure we wrap anchors and other inline content
+                            // fgiust: commented out due to [1403105]: java.lang.StackOverflowError in Tidy.parseDOM()
+                            // if (lexer.configuration.encloseBlockText)
+                            // {
+                            // lexer.ungetToken();
+                            // node = lexer.inferredTag("p");
+                            // element.insertNodeAtEnd(node);
+                            // parseTag(lexer, node, Lexer.MIXED_CONTENT);
+                            // continue;
+                            // }
+
+                            if (checkstack && !node.implicit)
                             {
-                                lexer.popInline(null);
+                                checkstack = false;
+
+                                // #431731 - fix by Randy Waki 25 Dec 00
+                                if (!TidyUtils.toBoolean(element.tag.model & Dict.CM_MIXED))
+                                {
+                                    if (lexer.inlineDup(node) > 0)
+                                    {
+                                        continue;
+                                    }
+                                }
                             }
-                            lexer.istackbase = istackbase;
-                            Node.trimSpaces(lexer, element);
-                            Node.trimEmptyElement(lexer, element);
-                            return;
 
+                            mode = Lexer.MIXED_CONTENT;
                         }
                         else
+                        {
+                            checkstack = true;
+                            mode = Lexer.IGNORE_WHITESPACE;
+                        }
+
+                        // trim white space before <br>
+                        if (node.tag == tt.tagBr)
                         {
                             Node.trimSpaces(lexer, element);
-                            Node.trimEmptyElement(lexer, element);
-                            return;
                         }
-                    }
-                }
 
-                // parse known element
-                if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
-                {
-                    if (TidyUtils.toBoolean(node.tag.model & Dict.CM_INLINE))
-                    {
-                        // DSR - 27Apr02 ensure we wrap anchors and other inline content
-                        // fgiust: commented out due to [1403105]: java.lang.StackOverflowError in Tidy.parseDOM()
-                        // if (lexer.configuration.encloseBlockText)
-                        // {
-                        // lexer.ungetToken();
-                        // node = lexer.inferredTag("p");
-                        // element.insertNodeAtEnd(node);
-                        // parseTag(lexer, node, Lexer.MIXED_CONTENT);
-                        // continue;
-                        // }
+                        element.insertNodeAtEnd(node);
 
-                        if (checkstack && !node.implicit)
+                        if (node.implicit)
                         {
-                            checkstack = false;
-
-                            // #431731 - fix by Randy Waki 25 Dec 00
-                            if (!TidyUtils.toBoolean(element.tag.model & Dict.CM_MIXED))
-                            {
-                                if (lexer.inlineDup(node) > 0)
-                                {
-                                    continue;
-                                }
-                            }
+                            lexer.report.warning(lexer, element, node, Report.INSERTING_TAG);
                         }
 
-                        mode = Lexer.MIXED_CONTENT;
-                    }
-                    else
-                    {
-                        checkstack = true;
-                        mode = Lexer.IGNORE_WHITESPACE;
-                    }
-
-                    // trim white space before <br>
-                    if (node.tag == tt.tagBr)
-                    {
-                        Node.trimSpaces(lexer, element);
+                        return parseTag(node, Lexer.IGNORE_WHITESPACE // Lexer.MixedContent
+                        );
                     }
 
-                    element.insertNodeAtEnd(node);
-
-                    if (node.implicit)
+                    // discard unexpected tags
+                    if (node.type == Node.END_TAG)
                     {
-                        lexer.report.warning(lexer, element, node, Report.INSERTING_TAG);
+                        lexer.popInline(node); // if inline end tag
                     }
 
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE // Lexer.MixedContent
-, nestingLevel
-                    );
-                    continue;
+                    lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // discard unexpected tags
-                if (node.type == Node.END_TAG)
+                if ((element.tag.model & Dict.CM_OPT) == 0)
                 {
-                    lexer.popInline(node); // if inline end tag
+                    lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_FOR);
                 }
 
-                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
-            }
-
-            if ((element.tag.model & Dict.CM_OPT) == 0)
-            {
-                lexer.report.warning(lexer, element, node, Report.MISSING_ENDTAG_FOR);
-            }
-
-            if ((element.tag.model & Dict.CM_OBJECT) != 0)
-            {
-                // pop inline stack
-                while (lexer.istack.size() > lexer.istackbase)
+                if ((element.tag.model & Dict.CM_OBJECT) != 0)
                 {
-                    lexer.popInline(null);
+                    // pop inline stack
+                    while (lexer.istack.size() > lexer.istackbase)
+                    {
+                        lexer.popInline(null);
+                    }
+                    lexer.istackbase = istackbase;
                 }
-                lexer.istackbase = istackbase;
-            }
 
-            Node.trimSpaces(lexer, element);
-            Node.trimEmptyElement(lexer, element);
+                Node.trimSpaces(lexer, element);
+                Node.trimEmptyElement(lexer, element);
+                return true;
+            }
         }
 
     }
@@ -2540,131 +3136,190 @@ public final class ParserImpl
     /**
      * Parser for TABLE.
      */
-    public static class ParseTableTag implements Parser
+    public static class ParseTableTag extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node table, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node table, short mode, int nestingLevel)
+        {
+            return new Frame(table, nestingLevel);
+        }
+
+        /**
+         * State of a table element being parsed.
+         */
+        private static final class Frame extends ParserFrame
         {
-            Node node, parent;
-            int istackbase;
-            TagTable tt = lexer.configuration.tt;
 
-            lexer.deferDup();
-            istackbase = lexer.istackbase;
-            lexer.istackbase = lexer.istack.size();
+            /**
+             * parsing an element moved before the table.
+             */
+            private static final int EXILED = 3;
+
+            /**
+             * the table element.
+             */
+            private Node table;
+
+            /**
+             * inline stack base of the enclosing element.
+             */
+            private int istackbase;
+
+            /**
+             * Instantiates a new frame.
+             * @param table the table element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node table, int nestingLevel)
+            {
+                super(nestingLevel);
+                this.table = table;
+            }
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                if (node.tag == table.tag && node.type == Node.END_TAG)
+                Node node, parent;
+                TagTable tt = lexer.configuration.tt;
+
+                if (state == START)
                 {
-                    lexer.istackbase = istackbase;
-                    table.closed = true;
-                    Node.trimEmptyElement(lexer, table);
-                    return;
+                    lexer.deferDup();
+                    istackbase = lexer.istackbase;
+                    lexer.istackbase = lexer.istack.size();
+                    state = CONTENT;
                 }
-
-                // deal with comments etc.
-                if (Node.insertMisc(table, node))
+                else if (state == EXILED)
                 {
-                    continue;
+                    lexer.exiled = false;
+                    state = CONTENT;
                 }
 
-                // discard unknown tags
-                if (node.tag == null && node.type != Node.TEXT_NODE)
+                if (lexer.streamer != null)
                 {
-                    lexer.report.warning(lexer, table, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
+                    lexer.streamer.flush(table);
                 }
 
-                // if TD or TH or text or inline or block then infer <TR>
-
-                if (node.type != Node.END_TAG)
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    if (node.tag == tt.tagTd || node.tag == tt.tagTh || node.tag == tt.tagTable)
+                    if (node.tag == table.tag && node.type == Node.END_TAG)
                     {
-                        lexer.ungetToken();
-                        node = lexer.inferredTag("tr");
-                        lexer.report.warning(lexer, table, node, Report.MISSING_STARTTAG);
+                        lexer.istackbase = istackbase;
+                        table.closed = true;
+                        Node.trimEmptyElement(lexer, table);
+                        return true;
                     }
-                    else if (node.type == Node.TEXT_NODE || (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0)
-                    {
-                        Node.insertNodeBeforeElement(table, node);
-                        lexer.report.warning(lexer, table, node, Report.TAG_NOT_ALLOWED_IN);
-                        lexer.exiled = true;
-
-                        if (!(node.type == Node.TEXT_NODE)) // #427662 - was (!node.type == TextNode) - fix by Young
-                        {
-                            parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
-                        }
 
-                        lexer.exiled = false;
-                        continue;
-                    }
-                    else if ((node.tag.model & Dict.CM_HEAD) != 0)
+                    // deal with comments etc.
+                    if (Node.insertMisc(table, node))
                     {
-                        moveToHead(lexer, table, node, nestingLevel);
                         continue;
                     }
-                }
-
-                // if this is the end tag for an ancestor element then infer end tag for this element
 
-                if (node.type == Node.END_TAG)
-                {
-                    if (node.tag == tt.tagForm) {
-                        badForm(lexer);
+                    // discard unknown tags
+                    if (node.tag == null && node.type != Node.TEXT_NODE)
+                    {
                         lexer.report.warning(lexer, table, node, Report.DISCARDING_UNEXPECTED);
                         continue;
                     }
 
-                    if ((node.tag != null && (node.tag.model & (Dict.CM_TABLE | Dict.CM_ROW)) != 0)
-                        || (node.tag != null && (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0))
+                    // if TD or TH or text or inline or block then infer <TR>
+
+                    if (node.type != Node.END_TAG)
                     {
-                        lexer.report.warning(lexer, table, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
+                        if (node.tag == tt.tagTd || node.tag == tt.tagTh || node.tag == tt.tagTable)
+                        {
+                            lexer.ungetToken();
+                            node = lexer.inferredTag("tr");
+                            lexer.report.warning(lexer, table, node, Report.MISSING_STARTTAG);
+                        }
+                        else if (node.type == Node.TEXT_NODE || (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0)
+                        {
+                            Node.insertNodeBeforeElement(table, node);
+                            lexer.report.warning(lexer, table, node, Report.TAG_NOT_ALLOWED_IN);
+
+                            if (lexer.streamer != null && lexer.streamer.isTableWritten(table))
+                            {
+                                // the start of the table has been printed
+                                lexer.report.warning(lexer, table, node, Report.CONTENT_BEFORE_STREAMED_TABLE);
+                            }
+
+                            lexer.exiled = true;
+
+                            if (!(node.type == Node.TEXT_NODE)) // #427662 - was (!node.type == TextNode) - fix by Young
+                            {
+                                return parseTag(node, Lexer.IGNORE_WHITESPACE, EXILED);
+                            }
+
+                            lexer.exiled = false;
+                            continue;
+                        }
+                        else if ((node.tag.model & Dict.CM_HEAD) != 0)
+                        {
+                            return moveToHead(lexer, table, node);
+                        }
                     }
 
-                    for (parent = table.parent; parent != null; parent = parent.parent)
+                    // if this is the end tag for an ancestor element then infer end tag for this element
+
+                    if (node.type == Node.END_TAG)
                     {
-                        if (node.tag == parent.tag)
+                        if (node.tag == tt.tagForm) {
+                            badForm(lexer);
+                            lexer.report.warning(lexer, table, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+
+                        if ((node.tag != null && (node.tag.model & (Dict.CM_TABLE | Dict.CM_ROW)) != 0)
+                            || (node.tag != null && (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0))
                         {
-                            lexer.report.warning(lexer, table, node, Report.MISSING_ENDTAG_BEFORE);
-                            lexer.ungetToken();
-                            lexer.istackbase = istackbase;
-                            Node.trimEmptyElement(lexer, table);
-                            return;
+                            lexer.report.warning(lexer, table, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+
+                        for (parent = table.parent; parent != null; parent = parent.parent)
+                        {
+                            if (node.tag == parent.tag)
+                            {
+                                lexer.report.warning(lexer, table, node, Report.MISSING_ENDTAG_BEFORE);
+                                lexer.ungetToken();
+                                lexer.istackbase = istackbase;
+                                Node.trimEmptyElement(lexer, table);
+                                return true;
+                            }
                         }
                     }
-                }
 
-                if ((node.tag.model & Dict.CM_TABLE) == 0)
-                {
-                    lexer.ungetToken();
-                    lexer.report.warning(lexer, table, node, Report.TAG_NOT_ALLOWED_IN);
-                    lexer.istackbase = istackbase;
-                    Node.trimEmptyElement(lexer, table);
-                    return;
-                }
+                    if ((node.tag.model & Dict.CM_TABLE) == 0)
+                    {
+                        lexer.ungetToken();
+                        lexer.report.warning(lexer, table, node, Report.TAG_NOT_ALLOWED_IN);
+                        lexer.istackbase = istackbase;
+                        Node.trimEmptyElement(lexer, table);
+                        return true;
+                    }
 
-                if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
-                {
-                    table.insertNodeAtEnd(node);
+                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                    {
+                        table.insertNodeAtEnd(node);
 
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
-                    continue;
+                        return parseTag(node, Lexer.IGNORE_WHITESPACE);
+                    }
+
+                    // discard unexpected text nodes and end tags
+                    lexer.report.warning(lexer, table, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // discard unexpected text nodes and end tags
-                lexer.report.warning(lexer, table, node, Report.DISCARDING_UNEXPECTED);
+                lexer.report.warning(lexer, table, node, Report.MISSING_ENDTAG_FOR);
+                Node.trimEmptyElement(lexer, table);
+                lexer.istackbase = istackbase;
+                return true;
             }
-
-            lexer.report.warning(lexer, table, node, Report.MISSING_ENDTAG_FOR);
-            Node.trimEmptyElement(lexer, table);
-            lexer.istackbase = istackbase;
         }
 
     }
@@ -2672,87 +3327,123 @@ public final class ParserImpl
     /**
      * Parser for COLGROUP.
      */
-    public static class ParseColGroup implements Parser
+    public static class ParseColGroup extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node colgroup, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node colgroup, short mode, int nestingLevel)
+        {
+            return new Frame(colgroup, nestingLevel);
+        }
+
+        /**
+         * State of a colgroup element being parsed.
+         */
+        private static final class Frame extends ParserFrame
         {
-            Node node, parent;
-            TagTable tt = lexer.configuration.tt;
 
-            if ((colgroup.tag.model & Dict.CM_EMPTY) != 0)
+            /**
+             * the colgroup element.
+             */
+            private Node colgroup;
+
+            /**
+             * Instantiates a new frame.
+             * @param colgroup the colgroup element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node colgroup, int nestingLevel)
             {
-                return;
+                super(nestingLevel);
+                this.colgroup = colgroup;
             }
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                if (node.tag == colgroup.tag && node.type == Node.END_TAG)
+                Node node, parent;
+                TagTable tt = lexer.configuration.tt;
+
+                if (state == START)
                 {
-                    colgroup.closed = true;
-                    return;
+                    if ((colgroup.tag.model & Dict.CM_EMPTY) != 0)
+                    {
+                        return true;
+                    }
+                    state = CONTENT;
                 }
 
-                // if this is the end tag for an ancestor element then infer end tag for this element
-
-                if (node.type == Node.END_TAG)
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    if (node.tag == tt.tagForm)
+                    if (node.tag == colgroup.tag && node.type == Node.END_TAG)
                     {
-                        badForm(lexer);
-                        lexer.report.warning(lexer, colgroup, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
+                        colgroup.closed = true;
+                        return true;
                     }
 
-                    for (parent = colgroup.parent; parent != null; parent = parent.parent)
+                    // if this is the end tag for an ancestor element then infer end tag for this element
+
+                    if (node.type == Node.END_TAG)
                     {
+                        if (node.tag == tt.tagForm)
+                        {
+                            badForm(lexer);
+                            lexer.report.warning(lexer, colgroup, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
 
-                        if (node.tag == parent.tag)
+                        for (parent = colgroup.parent; parent != null; parent = parent.parent)
                         {
-                            lexer.ungetToken();
-                            return;
+
+                            if (node.tag == parent.tag)
+                            {
+                                lexer.ungetToken();
+                                return true;
+                            }
                         }
                     }
-                }
 
-                if (node.type == Node.TEXT_NODE)
-                {
-                    lexer.ungetToken();
-                    return;
-                }
+                    if (node.type == Node.TEXT_NODE)
+                    {
+                        lexer.ungetToken();
+                        return true;
+                    }
 
-                // deal with comments etc.
-                if (Node.insertMisc(colgroup, node))
-                {
-                    continue;
-                }
+                    // deal with comments etc.
+                    if (Node.insertMisc(colgroup, node))
+                    {
+                        continue;
+                    }
 
-                // discard unknown tags
-                if (node.tag == null)
-                {
-                    lexer.report.warning(lexer, colgroup, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
+                    // discard unknown tags
+                    if (node.tag == null)
+                    {
+                        lexer.report.warning(lexer, colgroup, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
+                    }
 
-                if (node.tag != tt.tagCol)
-                {
-                    lexer.ungetToken();
-                    return;
-                }
+                    if (node.tag != tt.tagCol)
+                    {
+                        lexer.ungetToken();
+                        return true;
+                    }
 
-                if (node.type == Node.END_TAG)
-                {
-                    lexer.report.warning(lexer, colgroup, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
+                    if (node.type == Node.END_TAG)
+                    {
+                        lexer.report.warning(lexer, colgroup, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
+                    }
+
+                    // node should be <COL>
+                    colgroup.insertNodeAtEnd(node);
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                 }
 
-                // node should be <COL>
-                colgroup.insertNodeAtEnd(node);
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
+                return true;
             }
         }
 
@@ -2761,324 +3452,444 @@ public final class ParserImpl
     /**
      * Parser for ROWGROUP.
      */
-    public static class ParseRowGroup implements Parser
+    public static class ParseRowGroup extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node rowgroup, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node rowgroup, short mode, int nestingLevel)
+        {
+            return new Frame(rowgroup, nestingLevel);
+        }
+
+        /**
+         * State of a row group element being parsed.
+         */
+        private static final class Frame extends ParserFrame
         {
-            Node node, parent;
-            TagTable tt = lexer.configuration.tt;
 
-            if ((rowgroup.tag.model & Dict.CM_EMPTY) != 0)
+            /**
+             * parsing an element moved before the table.
+             */
+            private static final int EXILED = 3;
+
+            /**
+             * the row group element.
+             */
+            private Node rowgroup;
+
+            /**
+             * Instantiates a new frame.
+             * @param rowgroup the row group element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node rowgroup, int nestingLevel)
             {
-                return;
+                super(nestingLevel);
+                this.rowgroup = rowgroup;
             }
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                if (node.tag == rowgroup.tag)
+                Node node, parent;
+                TagTable tt = lexer.configuration.tt;
+
+                if (state == START)
                 {
-                    if (node.type == Node.END_TAG)
+                    if ((rowgroup.tag.model & Dict.CM_EMPTY) != 0)
                     {
-                        rowgroup.closed = true;
-                        Node.trimEmptyElement(lexer, rowgroup);
-                        return;
+                        return true;
                     }
-
-                    lexer.ungetToken();
-                    return;
+                    state = CONTENT;
                 }
-
-                // if </table> infer end tag
-                if (node.tag == tt.tagTable && node.type == Node.END_TAG)
+                else if (state == EXILED)
                 {
-                    lexer.ungetToken();
-                    Node.trimEmptyElement(lexer, rowgroup);
-                    return;
+                    lexer.exiled = false;
+                    state = CONTENT;
                 }
 
-                // deal with comments etc.
-                if (Node.insertMisc(rowgroup, node))
+                if (lexer.streamer != null)
                 {
-                    continue;
+                    lexer.streamer.flush(rowgroup);
                 }
 
-                // discard unknown tags
-                if (node.tag == null && node.type != Node.TEXT_NODE)
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    lexer.report.warning(lexer, rowgroup, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
+                    if (node.tag == rowgroup.tag)
+                    {
+                        if (node.type == Node.END_TAG)
+                        {
+                            rowgroup.closed = true;
+                            Node.trimEmptyElement(lexer, rowgroup);
+                            return true;
+                        }
 
-                // if TD or TH then infer <TR> if text or inline or block move before table if head content move to
-                // head
+                        lexer.ungetToken();
+                        return true;
+                    }
 
-                if (node.type != Node.END_TAG)
-                {
-                    if (node.tag == tt.tagTd || node.tag == tt.tagTh)
+                    // if </table> infer end tag
+                    if (node.tag == tt.tagTable && node.type == Node.END_TAG)
                     {
                         lexer.ungetToken();
-                        node = lexer.inferredTag("tr");
-                        lexer.report.warning(lexer, rowgroup, node, Report.MISSING_STARTTAG);
+                        Node.trimEmptyElement(lexer, rowgroup);
+                        return true;
                     }
-                    else if (node.type == Node.TEXT_NODE || (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0)
-                    {
-                        Node.moveBeforeTable(rowgroup, node, tt);
-                        lexer.report.warning(lexer, rowgroup, node, Report.TAG_NOT_ALLOWED_IN);
-                        lexer.exiled = true;
 
-                        // #427662 was (!node.type == TextNode) fix by Young 04 Aug 00
-                        if (node.type != Node.TEXT_NODE)
-                        {
-                            parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
-                        }
-
-                        lexer.exiled = false;
+                    // deal with comments etc.
+                    if (Node.insertMisc(rowgroup, node))
+                    {
                         continue;
                     }
-                    else if ((node.tag.model & Dict.CM_HEAD) != 0)
+
+                    // discard unknown tags
+                    if (node.tag == null && node.type != Node.TEXT_NODE)
                     {
-                        lexer.report.warning(lexer, rowgroup, node, Report.TAG_NOT_ALLOWED_IN);
-                        moveToHead(lexer, rowgroup, node, nestingLevel);
+                        lexer.report.warning(lexer, rowgroup, node, Report.DISCARDING_UNEXPECTED);
                         continue;
                     }
-                }
-
-                // if this is the end tag for ancestor element then infer end tag for this element
 
-                if (node.type == Node.END_TAG)
-                {
+                    // if TD or TH then infer <TR> if text or inline or block move before table if head content move to
+                    // head
 
-                    if (node.tag == tt.tagForm
-                        || (node.tag != null && (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0))
+                    if (node.type != Node.END_TAG)
                     {
-                        if (node.tag == tt.tagForm)
+                        if (node.tag == tt.tagTd || node.tag == tt.tagTh)
                         {
-                            badForm(lexer);
+                            lexer.ungetToken();
+                            node = lexer.inferredTag("tr");
+                            lexer.report.warning(lexer, rowgroup, node, Report.MISSING_STARTTAG);
+                        }
+                        else if (node.type == Node.TEXT_NODE || (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0)
+                        {
+                            Node.moveBeforeTable(rowgroup, node, tt);
+                            lexer.report.warning(lexer, rowgroup, node, Report.TAG_NOT_ALLOWED_IN);
+
+                            if (lexer.streamer != null && lexer.streamer.isTableWritten(rowgroup))
+                            {
+                                // the start of the table has been printed
+                                lexer.report.warning(lexer, rowgroup, node, Report.CONTENT_BEFORE_STREAMED_TABLE);
+                            }
+
+                            lexer.exiled = true;
+
+                            // #427662 was (!node.type == TextNode) fix by Young 04 Aug 00
+                            if (node.type != Node.TEXT_NODE)
+                            {
+                                return parseTag(node, Lexer.IGNORE_WHITESPACE, EXILED);
+                            }
+
+                            lexer.exiled = false;
+                            continue;
+                        }
+                        else if ((node.tag.model & Dict.CM_HEAD) != 0)
+                        {
+                            lexer.report.warning(lexer, rowgroup, node, Report.TAG_NOT_ALLOWED_IN);
+                            return moveToHead(lexer, rowgroup, node);
                         }
-                        lexer.report.warning(lexer, rowgroup, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
                     }
 
-                    if (node.tag == tt.tagTr || node.tag == tt.tagTd || node.tag == tt.tagTh)
+                    // if this is the end tag for ancestor element then infer end tag for this element
+
+                    if (node.type == Node.END_TAG)
                     {
-                        lexer.report.warning(lexer, rowgroup, node, Report.DISCARDING_UNEXPECTED);
-                        continue;
+
+                        if (node.tag == tt.tagForm
+                            || (node.tag != null && (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0))
+                        {
+                            if (node.tag == tt.tagForm)
+                            {
+                                badForm(lexer);
+                            }
+                            lexer.report.warning(lexer, rowgroup, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+
+                        if (node.tag == tt.tagTr || node.tag == tt.tagTd || node.tag == tt.tagTh)
+                        {
+                            lexer.report.warning(lexer, rowgroup, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+
+                        for (parent = rowgroup.parent; parent != null; parent = parent.parent)
+                        {
+                            if (node.tag == parent.tag)
+                            {
+                                lexer.ungetToken();
+                                Node.trimEmptyElement(lexer, rowgroup);
+                                return true;
+                            }
+                        }
+
                     }
 
-                    for (parent = rowgroup.parent; parent != null; parent = parent.parent)
+                    // if THEAD, TFOOT or TBODY then implied end tag
+
+                    if ((node.tag.model & Dict.CM_ROWGRP) != 0)
                     {
-                        if (node.tag == parent.tag)
+                        if (node.type != Node.END_TAG)
                         {
                             lexer.ungetToken();
-                            Node.trimEmptyElement(lexer, rowgroup);
-                            return;
                         }
-                    }
 
-                }
+                        Node.trimEmptyElement(lexer, rowgroup);
+                        return true;
+                    }
 
-                // if THEAD, TFOOT or TBODY then implied end tag
+                    if (node.type == Node.END_TAG)
+                    {
+                        lexer.report.warning(lexer, rowgroup, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
+                    }
 
-                if ((node.tag.model & Dict.CM_ROWGRP) != 0)
-                {
-                    if (node.type != Node.END_TAG)
+                    if (!(node.tag == tt.tagTr))
                     {
+                        node = lexer.inferredTag("tr");
+                        lexer.report.warning(lexer, rowgroup, node, Report.MISSING_STARTTAG);
                         lexer.ungetToken();
                     }
 
-                    Node.trimEmptyElement(lexer, rowgroup);
-                    return;
-                }
-
-                if (node.type == Node.END_TAG)
-                {
-                    lexer.report.warning(lexer, rowgroup, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
-
-                if (!(node.tag == tt.tagTr))
-                {
-                    node = lexer.inferredTag("tr");
-                    lexer.report.warning(lexer, rowgroup, node, Report.MISSING_STARTTAG);
-                    lexer.ungetToken();
+                    // node should be <TR>
+                    rowgroup.insertNodeAtEnd(node);
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                 }
-
-                // node should be <TR>
-                rowgroup.insertNodeAtEnd(node);
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
+                Node.trimEmptyElement(lexer, rowgroup);
+                return true;
             }
-            Node.trimEmptyElement(lexer, rowgroup);
         }
     }
 
     /**
      * Parser for ROW.
      */
-    public static class ParseRow implements Parser
+    public static class ParseRow extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node row, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node row, short mode, int nestingLevel)
+        {
+            return new Frame(row, nestingLevel);
+        }
+
+        /**
+         * State of a row element being parsed.
+         */
+        private static final class Frame extends ParserFrame
         {
-            Node node, parent;
-            boolean excludeState;
-            TagTable tt = lexer.configuration.tt;
 
-            if ((row.tag.model & Dict.CM_EMPTY) != 0)
+            /**
+             * parsing an element moved before the table.
+             */
+            private static final int EXILED = 3;
+
+            /**
+             * parsing a cell.
+             */
+            private static final int CELL = 4;
+
+            /**
+             * the row element.
+             */
+            private Node row;
+
+            /**
+             * excludeBlocks of the lexer, restored after a cell.
+             */
+            private boolean excludeState;
+
+            /**
+             * Instantiates a new frame.
+             * @param row the row element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node row, int nestingLevel)
             {
-                return;
+                super(nestingLevel);
+                this.row = row;
             }
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                if (node.tag == row.tag)
+                Node node, parent;
+                TagTable tt = lexer.configuration.tt;
+
+                if (state == START)
                 {
-                    if (node.type == Node.END_TAG)
+                    if ((row.tag.model & Dict.CM_EMPTY) != 0)
                     {
-                        row.closed = true;
-                        Node.fixEmptyRow(lexer, row);
-                        return;
+                        return true;
                     }
+                    state = CONTENT;
+                }
+                else if (state == EXILED)
+                {
+                    lexer.exiled = false;
+                    state = CONTENT;
+                }
+                else if (state == CELL)
+                {
+                    lexer.excludeBlocks = excludeState;
 
-                    lexer.ungetToken();
-                    Node.fixEmptyRow(lexer, row);
-                    return;
+                    // pop inline stack
+
+                    while (lexer.istack.size() > lexer.istackbase)
+                    {
+                        lexer.popInline(null);
+                    }
+                    state = CONTENT;
                 }
 
-                // if this is the end tag for an ancestor element then infer end tag for this element
-                if (node.type == Node.END_TAG)
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                	if (((node.tag != null && (node.tag.model & (Dict.CM_HTML | Dict.CM_TABLE)) != 0)
-                			|| node.tag == tt.tagTable)
-                            && row.isDescendantOf(node.tag)) {
-                		lexer.ungetToken();
-                		return;
-                	}
-                	
-                    if (node.tag == tt.tagForm
-                        || (node.tag != null && (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0))
+                    if (node.tag == row.tag)
                     {
-                        if (node.tag == tt.tagForm)
+                        if (node.type == Node.END_TAG)
                         {
-                            badForm(lexer);
+                            row.closed = true;
+                            Node.fixEmptyRow(lexer, row);
+                            return true;
+                        }
+
+                        lexer.ungetToken();
+                        Node.fixEmptyRow(lexer, row);
+                        return true;
+                    }
+
+                    // if this is the end tag for an ancestor element then infer end tag for this element
+                    if (node.type == Node.END_TAG)
+                    {
+                    	if (((node.tag != null && (node.tag.model & (Dict.CM_HTML | Dict.CM_TABLE)) != 0)
+                    			|| node.tag == tt.tagTable)
+                                && row.isDescendantOf(node.tag)) {
+                    		lexer.ungetToken();
+                    		return true;
+                    	}
+                	
+                        if (node.tag == tt.tagForm
+                            || (node.tag != null && (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0))
+                        {
+                            if (node.tag == tt.tagForm)
+                            {
+                                badForm(lexer);
+                            }
+                            lexer.report.warning(lexer, row, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+
+                        if (node.tag == tt.tagTd || node.tag == tt.tagTh)
+                        {
+                            lexer.report.warning(lexer, row, node, Report.DISCARDING_UNEXPECTED);
+                            continue;
+                        }
+
+                        for (parent = row.parent; parent != null; parent = parent.parent)
+                        {
+                            if (node.tag == parent.tag)
+                            {
+                                lexer.ungetToken();
+                                Node.trimEmptyElement(lexer, row);
+                                return true;
+                            }
                         }
+                    }
+
+                    // deal with comments etc.
+                    if (Node.insertMisc(row, node))
+                    {
+                        continue;
+                    }
+
+                    // discard unknown tags
+                    if (node.tag == null && node.type != Node.TEXT_NODE)
+                    {
+                        lexer.report.warning(lexer, row, node, Report.DISCARDING_UNEXPECTED);
+                        continue;
+                    }
+
+                    // discard unexpected <table> element
+                    if (node.tag == tt.tagTable)
+                    {
                         lexer.report.warning(lexer, row, node, Report.DISCARDING_UNEXPECTED);
                         continue;
                     }
 
-                    if (node.tag == tt.tagTd || node.tag == tt.tagTh)
+                    // THEAD, TFOOT or TBODY
+                    if (node.tag != null && (node.tag.model & Dict.CM_ROWGRP) != 0)
+                    {
+                        lexer.ungetToken();
+                        Node.trimEmptyElement(lexer, row);
+                        return true;
+                    }
+
+                    if (node.type == Node.END_TAG)
                     {
                         lexer.report.warning(lexer, row, node, Report.DISCARDING_UNEXPECTED);
                         continue;
                     }
 
-                    for (parent = row.parent; parent != null; parent = parent.parent)
+                    // if text or inline or block move before table if head content move to head
+
+                    if (node.type != Node.END_TAG)
                     {
-                        if (node.tag == parent.tag)
+                        if (node.tag == tt.tagForm)
                         {
                             lexer.ungetToken();
-                            Node.trimEmptyElement(lexer, row);
-                            return;
+                            node = lexer.inferredTag("td");
+                            lexer.report.warning(lexer, row, node, Report.MISSING_STARTTAG);
                         }
-                    }
-                }
-
-                // deal with comments etc.
-                if (Node.insertMisc(row, node))
-                {
-                    continue;
-                }
-
-                // discard unknown tags
-                if (node.tag == null && node.type != Node.TEXT_NODE)
-                {
-                    lexer.report.warning(lexer, row, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
-
-                // discard unexpected <table> element
-                if (node.tag == tt.tagTable)
-                {
-                    lexer.report.warning(lexer, row, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
-
-                // THEAD, TFOOT or TBODY
-                if (node.tag != null && (node.tag.model & Dict.CM_ROWGRP) != 0)
-                {
-                    lexer.ungetToken();
-                    Node.trimEmptyElement(lexer, row);
-                    return;
-                }
+                        else if (node.type == Node.TEXT_NODE || (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0)
+                        {
+                            Node.moveBeforeTable(row, node, tt);
+                            lexer.report.warning(lexer, row, node, Report.TAG_NOT_ALLOWED_IN);
 
-                if (node.type == Node.END_TAG)
-                {
-                    lexer.report.warning(lexer, row, node, Report.DISCARDING_UNEXPECTED);
-                    continue;
-                }
+                            if (lexer.streamer != null && lexer.streamer.isTableWritten(row))
+                            {
+                                // the start of the table has been printed
+                                lexer.report.warning(lexer, row, node, Report.CONTENT_BEFORE_STREAMED_TABLE);
+                            }
 
-                // if text or inline or block move before table if head content move to head
+                            lexer.exiled = true;
 
-                if (node.type != Node.END_TAG)
-                {
-                    if (node.tag == tt.tagForm)
-                    {
-                        lexer.ungetToken();
-                        node = lexer.inferredTag("td");
-                        lexer.report.warning(lexer, row, node, Report.MISSING_STARTTAG);
-                    }
-                    else if (node.type == Node.TEXT_NODE || (node.tag.model & (Dict.CM_BLOCK | Dict.CM_INLINE)) != 0)
-                    {
-                        Node.moveBeforeTable(row, node, tt);
-                        lexer.report.warning(lexer, row, node, Report.TAG_NOT_ALLOWED_IN);
-                        lexer.exiled = true;
+                            if (node.type != Node.TEXT_NODE)
+                            {
+                                return parseTag(node, Lexer.IGNORE_WHITESPACE, EXILED);
+                            }
 
-                        if (node.type != Node.TEXT_NODE)
+                            lexer.exiled = false;
+                            continue;
+                        }
+                        else if ((node.tag.model & Dict.CM_HEAD) != 0)
                         {
-                            parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
+                            lexer.report.warning(lexer, row, node, Report.TAG_NOT_ALLOWED_IN);
+                            return moveToHead(lexer, row, node);
                         }
-
-                        lexer.exiled = false;
-                        continue;
                     }
-                    else if ((node.tag.model & Dict.CM_HEAD) != 0)
+
+                    if (!(node.tag == tt.tagTd || node.tag == tt.tagTh))
                     {
                         lexer.report.warning(lexer, row, node, Report.TAG_NOT_ALLOWED_IN);
-                        moveToHead(lexer, row, node, nestingLevel);
                         continue;
                     }
-                }
 
-                if (!(node.tag == tt.tagTd || node.tag == tt.tagTh))
-                {
-                    lexer.report.warning(lexer, row, node, Report.TAG_NOT_ALLOWED_IN);
-                    continue;
+                    // node should be <TD> or <TH>
+                    row.insertNodeAtEnd(node);
+                    excludeState = lexer.excludeBlocks;
+                    lexer.excludeBlocks = false;
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE, CELL);
                 }
 
-                // node should be <TD> or <TH>
-                row.insertNodeAtEnd(node);
-                excludeState = lexer.excludeBlocks;
-                lexer.excludeBlocks = false;
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
-                lexer.excludeBlocks = excludeState;
-
-                // pop inline stack
-
-                while (lexer.istack.size() > lexer.istackbase)
-                {
-                    lexer.popInline(null);
-                }
+                Node.trimEmptyElement(lexer, row);
+                return true;
             }
-
-            Node.trimEmptyElement(lexer, row);
         }
 
     }
@@ -3086,115 +3897,164 @@ public final class ParserImpl
     /**
      * Parser for NOFRAMES.
      */
-    public static class ParseNoFrames implements Parser
+    public static class ParseNoFrames extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node noframes, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node noframes, short mode, int nestingLevel)
+        {
+            return new Frame(noframes, nestingLevel);
+        }
+
+        /**
+         * State of a noframes element being parsed.
+         */
+        private static final class Frame extends ParserFrame
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
 
-            lexer.badAccess |= Report.USING_NOFRAMES;
-            mode = Lexer.IGNORE_WHITESPACE;
+            /**
+             * parsing a body element seen after the end of the body.
+             */
+            private static final int LATE_BODY = 3;
+
+            /**
+             * the noframes element.
+             */
+            private Node noframes;
+
+            /**
+             * body element seen after the end of the body, moved there once parsed.
+             */
+            private Node lateBody;
+
+            /**
+             * Instantiates a new frame.
+             * @param noframes the noframes element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node noframes, int nestingLevel)
+            {
+                super(nestingLevel);
+                this.noframes = noframes;
+            }
 
-            while ((node = lexer.getToken(mode)) != null)
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
             {
-                if (node.tag == noframes.tag && node.type == Node.END_TAG)
+                Node node;
+                short mode = Lexer.IGNORE_WHITESPACE;
+                TagTable tt = lexer.configuration.tt;
+
+                if (state == START)
                 {
-                    noframes.closed = true;
-                    Node.trimSpaces(lexer, noframes);
-                    return;
+                    lexer.badAccess |= Report.USING_NOFRAMES;
+                    state = CONTENT;
                 }
-
-                if ((node.tag == tt.tagFrame || node.tag == tt.tagFrameset))
+                else if (state == LATE_BODY)
                 {
+                    Node.coerceNode(lexer, lateBody, tt.tagDiv);
+                    moveNodeToBody(lexer, lateBody);
+                    lateBody = null;
+                    state = CONTENT;
+                }
 
-                    Node.trimSpaces(lexer, noframes);
-
-                    // fix for [539369]
-                    if (node.type == Node.END_TAG)
+                while ((node = lexer.getToken(mode)) != null)
+                {
+                    if (node.tag == noframes.tag && node.type == Node.END_TAG)
                     {
-                        lexer.report.warning(lexer, noframes, node, Report.DISCARDING_UNEXPECTED);
-                        // Throw it away
+                        noframes.closed = true;
+                        Node.trimSpaces(lexer, noframes);
+                        return true;
                     }
-                    else
+
+                    if ((node.tag == tt.tagFrame || node.tag == tt.tagFrameset))
                     {
-                        lexer.report.warning(lexer, noframes, node, Report.MISSING_ENDTAG_BEFORE);
 
-                        lexer.ungetToken();
-                    }
-                    return;
-                }
+                        Node.trimSpaces(lexer, noframes);
 
-                if (node.tag == tt.tagHtml)
-                {
-                    if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
-                    {
-                        lexer.report.warning(lexer, noframes, node, Report.DISCARDING_UNEXPECTED);
-                    }
+                        // fix for [539369]
+                        if (node.type == Node.END_TAG)
+                        {
+                            lexer.report.warning(lexer, noframes, node, Report.DISCARDING_UNEXPECTED);
+                            // Throw it away
+                        }
+                        else
+                        {
+                            lexer.report.warning(lexer, noframes, node, Report.MISSING_ENDTAG_BEFORE);
 
-                    continue;
-                }
+                            lexer.ungetToken();
+                        }
+                        return true;
+                    }
 
-                // deal with comments etc.
-                if (Node.insertMisc(noframes, node))
-                {
-                    continue;
-                }
+                    if (node.tag == tt.tagHtml)
+                    {
+                        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+                        {
+                            lexer.report.warning(lexer, noframes, node, Report.DISCARDING_UNEXPECTED);
+                        }
 
-                if (node.tag == tt.tagBody && node.type == Node.START_TAG)
-                {
-                    boolean seenbody = lexer.seenEndBody;
-                    noframes.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel); // MixedContent
+                        continue;
+                    }
 
-                    if (seenbody)
+                    // deal with comments etc.
+                    if (Node.insertMisc(noframes, node))
                     {
-                        Node.coerceNode(lexer, node, tt.tagDiv);
-                        moveNodeToBody(lexer, node);
+                        continue;
                     }
-                    continue;
-                }
 
-                // implicit body element inferred
-                if (node.type == Node.TEXT_NODE || (node.tag != null && node.type != Node.END_TAG))
-                {
-                    if (lexer.seenEndBody)
+                    if (node.tag == tt.tagBody && node.type == Node.START_TAG)
                     {
-                        Node body = lexer.root.findBody(tt);
+                        boolean seenbody = lexer.seenEndBody;
+                        noframes.insertNodeAtEnd(node);
 
-                        if (node.type == Node.TEXT_NODE)
+                        if (seenbody)
                         {
-                            lexer.ungetToken();
-                            node = lexer.inferredTag("p");
-                            lexer.report.warning(lexer, noframes, node, Report.CONTENT_AFTER_BODY);
+                            lateBody = node;
+                            return parseTag(node, Lexer.IGNORE_WHITESPACE, LATE_BODY); // MixedContent
                         }
-
-                        body.insertNodeAtEnd(node);
+                        return parseTag(node, Lexer.IGNORE_WHITESPACE); // MixedContent
                     }
-                    else
+
+                    // implicit body element inferred
+                    if (node.type == Node.TEXT_NODE || (node.tag != null && node.type != Node.END_TAG))
                     {
-                        lexer.ungetToken();
-                        node = lexer.inferredTag("body");
-                        if (lexer.configuration.xmlOut)
+                        if (lexer.seenEndBody)
+                        {
+                            Node body = lexer.root.findBody(tt);
+
+                            if (node.type == Node.TEXT_NODE)
+                            {
+                                lexer.ungetToken();
+                                node = lexer.inferredTag("p");
+                                lexer.report.warning(lexer, noframes, node, Report.CONTENT_AFTER_BODY);
+                            }
+
+                            body.insertNodeAtEnd(node);
+                        }
+                        else
                         {
-                            lexer.report.warning(lexer, noframes, node, Report.INSERTING_TAG);
+                            lexer.ungetToken();
+                            node = lexer.inferredTag("body");
+                            if (lexer.configuration.xmlOut)
+                            {
+                                lexer.report.warning(lexer, noframes, node, Report.INSERTING_TAG);
+                            }
+                            noframes.insertNodeAtEnd(node);
                         }
-                        noframes.insertNodeAtEnd(node);
+                        return parseTag(node, Lexer.IGNORE_WHITESPACE); // MixedContent
                     }
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
-                    // MixedContent
-                    continue;
+                    // discard unexpected end tags
+                    lexer.report.warning(lexer, noframes, node, Report.DISCARDING_UNEXPECTED);
                 }
-                // discard unexpected end tags
-                lexer.report.warning(lexer, noframes, node, Report.DISCARDING_UNEXPECTED);
-            }
 
-            lexer.report.warning(lexer, noframes, node, Report.MISSING_ENDTAG_FOR);
+                lexer.report.warning(lexer, noframes, node, Report.MISSING_ENDTAG_FOR);
+                return true;
+            }
         }
 
     }
@@ -3202,48 +4062,82 @@ public final class ParserImpl
     /**
      * Parser for SELECT.
      */
-    public static class ParseSelect implements Parser
+    public static class ParseSelect extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node field, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node field, short mode, int nestingLevel)
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
+            return new Frame(field, nestingLevel);
+        }
 
-            lexer.insert = -1; // defer implicit inline start tags
+        /**
+         * State of a select element being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * the select element.
+             */
+            private Node field;
+
+            /**
+             * Instantiates a new frame.
+             * @param field the select element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node field, int nestingLevel)
             {
-                if (node.tag == field.tag && node.type == Node.END_TAG)
-                {
-                    field.closed = true;
-                    Node.trimSpaces(lexer, field);
-                    return;
-                }
+                super(nestingLevel);
+                this.field = field;
+            }
 
-                // deal with comments etc.
-                if (Node.insertMisc(field, node))
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
+            {
+                Node node;
+                TagTable tt = lexer.configuration.tt;
+
+                if (state == START)
                 {
-                    continue;
+                    lexer.insert = -1; // defer implicit inline start tags
+                    state = CONTENT;
                 }
 
-                if (node.type == Node.START_TAG
-                    && (node.tag == tt.tagOption || node.tag == tt.tagOptgroup || node.tag == tt.tagScript))
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    field.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE, nestingLevel);
-                    continue;
+                    if (node.tag == field.tag && node.type == Node.END_TAG)
+                    {
+                        field.closed = true;
+                        Node.trimSpaces(lexer, field);
+                        return true;
+                    }
+
+                    // deal with comments etc.
+                    if (Node.insertMisc(field, node))
+                    {
+                        continue;
+                    }
+
+                    if (node.type == Node.START_TAG
+                        && (node.tag == tt.tagOption || node.tag == tt.tagOptgroup || node.tag == tt.tagScript))
+                    {
+                        field.insertNodeAtEnd(node);
+                        return parseTag(node, Lexer.IGNORE_WHITESPACE);
+                    }
+
+                    // discard unexpected tags
+                    lexer.report.warning(lexer, field, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // discard unexpected tags
-                lexer.report.warning(lexer, field, node, Report.DISCARDING_UNEXPECTED);
+                lexer.report.warning(lexer, field, node, Report.MISSING_ENDTAG_FOR);
+                return true;
             }
-
-            lexer.report.warning(lexer, field, node, Report.MISSING_ENDTAG_FOR);
         }
 
     }
@@ -3337,49 +4231,84 @@ public final class ParserImpl
     /**
      * Parser for OPTGROUP.
      */
-    public static class ParseOptGroup implements Parser
+    public static class ParseOptGroup extends StackParser
     {
 
         /**
-         * @throws ExcessiveNesting When excessive nesting is detected.
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short, int)
+         * @see org.w3c.tidy.ParserImpl.StackParser#newFrame(org.w3c.tidy.Node, short, int)
          */
-        public void parse(Lexer lexer, Node field, short mode, int nestingLevel) throws ExcessiveNesting
+        ParserFrame newFrame(Node field, short mode, int nestingLevel)
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
+            return new Frame(field, nestingLevel);
+        }
 
-            lexer.insert = -1; // defer implicit inline start tags
+        /**
+         * State of an optgroup element being parsed.
+         */
+        private static final class Frame extends ParserFrame
+        {
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            /**
+             * the optgroup element.
+             */
+            private Node field;
+
+            /**
+             * Instantiates a new frame.
+             * @param field the optgroup element
+             * @param nestingLevel nesting level of the element
+             */
+            Frame(Node field, int nestingLevel)
             {
-                if (node.tag == field.tag && node.type == Node.END_TAG)
-                {
-                    field.closed = true;
-                    Node.trimSpaces(lexer, field);
-                    return;
-                }
+                super(nestingLevel);
+                this.field = field;
+            }
 
-                // deal with comments etc.
-                if (Node.insertMisc(field, node))
+            /**
+             * @see org.w3c.tidy.ParserImpl.ParserFrame#parse(org.w3c.tidy.Lexer)
+             */
+            boolean parse(Lexer lexer)
+            {
+                Node node;
+                TagTable tt = lexer.configuration.tt;
+
+                if (state == START)
                 {
-                    continue;
+                    lexer.insert = -1; // defer implicit inline start tags
+                    state = CONTENT;
                 }
 
-                if (node.type == Node.START_TAG && (node.tag == tt.tagOption || node.tag == tt.tagOptgroup))
+                while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
                 {
-                    if (node.tag == tt.tagOptgroup)
+                    if (node.tag == field.tag && node.type == Node.END_TAG)
                     {
-                        lexer.report.warning(lexer, field, node, Report.CANT_BE_NESTED);
+                        field.closed = true;
+                        Node.trimSpaces(lexer, field);
+                        return true;
                     }
 
-                    field.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.MIXED_CONTENT, nestingLevel);
-                    continue;
+                    // deal with comments etc.
+                    if (Node.insertMisc(field, node))
+                    {
+                        continue;
+                    }
+
+                    if (node.type == Node.START_TAG && (node.tag == tt.tagOption || node.tag == tt.tagOptgroup))
+                    {
+                        if (node.tag == tt.tagOptgroup)
+                        {
+                            lexer.report.warning(lexer, field, node, Report.CANT_BE_NESTED);
+                        }
+
+                        field.insertNodeAtEnd(node);
+                        return parseTag(node, Lexer.MIXED_CONTENT);
+                    }
+
+                    // discard unexpected tags
+                    lexer.report.warning(lexer, field, node, Report.DISCARDING_UNEXPECTED);
                 }
 
-                // discard unexpected tags
-                lexer.report.warning(lexer, field, node, Report.DISCARDING_UNEXPECTED);
+                return true;
             }
         }
 
@@ -3469,6 +4398,12 @@ public final class ParserImpl
             lexer.report.warning(lexer, head, null, Report.MISSING_TITLE_ELEMENT);
             head.insertNodeAtEnd(lexer.inferredTag("title"));
         }
+        else if (lexer.streamer != null && lexer.streamer.hasInferredTitle())
+        {
+            // inserted when the head was printed
+            Node head = lexer.root.findHEAD(lexer.configuration.tt);
+            lexer.report.warning(lexer, head, null, Report.MISSING_TITLE_ELEMENT);
+        }
 
         return document;
     }
@@ -3524,7 +4459,8 @@ public final class ParserImpl
     }
 
     /**
-     * Parse XML element.
+     * Parse XML element. Child elements are parsed in the same loop, walking down to them and back up through their
+     * parent, rather than by recursing.
      * @param lexer the Lexer to use
      * @param element the element to parse
      * @param mode the mode to use
@@ -3532,70 +4468,102 @@ public final class ParserImpl
     public static void parseXMLElement(Lexer lexer, Node element, short mode)
     {
         Node node;
+        short outerMode = mode;
+        int depth = 0; // of the element being parsed, below the one passed in
+        int preformattedDepth = -1; // of the element which made content preformatted
 
         // if node is pre or has xml:space="preserve" then do so
 
         if (XMLPreserveWhiteSpace(element, lexer.configuration.tt))
         {
             mode = Lexer.PREFORMATTED;
+            preformattedDepth = 0;
         }
 
-        while ((node = lexer.getToken(mode)) != null)
+        while (true)
         {
-            if (node.type == Node.END_TAG && node.element.equals(element.element))
+            while ((node = lexer.getToken(mode)) != null)
             {
-                element.closed = true;
-                break;
-            }
+                if (node.type == Node.END_TAG && node.element.equals(element.element))
+                {
+                    element.closed = true;
+                    break;
+                }
 
-            // discard unexpected end tags
-            if (node.type == Node.END_TAG)
-            {
-                lexer.report.error(lexer, element, node, Report.UNEXPECTED_ENDTAG);
-                continue;
-            }
+                // discard unexpected end tags
+                if (node.type == Node.END_TAG)
+                {
+                    lexer.report.error(lexer, element, node, Report.UNEXPECTED_ENDTAG);
+                    continue;
+                }
 
-            // parse content on seeing start tag
-            if (node.type == Node.START_TAG)
-            {
-                parseXMLElement(lexer, node, mode);
-            }
+                element.insertNodeAtEnd(node);
 
-            element.insertNodeAtEnd(node);
-        }
+                // parse content on seeing start tag
+                if (node.type == Node.START_TAG)
+                {
+                    element = node;
+                    depth++;
+                    if (depth > lexer.maxNestingLevel)
+                    {
+                        lexer.maxNestingLevel = depth;
+                    }
+
+                    if (mode != Lexer.PREFORMATTED && XMLPreserveWhiteSpace(element, lexer.configuration.tt))
+                    {
+                        mode = Lexer.PREFORMATTED;
+                        preformattedDepth = depth;
+                    }
+                }
+            }
 
-        // if first child is text then trim initial space and delete text node if it is empty.
+            // if first child is text then trim initial space and delete text node if it is empty.
 
-        node = element.content;
+            node = element.content;
 
-        if (node != null && node.type == Node.TEXT_NODE && mode != Lexer.PREFORMATTED)
-        {
-            if (node.textarray[node.start] == (byte) ' ')
+            if (node != null && node.type == Node.TEXT_NODE && mode != Lexer.PREFORMATTED)
             {
-                node.start++;
-
-                if (node.start >= node.end)
+                if (node.textarray[node.start] == (byte) ' ')
                 {
-                    Node.discardElement(node);
+                    node.start++;
+
+                    if (node.start >= node.end)
+                    {
+                        Node.discardElement(node);
+                    }
                 }
             }
-        }
 
-        // if last child is text then trim final space and delete the text node if it is empty
+            // if last child is text then trim final space and delete the text node if it is empty
 
-        node = element.last;
+            node = element.last;
 
-        if (node != null && node.type == Node.TEXT_NODE && mode != Lexer.PREFORMATTED)
-        {
-            if (node.textarray[node.end - 1] == (byte) ' ')
+            if (node != null && node.type == Node.TEXT_NODE && mode != Lexer.PREFORMATTED)
             {
-                node.end--;
-
-                if (node.start >= node.end)
+                if (node.textarray[node.end - 1] == (byte) ' ')
                 {
-                    Node.discardElement(node);
+                    node.end--;
+
+                    if (node.start >= node.end)
+                    {
+                        Node.discardElement(node);
+                    }
                 }
             }
+
+            if (depth == 0)
+            {
+                return;
+            }
+
+            if (depth == preformattedDepth)
+            {
+                mode = outerMode;
+                preformattedDepth = -1;
+            }
+
+            element = element.parent;
+            depth--;
         }
     }
 
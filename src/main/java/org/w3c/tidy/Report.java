@@ -357,6 +357,16 @@ public final class Report
      */
     public static final short COERCE_TO_ENDTAG_WARN = 85;
 
+    /**
+     * head content or body attributes found after the start of a streamed document has been printed.
+     */
+    public static final short CONTENT_AFTER_STREAMED_HEAD = 86;
+
+    /**
+     * content moved before a table whose start has been printed while streaming.
+     */
+    public static final short CONTENT_BEFORE_STREAMED_TABLE = 87;
+
     /**
      * attribute: unknown attribute.
      */
@@ -647,11 +657,38 @@ public final class Report
      */
     private TidyMessageListener listener;
 
+    /**
+     * message filter for error reporting.
+     */
+    private TidyMessageFilter filter;
+
+    /**
+     * cached "line_column" position format.
+     */
+    private MessageFormat lineColumnFormat;
+
+    /**
+     * cached "emacs_format" position format.
+     */
+    private MessageFormat emacsFormat;
+
+    /**
+     * prefix for error messages.
+     */
+    private static final String ERROR_PREFIX;
+
+    /**
+     * prefix for warning messages.
+     */
+    private static final String WARNING_PREFIX;
+
     static
     {
         try
         {
             res = ResourceBundle.getBundle("org/w3c/tidy/TidyMessages");
+            ERROR_PREFIX = res.getString("error");
+            WARNING_PREFIX = res.getString("warning");
         }
         catch (MissingResourceException e)
         {
@@ -688,8 +725,7 @@ public final class Report
     protected String getMessage(int errorCode, Lexer lexer, String message, Object[] params, Level level)
         throws MissingResourceException
     {
-        String resource;
-        resource = res.getString(message);
+        String messageString = formatMessage(message, params);
 
         String position;
 
@@ -706,37 +742,66 @@ public final class Report
 
         if (level == Level.ERROR)
         {
-            prefix = res.getString("error");
+            prefix = ERROR_PREFIX;
         }
         else if (level == Level.WARNING)
         {
-            prefix = res.getString("warning");
+            prefix = WARNING_PREFIX;
         }
         else
         {
             prefix = "";
         }
 
-        String messageString;
+        return position + prefix + messageString;
+    }
 
+    /**
+     * Formats the text of a message, without position and prefix.
+     * @param message key for the ResourceBundle
+     * @param params optional parameters added with MessageFormat
+     * @return formatted text
+     * @throws MissingResourceException if <code>message</code> key is not available in jtidy resource bundle.
+     */
+    static String formatMessage(String message, Object[] params) throws MissingResourceException
+    {
+        String resource = res.getString(message);
         if (params != null)
         {
-            messageString = MessageFormat.format(resource, params);
+            return MessageFormat.format(resource, params);
         }
-        else
+        return resource;
+    }
+
+    /**
+     * Passes a message to the listener and filter, if any. The message text is not formatted here: a
+     * <code>TidyMessage</code> only formats it when asked for.
+     * @param errorCode tidy error code
+     * @param lexer Lexer, can be null
+     * @param message key for the ResourceBundle
+     * @param params optional parameters added with MessageFormat
+     * @param level message level
+     * @return <code>false</code> if the filter dropped the message, so that it must not be printed
+     */
+    private boolean dispatchMessage(int errorCode, Lexer lexer, String message, Object[] params, Level level)
+    {
+        if (listener == null && filter == null)
         {
-            messageString = resource;
+            return true;
         }
 
+        TidyMessage msg = new TidyMessage(
+            errorCode,
+            (lexer != null) ? lexer.lines : 0,
+            (lexer != null) ? lexer.columns : 0,
+            level,
+            message,
+            params);
         if (listener != null)
         {
-            TidyMessage msg = new TidyMessage(errorCode, (lexer != null) ? lexer.lines : 0, (lexer != null)
-                ? lexer.columns
-                : 0, level, messageString);
             listener.messageReceived(msg);
         }
-
-        return position + prefix + messageString;
+        return filter == null || filter.messageReceived(msg);
     }
 
     /**
@@ -751,6 +816,11 @@ public final class Report
      */
     private void printMessage(int errorCode, Lexer lexer, String message, Object[] params, Level level)
     {
+        if (!dispatchMessage(errorCode, lexer, message, params, level))
+        {
+            return;
+        }
+
         String resource;
         try
         {
@@ -779,6 +849,11 @@ public final class Report
      */
     private void printMessage(PrintWriter errout, String message, Object[] params, Level level)
     {
+        if (!dispatchMessage(-1, null, message, params, level))
+        {
+            return;
+        }
+
         String resource;
         try
         {
@@ -879,14 +954,18 @@ public final class Report
             // Change formatting to be parsable by GNU Emacs
             if (lexer.configuration.emacs)
             {
-                return MessageFormat.format(res.getString("emacs_format"), this.currentFile,
-                    lexer.lines,
-                    lexer.columns)
-                    + " ";
+                if (emacsFormat == null)
+                {
+                    emacsFormat = new MessageFormat(res.getString("emacs_format"));
+                }
+                return emacsFormat.format(new Object[]{this.currentFile, lexer.lines, lexer.columns}) + " ";
             }
             // traditional format
-            return MessageFormat.format(res.getString("line_column"), lexer.lines,
-                lexer.columns);
+            if (lineColumnFormat == null)
+            {
+                lineColumnFormat = new MessageFormat(res.getString("line_column"));
+            }
+            return lineColumnFormat.format(new Object[]{lexer.lines, lexer.columns});
 
         }
         catch (MissingResourceException e)
@@ -1414,6 +1493,24 @@ public final class Report
                     printMessage(code, lexer, "content_after_body", null, Level.WARNING);
                     break;
 
+                case CONTENT_AFTER_STREAMED_HEAD :
+                    printMessage(
+                        code,
+                        lexer,
+                        "content_after_streamed_head",
+                        new Object[]{getTagName(node)},
+                        Level.WARNING);
+                    break;
+
+                case CONTENT_BEFORE_STREAMED_TABLE :
+                    printMessage(
+                        code,
+                        lexer,
+                        "content_before_streamed_table",
+                        new Object[]{getTagName(node)},
+                        Level.WARNING);
+                    break;
+
                 case MALFORMED_COMMENT :
                     printMessage(code, lexer, "malformed_comment", null, Level.WARNING);
                     break;
@@ -1819,4 +1916,13 @@ public final class Report
     {
         this.listener = listener;
     }
+
+    /**
+     * Sets a message filter, which decides whether each message is printed.
+     * @param filter TidyMessageFilter
+     */
+    public void setMessageFilter(TidyMessageFilter filter)
+    {
+        this.filter = filter;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,675 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+
+/**
+ * StreamIn Implementation reading blocks of input. Bytes are decoded a block at a time through a
+ * <code>CharsetDecoder</code> into a reusable char buffer, and characters are then served from that buffer, keeping
+ * line, column and tab expansion in step as {@link StreamInJavaImpl} does. Chars pushed back are kept on a stack that
+ * grows as needed instead of dropping the oldest ones. The input can also be a whole <code>ByteBuffer</code>, such as
+ * a memory mapped file. UTF-8, ASCII and Latin-1 input is decoded without the decoder as long as it is well formed.
+ * @version $Revision$ ($Author$)
+ */
+public class StreamInBufferedImpl implements StreamIn
+{
+
+    /**
+     * size of the byte and char blocks.
+     */
+    private static final int BLOCK_SIZE = 8192;
+
+    /**
+     * initial size of the pushback stack.
+     */
+    private static final int PUSHBACK_SIZE = 64;
+
+    /**
+     * fast decoding: none, use the decoder.
+     */
+    private static final int FAST_NONE = 0;
+
+    /**
+     * fast decoding: ASCII.
+     */
+    private static final int FAST_ASCII = 1;
+
+    /**
+     * fast decoding: Latin-1.
+     */
+    private static final int FAST_LATIN1 = 2;
+
+    /**
+     * fast decoding: UTF-8.
+     */
+    private static final int FAST_UTF8 = 3;
+
+    /**
+     * pushed back characters.
+     */
+    private int[] charbuf = new int[PUSHBACK_SIZE];
+
+    /**
+     * actual position in pushback stack.
+     */
+    private int bufpos;
+
+    /**
+     * decoded characters.
+     */
+    private final char[] chars = new char[BLOCK_SIZE];
+
+    /**
+     * view on <code>chars</code> used as decoder output.
+     */
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+
+    /**
+     * position of the next char to read in <code>chars</code>.
+     */
+    private int charpos;
+
+    /**
+     * number of valid chars in <code>chars</code>.
+     */
+    private int charlimit;
+
+    /**
+     * raw input, null when reading from a reader.
+     */
+    private InputStream stream;
+
+    /**
+     * undecoded bytes, null when reading from a reader.
+     */
+    private ByteBuffer bytes;
+
+    /**
+     * decoder for <code>bytes</code>.
+     */
+    private CharsetDecoder decoder;
+
+    /**
+     * fast decoding in use, until a byte sequence needing the decoder is found.
+     */
+    private int fastDecoding;
+
+    /**
+     * Java reader, null when reading from a stream.
+     */
+    private Reader reader;
+
+    /**
+     * has the end of the raw input been reached?
+     */
+    private boolean endOfInput;
+
+    /**
+     * is the decoder being flushed?
+     */
+    private boolean flushing;
+
+    /**
+     * has the decoder been completely flushed?
+     */
+    private boolean flushed;
+
+    /**
+     * has end of stream been reached?
+     */
+    private boolean endOfStream;
+
+    /**
+     * current column number.
+     */
+    private int curcol;
+
+    /**
+     * last column.
+     */
+    private int lastcol;
+
+    /**
+     * current line number.
+     */
+    private int curline;
+
+    /**
+     * tab size in chars.
+     */
+    private int tabsize;
+
+    /**
+     * spaces still to be returned for the last tab.
+     */
+    private int tabs;
+
+    /**
+     * Instantiates a new StreamInBufferedImpl.
+     * @param stream the stream to read from
+     * @param encoding the streams text encoding
+     * @param tabsize the tab size
+     * @throws UnsupportedEncodingException if encoding not supported
+     */
+    protected StreamInBufferedImpl(InputStream stream, String encoding, int tabsize)
+        throws UnsupportedEncodingException
+    {
+        this(encoding, tabsize);
+        this.stream = stream;
+        this.bytes = ByteBuffer.allocate(BLOCK_SIZE);
+        this.bytes.flip();
+    }
+
+    /**
+     * Instantiates a new StreamInBufferedImpl reading a whole buffer, from its position to its limit.
+     * @param input the buffer to read from
+     * @param encoding the buffer text encoding
+     * @param tabsize the tab size
+     * @throws UnsupportedEncodingException if encoding not supported
+     */
+    protected StreamInBufferedImpl(ByteBuffer input, String encoding, int tabsize) throws UnsupportedEncodingException
+    {
+        this(encoding, tabsize);
+        this.bytes = input;
+        this.endOfInput = true;
+    }
+
+    /**
+     * Common initialization for byte input.
+     * @param encoding the input text encoding
+     * @param tabsize the tab size
+     * @throws UnsupportedEncodingException if encoding not supported
+     */
+    private StreamInBufferedImpl(String encoding, int tabsize) throws UnsupportedEncodingException
+    {
+        this(tabsize);
+        Charset charset;
+        try
+        {
+            charset = Charset.forName(encoding);
+        }
+        catch (IllegalCharsetNameException | UnsupportedCharsetException e)
+        {
+            throw new UnsupportedEncodingException(encoding);
+        }
+        this.decoder = charset.newDecoder();
+        // same behaviour as InputStreamReader
+        this.decoder.onMalformedInput(CodingErrorAction.REPLACE);
+        this.decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        if (StandardCharsets.UTF_8.equals(charset))
+        {
+            this.fastDecoding = FAST_UTF8;
+        }
+        else if (StandardCharsets.ISO_8859_1.equals(charset))
+        {
+            this.fastDecoding = FAST_LATIN1;
+        }
+        else if (StandardCharsets.US_ASCII.equals(charset))
+        {
+            this.fastDecoding = FAST_ASCII;
+        }
+    }
+
+    /**
+     * Instantiates a new StreamInBufferedImpl.
+     * @param reader the reader
+     * @param tabsize the tab size
+     */
+    protected StreamInBufferedImpl(Reader reader, int tabsize)
+    {
+        this(tabsize);
+        this.reader = reader;
+    }
+
+    /**
+     * Common initialization.
+     * @param tabsize the tab size
+     */
+    private StreamInBufferedImpl(int tabsize)
+    {
+        this.tabsize = tabsize;
+        this.curline = 1;
+        this.curcol = 1;
+    }
+
+    /**
+     * Refills <code>chars</code> with the next block of input.
+     * @return <code>false</code> if no more chars are available
+     * @throws IOException for errors reading the input
+     */
+    private boolean fill() throws IOException
+    {
+        this.charpos = 0;
+        this.charlimit = 0;
+
+        if (this.reader != null)
+        {
+            int n = this.reader.read(this.chars, 0, BLOCK_SIZE);
+            this.charlimit = Math.max(n, 0);
+            return n > 0;
+        }
+
+        this.charBuffer.clear();
+        while (this.charBuffer.position() == 0 && !this.flushed)
+        {
+            if (this.flushing)
+            {
+                this.flushed = this.decoder.flush(this.charBuffer).isUnderflow();
+                continue;
+            }
+
+            if (!this.endOfInput)
+            {
+                // only stream input gets here, a buffer given at construction is never written
+                this.bytes.compact();
+                int n = this.stream.read(
+                    this.bytes.array(),
+                    this.bytes.arrayOffset() + this.bytes.position(),
+                    this.bytes.remaining());
+                if (n < 0)
+                {
+                    this.endOfInput = true;
+                }
+                else
+                {
+                    this.bytes.position(this.bytes.position() + n);
+                }
+                this.bytes.flip();
+            }
+
+            if (this.fastDecoding != FAST_NONE)
+            {
+                decodeFast();
+                if (this.fastDecoding != FAST_NONE)
+                {
+                    // the decoder has not been used, so there is nothing to flush
+                    this.flushed = this.endOfInput && !this.bytes.hasRemaining();
+                    continue;
+                }
+            }
+
+            if (this.decoder.decode(this.bytes, this.charBuffer, this.endOfInput).isUnderflow() && this.endOfInput)
+            {
+                this.flushing = true;
+            }
+        }
+
+        this.charlimit = this.charBuffer.position();
+        return this.charlimit > 0;
+    }
+
+    /**
+     * Decodes UTF-8, ASCII or Latin-1 bytes straight into <code>chars</code>, giving the same result as the decoder.
+     * Stops at the first UTF-8 sequence which is not well formed, or is truncated at the end of input, and leaves it
+     * and the rest of the input to the decoder. Since decoding restarts on a sequence boundary, the decoder produces
+     * the same chars it would have if it had been used from the beginning.
+     */
+    private void decodeFast()
+    {
+        ByteBuffer in = this.bytes;
+        char[] out = this.chars;
+        int pos = in.position();
+        int limit = in.limit();
+        int outpos = this.charBuffer.position();
+        // keep room for a surrogate pair
+        int outlimit = out.length - 1;
+
+        while (pos < limit && outpos < outlimit)
+        {
+            int b1 = in.get(pos);
+            if (b1 >= 0)
+            {
+                out[outpos++] = (char) b1;
+                pos++;
+                continue;
+            }
+
+            if (this.fastDecoding == FAST_LATIN1)
+            {
+                out[outpos++] = (char) (b1 & 0xFF);
+                pos++;
+                continue;
+            }
+
+            if (this.fastDecoding == FAST_ASCII)
+            {
+                out[outpos++] = '\uFFFD';
+                pos++;
+                continue;
+            }
+
+            b1 &= 0xFF;
+            int length;
+            int min2 = 0x80;
+            int max2 = 0xBF;
+            if (b1 >= 0xC2 && b1 <= 0xDF)
+            {
+                length = 2;
+            }
+            else if (b1 >= 0xE0 && b1 <= 0xEF)
+            {
+                length = 3;
+                if (b1 == 0xE0)
+                {
+                    min2 = 0xA0;
+                }
+                else if (b1 == 0xED)
+                {
+                    // no surrogates
+                    max2 = 0x9F;
+                }
+            }
+            else if (b1 >= 0xF0 && b1 <= 0xF4)
+            {
+                length = 4;
+                if (b1 == 0xF0)
+                {
+                    min2 = 0x90;
+                }
+                else if (b1 == 0xF4)
+                {
+                    max2 = 0x8F;
+                }
+            }
+            else
+            {
+                this.fastDecoding = FAST_NONE;
+                break;
+            }
+
+            if (pos + length > limit)
+            {
+                if (this.endOfInput)
+                {
+                    this.fastDecoding = FAST_NONE;
+                }
+                // else wait for the rest of the sequence
+                break;
+            }
+
+            int b2 = in.get(pos + 1) & 0xFF;
+            if (b2 < min2 || b2 > max2)
+            {
+                this.fastDecoding = FAST_NONE;
+                break;
+            }
+
+            int c;
+            if (length == 2)
+            {
+                c = ((b1 & 0x1F) << 6) | (b2 & 0x3F);
+            }
+            else
+            {
+                int b3 = in.get(pos + 2) & 0xFF;
+                if ((b3 & 0xC0) != 0x80)
+                {
+                    this.fastDecoding = FAST_NONE;
+                    break;
+                }
+                if (length == 3)
+                {
+                    c = ((b1 & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F);
+                }
+                else
+                {
+                    int b4 = in.get(pos + 3) & 0xFF;
+                    if ((b4 & 0xC0) != 0x80)
+                    {
+                        this.fastDecoding = FAST_NONE;
+                        break;
+                    }
+                    c = ((b1 & 0x07) << 18) | ((b2 & 0x3F) << 12) | ((b3 & 0x3F) << 6) | (b4 & 0x3F);
+                }
+            }
+
+            if (c >= 0x10000)
+            {
+                out[outpos++] = Character.highSurrogate(c);
+                out[outpos++] = Character.lowSurrogate(c);
+            }
+            else
+            {
+                out[outpos++] = (char) c;
+            }
+            pos += length;
+        }
+
+        in.position(pos);
+        this.charBuffer.position(outpos);
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#readCharFromStream()
+     */
+    @Override
+    public int readCharFromStream()
+    {
+        if (this.charpos < this.charlimit)
+        {
+            return this.chars[this.charpos++];
+        }
+
+        try
+        {
+            if (!fill())
+            {
+                this.endOfStream = true;
+                return END_OF_STREAM;
+            }
+        }
+        catch (IOException e)
+        {
+            // same as StreamInJavaImpl
+            this.endOfStream = true;
+            return END_OF_STREAM;
+        }
+
+        return this.chars[this.charpos++];
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#readChar()
+     */
+    @Override
+    public int readChar()
+    {
+        int c;
+
+        if (this.bufpos > 0)
+        {
+            c = this.charbuf[--this.bufpos];
+
+            if (c == '\n')
+            {
+                this.curcol = 1;
+                this.curline++;
+                return c;
+            }
+
+            this.curcol++;
+            return c;
+        }
+
+        this.lastcol = this.curcol;
+
+        if (this.tabs > 0)
+        {
+            this.curcol++;
+            this.tabs--;
+            return ' ';
+        }
+
+        // inline fast path for the common case
+        if (this.charpos < this.charlimit)
+        {
+            c = this.chars[this.charpos++];
+        }
+        else
+        {
+            c = readCharFromStream();
+            if (c < 0)
+            {
+                return END_OF_STREAM;
+            }
+        }
+
+        switch (c)
+        {
+            case '\n' :
+                this.curcol = 1;
+                this.curline++;
+                return c;
+
+            case '\r' :
+                // \r\n
+                c = readCharFromStream();
+                if (c != '\n')
+                {
+                    if (c != END_OF_STREAM)
+                    {
+                        ungetChar(c);
+                    }
+                    c = '\n';
+                }
+                this.curcol = 1;
+                this.curline++;
+                return c;
+
+            case '\t' :
+                this.tabs = this.tabsize > 0 ? this.tabsize - ((this.curcol - 1) % this.tabsize) - 1 : 0;
+                this.curcol++;
+                return ' ';
+
+            default :
+                this.curcol++;
+                return c;
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#ungetChar(int)
+     */
+    @Override
+    public void ungetChar(int c)
+    {
+        if (this.bufpos == this.charbuf.length)
+        {
+            int[] temp = this.charbuf;
+            this.charbuf = new int[temp.length * 2];
+            System.arraycopy(temp, 0, this.charbuf, 0, temp.length);
+        }
+        this.charbuf[this.bufpos++] = c;
+
+        if (c == '\n')
+        {
+            --this.curline;
+        }
+
+        this.curcol = this.lastcol;
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#isEndOfStream()
+     */
+    @Override
+    public boolean isEndOfStream()
+    {
+        return this.endOfStream;
+    }
+
+    /**
+     * Getter for <code>curcol</code>.
+     * @return Returns the curcol.
+     */
+    @Override
+    public int getCurcol()
+    {
+        return this.curcol;
+    }
+
+    /**
+     * Getter for <code>curline</code>.
+     * @return Returns the curline.
+     */
+    @Override
+    public int getCurline()
+    {
+        return this.curline;
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#setLexer(org.w3c.tidy.Lexer)
+     */
+    @Override
+    public void setLexer(Lexer lexer)
+    {
+        // unused in the java implementation
+    }
+
+}
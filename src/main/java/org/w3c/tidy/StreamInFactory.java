@@ -53,9 +53,13 @@
  */
 package org.w3c.tidy;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 
 /**
@@ -84,6 +88,10 @@ public final class StreamInFactory
     {
         try
         {
+            if (config.bufferedInput)
+            {
+                return new StreamInBufferedImpl(stream, config.getInCharEncodingName(), config.tabsize);
+            }
             return new StreamInJavaImpl(stream, config.getInCharEncodingName(), config.tabsize);
         }
         catch (UnsupportedEncodingException e)
@@ -100,6 +108,37 @@ public final class StreamInFactory
      */
     public static StreamIn getStreamIn(Configuration config, Reader reader)
     {
+        if (config.bufferedInput)
+        {
+            return new StreamInBufferedImpl(reader, config.tabsize);
+        }
         return new StreamInJavaImpl(reader, config.tabsize);
     }
+
+    /**
+     * Returns a StreamIn reading a file through a memory mapping of the whole file. Files too large to be mapped at
+     * once are read through the channel instead. The mapping stays valid after the channel is closed.
+     * @param config configuration instance
+     * @param channel channel open for reading on the file
+     * @return StreamIn instance
+     * @throws IOException if the file can't be mapped
+     */
+    public static StreamIn getStreamIn(Configuration config, FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+        {
+            return getStreamIn(config, Channels.newInputStream(channel));
+        }
+
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        try
+        {
+            return new StreamInBufferedImpl(mapped, config.getInCharEncodingName(), config.tabsize);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException("Unsupported encoding: " + e.getMessage());
+        }
+    }
 }
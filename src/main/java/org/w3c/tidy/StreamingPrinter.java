@@ -0,0 +1,974 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Prints a document while it is parsed. The children of the body element, and of the block elements, tables and row
+ * groups open in it, are printed as soon as the parser has moved past them and are then released from the document,
+ * so the tree kept for a large document does not grow with its body. Each element is printed by PPrint exactly as
+ * when the whole tree is printed; the last child of an open element is held back, since the parser may still add to
+ * it. The parser moves stray content out of a table to just before it, so the output of a table is held until the
+ * table ends, or until it reaches {@link #HELD_LIMIT} chars: content moved before a table written out that early is
+ * printed after it and reported. The head is printed with the start of the body, so head elements, body
+ * attributes and extra doctypes found later are reported as missing from the output.
+ * @version $Revision$ ($Author$)
+ */
+final class StreamingPrinter
+{
+
+    /**
+     * chars of table output held back, past which the table is written out.
+     */
+    static final int HELD_LIMIT = 1 << 16;
+
+    /**
+     * configuration.
+     */
+    private final Configuration configuration;
+
+    /**
+     * lexer of the document.
+     */
+    private final Lexer lexer;
+
+    /**
+     * where to write output.
+     */
+    private final Out out;
+
+    /**
+     * printer.
+     */
+    private final PPrint pprint;
+
+    /**
+     * cleaner for the passes run on each printed element.
+     */
+    private final Clean cleaner;
+
+    /**
+     * elements whose start tag has been printed but not their end tag, the document root first.
+     */
+    private final List<Level> levels = new ArrayList<>();
+
+    /**
+     * doctype given in the document, before it was fixed.
+     */
+    private Node doctype;
+
+    /**
+     * title inserted when the head was printed, null if the document had one.
+     */
+    private Node title;
+
+    /**
+     * whether the start of the document is being fixed.
+     */
+    private boolean starting;
+
+    /**
+     * html element whose namespace was fixed with the start of the document, null if none.
+     */
+    private Node namespace;
+
+    /**
+     * An element whose start tag has been printed.
+     */
+    private static final class Level
+    {
+
+        /**
+         * the element.
+         */
+        final Node node;
+
+        /**
+         * indent of the element.
+         */
+        final int indent;
+
+        /**
+         * whether printed children are released.
+         */
+        final boolean release;
+
+        /**
+         * where the element is printed.
+         */
+        final Out out;
+
+        /**
+         * last child printed, null if none.
+         */
+        Node printed;
+
+        /**
+         * output of the element held back, null if it is written as printed.
+         */
+        HeldOut held;
+
+        /**
+         * line being built before the element, while its output is held.
+         */
+        PPrint.Line before;
+
+        /**
+         * line being built after the element, once it has been closed with its output still held.
+         */
+        PPrint.Line after;
+
+        /**
+         * whether the element had no previous sibling when its start tag was printed.
+         */
+        boolean first;
+
+        /**
+         * child closed with its output still held, written once the children before it are printed.
+         */
+        Level closed;
+
+        /**
+         * Instantiates a new level.
+         * @param node the element
+         * @param indent indent of the element
+         * @param release whether printed children are released
+         * @param out where the element is printed
+         */
+        Level(Node node, int indent, boolean release, Out out)
+        {
+            this.node = node;
+            this.indent = indent;
+            this.release = release;
+            this.out = out;
+        }
+    }
+
+    /**
+     * Output held back in memory, then written to another output.
+     */
+    private static final class HeldOut implements Out
+    {
+
+        /**
+         * held newline.
+         */
+        private static final int NEWLINE = -1;
+
+        /**
+         * held byte b, stored as BYTE - b.
+         */
+        private static final int BYTE = -2;
+
+        /**
+         * where output is written.
+         */
+        private final Out target;
+
+        /**
+         * held chars and newlines, null once written.
+         */
+        private int[] chars = new int[256];
+
+        /**
+         * used in chars.
+         */
+        private int size;
+
+        /**
+         * Instantiates a new held output.
+         * @param target where output is written
+         */
+        HeldOut(Out target)
+        {
+            this.target = target;
+        }
+
+        /**
+         * Returns the amount of output held.
+         * @return chars and newlines held
+         */
+        int size()
+        {
+            return this.size;
+        }
+
+        /**
+         * Has the held output been written?
+         * @return <code>true</code> if output now goes straight to the target
+         */
+        boolean isWritten()
+        {
+            return this.chars == null;
+        }
+
+        /**
+         * Writes the held output, and any output from now on, to the target.
+         */
+        void write()
+        {
+            int[] held = this.chars;
+            this.chars = null;
+
+            for (int j = 0; j < this.size; j++)
+            {
+                int c = held[j];
+                if (c >= 0)
+                {
+                    this.target.outc(c);
+                }
+                else if (c == NEWLINE)
+                {
+                    this.target.newline();
+                }
+                else
+                {
+                    this.target.outc((byte) (BYTE - c));
+                }
+            }
+        }
+
+        /**
+         * Holds a char, a newline or a byte.
+         * @param c char, NEWLINE or BYTE - byte
+         */
+        private void hold(int c)
+        {
+            if (this.size == this.chars.length)
+            {
+                int[] temp = new int[this.size * 2];
+                System.arraycopy(this.chars, 0, temp, 0, this.size);
+                this.chars = temp;
+            }
+            this.chars[this.size++] = c;
+        }
+
+        /**
+         * @see org.w3c.tidy.Out#outc(int)
+         */
+        public void outc(int c)
+        {
+            if (this.chars == null)
+            {
+                this.target.outc(c);
+            }
+            else
+            {
+                hold(c);
+            }
+        }
+
+        /**
+         * @see org.w3c.tidy.Out#outc(byte)
+         */
+        public void outc(byte c)
+        {
+            if (this.chars == null)
+            {
+                this.target.outc(c);
+            }
+            else
+            {
+                hold(BYTE - (c & 0xFF));
+            }
+        }
+
+        /**
+         * @see org.w3c.tidy.Out#outc(int[], int, int)
+         */
+        public void outc(int[] c, int offset, int length)
+        {
+            if (this.chars == null)
+            {
+                this.target.outc(c, offset, length);
+            }
+            else
+            {
+                for (int j = offset; j < offset + length; j++)
+                {
+                    hold(c[j]);
+                }
+            }
+        }
+
+        /**
+         * @see org.w3c.tidy.Out#newline()
+         */
+        public void newline()
+        {
+            if (this.chars == null)
+            {
+                this.target.newline();
+            }
+            else
+            {
+                hold(NEWLINE);
+            }
+        }
+
+        /**
+         * @see org.w3c.tidy.Out#flush()
+         */
+        public void flush()
+        {
+            if (this.chars == null)
+            {
+                this.target.flush();
+            }
+        }
+    }
+
+    /**
+     * Instantiates a new streaming printer.
+     * @param lexer lexer of the document
+     * @param out where to write output
+     */
+    StreamingPrinter(Lexer lexer, Out out)
+    {
+        this.configuration = lexer.configuration;
+        this.lexer = lexer;
+        this.out = out;
+        this.pprint = new PPrint(this.configuration);
+        this.cleaner = new Clean(this.configuration.tt);
+    }
+
+    /**
+     * Can documents be printed while parsing with the given configuration? Output must be wanted whatever the errors,
+     * the doctype must not depend on the whole document, and no pass run after parsing may change the body in ways a
+     * single element cannot show.
+     * @param configuration configuration
+     * @return <code>true</code> if output can be streamed
+     */
+    static boolean isSupported(Configuration configuration)
+    {
+        return configuration.streamOutput
+            && configuration.forceOutput
+            && configuration.docTypeMode != Configuration.DOCTYPE_AUTO
+            && !configuration.xmlTags
+            && !(configuration.xmlOut && !configuration.xHTML)
+            && !configuration.bodyOnly
+            && !configuration.burstSlides
+            && !configuration.onlyErrors
+            && !configuration.makeClean
+            && !configuration.dropFontTags
+            && !configuration.word2000;
+    }
+
+    /**
+     * Has the start of the document been printed?
+     * @return <code>true</code> once the body element has been opened
+     */
+    boolean isStarted()
+    {
+        return !this.levels.isEmpty();
+    }
+
+    /**
+     * Has the start of the table holding an element been written out? Content moved before such a table is printed
+     * after it.
+     * @param element table, or element in a table
+     * @return <code>true</code> if the table output is no longer held
+     */
+    boolean isTableWritten(Node element)
+    {
+        Node table = element;
+
+        while (table != null && table.tag != this.configuration.tt.tagTable)
+        {
+            table = table.parent;
+        }
+
+        int depth = find(table);
+        return depth >= 0 && this.levels.get(depth).held.isWritten();
+    }
+
+    /**
+     * Returns the doctype given in the document. A doctype found in the body is moved before the html element, and
+     * dropped from the output when the document is finished.
+     * @return a copy of the doctype before it was fixed, null if none
+     */
+    Node getDocType()
+    {
+        if (this.doctype == null && !this.levels.isEmpty())
+        {
+            for (Node node = next(this.levels.get(0)); node != null; node = node.next)
+            {
+                if (node.type == Node.DOCTYPE_TAG)
+                {
+                    return node.cloneNode(false);
+                }
+            }
+        }
+        return this.doctype;
+    }
+
+    /**
+     * Has a doctype been given in the document so far? A doctype found in the body after that is missing from the
+     * output, where a document printed whole keeps it.
+     * @return <code>true</code> if the document has a doctype
+     */
+    boolean isDocTypeGiven()
+    {
+        if (this.doctype != null)
+        {
+            return true;
+        }
+
+        for (Node node = next(this.levels.get(0)); node != null; node = node.next)
+        {
+            if (node.type == Node.DOCTYPE_TAG)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Defers the warning for a namespace fixed with the start of the document, so that it is reported with the rest
+     * of the document.
+     * @param html html element
+     * @return <code>true</code> if the warning is deferred
+     */
+    boolean deferNamespaceWarning(Node html)
+    {
+        if (this.starting)
+        {
+            this.namespace = html;
+        }
+        return this.starting;
+    }
+
+    /**
+     * Reports the fixes made with the start of the document, where they are reported for a document printed whole.
+     */
+    void reportFixes()
+    {
+        if (!this.configuration.xHTML && this.lexer.badDoctype)
+        {
+            this.lexer.report.warning(this.lexer, null, null, Report.MALFORMED_DOCTYPE);
+        }
+
+        if (this.namespace != null)
+        {
+            this.lexer.report.warning(this.lexer, this.namespace, null, Report.INCONSISTENT_NAMESPACE);
+        }
+    }
+
+    /**
+     * Was the title missing when the head was printed?
+     * @return <code>true</code> if an empty title was inserted
+     */
+    boolean hasInferredTitle()
+    {
+        return this.title != null;
+    }
+
+    /**
+     * Returns the printer used.
+     * @return printer
+     */
+    PPrint getPPrint()
+    {
+        return this.pprint;
+    }
+
+    /**
+     * Prints the children completed so far of an element the parser is back to. Called for the body element, block
+     * elements, tables and row groups; elements which are not the body of the document or a container printed in it
+     * are ignored.
+     * @param element element being parsed
+     */
+    void flush(Node element)
+    {
+        // the parser sees the end of the html element once it has parsed a body with content
+        this.pprint.streaming = true;
+
+        int depth = this.levels.isEmpty() ? begin(element) : find(element);
+
+        if (depth < 0)
+        {
+            depth = open(element);
+        }
+
+        if (depth >= 0)
+        {
+            close(depth + 1, true);
+            printChildren(this.levels.get(depth), element.last, true);
+
+            for (int j = 3; j < this.levels.size(); j++)
+            {
+                Level level = this.levels.get(j);
+                if (level.held != null && !level.held.isWritten() && level.held.size() > HELD_LIMIT)
+                {
+                    write(j);
+                }
+            }
+        }
+
+        this.pprint.streaming = false;
+    }
+
+    /**
+     * Prints the rest of the document, once it has been parsed.
+     */
+    void finish()
+    {
+        Level root = this.levels.get(0);
+        Node node;
+
+        // the doctype was fixed when the start of the document was printed, drop the ones found in the body
+        while ((node = next(root)) != null && node.type == Node.DOCTYPE_TAG)
+        {
+            Node.discardElement(node);
+        }
+
+        close(1, false);
+        printChildren(root, null, false);
+    }
+
+    /**
+     * Finds the level of an element.
+     * @param element element
+     * @return index of its level, -1 if its start tag has not been printed
+     */
+    private int find(Node element)
+    {
+        for (int j = this.levels.size() - 1; j >= 0; j--)
+        {
+            if (this.levels.get(j).node == element)
+            {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Prints the start of the document and the start tag of the body element.
+     * @param body body element being parsed
+     * @return index of the body level, -1 if the element is not the body of the document
+     */
+    private int begin(Node body)
+    {
+        TagTable tt = this.configuration.tt;
+        Node html = body.parent;
+
+        if (body.tag != tt.tagBody || html == null || html.tag != tt.tagHtml || html.parent != this.lexer.root)
+        {
+            return -1;
+        }
+
+        start(html.parent);
+        open(open(this.levels.get(0), html, false), body, true);
+        return 2;
+    }
+
+    /**
+     * Prints the start tag of a container the parser is in, once it has a completed child: an element still empty
+     * when it ends is dropped by the parser.
+     * @param element element being parsed
+     * @return index of its level, -1 if it is not printed yet
+     */
+    private int open(Node element)
+    {
+        Node parent = element.parent;
+
+        if (parent == null
+            || parent.last != element
+            || element.content == element.last
+            || !isContainer(element))
+        {
+            return -1;
+        }
+
+        int depth = find(parent);
+
+        if (depth < 2)
+        {
+            return -1;
+        }
+
+        close(depth + 1, true);
+        return open(this.levels.get(depth), element, true) != null ? depth + 1 : -1;
+    }
+
+    /**
+     * Can the children of an element be printed one at a time? The element must be printed by PPrint as a container
+     * of blocks, and left as it is by the passes run after parsing.
+     * @param element element
+     * @return <code>true</code> for block elements, tables and their row groups
+     */
+    private boolean isContainer(Node element)
+    {
+        TagTable tt = this.configuration.tt;
+        Dict tag = element.tag;
+
+        if (tag == null || element.type != Node.START_TAG || element.implicit)
+        {
+            return false;
+        }
+        if (tag == tt.tagTable)
+        {
+            return true;
+        }
+        if ((tag.model & Dict.CM_ROWGRP) != 0)
+        {
+            return element.parent.tag == tt.tagTable;
+        }
+        return tag.getParser() == ParserImpl.BLOCK
+            && (tag.model & Dict.CM_BLOCK) != 0
+            && (tag.model & (Dict.CM_INLINE | Dict.CM_EMPTY)) == 0;
+    }
+
+    /**
+     * Fixes the doctype and the head, which are printed with the start of the body.
+     * @param root document root
+     */
+    private void start(Node root)
+    {
+        TagTable tt = this.configuration.tt;
+        Node head = root.findHEAD(tt);
+
+        // the parser only adds a missing title once the whole document is parsed
+        if (head != null && root.findTITLE(tt) == null)
+        {
+            this.title = this.lexer.inferredTag("title");
+            head.insertNodeAtEnd(this.title);
+        }
+
+        this.doctype = root.findDocType();
+
+        // remember given doctype
+        if (this.doctype != null)
+        {
+            this.doctype = this.doctype.cloneNode(false);
+        }
+
+        // fixes made here are reported once the document is parsed, like for a document printed whole
+        this.starting = true;
+
+        // text added by the fixes goes to a chunk of its own, so the offsets of the tokens still to be read are those
+        // they have when the document is fixed after parsing
+        byte[] lexbuf = this.lexer.lexbuf;
+        int lexlength = this.lexer.lexlength;
+        int lexsize = this.lexer.lexsize;
+        int txtstart = this.lexer.txtstart;
+        int txtend = this.lexer.txtend;
+        this.lexer.lexbuf = new byte[lexlength];
+        this.lexer.lexsize = 0;
+
+        if (this.configuration.xHTML)
+        {
+            this.lexer.setXHTMLDocType(root);
+        }
+        else
+        {
+            boolean badDoctype = this.lexer.badDoctype;
+            this.lexer.badDoctype = false;
+            this.lexer.fixDocType(root);
+            this.lexer.badDoctype = badDoctype;
+        }
+
+        this.lexer.lexbuf = lexbuf;
+        this.lexer.lexlength = lexlength;
+        this.lexer.lexsize = lexsize;
+        this.lexer.txtstart = txtstart;
+        this.lexer.txtend = txtend;
+        this.starting = false;
+
+        if (this.configuration.tidyMark)
+        {
+            this.lexer.addGenerator(root);
+        }
+
+        if (this.configuration.xmlOut && this.configuration.xmlPi)
+        {
+            this.lexer.fixXmlDecl(root);
+        }
+
+        if (root.findDocType() == null)
+        {
+            // only use numeric character references if no doctype could be determined
+            this.configuration.numEntities = true;
+        }
+
+        this.levels.add(new Level(root, 0, false, this.out));
+    }
+
+    /**
+     * Prints the children of a level before a given child, and the start tag of that child.
+     * @param parent level of the parent
+     * @param child child element
+     * @param release whether the printed children of the element are released
+     * @return level of the child, null if children before it are held back
+     */
+    private Level open(Level parent, Node child, boolean release)
+    {
+        printChildren(parent, child, true);
+
+        if (next(parent) != child)
+        {
+            return null;
+        }
+
+        int indent = childIndent(parent);
+        Level level;
+
+        if (child.tag == this.configuration.tt.tagTable)
+        {
+            // content may still be moved before the table: hold its output, and the line being built before it
+            level = new Level(child, indent, release, new HeldOut(parent.out));
+            level.held = (HeldOut) level.out;
+            level.before = this.pprint.swapLine(null);
+            level.first = child.prev == null;
+        }
+        else
+        {
+            level = new Level(child, indent, release, parent.out);
+            if (parent.node.type != Node.ROOT_NODE)
+            {
+                this.pprint.printContentBreak(level.out, parent.indent, parent.printed, child);
+            }
+        }
+
+        this.pprint.printContainerStart(level.out, (short) 0, indent, this.lexer, child);
+        this.levels.add(level);
+        return level;
+    }
+
+    /**
+     * Prints the rest of the elements from a given level up, and their end tags.
+     * @param depth index of the first level to close
+     * @param parsing whether the document is still being parsed
+     */
+    private void close(int depth, boolean parsing)
+    {
+        for (int j = this.levels.size() - 1; j >= depth; j--)
+        {
+            Level level = this.levels.remove(j);
+            Level parent = this.levels.get(j - 1);
+            printChildren(level, null, parsing);
+            this.pprint.printContainerEnd(level.out, (short) 0, level.indent, this.lexer, level.node);
+
+            if (level.held != null && !level.held.isWritten())
+            {
+                // written after the content moved before it, when the parent is printed up to it
+                level.after = this.pprint.swapLine(level.before);
+                parent.closed = level;
+                printChildren(parent, level.node.next, parsing);
+            }
+            else
+            {
+                // content moved before the element once its start tag was written follows it
+                printChildren(parent, level.node, parsing);
+                printed(parent, level.node);
+            }
+        }
+    }
+
+    /**
+     * Writes out the output held for an open table, after the content moved before it so far.
+     * @param depth index of the table level
+     */
+    private void write(int depth)
+    {
+        Level level = this.levels.get(depth);
+        Level parent = this.levels.get(depth - 1);
+        PPrint.Line inner = this.pprint.swapLine(level.before);
+
+        printChildren(parent, level.node, true);
+
+        if (next(parent) == level.node)
+        {
+            writeHeld(parent, level);
+            level.before = null;
+            this.pprint.swapLine(inner);
+        }
+        else
+        {
+            level.before = this.pprint.swapLine(inner);
+        }
+    }
+
+    /**
+     * Writes the held output of a table, once its parent is printed up to it.
+     * @param parent level of the parent
+     * @param level level of the table
+     */
+    private void writeHeld(Level parent, Level level)
+    {
+        this.pprint.printContentBreak(parent.out, parent.indent, parent.printed, level.node);
+
+        // what printing the start tag would have written before it, had the previous sibling been known
+        this.pprint.condFlushLine(parent.out, level.indent);
+        if (this.configuration.smartIndent && level.first && level.node.prev != null)
+        {
+            this.pprint.flushLine(parent.out, level.indent);
+        }
+
+        level.held.write();
+    }
+
+    /**
+     * Prints the children of a level not printed yet.
+     * @param level level
+     * @param stop first child not to print, null to print all of them
+     * @param parsing whether the document is still being parsed
+     */
+    private void printChildren(Level level, Node stop, boolean parsing)
+    {
+        Node child = next(level);
+
+        while (child != null && child != stop)
+        {
+            if (level.closed != null && level.closed.node == child)
+            {
+                writeHeld(level, level.closed);
+                this.pprint.swapLine(level.closed.after);
+                level.closed = null;
+            }
+            else
+            {
+                if (parsing)
+                {
+                    // the parser trims the initial space of an element at its end tag
+                    if (level.printed == null
+                        && child.type == Node.TEXT_NODE
+                        && child.start < child.end
+                        && this.lexer.textBuffer(child)[child.start] == (byte) ' ')
+                    {
+                        return;
+                    }
+
+                    clean(child);
+                }
+
+                if (level.node.type == Node.ROOT_NODE)
+                {
+                    this.pprint.printTree(level.out, (short) 0, 0, this.lexer, child);
+                }
+                else
+                {
+                    this.pprint.printContentBreak(level.out, level.indent, level.printed, child);
+                    this.pprint.printTree(level.out, (short) 0, childIndent(level), this.lexer, child);
+                }
+            }
+
+            printed(level, child);
+            child = child.next;
+        }
+    }
+
+    /**
+     * Returns the first child of a level not printed yet.
+     * @param level level
+     * @return child, null if none
+     */
+    private static Node next(Level level)
+    {
+        return level.printed == null ? level.node.content : level.printed.next;
+    }
+
+    /**
+     * Records a child as printed, releasing the children before it.
+     * @param level level of the parent
+     * @param child last child printed
+     */
+    private void printed(Level level, Node child)
+    {
+        if (level.release)
+        {
+            child.prev = null;
+            level.node.content = child;
+        }
+        level.printed = child;
+    }
+
+    /**
+     * Returns the indent of the children of a level.
+     * @param level level
+     * @return indent amount
+     */
+    private int childIndent(Level level)
+    {
+        return level.node.type == Node.ROOT_NODE ? 0 : this.pprint.childIndent(level.node, level.indent);
+    }
+
+    /**
+     * Runs on an element the passes run on the whole document after parsing.
+     * @param node element
+     */
+    private void clean(Node node)
+    {
+        // the passes walk the following siblings too
+        Node next = node.next;
+        node.next = null;
+
+        this.cleaner.nestedEmphasis(node);
+        this.cleaner.list2BQ(node);
+        this.cleaner.bQ2Div(node);
+
+        if (this.configuration.logicalEmphasis)
+        {
+            this.cleaner.emFromI(node);
+        }
+
+        node.next = next;
+    }
+
+}
@@ -59,7 +59,9 @@ package org.w3c.tidy;
  * @author Andy Quick <a href="mailto:ac.quick@sympatico.ca">ac.quick@sympatico.ca </a> (translation to Java)
  * @author Fabrizio Giustina
  * @version $Revision$ ($Author$)
+ * @deprecated no longer used: Clean keeps style declarations in a map sorted by property name
  */
+@Deprecated
 public class StyleProp
 {
 
@@ -55,8 +55,10 @@ package org.w3c.tidy;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -67,7 +69,7 @@ import java.util.Map;
  * @author Fabrizio Giustina
  * @version $Revision$ ($Author$)
  */
-public final class TagTable
+public final class TagTable implements Cloneable
 {
 
     /**
@@ -342,6 +344,11 @@ public final class TagTable
         new Dict("picture", Dict.VERS_HTML5, Dict.CM_BLOCK, ParserImpl.BLOCK, null),
     };
 
+    /**
+     * the built-in tags, copied by every new table. Never changed once built.
+     */
+    private static final TagTable DEFAULT_TAG_TABLE = new TagTable();
+
     /**
      * html tag.
      */
@@ -818,9 +825,9 @@ public final class TagTable
     protected Dict tagBlink;
 
     /**
-     * anchor/node hash.
+     * anchor/node hash, keyed by case folded anchor name.
      */
-    protected Anchor anchorList;
+    private Map<String, Node> anchors = new HashMap<>();
 
     /**
      * configuration.
@@ -832,6 +839,17 @@ public final class TagTable
      */
     private Map<String, Dict> tagHashtable = new HashMap<>();
 
+    /**
+     * whether <code>tagHashtable</code> is shared with other tables, and must be copied before a tag is installed.
+     */
+    private boolean sharedTags;
+
+    /**
+     * names of the tags installed by this table, whose Dict can be changed in place. Other Dicts may be shared with
+     * other tables.
+     */
+    private Set<String> ownedTags;
+
     /**
      * Instantiates a new tag table with known tags.
      */
@@ -839,8 +857,38 @@ public final class TagTable
     {
         for (Dict TAG : TAGS)
         {
-            install(TAG);
+            // merge the few tags listed twice
+            Dict d = tagHashtable.get(TAG.name);
+            if (d != null)
+            {
+                d.versions = TAG.versions;
+                d.model |= TAG.model;
+                d.setParser(TAG.getParser());
+                d.setChkattrs(TAG.getChkattrs());
+            }
+            else
+            {
+                tagHashtable.put(TAG.name, TAG);
+            }
         }
+        resolveTags();
+    }
+
+    /**
+     * Returns a new table with the known tags. All tables share the definitions of the known tags, and a table only
+     * copies them when a tag is installed or redefined, so creating a table costs no more than copying its fields.
+     * @return new tag table
+     */
+    public static TagTable newTagTable()
+    {
+        return DEFAULT_TAG_TABLE.copy(null);
+    }
+
+    /**
+     * Looks up the Dicts held in the tag fields.
+     */
+    private void resolveTags()
+    {
         tagHtml = lookup("html");
         tagHead = lookup("head");
         tagBody = lookup("body");
@@ -938,6 +986,31 @@ public final class TagTable
         tagPicture = lookup("picture");
     }
 
+    /**
+     * Returns a copy of this table. The copy shares the tag definitions and copies them before changing them; this
+     * table must not be changed once copied. The list of anchors of the copy starts empty.
+     * @param configuration configuration of the copy
+     * @return tag table copy
+     */
+    TagTable copy(Configuration configuration)
+    {
+        TagTable copy;
+        try
+        {
+            copy = (TagTable) clone();
+        }
+        catch (CloneNotSupportedException e)
+        {
+            // can't happen, TagTable is Cloneable
+            throw new RuntimeException(e);
+        }
+        copy.sharedTags = true;
+        copy.ownedTags = null;
+        copy.anchors = new HashMap<>();
+        copy.configuration = configuration;
+        return copy;
+    }
+
     /**
      * Setter for the current configuration instance.
      *
@@ -970,18 +1043,48 @@ public final class TagTable
         Dict d = tagHashtable.get(dict.name);
         if (d != null)
         {
+            boolean shared = ownedTags == null || !ownedTags.contains(d.name);
+            if (shared)
+            {
+                // copy on write, the Dict may be used by other tables
+                d = new Dict(d.name, d.versions, d.model, d.getParser(), d.getChkattrs());
+                own(d);
+            }
             d.versions = dict.versions;
             d.model |= dict.model;
             d.setParser(dict.getParser());
             d.setChkattrs(dict.getChkattrs());
+            if (shared)
+            {
+                resolveTags();
+            }
             return d;
         }
 
-        tagHashtable.put(dict.name, dict);
+        own(dict);
         return dict;
 
     }
 
+    /**
+     * Puts a Dict owned by this table in the table, copying the table first if it is shared.
+     * @param dict tag definition
+     */
+    private void own(Dict dict)
+    {
+        if (sharedTags)
+        {
+            tagHashtable = new HashMap<>(tagHashtable);
+            sharedTags = false;
+        }
+        if (ownedTags == null)
+        {
+            ownedTags = new HashSet<>();
+        }
+        tagHashtable.put(dict.name, dict);
+        ownedTags.add(dict.name);
+    }
+
     /**
      * Finds a tag by name.
      *
@@ -1157,7 +1260,7 @@ public final class TagTable
             AttVal av = node.attributes;
             if ("id".equalsIgnoreCase(av.attribute) || "name".equalsIgnoreCase(av.attribute) && isAnchorElement(node))
             {
-                removeAnchorByNode(node);
+                removeAnchor(av.value, node);
             }
 
             node.attributes = av.next;
@@ -1165,78 +1268,32 @@ public final class TagTable
     }
 
     /**
-     * Removes anchor for specific node.
+     * Removes an anchor if it leads to the given node.
      *
+     * @param name anchor name, may be null
      * @param node Node
      */
-    void removeAnchorByNode(Node node)
+    void removeAnchor(String name, Node node)
     {
-        Anchor found;
-        Anchor prev = null;
-        Anchor next;
-
-        for (found = anchorList; found != null; found = found.next)
+        if (name != null)
         {
-            next = found.next;
-
-            if (found.node == node)
+            String key = anchorKey(name);
+            if (anchors.get(key) == node)
             {
-                if (prev != null)
-                {
-                    prev.next = next;
-                }
-                else
-                {
-                    anchorList = next;
-                }
-            }
-            else
-            {
-                prev = found;
+                anchors.remove(key);
             }
         }
     }
 
     /**
-     * Initialize a new anchor.
-     *
-     * @return a new anchor element
-     */
-    Anchor newAnchor()
-    {
-        return new Anchor();
-    }
-
-    /**
-     * Adds a new anchor to namespace.
+     * Adds a new anchor to namespace. An anchor already defined keeps its node.
      *
      * @param name anchor name
      * @param node destination for this anchor
-     * @return Anchor
      */
-    Anchor addAnchor(String name, Node node)
+    void addAnchor(String name, Node node)
     {
-        Anchor a = newAnchor();
-
-        a.name = name;
-        a.node = node;
-
-        if (anchorList == null)
-        {
-            anchorList = a;
-        }
-        else
-        {
-            Anchor here = anchorList;
-
-            while (here.next != null)
-            {
-                here = here.next;
-            }
-            here.next = a;
-        }
-
-        return anchorList;
+        anchors.putIfAbsent(anchorKey(name), node);
     }
 
     /**
@@ -1247,22 +1304,7 @@ public final class TagTable
      */
     Node getNodeByAnchor(String name)
     {
-        Anchor found;
-
-        for (found = anchorList; found != null; found = found.next)
-        {
-            if (name.equalsIgnoreCase(found.name))
-            {
-                break;
-            }
-        }
-
-        if (found != null)
-        {
-            return found.node;
-        }
-
-        return null;
+        return anchors.get(anchorKey(name));
     }
 
     /**
@@ -1270,7 +1312,31 @@ public final class TagTable
      */
     void freeAnchors()
     {
-        anchorList = null;
+        anchors.clear();
+    }
+
+    /**
+     * Folds the case of an anchor name, so that names are equal keys if they are equal ignoring case.
+     *
+     * @param name anchor name
+     * @return hash key for the name
+     */
+    private static String anchorKey(String name)
+    {
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            if (Character.toLowerCase(Character.toUpperCase(c)) != c)
+            {
+                char[] chars = name.toCharArray();
+                for (int j = i; j < chars.length; j++)
+                {
+                    chars[j] = Character.toLowerCase(Character.toUpperCase(chars[j]));
+                }
+                return new String(chars);
+            }
+        }
+        return name;
     }
 
 }
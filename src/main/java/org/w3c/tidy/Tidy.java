@@ -63,10 +63,26 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
@@ -128,6 +144,11 @@ public class Tidy implements Serializable
 
     private Report report;
 
+    /**
+     * Listener for the metrics of each parse, null if none are measured.
+     */
+    private TidyMetricsListener metricsListener;
+
     /**
      * Instantiates a new Tidy instance. It's reccomended that a new instance is used at each parsing.
      */
@@ -136,7 +157,7 @@ public class Tidy implements Serializable
         this.report = new Report();
         configuration = new Configuration(this.report);
 
-        TagTable tt = new TagTable();
+        TagTable tt = TagTable.newTagTable();
         tt.setConfiguration(configuration);
         configuration.tt = tt;
 
@@ -241,7 +262,7 @@ public class Tidy implements Serializable
     public static org.w3c.dom.Document createEmptyDocument()
     {
         Node document = new Node(Node.ROOT_NODE, new byte[0], 0, 0);
-        Node node = new Node(Node.START_TAG, new byte[0], 0, 0, "html", new TagTable());
+        Node node = new Node(Node.START_TAG, new byte[0], 0, 0, "html", TagTable.newTagTable());
         if (document != null && node != null)
         {
             document.insertNodeAtStart(node);
@@ -337,6 +358,68 @@ public class Tidy implements Serializable
         return parse(streamIn, o);
     }
 
+    /**
+     * Reads the given file through a memory mapping and returns the root Node. If out is non-null, pretty prints to
+     * out. Large local files are decoded straight from the mapped bytes, without copying them through a stream first.
+     * Warning: caller is responsible for calling close() on output after calling this method.
+     *
+     * @param file input file
+     * @param out  optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     * @throws IOException if the file can't be opened or mapped
+     */
+    public Node parse(Path file, OutputStream out) throws IOException
+    {
+        Out o = null;
+        if (out != null)
+        {
+            o = OutFactory.getOut(this.configuration, out); // normal output stream
+        }
+
+        return parse(file, o);
+    }
+
+    /**
+     * Reads the given file through a memory mapping and returns the root Node. If out is non-null, pretty prints to
+     * out. Warning: caller is responsible for calling close() on output after calling this method.
+     *
+     * @param file input file
+     * @param out  optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     * @throws IOException if the file can't be opened or mapped
+     */
+    public Node parse(Path file, Writer out) throws IOException
+    {
+        Out o = null;
+        if (out != null)
+        {
+            o = OutFactory.getOut(this.configuration, out); // normal output stream
+        }
+
+        return parse(file, o);
+    }
+
+    /**
+     * Maps the given file and parses it.
+     *
+     * @param file input file
+     * @param o    tidy Out
+     * @return parsed org.w3c.tidy.Node
+     * @throws IOException if the file can't be opened or mapped, or the output can't be written
+     */
+    private Node parse(Path file, Out o) throws IOException
+    {
+        inputStreamName = file.toString();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            return parse(StreamInFactory.getStreamIn(configuration, channel), o);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
     /**
      * Parses InputStream in and returns a DOM Document node. If out is non-null, pretty prints to OutputStream out.
      *
@@ -408,11 +491,6 @@ public class Tidy implements Serializable
      */
     private Node parse(StreamIn streamIn, Out o)
     {
-        Lexer lexer;
-        Node document = null;
-        Node doctype;
-        PPrint pprint;
-
         if (errout == null)
         {
             return null;
@@ -421,215 +499,11 @@ public class Tidy implements Serializable
         // ensure config is self-consistent
         configuration.adjust();
 
-        parseErrors = 0;
-        parseWarnings = 0;
-
-        lexer = new Lexer(streamIn, configuration, this.report);
-        lexer.errout = errout;
-
-        // store pointer to lexer in input stream to allow character encoding errors to be reported
-        streamIn.setLexer(lexer);
-
-        this.report.setFilename(inputStreamName); // #431895 - fix by Dave Bryan 04 Jan 01
-
-        // Tidy doesn't alter the doctype for generic XML docs
-        if (configuration.xmlTags)
-        {
-            document = ParserImpl.parseXMLDocument(lexer);
-            if (!document.checkNodeIntegrity())
-            {
-                if (!configuration.quiet)
-                {
-                    report.badTree(errout);
-                }
-                return null;
-            }
-        }
-        else
-        {
-            lexer.warnings = 0;
-
-            document = ParserImpl.parseDocument(lexer);
-
-            if (!document.checkNodeIntegrity())
-            {
-                if (!configuration.quiet)
-                {
-                    this.report.badTree(errout);
-                }
-                return null;
-            }
-
-            Clean cleaner = new Clean(configuration.tt);
-
-            // simplifies <b><b> ... </b> ... </b> etc.
-            cleaner.nestedEmphasis(document);
-
-            // cleans up <dir> indented text </dir> etc.
-            cleaner.list2BQ(document);
-            cleaner.bQ2Div(document);
-
-            // replaces i by em and b by strong
-            if (configuration.logicalEmphasis)
-            {
-                cleaner.emFromI(document);
-            }
-
-            if (configuration.word2000)
-            {
-                // prune Word2000's <![if ...]> ... <![endif]>
-                cleaner.dropSections(lexer, document);
-
-                // drop style & class attributes and empty p, span elements
-                if (cleaner.isWord2000(document))
-                {
-                    cleaner.cleanWord2000(lexer, document);
-                }
-            }
-
-            // replaces presentational markup by style rules
-            if (configuration.makeClean || configuration.dropFontTags)
-            {
-                cleaner.cleanTree(lexer, document);
-            }
-
-            if (!document.checkNodeIntegrity())
-            {
-                this.report.badTree(errout);
-                return null;
-            }
-
-            doctype = document.findDocType();
-
-            // remember given doctype
-            if (doctype != null)
-            {
-                doctype = doctype.cloneNode(false);
-            }
-
-            if (document.content != null)
-            {
-                if (configuration.xHTML)
-                {
-                    lexer.setXHTMLDocType(document);
-                }
-                else
-                {
-                    lexer.fixDocType(document);
-                }
-
-                if (configuration.tidyMark)
-                {
-                    lexer.addGenerator(document);
-                }
-            }
-
-            // ensure presence of initial <?XML version="1.0"?>
-            if (configuration.xmlOut && configuration.xmlPi)
-            {
-                lexer.fixXmlDecl(document);
-            }
-
-            if (!configuration.quiet && document.content != null)
-            {
-                this.report.reportVersion(errout, lexer, inputStreamName, doctype);
-            }
-        }
-
-        if (!configuration.quiet)
-        {
-            parseWarnings = lexer.warnings;
-            parseErrors = lexer.errors;
-            this.report.reportNumWarnings(errout, lexer);
-        }
-
-        if (!configuration.quiet && lexer.errors > 0 && !configuration.forceOutput)
-        {
-            this.report.needsAuthorIntervention(errout);
-        }
-
-        if (!configuration.onlyErrors && (lexer.errors == 0 || configuration.forceOutput))
-        {
-            if (configuration.burstSlides)
-            {
-                Node body;
-
-                body = null;
-                // remove doctype to avoid potential clash with markup introduced when bursting into slides
-
-                // discard the document type
-                doctype = document.findDocType();
-
-                if (doctype != null)
-                {
-                    Node.discardElement(doctype);
-                }
-
-                /* slides use transitional features */
-                lexer.addVersions(Dict.VERS_HTML40_LOOSE);
-
-                // and patch up doctype to match
-                if (configuration.xHTML)
-                {
-                    lexer.setXHTMLDocType(document);
-                }
-                else
-                {
-                    lexer.fixDocType(document);
-                }
-
-                // find the body element which may be implicit
-                body = document.findBody(configuration.tt);
-
-                if (body != null)
-                {
-                    pprint = new PPrint(configuration);
-                    if (!configuration.quiet)
-                    {
-                        this.report.reportNumberOfSlides(errout, pprint.countSlides(body));
-                    }
-                    pprint.createSlides(lexer, document);
-                }
-                else if (!configuration.quiet)
-                {
-                    this.report.missingBody(errout);
-                }
-            }
-            else if (o != null)
-            {
-                pprint = new PPrint(configuration);
-
-                if (document.findDocType() == null)
-                {
-                    // only use numeric character references if no doctype could be determined (e.g., because
-                    // the document contains proprietary features) to ensure well-formedness.
-                    configuration.numEntities = true;
-                }
-                if (configuration.bodyOnly)
-                {
-                    // Feature request #434940 - fix by Dave Raggett/Ignacio Vazquez-Abrams 21 Jun 01
-                    pprint.printBody(o, lexer, document, configuration.xmlOut);
-                }
-                else if (configuration.xmlOut && !configuration.xHTML)
-                {
-                    pprint.printXMLTree(o, (short) 0, 0, lexer, document);
-                }
-                else
-                {
-                    pprint.printTree(o, (short) 0, 0, lexer, document);
-                }
-
-                pprint.flushLine(o, 0);
-                o.flush();
-            }
-
-        }
-
-        if (!configuration.quiet)
-        {
-            this.report.errorSummary(lexer);
-        }
-
+        TidyParseContext context = new TidyParseContext(configuration, report, errout, inputStreamName);
+        context.setMetricsListener(metricsListener);
+        Node document = context.parse(streamIn, o);
+        parseErrors = context.getParseErrors();
+        parseWarnings = context.getParseWarnings();
         return document;
     }
 
@@ -642,7 +516,7 @@ public class Tidy implements Serializable
      * @param out  output stream
      * @return parsed org.w3c.tidy.Node
      * @throws FileNotFoundException if <code>file</code> is not null but it can't be found
-     * @throws IOException           for errors in reading input stream or file
+     * @throws IOException           for errors in reading input stream or file, or writing the output
      */
     private Node parse(InputStream in, String file, OutputStream out) throws FileNotFoundException, IOException
     {
@@ -677,31 +551,41 @@ public class Tidy implements Serializable
             o = OutFactory.getOut(this.configuration, out); // normal output stream
         }
 
-        Node node = parse(streamIn, o);
-
-        // Try to close the InputStream but only if if we created it.
-        if (inputStreamOpen)
+        Node node;
+        try
         {
-            try
-            {
-                in.close();
-            }
-            catch (IOException e)
-            {
-                // ignore
-            }
+            node = parse(streamIn, o);
         }
-
-        // Try to close the OutputStream but only if if we created it.
-        if (outputStreamOpen)
+        catch (UncheckedIOException e)
         {
-            try
+            throw e.getCause();
+        }
+        finally
+        {
+            // Try to close the InputStream but only if if we created it.
+            if (inputStreamOpen)
             {
-                out.close();
+                try
+                {
+                    in.close();
+                }
+                catch (IOException e)
+                {
+                    // ignore
+                }
             }
-            catch (IOException e)
+
+            // Try to close the OutputStream but only if if we created it.
+            if (outputStreamOpen)
             {
-                // ignore
+                try
+                {
+                    out.close();
+                }
+                catch (IOException e)
+                {
+                    // ignore
+                }
             }
         }
 
@@ -764,9 +648,10 @@ public class Tidy implements Serializable
      */
     protected int mainExec(String[] argv)
     {
-        String file;
         int argCount = argv.length;
         int argIndex = 0;
+        int jobs = 1;
+        int returnCode = 0;
 
         // read command line
         Properties properties = new Properties();
@@ -826,6 +711,17 @@ public class Tidy implements Serializable
                 {
                     properties.setProperty(argName, (argValue == null ? "" : argValue));
                 }
+                else if (argName.equals("jobs")) // number of files tidied at the same time
+                {
+                    try
+                    {
+                        jobs = Math.max(1, Integer.parseInt(argValue));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        this.report.badArgument(argName, argValue);
+                    }
+                }
                 else if (argName.equals("config")) // parse a property file
                 {
                     if (argValue != null)
@@ -920,56 +816,258 @@ public class Tidy implements Serializable
                 }
             }
 
-            if (argCount > 0)
+            // all the files up to the next option are tidied with the same configuration
+            List<String> files = new ArrayList<>();
+            while (argCount > 0 && !argv[argIndex].startsWith("-"))
             {
-                file = argv[argIndex];
+                expandFileArgument(argv[argIndex], files);
+                --argCount;
+                ++argIndex;
             }
-            else
+
+            returnCode = Math.max(returnCode, tidyFiles(files, jobs));
+        }
+
+        if (returnCode > 0 && !configuration.quiet)
+        {
+            this.report.generalInfo(this.errout);
+        }
+
+        if (this.errout != this.stderr)
+        {
+            this.errout.close();
+        }
+
+        // return status can be used by scripts: the most severe across all files
+        return returnCode;
+    }
+
+    /**
+     * Return code for a parse: 2 for errors, 1 for warnings and 0 if all is ok.
+     *
+     * @param errors   number of errors
+     * @param warnings number of warnings
+     * @return return code
+     */
+    private static int returnCode(int errors, int warnings)
+    {
+        if (errors > 0)
+        {
+            return 2;
+        }
+        return warnings > 0 ? 1 : 0;
+    }
+
+    /**
+     * Adds the files named by a command line argument: the lines of a list file for <code>@file</code>, the html
+     * files under a directory, the files matching a glob pattern, or else the argument itself.
+     *
+     * @param arg   command line argument
+     * @param files list the file names are added to
+     */
+    private void expandFileArgument(String arg, List<String> files)
+    {
+        if (arg.length() > 1 && arg.charAt(0) == '@')
+        {
+            try
+            {
+                for (String line : Files.readAllLines(Paths.get(arg.substring(1))))
+                {
+                    line = line.trim();
+                    if (line.length() > 0 && line.charAt(0) != '#' && line.charAt(0) != '@')
+                    {
+                        expandFileArgument(line, files);
+                    }
+                }
+            }
+            catch (IOException e)
             {
-                file = "stdin";
+                this.report.unknownFile(this.errout, arg.substring(1));
             }
+            return;
+        }
 
-            try
+        Path path = null;
+        try
+        {
+            path = Paths.get(arg);
+        }
+        catch (RuntimeException e)
+        {
+            // not a valid path, most likely a glob pattern
+        }
+
+        if (path != null && Files.isDirectory(path))
+        {
+            files.addAll(findFiles(path, Integer.MAX_VALUE, p -> {
+                String name = p.getFileName().toString().toLowerCase();
+                return name.endsWith(".html") || name.endsWith(".htm") || name.endsWith(".xhtml");
+            }));
+            return;
+        }
+
+        if ((path == null || !Files.exists(path)) && isGlobPattern(arg))
+        {
+            // walk from the directory before the first component with wildcards
+            String[] parts = arg.replace('\\', '/').split("/", -1);
+            int depth = 0;
+            StringBuilder base = new StringBuilder();
+            while (depth < parts.length - 1 && !isGlobPattern(parts[depth]))
             {
-                parse(null, file, System.out);
+                base.append(parts[depth]).append('/');
+                depth++;
             }
-            catch (IOException ioe)
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + arg);
+            List<String> matches = findFiles(
+                Paths.get(base.length() > 0 ? base.toString() : ""),
+                arg.contains("**") ? Integer.MAX_VALUE : parts.length - depth,
+                matcher::matches);
+            if (!matches.isEmpty())
             {
-                this.report.unknownFile(this.errout, file);
+                files.addAll(matches);
+                return;
             }
+        }
 
-            --argCount;
-            ++argIndex;
+        files.add(arg);
+    }
 
-            if (argCount <= 0)
+    /**
+     * Checks if a file name contains glob wildcards.
+     *
+     * @param name file name
+     * @return <code>true</code> for a glob pattern
+     */
+    private static boolean isGlobPattern(String name)
+    {
+        for (int i = 0; i < name.length(); i++)
+        {
+            switch (name.charAt(i))
             {
-                break;
+                case '*':
+                case '?':
+                case '[':
+                case '{':
+                    return true;
+                default:
+                    break;
             }
         }
+        return false;
+    }
 
-        if (this.parseErrors + this.parseWarnings > 0 && !configuration.quiet)
+    /**
+     * Finds the regular files under a directory, sorted by name.
+     *
+     * @param dir      directory
+     * @param maxDepth maximum number of directory levels to visit
+     * @param filter   file filter
+     * @return file names
+     */
+    private static List<String> findFiles(Path dir, int maxDepth, Predicate<Path> filter)
+    {
+        try (Stream<Path> paths = Files.walk(dir, maxDepth))
         {
-            this.report.generalInfo(this.errout);
+            return paths.filter(Files::isRegularFile).filter(filter).map(Path::toString).sorted().collect(
+                Collectors.toList());
+        }
+        catch (IOException e)
+        {
+            return new ArrayList<>();
         }
+    }
 
-        if (this.errout != this.stderr)
+    /**
+     * Tidies the given files, writing output to stdout or back to the files. With more than one job, files are
+     * tidied at the same time in separate parse contexts, while output and messages are written in file order.
+     *
+     * @param files file names
+     * @param jobs  maximum number of files tidied at the same time
+     * @return most severe return code
+     */
+    private int tidyFiles(List<String> files, int jobs)
+    {
+        int returnCode = 0;
+
+        // slides are written to fixed file names, so split documents one at a time
+        if (jobs < 2 || files.size() < 2 || configuration.burstSlides)
         {
-            this.errout.close();
+            for (String file : files)
+            {
+                try
+                {
+                    parse(null, file, System.out);
+                    returnCode = Math.max(returnCode, returnCode(this.parseErrors, this.parseWarnings));
+                }
+                catch (IOException ioe)
+                {
+                    this.report.unknownFile(this.errout, file);
+                }
+            }
+            return returnCode;
         }
 
-        // return status can be used by scripts
-        if (this.parseErrors > 0)
+        TidyEngine engine = new TidyEngine(configuration);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, files.size()));
+        List<Path> paths = new ArrayList<>();
+        for (String file : files)
         {
-            return 2;
+            paths.add(Paths.get(file));
         }
 
-        if (this.parseWarnings > 0)
+        // keep a bounded window of pending files, so that finished outputs don't pile up in memory
+        try (Stream<TidyResult> results = engine.tidyAll(paths, jobs * 2, executor))
+        {
+            Iterator<TidyResult> iterator = results.iterator();
+            for (String file : files)
+            {
+                TidyResult result = iterator.next();
+                if (result.getException() != null)
+                {
+                    this.report.unknownFile(this.errout, file);
+                    continue;
+                }
+
+                this.errout.print(result.getReport());
+                this.errout.flush();
+                writeOutput(file, result.getOutput());
+
+                this.parseErrors = result.getErrors();
+                this.parseWarnings = result.getWarnings();
+                returnCode = Math.max(returnCode, returnCode(result.getErrors(), result.getWarnings()));
+            }
+        }
+        finally
         {
-            return 1;
+            executor.shutdownNow();
         }
+        return returnCode;
+    }
 
-        // 0 means all is ok
-        return 0;
+    /**
+     * Writes the output of a file tidied in a parse context back to the file or to stdout.
+     *
+     * @param file   file name
+     * @param output tidied document, empty if it hasn't been printed
+     */
+    private void writeOutput(String file, byte[] output)
+    {
+        if (!configuration.writeback)
+        {
+            System.out.write(output, 0, output.length);
+            System.out.flush();
+        }
+        else if (output.length > 0)
+        {
+            try (OutputStream out = new FileOutputStream(file))
+            {
+                out.write(output);
+            }
+            catch (IOException e)
+            {
+                this.report.unknownFile(this.errout, file);
+            }
+        }
     }
 
     /**
@@ -982,6 +1080,30 @@ public class Tidy implements Serializable
         this.report.addMessageListener(listener);
     }
 
+    /**
+     * Attach a TidyMessageFilter which receives each message before its text is formatted, and decides whether it is
+     * printed to the error stream. Messages dropped by the filter are never formatted, unless the filter asks for
+     * their text.
+     *
+     * @param filter TidyMessageFilter implementation
+     */
+    public void setMessageFilter(TidyMessageFilter filter)
+    {
+        this.report.setMessageFilter(filter);
+    }
+
+    /**
+     * Attach a TidyMetricsListener which receives the metrics of each parse: time and allocations of each stage, nodes
+     * created, characters read and written, lexer buffer size and nesting depth. Nothing is measured when no listener
+     * is attached.
+     *
+     * @param listener TidyMetricsListener implementation, or null to stop measuring
+     */
+    public void setMetricsListener(TidyMetricsListener listener)
+    {
+        this.metricsListener = listener;
+    }
+
     /**
      * <code>indent-spaces</code>- default indentation.
      *
@@ -2487,4 +2609,54 @@ public class Tidy implements Serializable
     {
         configuration.maxNesting = maxNesting;
     }
+
+    /**
+     * <code>buffered-input</code>- read and decode input a block at a time instead of a char at a time.
+     *
+     * @param bufferedInput <code>true</code> to use block reads
+     * @see Configuration#bufferedInput
+     */
+    public void setBufferedInput(boolean bufferedInput)
+    {
+        configuration.bufferedInput = bufferedInput;
+    }
+
+    /**
+     * <code>buffered-input</code>- read and decode input a block at a time instead of a char at a time.
+     *
+     * @return <code>true</code> if tidy reads input a block at a time
+     * @see Configuration#bufferedInput
+     */
+    public boolean getBufferedInput()
+    {
+        return configuration.bufferedInput;
+    }
+
+    /**
+     * <code>stream-output</code>- print the children of the body element, and of the block elements, tables and row
+     * groups in it, as soon as the parser has completed them, and release them from the document. Only used with
+     * <code>force-output</code>, for html output with a doctype other than auto and without clean, word-2000,
+     * drop-font-tags or slides; other documents are printed as usual. The output of a table is held until it ends,
+     * so content the parser moves before it is printed there, unless the table is too large: such content is then
+     * printed after it and reported. Head elements, body attributes and extra doctypes found after the body has
+     * started are reported as missing from the output, and the returned document lacks the printed elements.
+     *
+     * @param streamOutput <code>true</code> to print completed elements while parsing
+     * @see Configuration#streamOutput
+     */
+    public void setStreamOutput(boolean streamOutput)
+    {
+        configuration.streamOutput = streamOutput;
+    }
+
+    /**
+     * <code>stream-output</code>- print the content of the body element as soon as the parser has completed it.
+     *
+     * @return <code>true</code> if tidy prints completed elements while parsing
+     * @see Configuration#streamOutput
+     */
+    public boolean getStreamOutput()
+    {
+        return configuration.streamOutput;
+    }
 }
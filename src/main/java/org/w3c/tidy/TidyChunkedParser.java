@@ -0,0 +1,407 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Blocking parse, on an executor thread of its own, of a document received in chunks, for instance from a network
+ * connection. The caller's thread never waits: chunks passed to {@link #feed(ByteBuffer)} are queued, and read by a
+ * parse task submitted to the executor given to {@link TidyEngine#newChunkedParser(String, OutputStream, Executor)}.
+ * Tidying overlaps with receiving, and only the chunks not yet read by the lexer are kept.
+ * <p>
+ * The parse task itself is an ordinary blocking parse: it holds its thread from the first chunk to the end of the
+ * document, and waits in that thread whenever the input runs out, so each document being received takes one thread.
+ * The wait doesn't hold a monitor, so with a virtual thread per task executor (Java 21 and later) the thread is cheap;
+ * with a pool of platform threads, size the pool for the number of documents received at once.
+ * </p>
+ * <p>
+ * The queue has a capacity: once the chunks not yet read reach it, <code>feed()</code> still queues the chunk but
+ * returns <code>false</code>, and the caller should stop reading its input until the future returned by
+ * {@link #ready()} completes. The capacity only bounds the memory used by a caller which honours this signal.
+ * </p>
+ *
+ * <pre>
+ * TidyChunkedParser parser = engine.newChunkedParser(uri, out, Executors.newVirtualThreadPerTaskExecutor());
+ * // for each chunk received
+ * if (!parser.feed(chunk))
+ * {
+ *     // stop reading the connection until parser.ready() completes
+ * }
+ * // when the body is complete
+ * parser.end().thenAccept(result -&gt; log(result.getErrors()));
+ * </pre>
+ * The methods of a chunked parser can be called from any thread, but chunks must be fed in order.
+ * @version $Revision$ ($Author$)
+ */
+public final class TidyChunkedParser
+{
+
+    /**
+     * default number of bytes queued before feed() asks the caller to pause.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    /**
+     * guards the chunks. A lock rather than a monitor, so that a virtual thread waiting for input is unmounted.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * signalled when a chunk is fed or the input ends.
+     */
+    private final Condition available = this.lock.newCondition();
+
+    /**
+     * chunks fed and not yet read by the lexer.
+     */
+    private final Deque<ByteBuffer> chunks = new ArrayDeque<>();
+
+    /**
+     * number of bytes in <code>chunks</code>.
+     */
+    private long pendingBytes;
+
+    /**
+     * number of bytes queued before feed() asks the caller to pause.
+     */
+    private final int capacity;
+
+    /**
+     * completed when the queue is below its capacity again, null while it is.
+     */
+    private CompletableFuture<Void> readyFuture;
+
+    /**
+     * whether end() has been called, or the parse is over.
+     */
+    private boolean ended;
+
+    /**
+     * result of the parse.
+     */
+    private final CompletableFuture<TidyResult> result = new CompletableFuture<>();
+
+    /**
+     * Instantiates a new chunked parser and submits its parse.
+     * @param engine tidy engine
+     * @param inputName name of the input
+     * @param out destination for the pretty-printed document, null to keep it in the result
+     * @param executor executor running the parse
+     * @param capacity number of bytes queued before feed() asks the caller to pause
+     */
+    TidyChunkedParser(TidyEngine engine, String inputName, OutputStream out, Executor executor, int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+
+        executor.execute(() ->
+        {
+            try
+            {
+                this.result.complete(engine.tidy(inputName, out, (context, o) -> context.parse(new ChunkStream(), o)));
+            }
+            catch (IOException | RuntimeException | Error e)
+            {
+                this.result.completeExceptionally(e);
+            }
+            finally
+            {
+                release();
+            }
+        });
+    }
+
+    /**
+     * Queues the remaining bytes of the given buffer for parsing. The bytes are copied, so the buffer can be reused
+     * as soon as this method returns. Never blocks on the parse, and always queues the chunk, even when the queue is
+     * full. Chunks fed after the parse has failed are dropped.
+     * @param data next bytes of the document
+     * @return <code>false</code> if the queue is full, in which case nothing more should be fed until
+     * {@link #ready()} completes
+     * @throws IllegalStateException if end() has already been called
+     */
+    public boolean feed(ByteBuffer data)
+    {
+        if (!data.hasRemaining())
+        {
+            return isReady();
+        }
+
+        ByteBuffer chunk = ByteBuffer.allocate(data.remaining());
+        chunk.put(data);
+        chunk.flip();
+
+        this.lock.lock();
+        try
+        {
+            if (this.ended)
+            {
+                if (this.result.isDone())
+                {
+                    return true;
+                }
+                throw new IllegalStateException("end() already called");
+            }
+            this.chunks.addLast(chunk);
+            this.pendingBytes += chunk.remaining();
+            this.available.signal();
+            if (this.pendingBytes < this.capacity)
+            {
+                return true;
+            }
+            if (this.readyFuture == null)
+            {
+                this.readyFuture = new CompletableFuture<>();
+            }
+            return false;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the end of the document. The parse completes once the queued chunks are read, and the document printed.
+     * @return future result, with an empty output if the document has been written to an output stream
+     */
+    public CompletableFuture<TidyResult> end()
+    {
+        this.lock.lock();
+        try
+        {
+            this.ended = true;
+            this.available.signal();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+        return this.result;
+    }
+
+    /**
+     * Returns the number of bytes fed and not yet read by the lexer, for instance to stop reading from a connection
+     * while the parse lags behind.
+     * @return pending bytes
+     */
+    public long getPendingBytes()
+    {
+        this.lock.lock();
+        try
+        {
+            return this.pendingBytes;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the queue is below its capacity, so that more chunks should be fed.
+     * @return <code>true</code> if the caller can go on feeding chunks
+     */
+    public boolean isReady()
+    {
+        this.lock.lock();
+        try
+        {
+            return this.readyFuture == null;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a future completed once the queue is below its capacity, or the parse is over. The future is completed
+     * by the parsing thread, so dependent actions should be quick or run on another executor.
+     * @return future, already completed if the queue is not full
+     */
+    public CompletableFuture<Void> ready()
+    {
+        this.lock.lock();
+        try
+        {
+            return (this.readyFuture != null) ? this.readyFuture : CompletableFuture.completedFuture(null);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the result of the parse, completed after end() has been called.
+     * @return future result
+     */
+    public CompletableFuture<TidyResult> getResult()
+    {
+        return this.result;
+    }
+
+    /**
+     * Drops the chunks left when the parse is over.
+     */
+    private void release()
+    {
+        CompletableFuture<Void> resumed;
+        this.lock.lock();
+        try
+        {
+            this.ended = true;
+            this.chunks.clear();
+            this.pendingBytes = 0;
+            resumed = this.readyFuture;
+            this.readyFuture = null;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+        if (resumed != null)
+        {
+            resumed.complete(null);
+        }
+    }
+
+    /**
+     * Input of the parse, reading the chunks as they are fed.
+     */
+    private class ChunkStream extends InputStream
+    {
+
+        /**
+         * @see java.io.InputStream#read()
+         */
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+        }
+
+        /**
+         * Reads from the first chunk, waiting for one if none is queued.
+         * @see java.io.InputStream#read(byte[], int, int)
+         */
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+
+            CompletableFuture<Void> resumed = null;
+            lock.lock();
+            try
+            {
+                while (chunks.isEmpty() && !ended)
+                {
+                    available.await();
+                }
+                if (chunks.isEmpty())
+                {
+                    return -1;
+                }
+
+                ByteBuffer chunk = chunks.peekFirst();
+                int n = Math.min(len, chunk.remaining());
+                chunk.get(b, off, n);
+                if (!chunk.hasRemaining())
+                {
+                    chunks.removeFirst();
+                }
+                pendingBytes -= n;
+                if (readyFuture != null && pendingBytes < capacity)
+                {
+                    resumed = readyFuture;
+                    readyFuture = null;
+                }
+                return n;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            finally
+            {
+                lock.unlock();
+                // completed outside the lock, as dependent actions may feed the next chunk
+                if (resumed != null)
+                {
+                    resumed.complete(null);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,427 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Immutable, reusable Tidy engine. The configuration is read, checked and adjusted once, and the tag, attribute and
+ * entity tables are built when the engine is created. An engine can be shared by any number of threads: every parse
+ * runs in a {@link TidyParseContext} holding its own copy of the configuration, its own report and counters.
+ *
+ * <pre>
+ * Properties props = new Properties();
+ * props.setProperty("output-xhtml", "yes");
+ * TidyEngine engine = new TidyEngine(props);
+ *
+ * // in any thread
+ * TidyParseContext context = engine.newContext();
+ * context.setErrout(errors);
+ * context.parse(in, out);
+ * int errorCount = context.getParseErrors();
+ *
+ * // or tidy a batch of files on an executor, with at most 16 documents in flight
+ * try (Stream&lt;TidyResult&gt; results = engine.tidyAll(files, 16, executor))
+ * {
+ *     results.forEach(result -&gt; store(result.getInputName(), result.getOutput()));
+ * }
+ * </pre>
+ * @version $Revision$ ($Author$)
+ */
+public final class TidyEngine
+{
+
+    /**
+     * adjusted configuration, copied for each parse and never changed.
+     */
+    private final Configuration configuration;
+
+    /**
+     * Instantiates a new engine with the given configuration options, which use the same names as in configuration
+     * files.
+     * @param properties configuration options
+     * @throws IllegalArgumentException if an option is not known
+     */
+    public TidyEngine(Properties properties)
+    {
+        for (String key : properties.stringPropertyNames())
+        {
+            if (!Configuration.isKnownOption(key))
+            {
+                throw new IllegalArgumentException("Unknown configuration option: " + key);
+            }
+        }
+
+        Configuration config = new Configuration(new Report());
+        TagTable tt = TagTable.newTagTable();
+        tt.setConfiguration(config);
+        config.tt = tt;
+        config.addProps(properties);
+        config.adjust();
+        this.configuration = config;
+
+        // build the shared tables now rather than in the first parse
+        AttributeTable.getDefaultAttributeTable();
+        EntityTable.getDefaultEntityTable();
+    }
+
+    /**
+     * Instantiates a new engine with a copy of the given configuration, which must already be adjusted.
+     * @param configuration configuration
+     */
+    TidyEngine(Configuration configuration)
+    {
+        this.configuration = configuration.copy(new Report());
+        AttributeTable.getDefaultAttributeTable();
+        EntityTable.getDefaultEntityTable();
+    }
+
+    /**
+     * Returns a new parse context. A context must only be used by one thread at a time, but can be reused for any
+     * number of documents.
+     * @return parse context
+     */
+    public TidyParseContext newContext()
+    {
+        return new TidyParseContext(this);
+    }
+
+    /**
+     * Parses the given input in a new context, writing messages to standard error. If out is non-null, pretty prints
+     * to out. Warning: caller is responsible for calling close() on input and output after calling this method.
+     * @param in input
+     * @param out optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     */
+    public Node parse(InputStream in, OutputStream out)
+    {
+        return newContext().parse(in, out);
+    }
+
+    /**
+     * Parses the given input in a new context, writing messages to standard error. If out is non-null, pretty prints
+     * to out. Warning: caller is responsible for calling close() on input and output after calling this method.
+     * @param in input
+     * @param out optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     */
+    public Node parse(Reader in, Writer out)
+    {
+        return newContext().parse(in, out);
+    }
+
+    /**
+     * Tidies the given file in a new context, in the calling thread. Output and messages are kept in memory and
+     * nothing is written to standard error.
+     * @param file input file
+     * @return result
+     * @throws IOException if the file can't be read
+     */
+    public TidyResult tidy(Path file) throws IOException
+    {
+        return tidy(file.toString(), null, (context, out) -> context.parse(file, out));
+    }
+
+    /**
+     * Runs a parse in a new context, collecting messages and counters in a result.
+     * @param inputName name of the input
+     * @param out destination for the pretty-printed document, null to keep it in the result
+     * @param parse parse to run
+     * @return result, with an empty output if it has been written to out
+     * @throws IOException if the input can't be read
+     */
+    TidyResult tidy(String inputName, OutputStream out, Parse parse) throws IOException
+    {
+        List<TidyMessage> messages = new ArrayList<>();
+        StringWriter report = new StringWriter();
+        TidyParseContext context = newContext();
+        context.setErrout(new PrintWriter(report));
+        context.setInputStreamName(inputName);
+        context.setMessageListener(messages::add);
+
+        long start = System.nanoTime();
+        ByteArrayOutputStream buffer = (out == null) ? new ByteArrayOutputStream() : null;
+        parse.run(context, (out == null) ? buffer : out);
+        long time = System.nanoTime() - start;
+
+        context.getErrout().flush();
+        return new TidyResult(
+            inputName,
+            (buffer == null) ? new byte[0] : buffer.toByteArray(),
+            messages,
+            report.toString(),
+            context.getParseErrors(),
+            context.getParseWarnings(),
+            time);
+    }
+
+    /**
+     * Returns a parser for a document received in chunks, pretty printed to the given output, whose queue has a
+     * capacity of {@link TidyChunkedParser#DEFAULT_CAPACITY} bytes.
+     * @param inputName name of the input, printed in messages
+     * @param out destination for the pretty-printed document, null to keep it in the result
+     * @param executor executor running the parse
+     * @return chunked parser
+     * @see #newChunkedParser(String, OutputStream, Executor, int)
+     */
+    public TidyChunkedParser newChunkedParser(String inputName, OutputStream out, Executor executor)
+    {
+        return newChunkedParser(inputName, out, executor, TidyChunkedParser.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns a parser for a document received in chunks, pretty printed to the given output. The parse runs as a
+     * single blocking task on the given executor, which reads the chunks as they are fed and waits for the next one
+     * in its thread: each document being received takes one executor thread until it ends. The wait doesn't hold a
+     * monitor, so a virtual thread per task executor can run one parser for each connection.
+     * @param inputName name of the input, printed in messages
+     * @param out destination for the pretty-printed document, null to keep it in the result
+     * @param executor executor running the parse
+     * @param capacity number of bytes queued before the parser asks the caller to pause
+     * @return chunked parser
+     */
+    public TidyChunkedParser newChunkedParser(String inputName, OutputStream out, Executor executor, int capacity)
+    {
+        return new TidyChunkedParser(this, inputName, out, executor, capacity);
+    }
+
+    /**
+     * Tidies the given file in the common fork join pool.
+     * @param file input file
+     * @return future result, completed exceptionally with an IOException if the file can't be read
+     */
+    public CompletableFuture<TidyResult> tidyAsync(Path file)
+    {
+        return tidyAsync(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tidies the given file on the given executor. Each document is parsed in its own context, so any kind of
+     * executor can be used, a virtual thread per task executor included. The file is not read if the future is
+     * cancelled before the task starts.
+     * @param file input file
+     * @param executor executor running the parse
+     * @return future result, completed exceptionally with an IOException if the file can't be read
+     */
+    public CompletableFuture<TidyResult> tidyAsync(Path file, Executor executor)
+    {
+        CompletableFuture<TidyResult> future = new CompletableFuture<>();
+        executor.execute(() ->
+        {
+            if (future.isCancelled())
+            {
+                return;
+            }
+
+            try
+            {
+                future.complete(tidy(file));
+            }
+            catch (IOException | RuntimeException | Error e)
+            {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Tidies the given files in the common fork join pool.
+     * @param files input files
+     * @param parallelism maximum number of documents in flight
+     * @return results, in the order of the files
+     * @see #tidyAll(Iterable, int, Executor)
+     */
+    public Stream<TidyResult> tidyAll(Iterable<Path> files, int parallelism)
+    {
+        return tidyAll(files, parallelism, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tidies the given files on the given executor. The returned stream is lazy: at most <code>parallelism</code>
+     * documents are submitted and not yet consumed at any time, so a slow consumer holds back the parsing instead of
+     * piling up results in memory. Files which can't be read give a result with an exception, and closing the stream
+     * cancels the documents submitted but not consumed.
+     * @param files input files
+     * @param parallelism maximum number of documents in flight
+     * @param executor executor running the parses
+     * @return results, in the order of the files
+     */
+    public Stream<TidyResult> tidyAll(Iterable<Path> files, int parallelism, Executor executor)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+
+        Iterator<Path> input = files.iterator();
+        Deque<Path> submitted = new ArrayDeque<>();
+        Deque<CompletableFuture<TidyResult>> pending = new ArrayDeque<>();
+
+        Iterator<TidyResult> results = new Iterator<TidyResult>()
+        {
+
+            /**
+             * Submits files until the window is full.
+             */
+            private void fill()
+            {
+                while (pending.size() < parallelism && input.hasNext())
+                {
+                    Path file = input.next();
+                    submitted.add(file);
+                    pending.add(tidyAsync(file, executor));
+                }
+            }
+
+            public boolean hasNext()
+            {
+                fill();
+                return !pending.isEmpty();
+            }
+
+            public TidyResult next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                Path file = submitted.removeFirst();
+                try
+                {
+                    return pending.removeFirst().join();
+                }
+                catch (CompletionException e)
+                {
+                    if (e.getCause() instanceof IOException)
+                    {
+                        return new TidyResult(file.toString(), (IOException) e.getCause());
+                    }
+                    if (e.getCause() instanceof RuntimeException)
+                    {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error)
+                    {
+                        throw (Error) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        };
+
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() ->
+            {
+                for (CompletableFuture<TidyResult> future : pending)
+                {
+                    future.cancel(false);
+                }
+                pending.clear();
+                submitted.clear();
+            });
+    }
+
+    /**
+     * Parse of a document in a context.
+     */
+    interface Parse
+    {
+
+        /**
+         * Parses the document.
+         * @param context parse context
+         * @param out destination for the pretty-printed document
+         * @throws IOException if the input can't be read
+         */
+        void run(TidyParseContext context, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Returns a copy of the configuration for a single parse.
+     * @param report report for the parse
+     * @return configuration copy
+     */
+    Configuration newConfiguration(Report report)
+    {
+        return this.configuration.copy(report);
+    }
+
+}
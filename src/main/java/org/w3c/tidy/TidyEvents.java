@@ -0,0 +1,177 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+/**
+ * Recorder of profiling events for documents, parse stages and pathological conditions. The Java Flight Recorder
+ * implementation is loaded reflectively, so that Tidy still runs on JVMs without JFR: there
+ * <code>RECORDER</code> is null and no event is created.
+ * @version $Revision$ ($Author$)
+ */
+abstract class TidyEvents
+{
+
+    /**
+     * condition reported when a document exceeds max-nesting.
+     */
+    static final String EXCESSIVE_NESTING = "excessive-nesting";
+
+    /**
+     * condition reported when the stack of inline elements to reopen grows past a power of two.
+     */
+    static final String INLINE_STACK = "inline-stack";
+
+    /**
+     * condition reported when a single token doesn't fit in a text chunk and the lexer buffer grows.
+     */
+    static final String BUFFER_GROWTH = "buffer-growth";
+
+    /**
+     * size of the inline stack from which its growth is reported.
+     */
+    static final int INLINE_STACK_THRESHOLD = 64;
+
+    /**
+     * the recorder, null if the JVM has no flight recorder.
+     */
+    static final TidyEvents RECORDER = load();
+
+    /**
+     * Loads the flight recorder implementation.
+     * @return recorder, or null if JFR is not available
+     */
+    private static TidyEvents load()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (TidyEvents) Class.forName("org.w3c.tidy.TidyJfrEvents").getDeclaredConstructor().newInstance();
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+        catch (LinkageError e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the recorder if a recording is interested in document or stage events.
+     * @return recorder, or null
+     */
+    static TidyEvents active()
+    {
+        return (RECORDER != null && RECORDER.isEnabled()) ? RECORDER : null;
+    }
+
+    /**
+     * Reports a pathological condition, if a recording is interested in it.
+     * @param lexer lexer, giving the position in the document
+     * @param condition one of the condition constants
+     * @param value size or level reached
+     */
+    static void condition(Lexer lexer, String condition, long value)
+    {
+        if (RECORDER != null)
+        {
+            RECORDER.recordCondition(lexer, condition, value);
+        }
+    }
+
+    /**
+     * Whether a recording is interested in document or stage events.
+     * @return true if enabled
+     */
+    abstract boolean isEnabled();
+
+    /**
+     * Starts the event of a document.
+     * @return event
+     */
+    abstract Object beginDocument();
+
+    /**
+     * Ends and commits the event of a document.
+     * @param event event returned by beginDocument
+     * @param stats metrics of the parse
+     * @param errors number of errors
+     * @param warnings number of warnings
+     */
+    abstract void endDocument(Object event, TidyStats stats, int errors, int warnings);
+
+    /**
+     * Starts the event of a stage.
+     * @return event
+     */
+    abstract Object beginStage();
+
+    /**
+     * Ends and commits the event of a stage.
+     * @param event event returned by beginStage
+     * @param inputName name of the input
+     * @param stage stage
+     */
+    abstract void endStage(Object event, String inputName, TidyStats.Stage stage);
+
+    /**
+     * Records a pathological condition.
+     * @param lexer lexer, giving the position in the document
+     * @param condition one of the condition constants
+     * @param value size or level reached
+     */
+    abstract void recordCondition(Lexer lexer, String condition, long value);
+
+}
@@ -0,0 +1,278 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Java Flight Recorder events. Only loaded through {@link TidyEvents}, after checking that the JVM has JFR. Needs
+ * jdk.jfr to compile, so it is only built by the <code>jdk11+</code> Maven profile, active when building on JDK 11 or
+ * later; a jar built on an older JDK simply records no events.
+ * @version $Revision$ ($Author$)
+ */
+final class TidyJfrEvents extends TidyEvents
+{
+
+    /**
+     * Parse of a document, from reading to printing.
+     */
+    @Name("org.w3c.tidy.Document")
+    @Label("Tidy Document")
+    @Category("JTidy")
+    @Description("Parse, clean up and printing of a document")
+    static final class DocumentEvent extends Event
+    {
+
+        /**
+         * name of the input.
+         */
+        @Label("Input Name")
+        String inputName;
+
+        /**
+         * characters read.
+         */
+        @Label("Characters Read")
+        long charsRead;
+
+        /**
+         * characters written.
+         */
+        @Label("Characters Written")
+        long charsWritten;
+
+        /**
+         * nodes created.
+         */
+        @Label("Nodes Created")
+        int nodes;
+
+        /**
+         * deepest nesting level.
+         */
+        @Label("Max Nesting Level")
+        int maxNestingLevel;
+
+        /**
+         * number of errors.
+         */
+        @Label("Errors")
+        int errors;
+
+        /**
+         * number of warnings.
+         */
+        @Label("Warnings")
+        int warnings;
+    }
+
+    /**
+     * Stage of a parse.
+     */
+    @Name("org.w3c.tidy.Stage")
+    @Label("Tidy Stage")
+    @Category("JTidy")
+    @Description("Parsing, clean up pass, doctype fixing or printing of a document")
+    static final class StageEvent extends Event
+    {
+
+        /**
+         * name of the input.
+         */
+        @Label("Input Name")
+        String inputName;
+
+        /**
+         * stage name.
+         */
+        @Label("Stage")
+        String stage;
+    }
+
+    /**
+     * Pathological condition met while parsing.
+     */
+    @Name("org.w3c.tidy.Condition")
+    @Label("Tidy Condition")
+    @Category("JTidy")
+    @Description("Excessive nesting, inline stack growth or lexer buffer growth")
+    static final class ConditionEvent extends Event
+    {
+
+        /**
+         * condition name.
+         */
+        @Label("Condition")
+        String condition;
+
+        /**
+         * size or level reached.
+         */
+        @Label("Value")
+        long value;
+
+        /**
+         * line in the document.
+         */
+        @Label("Line")
+        int line;
+
+        /**
+         * column in the document.
+         */
+        @Label("Column")
+        int column;
+    }
+
+    /**
+     * document event type.
+     */
+    private final EventType documentType = EventType.getEventType(DocumentEvent.class);
+
+    /**
+     * stage event type.
+     */
+    private final EventType stageType = EventType.getEventType(StageEvent.class);
+
+    /**
+     * condition event type.
+     */
+    private final EventType conditionType = EventType.getEventType(ConditionEvent.class);
+
+    /**
+     * @see org.w3c.tidy.TidyEvents#isEnabled()
+     */
+    boolean isEnabled()
+    {
+        return this.documentType.isEnabled() || this.stageType.isEnabled();
+    }
+
+    /**
+     * @see org.w3c.tidy.TidyEvents#beginDocument()
+     */
+    Object beginDocument()
+    {
+        DocumentEvent event = new DocumentEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @see org.w3c.tidy.TidyEvents#endDocument(Object, TidyStats, int, int)
+     */
+    void endDocument(Object event, TidyStats stats, int errors, int warnings)
+    {
+        DocumentEvent document = (DocumentEvent) event;
+        document.end();
+        if (document.shouldCommit())
+        {
+            document.inputName = stats.getInputName();
+            document.charsRead = stats.getCharsRead();
+            document.charsWritten = stats.getCharsWritten();
+            document.nodes = stats.getNodesCreated();
+            document.maxNestingLevel = stats.getMaxNestingLevel();
+            document.errors = errors;
+            document.warnings = warnings;
+            document.commit();
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.TidyEvents#beginStage()
+     */
+    Object beginStage()
+    {
+        StageEvent event = new StageEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @see org.w3c.tidy.TidyEvents#endStage(Object, String, TidyStats.Stage)
+     */
+    void endStage(Object event, String inputName, TidyStats.Stage stage)
+    {
+        StageEvent stageEvent = (StageEvent) event;
+        stageEvent.end();
+        if (stageEvent.shouldCommit())
+        {
+            stageEvent.inputName = inputName;
+            stageEvent.stage = stage.name();
+            stageEvent.commit();
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.TidyEvents#recordCondition(Lexer, String, long)
+     */
+    void recordCondition(Lexer lexer, String condition, long value)
+    {
+        if (this.conditionType.isEnabled())
+        {
+            ConditionEvent event = new ConditionEvent();
+            event.condition = condition;
+            event.value = value;
+            event.line = lexer.lines;
+            event.column = lexer.columns;
+            event.commit();
+        }
+    }
+
+}
@@ -53,11 +53,14 @@
  */
 package org.w3c.tidy;
 
+import java.util.MissingResourceException;
 import java.util.Objects;
 
 /**
- * Message sent to listeners for validation errors/warnings and info.
+ * Message sent to listeners for validation errors/warnings and info. Messages reported by Tidy carry the resource key
+ * and the raw arguments of the message, and only format its text the first time <code>getMessage()</code> is called.
  * @see Tidy#setMessageListener(TidyMessageListener)
+ * @see Tidy#setMessageFilter(TidyMessageFilter)
  * @author Fabrizio Giustina
  * @version $Revision$ ($Author$)
  */
@@ -82,10 +85,20 @@ public final class TidyMessage
     private Level level;
 
     /**
-     * Formatted text for this message.
+     * Formatted text for this message, null until formatted.
      */
     private String message;
 
+    /**
+     * ResourceBundle key for this message, null if the text was given.
+     */
+    private String key;
+
+    /**
+     * Raw arguments for the message text, can be null.
+     */
+    private Object[] arguments;
+
     /**
      * Tidy internal error code.
      */
@@ -108,6 +121,25 @@ public final class TidyMessage
         this.message = message;
     }
 
+    /**
+     * Instantiates a new message whose text is formatted on demand.
+     * @param errorCode Tidy internal error code.
+     * @param line Line number in the source file
+     * @param column Column number in the source file
+     * @param level severity
+     * @param key ResourceBundle key for the message text
+     * @param arguments optional arguments for the message text
+     */
+    TidyMessage(int errorCode, int line, int column, Level level, String key, Object[] arguments)
+    {
+        this.errorCode = errorCode;
+        this.line = line;
+        this.column = column;
+        this.level = level;
+        this.key = key;
+        this.arguments = arguments;
+    }
+
     /**
      * Getter for <code>errorCode</code>.
      * @return Returns the errorCode.
@@ -145,14 +177,43 @@ public final class TidyMessage
     }
 
     /**
-     * Getter for <code>message</code>.
+     * Getter for <code>message</code>. The text is formatted the first time it is asked for.
      * @return Returns the message.
      */
     public String getMessage()
     {
+        if (this.message == null && this.key != null)
+        {
+            try
+            {
+                this.message = Report.formatMessage(this.key, this.arguments);
+            }
+            catch (MissingResourceException e)
+            {
+                this.message = e.toString();
+            }
+        }
         return this.message;
     }
 
+    /**
+     * Getter for <code>key</code>.
+     * @return Returns the ResourceBundle key of the message, or null if the message was created with its text.
+     */
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * Getter for <code>arguments</code>.
+     * @return Returns a copy of the raw arguments of the message, or null if it has none.
+     */
+    public Object[] getArguments()
+    {
+        return (this.arguments != null) ? this.arguments.clone() : null;
+    }
+
     @Override
     public String toString() {
     	return "Line " + getLine() + ", column " + getColumn() + ", " + 
@@ -288,7 +349,7 @@ public final class TidyMessage
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(column, errorCode, level, line, message);
+		return Objects.hash(column, errorCode, level, line, getMessage());
 	}
 
 	@Override
@@ -301,7 +362,7 @@ public final class TidyMessage
 			return false;
 		TidyMessage other = (TidyMessage) obj;
 		return column == other.column && errorCode == other.errorCode && Objects.equals(level, other.level)
-				&& line == other.line && Objects.equals(message, other.message);
+				&& line == other.line && Objects.equals(getMessage(), other.getMessage());
 	}
 
 }
\ No newline at end of file
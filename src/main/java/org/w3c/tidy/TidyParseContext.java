@@ -0,0 +1,674 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * State of a parse: configuration, report, error output and counters. A context is cheap to create and must only be
+ * used by one thread at a time. Contexts obtained from a {@link TidyEngine} start every parse from a fresh copy of
+ * the engine configuration, so they can be reused for any number of documents; a {@link Tidy} instance runs each
+ * parse in a context working on its own configuration.
+ * @version $Revision$ ($Author$)
+ */
+public final class TidyParseContext
+{
+
+    /**
+     * engine this context belongs to, null for the context of a Tidy instance.
+     */
+    private final TidyEngine engine;
+
+    /**
+     * configuration of the current parse.
+     */
+    private Configuration configuration;
+
+    /**
+     * report for messages.
+     */
+    private Report report;
+
+    /**
+     * error output stream.
+     */
+    private PrintWriter errout;
+
+    /**
+     * name of the input, printed in messages.
+     */
+    private String inputStreamName = "InputStream";
+
+    /**
+     * listener for the metrics of each parse, null if none are measured.
+     */
+    private TidyMetricsListener metricsListener;
+
+    /**
+     * number of errors in the last parse.
+     */
+    private int parseErrors;
+
+    /**
+     * number of warnings in the last parse.
+     */
+    private int parseWarnings;
+
+    /**
+     * Instantiates a new context for the given engine.
+     * @param engine tidy engine
+     */
+    TidyParseContext(TidyEngine engine)
+    {
+        this.engine = engine;
+        this.report = new Report();
+        this.errout = new PrintWriter(System.err, true);
+    }
+
+    /**
+     * Instantiates a new context working on the given configuration, which must already be adjusted.
+     * @param configuration configuration
+     * @param report report
+     * @param errout error output stream
+     * @param inputStreamName name of the input
+     */
+    TidyParseContext(Configuration configuration, Report report, PrintWriter errout, String inputStreamName)
+    {
+        this.engine = null;
+        this.configuration = configuration;
+        this.report = report;
+        this.errout = errout;
+        this.inputStreamName = inputStreamName;
+    }
+
+    /**
+     * ParseErrors - the number of errors that occurred in the most recent parse operation.
+     * @return number of errors that occurred in the most recent parse operation.
+     */
+    public int getParseErrors()
+    {
+        return this.parseErrors;
+    }
+
+    /**
+     * ParseWarnings - the number of warnings that occurred in the most recent parse operation.
+     * @return number of warnings that occurred in the most recent parse operation.
+     */
+    public int getParseWarnings()
+    {
+        return this.parseWarnings;
+    }
+
+    /**
+     * InputStreamName - the name of the input stream (printed in the header information).
+     * @param name input stream name
+     */
+    public void setInputStreamName(String name)
+    {
+        if (name != null)
+        {
+            this.inputStreamName = name;
+        }
+    }
+
+    /**
+     * Errout - the error output stream.
+     * @return error output stream.
+     */
+    public PrintWriter getErrout()
+    {
+        return this.errout;
+    }
+
+    /**
+     * Sets the error output stream. With a null stream nothing is parsed.
+     * @param out error output stream
+     */
+    public void setErrout(PrintWriter out)
+    {
+        this.errout = out;
+    }
+
+    /**
+     * Adds a message listener.
+     * @param listener TidyMessageListener
+     */
+    public void setMessageListener(TidyMessageListener listener)
+    {
+        this.report.addMessageListener(listener);
+    }
+
+    /**
+     * Sets a message filter.
+     * @param filter TidyMessageFilter
+     */
+    public void setMessageFilter(TidyMessageFilter filter)
+    {
+        this.report.setMessageFilter(filter);
+    }
+
+    /**
+     * Sets a listener for the metrics of each parse. With no listener, nothing is measured.
+     * @param listener TidyMetricsListener
+     */
+    public void setMetricsListener(TidyMetricsListener listener)
+    {
+        this.metricsListener = listener;
+    }
+
+    /**
+     * Reads from the given input and returns the root Node. If out is non-null, pretty prints to out. Warning: caller
+     * is responsible for calling close() on input and output after calling this method.
+     * @param in input
+     * @param out optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     */
+    public Node parse(InputStream in, OutputStream out)
+    {
+        prepare();
+        return parse(
+            StreamInFactory.getStreamIn(this.configuration, in),
+            out != null ? OutFactory.getOut(this.configuration, out) : null);
+    }
+
+    /**
+     * Reads from the given input and returns the root Node. If out is non-null, pretty prints to out. Warning: caller
+     * is responsible for calling close() on input and output after calling this method.
+     * @param in input
+     * @param out optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     */
+    public Node parse(InputStream in, Writer out)
+    {
+        prepare();
+        return parse(
+            StreamInFactory.getStreamIn(this.configuration, in),
+            out != null ? OutFactory.getOut(this.configuration, out) : null);
+    }
+
+    /**
+     * Reads from the given input and returns the root Node. If out is non-null, pretty prints to out. Warning: caller
+     * is responsible for calling close() on input and output after calling this method.
+     * @param in input
+     * @param out optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     */
+    public Node parse(Reader in, OutputStream out)
+    {
+        prepare();
+        return parse(
+            StreamInFactory.getStreamIn(this.configuration, in),
+            out != null ? OutFactory.getOut(this.configuration, out) : null);
+    }
+
+    /**
+     * Reads from the given input and returns the root Node. If out is non-null, pretty prints to out. Warning: caller
+     * is responsible for calling close() on input and output after calling this method.
+     * @param in input
+     * @param out optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     */
+    public Node parse(Reader in, Writer out)
+    {
+        prepare();
+        return parse(
+            StreamInFactory.getStreamIn(this.configuration, in),
+            out != null ? OutFactory.getOut(this.configuration, out) : null);
+    }
+
+    /**
+     * Reads the given file through a memory mapping and returns the root Node. If out is non-null, pretty prints to
+     * out. The file name is used as input name. Warning: caller is responsible for calling close() on output after
+     * calling this method.
+     * @param file input file
+     * @param out optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     * @throws IOException if the file can't be opened or mapped, or the output can't be written
+     */
+    public Node parse(Path file, OutputStream out) throws IOException
+    {
+        prepare();
+        this.inputStreamName = file.toString();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            return parse(
+                StreamInFactory.getStreamIn(this.configuration, channel),
+                out != null ? OutFactory.getOut(this.configuration, out) : null);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses InputStream in and returns a DOM Document node. If out is non-null, pretty prints to OutputStream out.
+     * @param in input stream
+     * @param out optional output stream
+     * @return parsed org.w3c.dom.Document
+     */
+    public org.w3c.dom.Document parseDOM(InputStream in, OutputStream out)
+    {
+        Node document = parse(in, out);
+        if (document != null)
+        {
+            return (org.w3c.dom.Document) document.getAdapter();
+        }
+        return null;
+    }
+
+    /**
+     * Parses Reader in and returns a DOM Document node. If out is non-null, pretty prints to Writer out.
+     * @param in input reader
+     * @param out optional writer
+     * @return parsed org.w3c.dom.Document
+     */
+    public org.w3c.dom.Document parseDOM(Reader in, Writer out)
+    {
+        Node document = parse(in, out);
+        if (document != null)
+        {
+            return (org.w3c.dom.Document) document.getAdapter();
+        }
+        return null;
+    }
+
+    /**
+     * Starts a parse from a fresh copy of the engine configuration, so nothing set while parsing and printing the
+     * previous document is carried over.
+     */
+    private void prepare()
+    {
+        if (this.engine != null)
+        {
+            this.configuration = this.engine.newConfiguration(this.report);
+        }
+    }
+
+    /**
+     * Internal routine that actually does the parsing.
+     * @param streamIn tidy StreamIn
+     * @param o tidy Out
+     * @return parsed org.w3c.tidy.Node
+     */
+    Node parse(StreamIn streamIn, Out o)
+    {
+        Lexer lexer;
+        Node document = null;
+        Node doctype;
+        PPrint pprint;
+        TidyStats stats = null;
+        boolean streamed = false;
+
+        if (errout == null)
+        {
+            return null;
+        }
+
+        TidyEvents events = TidyEvents.active();
+        if (metricsListener != null || events != null)
+        {
+            stats = new TidyStats(inputStreamName, events);
+            streamIn = stats.count(streamIn);
+            if (o != null)
+            {
+                o = stats.count(o, configuration.newline.length);
+            }
+        }
+
+        parseErrors = 0;
+        parseWarnings = 0;
+
+        // anchors are unique within a document
+        configuration.tt.freeAnchors();
+
+        lexer = new Lexer(streamIn, configuration, this.report);
+        lexer.errout = errout;
+
+        // store pointer to lexer in input stream to allow character encoding errors to be reported
+        streamIn.setLexer(lexer);
+
+        if (o != null && StreamingPrinter.isSupported(configuration))
+        {
+            lexer.streamer = new StreamingPrinter(lexer, o);
+        }
+
+        this.report.setFilename(inputStreamName); // #431895 - fix by Dave Bryan 04 Jan 01
+
+        // Tidy doesn't alter the doctype for generic XML docs
+        if (configuration.xmlTags)
+        {
+            stage(stats, null);
+            document = ParserImpl.parseXMLDocument(lexer);
+            stage(stats, TidyStats.Stage.PARSE);
+            if (!document.checkNodeIntegrity())
+            {
+                if (!configuration.quiet)
+                {
+                    report.badTree(errout);
+                }
+                reportMetrics(stats, lexer);
+                return null;
+            }
+        }
+        else
+        {
+            lexer.warnings = 0;
+
+            stage(stats, null);
+            document = ParserImpl.parseDocument(lexer);
+            stage(stats, TidyStats.Stage.PARSE);
+            streamed = lexer.streamer != null && lexer.streamer.isStarted();
+
+            if (!document.checkNodeIntegrity())
+            {
+                if (!configuration.quiet)
+                {
+                    this.report.badTree(errout);
+                }
+                reportMetrics(stats, lexer);
+                return null;
+            }
+
+            Clean cleaner = new Clean(configuration.tt);
+
+            // simplifies <b><b> ... </b> ... </b> etc.
+            stage(stats, null);
+            cleaner.nestedEmphasis(document);
+            stage(stats, TidyStats.Stage.NESTED_EMPHASIS);
+
+            // cleans up <dir> indented text </dir> etc.
+            cleaner.list2BQ(document);
+            stage(stats, TidyStats.Stage.LIST_TO_BLOCKQUOTE);
+            cleaner.bQ2Div(document);
+            stage(stats, TidyStats.Stage.BLOCKQUOTE_TO_DIV);
+
+            // replaces i by em and b by strong
+            if (configuration.logicalEmphasis)
+            {
+                cleaner.emFromI(document);
+                stage(stats, TidyStats.Stage.EM_FROM_I);
+            }
+
+            if (configuration.word2000)
+            {
+                // prune Word2000's <![if ...]> ... <![endif]>
+                cleaner.dropSections(lexer, document);
+                stage(stats, TidyStats.Stage.DROP_SECTIONS);
+
+                // drop style & class attributes and empty p, span elements
+                if (cleaner.isWord2000(document))
+                {
+                    cleaner.cleanWord2000(lexer, document);
+                }
+                stage(stats, TidyStats.Stage.CLEAN_WORD2000);
+            }
+
+            // replaces presentational markup by style rules
+            if (configuration.makeClean || configuration.dropFontTags)
+            {
+                cleaner.cleanTree(lexer, document);
+                stage(stats, TidyStats.Stage.CLEAN_TREE);
+            }
+
+            if (!document.checkNodeIntegrity())
+            {
+                this.report.badTree(errout);
+                reportMetrics(stats, lexer);
+                return null;
+            }
+
+            if (streamed)
+            {
+                // the doctype was fixed when the start of the document was printed
+                doctype = lexer.streamer.getDocType();
+            }
+            else
+            {
+                doctype = document.findDocType();
+
+                // remember given doctype
+                if (doctype != null)
+                {
+                    doctype = doctype.cloneNode(false);
+                }
+            }
+
+            stage(stats, null);
+            if (document.content != null && !streamed)
+            {
+                if (configuration.xHTML)
+                {
+                    lexer.setXHTMLDocType(document);
+                }
+                else
+                {
+                    lexer.fixDocType(document);
+                }
+
+                if (configuration.tidyMark)
+                {
+                    lexer.addGenerator(document);
+                }
+            }
+            else if (streamed)
+            {
+                lexer.streamer.reportFixes();
+            }
+
+            // ensure presence of initial <?XML version="1.0"?>
+            if (configuration.xmlOut && configuration.xmlPi && !streamed)
+            {
+                lexer.fixXmlDecl(document);
+            }
+            stage(stats, TidyStats.Stage.DOCTYPE);
+
+            if (!configuration.quiet && document.content != null)
+            {
+                this.report.reportVersion(errout, lexer, inputStreamName, doctype);
+            }
+        }
+
+        if (!configuration.quiet)
+        {
+            parseWarnings = lexer.warnings;
+            parseErrors = lexer.errors;
+            this.report.reportNumWarnings(errout, lexer);
+        }
+
+        if (!configuration.quiet && lexer.errors > 0 && !configuration.forceOutput)
+        {
+            this.report.needsAuthorIntervention(errout);
+        }
+
+        if (!configuration.onlyErrors && (lexer.errors == 0 || configuration.forceOutput))
+        {
+            stage(stats, null);
+            if (configuration.burstSlides)
+            {
+                Node body;
+
+                body = null;
+                // remove doctype to avoid potential clash with markup introduced when bursting into slides
+
+                // discard the document type
+                doctype = document.findDocType();
+
+                if (doctype != null)
+                {
+                    Node.discardElement(doctype);
+                }
+
+                /* slides use transitional features */
+                lexer.addVersions(Dict.VERS_HTML40_LOOSE);
+
+                // and patch up doctype to match
+                if (configuration.xHTML)
+                {
+                    lexer.setXHTMLDocType(document);
+                }
+                else
+                {
+                    lexer.fixDocType(document);
+                }
+
+                // find the body element which may be implicit
+                body = document.findBody(configuration.tt);
+
+                if (body != null)
+                {
+                    pprint = new PPrint(configuration);
+                    if (!configuration.quiet)
+                    {
+                        this.report.reportNumberOfSlides(errout, pprint.countSlides(body));
+                    }
+                    pprint.createSlides(lexer, document);
+                }
+                else if (!configuration.quiet)
+                {
+                    this.report.missingBody(errout);
+                }
+            }
+            else if (streamed)
+            {
+                pprint = lexer.streamer.getPPrint();
+                lexer.streamer.finish();
+                pprint.flushLine(o, 0);
+                o.flush();
+            }
+            else if (o != null)
+            {
+                pprint = new PPrint(configuration);
+
+                if (document.findDocType() == null)
+                {
+                    // only use numeric character references if no doctype could be determined (e.g., because
+                    // the document contains proprietary features) to ensure well-formedness.
+                    configuration.numEntities = true;
+                }
+                if (configuration.bodyOnly)
+                {
+                    // Feature request #434940 - fix by Dave Raggett/Ignacio Vazquez-Abrams 21 Jun 01
+                    pprint.printBody(o, lexer, document, configuration.xmlOut);
+                }
+                else if (configuration.xmlOut && !configuration.xHTML)
+                {
+                    pprint.printXMLTree(o, (short) 0, 0, lexer, document);
+                }
+                else
+                {
+                    pprint.printTree(o, (short) 0, 0, lexer, document);
+                }
+
+                pprint.flushLine(o, 0);
+                o.flush();
+            }
+            stage(stats, TidyStats.Stage.PRINT);
+
+        }
+
+        if (!configuration.quiet)
+        {
+            this.report.errorSummary(lexer);
+        }
+
+        reportMetrics(stats, lexer);
+        return document;
+    }
+
+    /**
+     * Ends measuring a stage and starts measuring the next one, if the parse is measured.
+     * @param stats metrics, null if not measured
+     * @param stage stage just completed, null to only start measuring
+     */
+    private static void stage(TidyStats stats, TidyStats.Stage stage)
+    {
+        if (stats != null)
+        {
+            if (stage != null)
+            {
+                stats.end(stage);
+            }
+            stats.begin();
+        }
+    }
+
+    /**
+     * Passes the metrics of a parse to the listener, and commits its flight recorder events.
+     * @param stats metrics, null if not measured
+     * @param lexer lexer of the parse
+     */
+    private void reportMetrics(TidyStats stats, Lexer lexer)
+    {
+        if (stats != null)
+        {
+            stats.finish(lexer);
+            if (this.metricsListener != null)
+            {
+                this.metricsListener.metricsReceived(stats);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Outcome of tidying a document with {@link TidyEngine#tidy(java.nio.file.Path)}: output bytes, messages, error and
+ * warning counts and wall time. A result is immutable and can be handed over to any thread.
+ * @version $Revision$ ($Author$)
+ */
+public final class TidyResult
+{
+
+    /**
+     * name of the input.
+     */
+    private final String inputName;
+
+    /**
+     * tidied document, in the output encoding.
+     */
+    private final byte[] output;
+
+    /**
+     * messages reported while parsing.
+     */
+    private final List<TidyMessage> messages;
+
+    /**
+     * text written to the error output.
+     */
+    private final String report;
+
+    /**
+     * number of errors.
+     */
+    private final int errors;
+
+    /**
+     * number of warnings.
+     */
+    private final int warnings;
+
+    /**
+     * wall time, in nanoseconds.
+     */
+    private final long time;
+
+    /**
+     * exception reading the input, null if it has been tidied.
+     */
+    private final IOException exception;
+
+    /**
+     * Instantiates the result of a document which has been tidied.
+     * @param inputName name of the input
+     * @param output tidied document
+     * @param messages messages reported while parsing
+     * @param report text written to the error output
+     * @param errors number of errors
+     * @param warnings number of warnings
+     * @param time wall time, in nanoseconds
+     */
+    TidyResult(String inputName, byte[] output, List<TidyMessage> messages, String report, int errors, int warnings,
+        long time)
+    {
+        this.inputName = inputName;
+        this.output = output;
+        this.messages = Collections.unmodifiableList(messages);
+        this.report = report;
+        this.errors = errors;
+        this.warnings = warnings;
+        this.time = time;
+        this.exception = null;
+    }
+
+    /**
+     * Instantiates the result of a document which couldn't be read.
+     * @param inputName name of the input
+     * @param exception exception reading the input
+     */
+    TidyResult(String inputName, IOException exception)
+    {
+        this.inputName = inputName;
+        this.output = new byte[0];
+        this.messages = Collections.emptyList();
+        this.report = "";
+        this.errors = 0;
+        this.warnings = 0;
+        this.time = 0;
+        this.exception = exception;
+    }
+
+    /**
+     * Returns the name of the input.
+     * @return input name
+     */
+    public String getInputName()
+    {
+        return this.inputName;
+    }
+
+    /**
+     * Returns the tidied document, in the output encoding. Empty if the document couldn't be read, or if it has not
+     * been printed because of errors.
+     * @return copy of the output bytes
+     */
+    public byte[] getOutput()
+    {
+        return this.output.clone();
+    }
+
+    /**
+     * Returns the messages reported while parsing, including those which are not printed.
+     * @return unmodifiable list of messages
+     */
+    public List<TidyMessage> getMessages()
+    {
+        return this.messages;
+    }
+
+    /**
+     * Returns the text written to the error output: printed messages, summary and general info.
+     * @return report text
+     */
+    public String getReport()
+    {
+        return this.report;
+    }
+
+    /**
+     * Returns the number of errors.
+     * @return number of errors
+     */
+    public int getErrors()
+    {
+        return this.errors;
+    }
+
+    /**
+     * Returns the number of warnings.
+     * @return number of warnings
+     */
+    public int getWarnings()
+    {
+        return this.warnings;
+    }
+
+    /**
+     * Returns the wall time of reading, tidying and printing the document.
+     * @return time in nanoseconds
+     */
+    public long getTime()
+    {
+        return this.time;
+    }
+
+    /**
+     * Returns the exception reading the input. Only results of {@link TidyEngine#tidyAll(Iterable, int,
+     * java.util.concurrent.Executor)} can have one, {@link TidyEngine#tidyAsync(java.nio.file.Path,
+     * java.util.concurrent.Executor)} completes exceptionally instead.
+     * @return exception, or null if the document has been tidied
+     */
+    public IOException getException()
+    {
+        return this.exception;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        if (this.exception != null)
+        {
+            return this.inputName + ": " + this.exception;
+        }
+        return this.inputName + ": " + this.errors + " errors, " + this.warnings + " warnings, " + this.output.length
+            + " bytes, " + (this.time / 1000000) + " ms";
+    }
+
+}
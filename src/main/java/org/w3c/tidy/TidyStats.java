@@ -0,0 +1,517 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+
+/**
+ * Metrics of a single parse, passed to a {@link TidyMetricsListener}: wall time and allocated bytes for each stage,
+ * nodes created, characters read and written, largest lexer buffer and deepest nesting reached.
+ * @version $Revision$ ($Author$)
+ */
+public final class TidyStats
+{
+
+    /**
+     * Stages of a parse. Stages which are not enabled by the configuration take no time.
+     */
+    public enum Stage
+    {
+        /**
+         * lexing and parsing.
+         */
+        PARSE,
+
+        /**
+         * simplification of nested emphasis.
+         */
+        NESTED_EMPHASIS,
+
+        /**
+         * replacement of indenting lists by blockquotes.
+         */
+        LIST_TO_BLOCKQUOTE,
+
+        /**
+         * replacement of nested blockquotes by divs.
+         */
+        BLOCKQUOTE_TO_DIV,
+
+        /**
+         * replacement of i and b by em and strong.
+         */
+        EM_FROM_I,
+
+        /**
+         * pruning of Word 2000 conditional sections.
+         */
+        DROP_SECTIONS,
+
+        /**
+         * cleaning of Word 2000 markup.
+         */
+        CLEAN_WORD2000,
+
+        /**
+         * replacement of presentational markup by style rules.
+         */
+        CLEAN_TREE,
+
+        /**
+         * doctype fixing, generator meta and xml declaration.
+         */
+        DOCTYPE,
+
+        /**
+         * pretty printing, or slide generation.
+         */
+        PRINT
+    }
+
+    /**
+     * thread bean able to measure allocations, null if the JVM can't.
+     */
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = allocationBean();
+
+    /**
+     * name of the input.
+     */
+    private final String inputName;
+
+    /**
+     * wall time of each stage, in nanoseconds.
+     */
+    private final long[] times = new long[Stage.values().length];
+
+    /**
+     * bytes allocated by each stage.
+     */
+    private final long[] allocations = new long[Stage.values().length];
+
+    /**
+     * start time of the parse.
+     */
+    private final long startTime;
+
+    /**
+     * wall time of the whole parse, in nanoseconds.
+     */
+    private long totalTime;
+
+    /**
+     * start time of the current stage.
+     */
+    private long stageTime;
+
+    /**
+     * allocated bytes at the start of the current stage.
+     */
+    private long stageAllocated;
+
+    /**
+     * nodes created by the lexer.
+     */
+    private int nodesCreated;
+
+    /**
+     * characters read from the input.
+     */
+    private long charsRead;
+
+    /**
+     * characters written to the output.
+     */
+    private long charsWritten;
+
+    /**
+     * largest size of the lexer buffer.
+     */
+    private int maxLexbufSize;
+
+    /**
+     * deepest nesting level reached.
+     */
+    private int maxNestingLevel;
+
+    /**
+     * flight recorder events, null if no recording is interested.
+     */
+    private final TidyEvents events;
+
+    /**
+     * flight recorder event of the parse.
+     */
+    private Object documentEvent;
+
+    /**
+     * flight recorder event of the current stage.
+     */
+    private Object stageEvent;
+
+    /**
+     * Instantiates new stats, starting the clock of the parse.
+     * @param inputName name of the input
+     * @param events flight recorder events, null if not recorded
+     */
+    TidyStats(String inputName, TidyEvents events)
+    {
+        this.inputName = inputName;
+        this.events = events;
+        Arrays.fill(this.allocations, (THREAD_BEAN != null) ? 0 : -1);
+        if (events != null)
+        {
+            this.documentEvent = events.beginDocument();
+        }
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the thread bean if the JVM measures allocations per thread.
+     * @return thread bean, or null
+     */
+    private static com.sun.management.ThreadMXBean allocationBean()
+    {
+        try
+        {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled())
+            {
+                return (com.sun.management.ThreadMXBean) bean;
+            }
+        }
+        catch (LinkageError e)
+        {
+            // no com.sun.management on this JVM
+        }
+        return null;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread.
+     * @return allocated bytes, 0 if not measured
+     */
+    private static long allocatedBytes()
+    {
+        return (THREAD_BEAN != null) ? THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * Starts measuring a stage.
+     */
+    void begin()
+    {
+        this.stageAllocated = allocatedBytes();
+        if (this.events != null)
+        {
+            this.stageEvent = this.events.beginStage();
+        }
+        this.stageTime = System.nanoTime();
+    }
+
+    /**
+     * Ends measuring a stage, adding its time and allocations to the given stage.
+     * @param stage measured stage
+     */
+    void end(Stage stage)
+    {
+        this.times[stage.ordinal()] += System.nanoTime() - this.stageTime;
+        if (THREAD_BEAN != null)
+        {
+            this.allocations[stage.ordinal()] += allocatedBytes() - this.stageAllocated;
+        }
+        if (this.events != null)
+        {
+            this.events.endStage(this.stageEvent, this.inputName, stage);
+            this.stageEvent = null;
+        }
+    }
+
+    /**
+     * Ends the parse, reading the counters of the lexer.
+     * @param lexer lexer of the parse
+     */
+    void finish(Lexer lexer)
+    {
+        this.totalTime = System.nanoTime() - this.startTime;
+        this.nodesCreated = lexer.nodeCount;
+        this.maxLexbufSize = Math.max(lexer.maxLexlength, lexer.lexlength);
+        this.maxNestingLevel = lexer.maxNestingLevel;
+        if (this.events != null)
+        {
+            this.events.endDocument(this.documentEvent, this, lexer.errors, lexer.warnings);
+            this.documentEvent = null;
+        }
+    }
+
+    /**
+     * Wraps the input of a parse to count the characters read.
+     * @param in input
+     * @return counting input
+     */
+    StreamIn count(final StreamIn in)
+    {
+        return new StreamIn()
+        {
+
+            public int getCurcol()
+            {
+                return in.getCurcol();
+            }
+
+            public int getCurline()
+            {
+                return in.getCurline();
+            }
+
+            public int readCharFromStream()
+            {
+                return in.readCharFromStream();
+            }
+
+            public int readChar()
+            {
+                int c = in.readChar();
+                if (c != END_OF_STREAM)
+                {
+                    charsRead++;
+                }
+                return c;
+            }
+
+            public void ungetChar(int c)
+            {
+                if (c != END_OF_STREAM)
+                {
+                    charsRead--;
+                }
+                in.ungetChar(c);
+            }
+
+            public boolean isEndOfStream()
+            {
+                return in.isEndOfStream();
+            }
+
+            public void setLexer(Lexer lexer)
+            {
+                in.setLexer(lexer);
+            }
+        };
+    }
+
+    /**
+     * Wraps the output of a parse to count the characters written.
+     * @param out output
+     * @param newlineLength number of characters of a line end
+     * @return counting output
+     */
+    Out count(final Out out, final int newlineLength)
+    {
+        return new Out()
+        {
+
+            public void outc(int c)
+            {
+                charsWritten++;
+                out.outc(c);
+            }
+
+            public void outc(byte c)
+            {
+                charsWritten++;
+                out.outc(c);
+            }
+
+            public void outc(int[] c, int offset, int length)
+            {
+                charsWritten += length;
+                out.outc(c, offset, length);
+            }
+
+            public void outAscii(String str, int offset, int length)
+            {
+                charsWritten += length;
+                out.outAscii(str, offset, length);
+            }
+
+            public void newline()
+            {
+                charsWritten += newlineLength;
+                out.newline();
+            }
+
+            public void newline(int count)
+            {
+                charsWritten += (long) newlineLength * count;
+                out.newline(count);
+            }
+
+            public void flush()
+            {
+                out.flush();
+            }
+        };
+    }
+
+    /**
+     * Name of the input.
+     * @return input name
+     */
+    public String getInputName()
+    {
+        return this.inputName;
+    }
+
+    /**
+     * Wall time of the whole parse, including printing and messages.
+     * @return time in nanoseconds
+     */
+    public long getTotalTime()
+    {
+        return this.totalTime;
+    }
+
+    /**
+     * Wall time of a stage.
+     * @param stage stage
+     * @return time in nanoseconds, 0 if the stage didn't run
+     */
+    public long getTime(Stage stage)
+    {
+        return this.times[stage.ordinal()];
+    }
+
+    /**
+     * Estimate of the bytes allocated by a stage, as measured for the current thread by the JVM.
+     * @param stage stage
+     * @return allocated bytes, -1 if the JVM doesn't measure allocations
+     */
+    public long getAllocatedBytes(Stage stage)
+    {
+        return this.allocations[stage.ordinal()];
+    }
+
+    /**
+     * Number of nodes created by the lexer, including tokens and nodes discarded while parsing and cleaning.
+     * @return nodes created
+     */
+    public int getNodesCreated()
+    {
+        return this.nodesCreated;
+    }
+
+    /**
+     * Number of characters read from the input, after decoding.
+     * @return characters read
+     */
+    public long getCharsRead()
+    {
+        return this.charsRead;
+    }
+
+    /**
+     * Number of characters written to the output, before encoding. Zero when there is no output.
+     * @return characters written
+     */
+    public long getCharsWritten()
+    {
+        return this.charsWritten;
+    }
+
+    /**
+     * Largest size of the lexer text buffer, in bytes.
+     * @return buffer size
+     */
+    public int getMaxLexbufSize()
+    {
+        return this.maxLexbufSize;
+    }
+
+    /**
+     * Deepest element nesting level reached while parsing.
+     * @return nesting level
+     */
+    public int getMaxNestingLevel()
+    {
+        return this.maxNestingLevel;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(this.inputName).append(": ").append(this.totalTime / 1000).append(
+            "us total");
+        for (Stage stage : Stage.values())
+        {
+            if (this.times[stage.ordinal()] != 0)
+            {
+                sb.append(", ").append(stage).append(' ').append(this.times[stage.ordinal()] / 1000).append("us");
+                if (this.allocations[stage.ordinal()] >= 0)
+                {
+                    sb.append(' ').append(this.allocations[stage.ordinal()]).append('B');
+                }
+            }
+        }
+        return sb.append(", nodes ").append(this.nodesCreated).append(", read ").append(this.charsRead).append(
+            ", written ").append(this.charsWritten).append(", lexbuf ").append(this.maxLexbufSize).append(
+            ", nesting ").append(this.maxNestingLevel).toString();
+    }
+
+}
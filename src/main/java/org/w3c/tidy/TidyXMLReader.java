@@ -0,0 +1,791 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.NamespaceSupport;
+
+
+/**
+ * SAX parser over Tidy. The input is parsed and cleaned as by {@link TidyEngine#parse(InputStream, java.io.OutputStream)},
+ * then the resulting node tree is reported to the content handler as it is walked: no DOM adapters are created and the
+ * document is never printed and parsed again. Element and attribute names, text, comments, cdata sections, processing
+ * instructions and the doctype are reported; xml declarations and asp, jste, php and marked sections are not.
+ *
+ * <pre>
+ * TidyEngine engine = new TidyEngine(props);
+ * Transformer transformer = TransformerFactory.newInstance().newTransformer(stylesheet);
+ * transformer.transform(new TidySource(engine, new InputSource(in)), result);
+ * </pre>
+ *
+ * The <code>namespaces</code> and <code>namespace-prefixes</code> features are supported, and the
+ * <code>lexical-handler</code> property receives comments, cdata sections and the doctype. The entity resolver and the
+ * dtd handler are never called. A reader must only be used by one thread at a time, but can parse any number of
+ * documents.
+ * @version $Revision$ ($Author$)
+ */
+public class TidyXMLReader implements XMLReader
+{
+
+    /**
+     * namespaces feature.
+     */
+    private static final String FEATURE_NAMESPACES = "http://xml.org/sax/features/namespaces";
+
+    /**
+     * namespace-prefixes feature.
+     */
+    private static final String FEATURE_NAMESPACE_PREFIXES = "http://xml.org/sax/features/namespace-prefixes";
+
+    /**
+     * lexical-handler property.
+     */
+    private static final String PROPERTY_LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    /**
+     * attribute type reported for every attribute.
+     */
+    private static final String CDATA = "CDATA";
+
+    /**
+     * context used for each parse.
+     */
+    private final TidyParseContext context;
+
+    /**
+     * content handler.
+     */
+    private ContentHandler contentHandler;
+
+    /**
+     * lexical handler, can be null.
+     */
+    private LexicalHandler lexicalHandler;
+
+    /**
+     * error handler, can be null.
+     */
+    private ErrorHandler errorHandler;
+
+    /**
+     * entity resolver, never called.
+     */
+    private EntityResolver entityResolver;
+
+    /**
+     * dtd handler, never called.
+     */
+    private DTDHandler dtdHandler;
+
+    /**
+     * report namespace uris and local names.
+     */
+    private boolean namespaces = true;
+
+    /**
+     * report xmlns attributes.
+     */
+    private boolean namespacePrefixes;
+
+    /**
+     * namespace declarations in scope.
+     */
+    private final NamespaceSupport namespaceSupport = new NamespaceSupport();
+
+    /**
+     * scratch array for namespace processing: uri, local name, qualified name.
+     */
+    private final String[] nameParts = new String[3];
+
+    /**
+     * attributes of the current element.
+     */
+    private final NodeAttributes attributes = new NodeAttributes();
+
+    /**
+     * text decoder.
+     */
+    private final NodeText text = new NodeText();
+
+    /**
+     * Instantiates a new reader with the default configuration.
+     */
+    public TidyXMLReader()
+    {
+        this(new TidyEngine(new Properties()));
+    }
+
+    /**
+     * Instantiates a new reader parsing with the given engine.
+     * @param engine tidy engine
+     */
+    public TidyXMLReader(TidyEngine engine)
+    {
+        this.context = engine.newContext();
+    }
+
+    /**
+     * Sets the stream messages are written to, standard error by default.
+     * @param out error output stream
+     */
+    public void setErrout(PrintWriter out)
+    {
+        this.context.setErrout(out);
+    }
+
+    /**
+     * Adds a message listener.
+     * @param listener TidyMessageListener
+     */
+    public void setMessageListener(TidyMessageListener listener)
+    {
+        this.context.setMessageListener(listener);
+    }
+
+    /**
+     * Sets a message filter.
+     * @param filter TidyMessageFilter
+     */
+    public void setMessageFilter(TidyMessageFilter filter)
+    {
+        this.context.setMessageFilter(filter);
+    }
+
+    /**
+     * Sets a listener for the metrics of each parse.
+     * @param listener TidyMetricsListener
+     */
+    public void setMetricsListener(TidyMetricsListener listener)
+    {
+        this.context.setMetricsListener(listener);
+    }
+
+    /**
+     * Number of errors in the last parse.
+     * @return number of errors
+     */
+    public int getParseErrors()
+    {
+        return this.context.getParseErrors();
+    }
+
+    /**
+     * Number of warnings in the last parse.
+     * @return number of warnings
+     */
+    public int getParseWarnings()
+    {
+        return this.context.getParseWarnings();
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getFeature(java.lang.String)
+     */
+    public boolean getFeature(String name) throws SAXNotRecognizedException, SAXNotSupportedException
+    {
+        if (FEATURE_NAMESPACES.equals(name))
+        {
+            return this.namespaces;
+        }
+        if (FEATURE_NAMESPACE_PREFIXES.equals(name))
+        {
+            return this.namespacePrefixes;
+        }
+        throw new SAXNotRecognizedException(name);
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setFeature(java.lang.String, boolean)
+     */
+    public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException
+    {
+        if (FEATURE_NAMESPACES.equals(name))
+        {
+            this.namespaces = value;
+        }
+        else if (FEATURE_NAMESPACE_PREFIXES.equals(name))
+        {
+            this.namespacePrefixes = value;
+        }
+        else
+        {
+            throw new SAXNotRecognizedException(name);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getProperty(java.lang.String)
+     */
+    public Object getProperty(String name) throws SAXNotRecognizedException, SAXNotSupportedException
+    {
+        if (PROPERTY_LEXICAL_HANDLER.equals(name))
+        {
+            return this.lexicalHandler;
+        }
+        throw new SAXNotRecognizedException(name);
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setProperty(java.lang.String, java.lang.Object)
+     */
+    public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException
+    {
+        if (!PROPERTY_LEXICAL_HANDLER.equals(name))
+        {
+            throw new SAXNotRecognizedException(name);
+        }
+        if (value != null && !(value instanceof LexicalHandler))
+        {
+            throw new SAXNotSupportedException("Not a LexicalHandler: " + value);
+        }
+        this.lexicalHandler = (LexicalHandler) value;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setEntityResolver(org.xml.sax.EntityResolver)
+     */
+    public void setEntityResolver(EntityResolver resolver)
+    {
+        this.entityResolver = resolver;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getEntityResolver()
+     */
+    public EntityResolver getEntityResolver()
+    {
+        return this.entityResolver;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setDTDHandler(org.xml.sax.DTDHandler)
+     */
+    public void setDTDHandler(DTDHandler handler)
+    {
+        this.dtdHandler = handler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getDTDHandler()
+     */
+    public DTDHandler getDTDHandler()
+    {
+        return this.dtdHandler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setContentHandler(org.xml.sax.ContentHandler)
+     */
+    public void setContentHandler(ContentHandler handler)
+    {
+        this.contentHandler = handler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getContentHandler()
+     */
+    public ContentHandler getContentHandler()
+    {
+        return this.contentHandler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setErrorHandler(org.xml.sax.ErrorHandler)
+     */
+    public void setErrorHandler(ErrorHandler handler)
+    {
+        this.errorHandler = handler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getErrorHandler()
+     */
+    public ErrorHandler getErrorHandler()
+    {
+        return this.errorHandler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#parse(java.lang.String)
+     */
+    public void parse(String systemId) throws IOException, SAXException
+    {
+        parse(new InputSource(systemId));
+    }
+
+    /**
+     * Parses the input, from its character stream, its byte stream or else its system id, and reports the tidied
+     * document. A byte stream is read with the encoding of the input source if it has one, else with the configured
+     * input encoding.
+     * @see org.xml.sax.XMLReader#parse(org.xml.sax.InputSource)
+     */
+    public void parse(InputSource input) throws IOException, SAXException
+    {
+        String systemId = input.getSystemId();
+        this.context.setInputStreamName(systemId != null ? systemId : "InputStream");
+
+        Node document;
+        if (input.getCharacterStream() != null)
+        {
+            document = this.context.parse(input.getCharacterStream(), (Writer) null);
+        }
+        else if (input.getByteStream() != null)
+        {
+            document = parse(input.getByteStream(), input.getEncoding());
+        }
+        else if (systemId != null)
+        {
+            try (InputStream in = new URL(systemId).openStream())
+            {
+                document = parse(in, input.getEncoding());
+            }
+        }
+        else
+        {
+            throw new IOException("No character stream, byte stream or system id in the input source");
+        }
+
+        if (document == null)
+        {
+            SAXParseException e = new SAXParseException("Tidy could not build a document tree", null, systemId, -1, -1);
+            if (this.errorHandler != null)
+            {
+                this.errorHandler.fatalError(e);
+            }
+            throw e;
+        }
+
+        report(document);
+    }
+
+    /**
+     * Parses a byte stream.
+     * @param in input
+     * @param encoding encoding of the input source, null to use the configured one
+     * @return parsed document
+     */
+    private Node parse(InputStream in, String encoding)
+    {
+        if (encoding != null)
+        {
+            Reader reader = new InputStreamReader(in, Charset.forName(encoding));
+            return this.context.parse(reader, (Writer) null);
+        }
+        return this.context.parse(in, (Writer) null);
+    }
+
+    /**
+     * Reports a document to the handlers. Nodes are visited in document order following the parent links, so the
+     * depth of the tree is not limited by the stack.
+     * @param document root node
+     * @throws SAXException if a handler throws it
+     */
+    void report(Node document) throws SAXException
+    {
+        ContentHandler handler = this.contentHandler;
+        if (handler == null)
+        {
+            handler = new org.xml.sax.helpers.DefaultHandler();
+        }
+
+        this.namespaceSupport.reset();
+        handler.startDocument();
+
+        Node node = document.content;
+        while (node != null)
+        {
+            if ((node.type == Node.START_TAG || node.type == Node.START_END_TAG) && node.content != null)
+            {
+                startElement(handler, node);
+                node = node.content;
+                continue;
+            }
+
+            reportNode(handler, node);
+
+            // next node in document order, ending the elements left on the way up
+            while (node.next == null && node.parent != null && node.parent != document)
+            {
+                node = node.parent;
+                endElement(handler, node);
+            }
+            node = node.next;
+        }
+
+        handler.endDocument();
+    }
+
+    /**
+     * Reports a node without children.
+     * @param handler content handler
+     * @param node node
+     * @throws SAXException if a handler throws it
+     */
+    private void reportNode(ContentHandler handler, Node node) throws SAXException
+    {
+        int length;
+        String[] parts;
+        switch (node.type)
+        {
+            case Node.START_TAG :
+            case Node.START_END_TAG :
+                startElement(handler, node);
+                endElement(handler, node);
+                break;
+            case Node.TEXT_NODE :
+                length = this.text.decode(node);
+                handler.characters(this.text.getChars(), 0, length);
+                break;
+            case Node.CDATA_TAG :
+                if (this.lexicalHandler != null)
+                {
+                    this.lexicalHandler.startCDATA();
+                }
+                length = this.text.decode(node);
+                handler.characters(this.text.getChars(), 0, length);
+                if (this.lexicalHandler != null)
+                {
+                    this.lexicalHandler.endCDATA();
+                }
+                break;
+            case Node.COMMENT_TAG :
+                if (this.lexicalHandler != null)
+                {
+                    length = this.text.decode(node);
+                    this.lexicalHandler.comment(this.text.getChars(), 0, length);
+                }
+                break;
+            case Node.PROC_INS_TAG :
+                parts = NodeText.processingInstruction(node);
+                handler.processingInstruction(parts[0], parts[1]);
+                break;
+            case Node.DOCTYPE_TAG :
+                if (this.lexicalHandler != null)
+                {
+                    parts = NodeText.docType(node);
+                    this.lexicalHandler.startDTD(parts[0], parts[1], parts[2]);
+                    this.lexicalHandler.endDTD();
+                }
+                break;
+            default :
+                // xml declaration, asp, jste, php and marked sections have no sax event
+                break;
+        }
+    }
+
+    /**
+     * Reports the start of an element, with its namespace declarations.
+     * @param handler content handler
+     * @param node element
+     * @throws SAXException if a handler throws it
+     */
+    private void startElement(ContentHandler handler, Node node) throws SAXException
+    {
+        if (this.namespaces)
+        {
+            this.namespaceSupport.pushContext();
+            for (AttVal att = node.attributes; att != null; att = att.next)
+            {
+                String prefix = att.getDeclaredPrefix();
+                if (prefix != null)
+                {
+                    String uri = att.value != null ? att.value : "";
+                    this.namespaceSupport.declarePrefix(prefix, uri);
+                    handler.startPrefixMapping(prefix, uri);
+                }
+            }
+        }
+
+        this.attributes.setNode(node);
+        processName(node.element, false);
+        handler.startElement(this.nameParts[0], this.nameParts[1], this.nameParts[2], this.attributes);
+    }
+
+    /**
+     * Reports the end of an element and of the namespace declarations it held.
+     * @param handler content handler
+     * @param node element
+     * @throws SAXException if a handler throws it
+     */
+    private void endElement(ContentHandler handler, Node node) throws SAXException
+    {
+        processName(node.element, false);
+        handler.endElement(this.nameParts[0], this.nameParts[1], this.nameParts[2]);
+
+        if (this.namespaces)
+        {
+            for (AttVal att = node.attributes; att != null; att = att.next)
+            {
+                String prefix = att.getDeclaredPrefix();
+                if (prefix != null)
+                {
+                    handler.endPrefixMapping(prefix);
+                }
+            }
+            this.namespaceSupport.popContext();
+        }
+    }
+
+    /**
+     * Splits a name into nameParts as uri, local name and qualified name. Names with an undeclared prefix, and all
+     * names when the namespaces feature is off, have no uri.
+     * @param name element or attribute name
+     * @param attribute true for an attribute name
+     */
+    private void processName(String name, boolean attribute)
+    {
+        if (this.namespaces && this.namespaceSupport.processName(name, this.nameParts, attribute) != null)
+        {
+            return;
+        }
+        this.nameParts[0] = "";
+        this.nameParts[1] = this.namespaces ? name : "";
+        this.nameParts[2] = name;
+    }
+
+    /**
+     * Attributes of an element, read from its attribute list. Namespace declarations are left out unless the
+     * namespace-prefixes feature is on, and asp or php sections in attributes are always left out.
+     */
+    private final class NodeAttributes implements Attributes
+    {
+
+        /**
+         * reported attributes.
+         */
+        private AttVal[] list = new AttVal[16];
+
+        /**
+         * number of reported attributes.
+         */
+        private int length;
+
+        /**
+         * Reads the attributes of an element.
+         * @param node element
+         */
+        void setNode(Node node)
+        {
+            Arrays.fill(this.list, 0, this.length, null);
+            this.length = 0;
+            for (AttVal att = node.attributes; att != null; att = att.next)
+            {
+                if (att.attribute == null
+                    || (namespaces && !namespacePrefixes && att.getDeclaredPrefix() != null))
+                {
+                    continue;
+                }
+                if (this.length == this.list.length)
+                {
+                    this.list = Arrays.copyOf(this.list, this.length * 2);
+                }
+                this.list[this.length++] = att;
+            }
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getLength()
+         */
+        public int getLength()
+        {
+            return this.length;
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getURI(int)
+         */
+        public String getURI(int index)
+        {
+            return name(index, 0);
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getLocalName(int)
+         */
+        public String getLocalName(int index)
+        {
+            return name(index, 1);
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getQName(int)
+         */
+        public String getQName(int index)
+        {
+            return index >= 0 && index < this.length ? this.list[index].attribute : null;
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getType(int)
+         */
+        public String getType(int index)
+        {
+            return index >= 0 && index < this.length ? CDATA : null;
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getValue(int)
+         */
+        public String getValue(int index)
+        {
+            if (index < 0 || index >= this.length)
+            {
+                return null;
+            }
+            AttVal att = this.list[index];
+            return att.value != null ? att.value : att.attribute;
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getIndex(java.lang.String, java.lang.String)
+         */
+        public int getIndex(String uri, String localName)
+        {
+            for (int j = 0; j < this.length; j++)
+            {
+                if (name(j, 0).equals(uri) && name(j, 1).equals(localName))
+                {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getIndex(java.lang.String)
+         */
+        public int getIndex(String qName)
+        {
+            for (int j = 0; j < this.length; j++)
+            {
+                if (this.list[j].attribute.equals(qName))
+                {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getType(java.lang.String, java.lang.String)
+         */
+        public String getType(String uri, String localName)
+        {
+            return getType(getIndex(uri, localName));
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getType(java.lang.String)
+         */
+        public String getType(String qName)
+        {
+            return getType(getIndex(qName));
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getValue(java.lang.String, java.lang.String)
+         */
+        public String getValue(String uri, String localName)
+        {
+            return getValue(getIndex(uri, localName));
+        }
+
+        /**
+         * @see org.xml.sax.Attributes#getValue(java.lang.String)
+         */
+        public String getValue(String qName)
+        {
+            return getValue(getIndex(qName));
+        }
+
+        /**
+         * Part of the name of an attribute.
+         * @param index attribute index
+         * @param part 0 for the uri, 1 for the local name
+         * @return name part, null for an index out of range
+         */
+        private String name(int index, int part)
+        {
+            if (index < 0 || index >= this.length)
+            {
+                return null;
+            }
+            processName(this.list[index].attribute, true);
+            return nameParts[part];
+        }
+    }
+
+}
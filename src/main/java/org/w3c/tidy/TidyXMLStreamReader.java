@@ -0,0 +1,950 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.helpers.NamespaceSupport;
+
+
+/**
+ * StAX view of a parsed document. The reader walks the node tree in document order, reading names and attributes
+ * straight from the nodes and their attribute lists: no DOM adapters are created, and text is only decoded when it is
+ * asked for.
+ *
+ * <pre>
+ * Node document = engine.parse(in, (OutputStream) null);
+ * XMLStreamReader reader = new TidyXMLStreamReader(document);
+ * while (reader.hasNext())
+ * {
+ *     reader.next();
+ *     ...
+ * }
+ * </pre>
+ *
+ * Namespace declarations are reported as namespaces, not as attributes. Names with a prefix that is not declared have
+ * no namespace. XML declarations, asp, jste, php and marked sections are skipped, and the document is never
+ * coalesced: adjacent text nodes are reported as separate events. The tree must not change while it is read.
+ * @version $Revision$ ($Author$)
+ */
+public class TidyXMLStreamReader implements XMLStreamReader
+{
+
+    /**
+     * location reported for every event, since nodes do not keep their position.
+     */
+    private static final Location UNKNOWN_LOCATION = new Location()
+    {
+
+        public int getLineNumber()
+        {
+            return -1;
+        }
+
+        public int getColumnNumber()
+        {
+            return -1;
+        }
+
+        public int getCharacterOffset()
+        {
+            return -1;
+        }
+
+        public String getPublicId()
+        {
+            return null;
+        }
+
+        public String getSystemId()
+        {
+            return null;
+        }
+    };
+
+    /**
+     * root node.
+     */
+    private final Node document;
+
+    /**
+     * node of the current event, null at the start and the end of the document.
+     */
+    private Node node;
+
+    /**
+     * current event.
+     */
+    private int eventType = START_DOCUMENT;
+
+    /**
+     * namespace declarations in scope.
+     */
+    private final NamespaceSupport namespaceSupport = new NamespaceSupport();
+
+    /**
+     * scratch array for namespace processing: uri, local name, qualified name.
+     */
+    private final String[] nameParts = new String[3];
+
+    /**
+     * attributes of the current element, without namespace declarations.
+     */
+    private AttVal[] attributes = new AttVal[16];
+
+    /**
+     * number of attributes of the current element.
+     */
+    private int attributeCount;
+
+    /**
+     * namespace declarations of the current element.
+     */
+    private AttVal[] declarations = new AttVal[4];
+
+    /**
+     * number of namespace declarations of the current element.
+     */
+    private int declarationCount;
+
+    /**
+     * text decoder.
+     */
+    private final NodeText text = new NodeText();
+
+    /**
+     * number of decoded chars of the current event, -1 until decoded.
+     */
+    private int textLength = -1;
+
+    /**
+     * parts of the current processing instruction or doctype, null until read.
+     */
+    private String[] parts;
+
+    /**
+     * Instantiates a new reader positioned at the start of the given document.
+     * @param document root node, as returned by the parse methods
+     */
+    public TidyXMLStreamReader(Node document)
+    {
+        if (document == null)
+        {
+            throw new IllegalArgumentException("No document");
+        }
+        this.document = document;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#next()
+     */
+    public int next() throws XMLStreamException
+    {
+        if (this.eventType == END_DOCUMENT)
+        {
+            throw new NoSuchElementException("End of document");
+        }
+
+        this.textLength = -1;
+        this.parts = null;
+
+        Node next;
+        Node parent;
+        if (this.eventType == START_DOCUMENT)
+        {
+            next = this.document.content;
+            parent = this.document;
+        }
+        else if (this.eventType == START_ELEMENT)
+        {
+            if (this.node.content == null)
+            {
+                this.eventType = END_ELEMENT;
+                return this.eventType;
+            }
+            next = this.node.content;
+            parent = this.node;
+        }
+        else
+        {
+            if (this.eventType == END_ELEMENT)
+            {
+                this.namespaceSupport.popContext();
+            }
+            next = this.node.next;
+            parent = this.node.parent;
+        }
+
+        while (next != null && eventType(next) < 0)
+        {
+            next = next.next;
+        }
+
+        // after the last child comes the end tag of the parent
+        if (next == null)
+        {
+            if (parent == this.document)
+            {
+                this.node = null;
+                this.eventType = END_DOCUMENT;
+            }
+            else
+            {
+                this.node = parent;
+                this.eventType = END_ELEMENT;
+                readElement();
+            }
+            return this.eventType;
+        }
+
+        this.node = next;
+        this.eventType = eventType(next);
+        if (this.eventType == START_ELEMENT)
+        {
+            this.namespaceSupport.pushContext();
+            readElement();
+            for (int j = 0; j < this.declarationCount; j++)
+            {
+                AttVal declaration = this.declarations[j];
+                this.namespaceSupport.declarePrefix(
+                    declaration.getDeclaredPrefix(),
+                    declaration.value != null ? declaration.value : "");
+            }
+        }
+        return this.eventType;
+    }
+
+    /**
+     * Returns the event of a node.
+     * @param node node
+     * @return event type, -1 for nodes without events
+     */
+    private static int eventType(Node node)
+    {
+        switch (node.type)
+        {
+            case Node.START_TAG :
+            case Node.START_END_TAG :
+                return START_ELEMENT;
+            case Node.TEXT_NODE :
+                return CHARACTERS;
+            case Node.CDATA_TAG :
+                return CDATA;
+            case Node.COMMENT_TAG :
+                return COMMENT;
+            case Node.PROC_INS_TAG :
+                return PROCESSING_INSTRUCTION;
+            case Node.DOCTYPE_TAG :
+                return DTD;
+            default :
+                return -1;
+        }
+    }
+
+    /**
+     * Splits the attributes of the current element into attributes and namespace declarations. Asp and php sections in
+     * attributes are left out.
+     */
+    private void readElement()
+    {
+        Arrays.fill(this.attributes, 0, this.attributeCount, null);
+        Arrays.fill(this.declarations, 0, this.declarationCount, null);
+        this.attributeCount = 0;
+        this.declarationCount = 0;
+        for (AttVal att = this.node.attributes; att != null; att = att.next)
+        {
+            if (att.attribute == null)
+            {
+                continue;
+            }
+            if (att.getDeclaredPrefix() != null)
+            {
+                if (this.declarationCount == this.declarations.length)
+                {
+                    this.declarations = Arrays.copyOf(this.declarations, this.declarationCount * 2);
+                }
+                this.declarations[this.declarationCount++] = att;
+            }
+            else
+            {
+                if (this.attributeCount == this.attributes.length)
+                {
+                    this.attributes = Arrays.copyOf(this.attributes, this.attributeCount * 2);
+                }
+                this.attributes[this.attributeCount++] = att;
+            }
+        }
+    }
+
+    /**
+     * Splits a name into nameParts as uri, local name and qualified name. Names with a prefix that is not declared
+     * have no uri and their local name is the part after the prefix.
+     * @param name element or attribute name
+     * @param attribute true for an attribute name
+     */
+    private void processName(String name, boolean attribute)
+    {
+        if (this.namespaceSupport.processName(name, this.nameParts, attribute) == null)
+        {
+            this.nameParts[0] = "";
+            this.nameParts[1] = name.substring(name.indexOf(':') + 1);
+            this.nameParts[2] = name;
+        }
+    }
+
+    /**
+     * Returns the prefix of a name.
+     * @param name qualified name
+     * @return prefix, "" if none
+     */
+    private static String prefix(String name)
+    {
+        int colon = name.indexOf(':');
+        return colon > 0 ? name.substring(0, colon) : "";
+    }
+
+    /**
+     * Checks the current event is a start or end tag.
+     */
+    private void checkElement()
+    {
+        if (this.eventType != START_ELEMENT && this.eventType != END_ELEMENT)
+        {
+            throw new IllegalStateException("Not a start or end element: " + this.eventType);
+        }
+    }
+
+    /**
+     * Returns an attribute of the current start tag.
+     * @param index attribute index
+     * @return attribute
+     */
+    private AttVal attribute(int index)
+    {
+        if (this.eventType != START_ELEMENT)
+        {
+            throw new IllegalStateException("Not a start element: " + this.eventType);
+        }
+        if (index < 0 || index >= this.attributeCount)
+        {
+            throw new IndexOutOfBoundsException("Attribute " + index + " of " + this.attributeCount);
+        }
+        return this.attributes[index];
+    }
+
+    /**
+     * Returns a namespace declaration of the current tag.
+     * @param index declaration index
+     * @return declaration
+     */
+    private AttVal declaration(int index)
+    {
+        checkElement();
+        if (index < 0 || index >= this.declarationCount)
+        {
+            throw new IndexOutOfBoundsException("Namespace " + index + " of " + this.declarationCount);
+        }
+        return this.declarations[index];
+    }
+
+    /**
+     * Decodes the text of the current event, once.
+     */
+    private void decodeText()
+    {
+        if (!hasText() || this.eventType == DTD)
+        {
+            throw new IllegalStateException("No text: " + this.eventType);
+        }
+        if (this.textLength < 0)
+        {
+            this.textLength = this.text.decode(this.node);
+        }
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getProperty(java.lang.String)
+     */
+    public Object getProperty(String name)
+    {
+        if (name == null)
+        {
+            throw new IllegalArgumentException("No property name");
+        }
+        return null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#require(int, java.lang.String, java.lang.String)
+     */
+    public void require(int type, String namespaceURI, String localName) throws XMLStreamException
+    {
+        if (type != this.eventType)
+        {
+            throw new XMLStreamException("Expected event " + type + ", found " + this.eventType, getLocation());
+        }
+        if (namespaceURI != null && !namespaceURI.equals(getNamespaceURI()))
+        {
+            throw new XMLStreamException("Expected namespace " + namespaceURI, getLocation());
+        }
+        if (localName != null && !localName.equals(getLocalName()))
+        {
+            throw new XMLStreamException("Expected name " + localName, getLocation());
+        }
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getElementText()
+     */
+    public String getElementText() throws XMLStreamException
+    {
+        if (this.eventType != START_ELEMENT)
+        {
+            throw new XMLStreamException("Not a start element", getLocation());
+        }
+        StringBuilder sb = new StringBuilder();
+        while (next() != END_ELEMENT)
+        {
+            switch (this.eventType)
+            {
+                case CHARACTERS :
+                case CDATA :
+                case SPACE :
+                    decodeText();
+                    sb.append(this.text.getChars(), 0, this.textLength);
+                    break;
+                case COMMENT :
+                case PROCESSING_INSTRUCTION :
+                    break;
+                default :
+                    throw new XMLStreamException("Element text contains event " + this.eventType, getLocation());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#nextTag()
+     */
+    public int nextTag() throws XMLStreamException
+    {
+        next();
+        while ((this.eventType == CHARACTERS || this.eventType == CDATA) && isWhiteSpace()
+            || this.eventType == COMMENT
+            || this.eventType == PROCESSING_INSTRUCTION
+            || this.eventType == SPACE)
+        {
+            next();
+        }
+        if (this.eventType != START_ELEMENT && this.eventType != END_ELEMENT)
+        {
+            throw new XMLStreamException("Expected a start or end element, found " + this.eventType, getLocation());
+        }
+        return this.eventType;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#hasNext()
+     */
+    public boolean hasNext()
+    {
+        return this.eventType != END_DOCUMENT;
+    }
+
+    /**
+     * Nothing to release: the document is already in memory.
+     * @see javax.xml.stream.XMLStreamReader#close()
+     */
+    public void close()
+    {
+        // nothing to close
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceURI(java.lang.String)
+     */
+    public String getNamespaceURI(String prefix)
+    {
+        if (prefix == null)
+        {
+            throw new IllegalArgumentException("No prefix");
+        }
+        return this.namespaceSupport.getURI(prefix);
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#isStartElement()
+     */
+    public boolean isStartElement()
+    {
+        return this.eventType == START_ELEMENT;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#isEndElement()
+     */
+    public boolean isEndElement()
+    {
+        return this.eventType == END_ELEMENT;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#isCharacters()
+     */
+    public boolean isCharacters()
+    {
+        return this.eventType == CHARACTERS;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#isWhiteSpace()
+     */
+    public boolean isWhiteSpace()
+    {
+        if (this.eventType != CHARACTERS && this.eventType != CDATA && this.eventType != SPACE)
+        {
+            return false;
+        }
+        decodeText();
+        char[] chars = this.text.getChars();
+        for (int j = 0; j < this.textLength; j++)
+        {
+            if (!TidyUtils.isWhite(chars[j]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getAttributeValue(java.lang.String, java.lang.String)
+     */
+    public String getAttributeValue(String namespaceURI, String localName)
+    {
+        for (int j = 0; j < getAttributeCount(); j++)
+        {
+            if ((namespaceURI == null || namespaceURI.equals(getAttributeNamespace(j)))
+                && localName.equals(getAttributeLocalName(j)))
+            {
+                return getAttributeValue(j);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getAttributeCount()
+     */
+    public int getAttributeCount()
+    {
+        if (this.eventType != START_ELEMENT)
+        {
+            throw new IllegalStateException("Not a start element: " + this.eventType);
+        }
+        return this.attributeCount;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getAttributeName(int)
+     */
+    public QName getAttributeName(int index)
+    {
+        String name = attribute(index).attribute;
+        processName(name, true);
+        return new QName(this.nameParts[0], this.nameParts[1], prefix(name));
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getAttributeNamespace(int)
+     */
+    public String getAttributeNamespace(int index)
+    {
+        processName(attribute(index).attribute, true);
+        return this.nameParts[0].length() > 0 ? this.nameParts[0] : null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getAttributeLocalName(int)
+     */
+    public String getAttributeLocalName(int index)
+    {
+        processName(attribute(index).attribute, true);
+        return this.nameParts[1];
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getAttributePrefix(int)
+     */
+    public String getAttributePrefix(int index)
+    {
+        return prefix(attribute(index).attribute);
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getAttributeType(int)
+     */
+    public String getAttributeType(int index)
+    {
+        attribute(index);
+        return "CDATA";
+    }
+
+    /**
+     * Returns the value of an attribute; attributes without a value, as boolean attributes in html, have their name
+     * as value.
+     * @see javax.xml.stream.XMLStreamReader#getAttributeValue(int)
+     */
+    public String getAttributeValue(int index)
+    {
+        AttVal att = attribute(index);
+        return att.value != null ? att.value : att.attribute;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#isAttributeSpecified(int)
+     */
+    public boolean isAttributeSpecified(int index)
+    {
+        attribute(index);
+        return true;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceCount()
+     */
+    public int getNamespaceCount()
+    {
+        checkElement();
+        return this.declarationCount;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getNamespacePrefix(int)
+     */
+    public String getNamespacePrefix(int index)
+    {
+        String prefix = declaration(index).getDeclaredPrefix();
+        return prefix.length() > 0 ? prefix : null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceURI(int)
+     */
+    public String getNamespaceURI(int index)
+    {
+        AttVal att = declaration(index);
+        return att.value != null ? att.value : "";
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceContext()
+     */
+    public NamespaceContext getNamespaceContext()
+    {
+        return new NamespaceContext()
+        {
+
+            public String getNamespaceURI(String prefix)
+            {
+                if (prefix == null)
+                {
+                    throw new IllegalArgumentException("No prefix");
+                }
+                String uri = namespaceSupport.getURI(prefix);
+                return uri != null ? uri : XMLConstants.NULL_NS_URI;
+            }
+
+            public String getPrefix(String namespaceURI)
+            {
+                if (namespaceURI == null)
+                {
+                    throw new IllegalArgumentException("No namespace uri");
+                }
+                if (namespaceURI.equals(namespaceSupport.getURI("")))
+                {
+                    return XMLConstants.DEFAULT_NS_PREFIX;
+                }
+                return namespaceSupport.getPrefix(namespaceURI);
+            }
+
+            public Iterator<String> getPrefixes(String namespaceURI)
+            {
+                if (namespaceURI == null)
+                {
+                    throw new IllegalArgumentException("No namespace uri");
+                }
+                // the enumeration is raw before java 9
+                List<String> prefixes = new ArrayList<>();
+                for (Enumeration<?> e = namespaceSupport.getPrefixes(namespaceURI); e.hasMoreElements();)
+                {
+                    prefixes.add((String) e.nextElement());
+                }
+                return prefixes.iterator();
+            }
+        };
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getEventType()
+     */
+    public int getEventType()
+    {
+        return this.eventType;
+    }
+
+    /**
+     * Returns the text of characters, cdata and comments, or the content of the doctype.
+     * @see javax.xml.stream.XMLStreamReader#getText()
+     */
+    public String getText()
+    {
+        if (this.eventType == DTD)
+        {
+            return NodeText.getString(this.node);
+        }
+        decodeText();
+        return new String(this.text.getChars(), 0, this.textLength);
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getTextCharacters()
+     */
+    public char[] getTextCharacters()
+    {
+        decodeText();
+        return this.text.getChars();
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getTextCharacters(int, char[], int, int)
+     */
+    public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length)
+        throws XMLStreamException
+    {
+        decodeText();
+        int count = Math.max(0, Math.min(length, this.textLength - sourceStart));
+        System.arraycopy(this.text.getChars(), sourceStart, target, targetStart, count);
+        return count;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getTextStart()
+     */
+    public int getTextStart()
+    {
+        decodeText();
+        return 0;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getTextLength()
+     */
+    public int getTextLength()
+    {
+        decodeText();
+        return this.textLength;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getEncoding()
+     */
+    public String getEncoding()
+    {
+        return null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#hasText()
+     */
+    public boolean hasText()
+    {
+        return this.eventType == CHARACTERS
+            || this.eventType == CDATA
+            || this.eventType == COMMENT
+            || this.eventType == SPACE
+            || this.eventType == DTD;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getLocation()
+     */
+    public Location getLocation()
+    {
+        return UNKNOWN_LOCATION;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getName()
+     */
+    public QName getName()
+    {
+        checkElement();
+        processName(this.node.element, false);
+        return new QName(this.nameParts[0], this.nameParts[1], prefix(this.node.element));
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getLocalName()
+     */
+    public String getLocalName()
+    {
+        checkElement();
+        processName(this.node.element, false);
+        return this.nameParts[1];
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#hasName()
+     */
+    public boolean hasName()
+    {
+        return this.eventType == START_ELEMENT || this.eventType == END_ELEMENT;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceURI()
+     */
+    public String getNamespaceURI()
+    {
+        if (!hasName())
+        {
+            return null;
+        }
+        processName(this.node.element, false);
+        return this.nameParts[0].length() > 0 ? this.nameParts[0] : null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getPrefix()
+     */
+    public String getPrefix()
+    {
+        return hasName() ? prefix(this.node.element) : null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getVersion()
+     */
+    public String getVersion()
+    {
+        return null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#isStandalone()
+     */
+    public boolean isStandalone()
+    {
+        return false;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#standaloneSet()
+     */
+    public boolean standaloneSet()
+    {
+        return false;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getCharacterEncodingScheme()
+     */
+    public String getCharacterEncodingScheme()
+    {
+        return null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getPITarget()
+     */
+    public String getPITarget()
+    {
+        return this.eventType == PROCESSING_INSTRUCTION ? processingInstruction()[0] : null;
+    }
+
+    /**
+     * @see javax.xml.stream.XMLStreamReader#getPIData()
+     */
+    public String getPIData()
+    {
+        return this.eventType == PROCESSING_INSTRUCTION ? processingInstruction()[1] : null;
+    }
+
+    /**
+     * Splits the current processing instruction, once.
+     * @return target and data
+     */
+    private String[] processingInstruction()
+    {
+        if (this.parts == null)
+        {
+            this.parts = NodeText.processingInstruction(this.node);
+        }
+        return this.parts;
+    }
+
+}
@@ -53,20 +53,24 @@
  */
 package org.w3c.tidy.ant;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
@@ -77,7 +81,10 @@ import org.apache.tools.ant.types.Parameter;
 import org.apache.tools.ant.util.FileNameMapper;
 import org.apache.tools.ant.util.FlatFileNameMapper;
 import org.apache.tools.ant.util.IdentityMapper;
+import org.w3c.tidy.Configuration;
 import org.w3c.tidy.Tidy;
+import org.w3c.tidy.TidyEngine;
+import org.w3c.tidy.TidyParseContext;
 
 
 /**
@@ -124,6 +131,13 @@ import org.w3c.tidy.Tidy;
  * <code>true</code> errors in input files which tidy is enable to fix will cause a failure.</td>
  * <td>No; defaults to false.</td>
  * </tr>
+ * <tr>
+ * <td>threads</td>
+ * <td>number of files of the nested <code>&lt;fileset&gt;</code> elements tidied at the same time. Files are still
+ * written, logged and checked for errors in order by <code>processFile</code>, so <code>failonerror</code> always
+ * stops at the first failing file.</td>
+ * <td>No; defaults to the number of available processors.</td>
+ * </tr>
  * </tbody></table>
  * <h3>Nested elements</h3>
  * <ul>
@@ -198,6 +212,11 @@ public class JTidyTask extends Task
      */
     private boolean flatten;
 
+    /**
+     * Number of files tidied at the same time.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
     /**
      * tidy instance.
      */
@@ -213,6 +232,76 @@ public class JTidyTask extends Task
      */
     private File properties;
 
+    /**
+     * engine the parse contexts come from, built on first use.
+     */
+    private TidyEngine engine;
+
+    /**
+     * parse context of each thread tidying files.
+     */
+    private final ThreadLocal<TidyParseContext> contexts = ThreadLocal.withInitial(() -> this.engine.newContext());
+
+    /**
+     * files submitted to the workers and not yet processed, in file order.
+     */
+    private final Deque<Submitted> submitted = new ArrayDeque<>();
+
+    /**
+     * Result of tidying a file.
+     */
+    private static final class Tidied
+    {
+
+        /**
+         * pretty printed document.
+         */
+        byte[] output;
+
+        /**
+         * messages.
+         */
+        String report;
+
+        /**
+         * number of errors.
+         */
+        int errors;
+
+        /**
+         * error reading the file, null if none.
+         */
+        IOException exception;
+    }
+
+    /**
+     * A file submitted to the workers.
+     */
+    private static final class Submitted
+    {
+
+        /**
+         * input file.
+         */
+        final File inputFile;
+
+        /**
+         * future result.
+         */
+        final CompletableFuture<Tidied> result;
+
+        /**
+         * Instantiates a new submitted file.
+         * @param inputFile input file
+         * @param result future result
+         */
+        Submitted(File inputFile, CompletableFuture<Tidied> result)
+        {
+            this.inputFile = inputFile;
+            this.result = result;
+        }
+    }
+
     /**
      * @param destdir The destdir to set.
      */
@@ -253,6 +342,14 @@ public class JTidyTask extends Task
         this.flatten = flatten;
     }
 
+    /**
+     * @param threads The number of files tidied at the same time.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
     /**
      * @param properties The properties to set.
      */
@@ -330,6 +427,11 @@ public class JTidyTask extends Task
             throw new BuildException("Invalid properties file specified: " + properties.getPath());
         }
 
+        if (threads < 1)
+        {
+            throw new BuildException("threads must be at least 1.");
+        }
+
     }
 
     /**
@@ -394,7 +496,9 @@ public class JTidyTask extends Task
     }
 
     /**
-     * Run tidy on filesets.
+     * Run tidy on filesets. Every file goes through {@link #processFile(File, File)}, in order; with more than one
+     * thread the files ahead are tidied by up to <code>threads</code> workers, each with its own parse context, while
+     * the results are written and checked here.
      */
     protected void executeSet()
     {
@@ -403,6 +507,7 @@ public class JTidyTask extends Task
 
         mapper.setTo(this.destdir.getAbsolutePath());
 
+        List<File[]> files = new ArrayList<>();
         for (FileSet fileSet : filesets)
         {
             DirectoryScanner directoryScanner = fileSet.getDirectoryScanner(getProject());
@@ -415,62 +520,217 @@ public class JTidyTask extends Task
             {
                 String[] mapped = mapper.mapFileName(sourceFile);
 
-                processFile(new File(inputdir, sourceFile), new File(this.destdir, mapped[0]));
+                files.add(new File[]{new File(inputdir, sourceFile), new File(this.destdir, mapped[0])});
+            }
+        }
+
+        if (threads == 1 || files.size() < 2)
+        {
+            for (File[] file : files)
+            {
+                processFile(file[0], file[1]);
+            }
+            return;
+        }
+
+        engine();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        // a window of twice the threads keeps the workers busy while the results are written in order
+        int window = threads * 2;
+        int next = 0;
+        try
+        {
+            for (File[] file : files)
+            {
+                while (next < files.size() && submitted.size() < window)
+                {
+                    final File inputFile = files.get(next++)[0];
+                    submitted.add(new Submitted(inputFile, CompletableFuture.supplyAsync(
+                        () -> tidy(contexts.get(), inputFile),
+                        executor)));
+                }
+
+                processFile(file[0], file[1]);
+
+                // an overridden processFile may not have taken the result
+                if (!submitted.isEmpty() && submitted.peekFirst().inputFile == file[0])
+                {
+                    submitted.removeFirst().result.cancel(false);
+                }
+            }
+        }
+        finally
+        {
+            for (Submitted file : submitted)
+            {
+                file.result.cancel(false);
+            }
+            submitted.clear();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the engine the parse contexts come from, built from the known configuration options on first use.
+     * @return engine
+     */
+    private TidyEngine engine()
+    {
+        if (this.engine == null)
+        {
+            // unknown options have already been reported by tidy
+            Properties known = new Properties();
+            for (String key : props.stringPropertyNames())
+            {
+                if (Configuration.isKnownOption(key))
+                {
+                    known.setProperty(key, props.getProperty(key));
+                }
             }
+            this.engine = new TidyEngine(known);
         }
+        return this.engine;
     }
 
     /**
-     * Run tidy on a file.
+     * Tidies a file in the given context, collecting the output and messages.
+     * @param context parse context of the calling thread
+     * @param inputFile input file
+     * @return result
+     */
+    private Tidied tidy(TidyParseContext context, File inputFile)
+    {
+        Tidied tidied = new Tidied();
+        StringWriter report = new StringWriter();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        context.setErrout(new PrintWriter(report));
+        context.setInputStreamName(inputFile.getPath());
+        try
+        {
+            tidyFile(context, inputFile, output);
+            tidied.errors = context.getParseErrors();
+        }
+        catch (IOException e)
+        {
+            tidied.exception = e;
+        }
+        context.getErrout().flush();
+        tidied.output = output.toByteArray();
+        tidied.report = report.toString();
+        return tidied;
+    }
+
+    /**
+     * Parses a file and pretty prints it. With more than one thread this runs in the worker threads, so overrides
+     * must be thread safe; each thread has its own context, reused for the files it tidies.
+     *
+     * @param context    parse context of the calling thread, with messages going to the task log
+     * @param inputFile  input file
+     * @param out        destination for the pretty-printed document
+     * @throws IOException if the file can't be read
+     */
+    protected void tidyFile(TidyParseContext context, File inputFile, OutputStream out) throws IOException
+    {
+        context.parse(inputFile.toPath(), out);
+    }
+
+    /**
+     * Writes the result of tidying a file, deleting any previous output when tidy found errors.
      *
      * @param inputFile  input file
      * @param outputFile output file
+     * @param result     tidy result
      */
-    protected void processFile(File inputFile, File outputFile)
+    private void writeResult(File inputFile, File outputFile, Tidied result)
     {
 
-        log("Processing " + inputFile.getAbsolutePath(), Project.MSG_DEBUG);
+        if (result.exception != null)
+        {
+            throw new BuildException("Unable to open file " + inputFile, result.exception);
+        }
+
+        if (result.report.length() > 0)
+        {
+            log(result.report.trim(), Project.MSG_VERBOSE);
+        }
 
-        try (InputStream is = new BufferedInputStream(new FileInputStream(inputFile)))
+        if (result.errors > 0 && !tidy.getForceOutput())
         {
-            if (!outputFile.getParentFile().mkdirs() || !outputFile.createNewFile())
+            // nothing to write, and cleanup any previous output
+            try
             {
-                log("Existing output file " + outputFile, Project.MSG_DEBUG);
+                Files.deleteIfExists(outputFile.toPath());
             }
-            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFile)))
+            catch (IOException e)
             {
-                tidy.parse(is, os);
+                throw new BuildException("Failed trying to delete output file " + outputFile, e);
+            }
+        }
+        else
+        {
+            if (!outputFile.getParentFile().mkdirs() && !outputFile.getParentFile().isDirectory())
+            {
+                throw new BuildException("Unable to create directory " + outputFile.getParentFile());
+            }
+            try (OutputStream os = new FileOutputStream(outputFile))
+            {
+                os.write(result.output);
             }
             catch (IOException e)
             {
                 throw new BuildException("Unable to process destination file " + outputFile, e);
             }
         }
-        catch (IOException e)
+
+        if (failonerror && result.errors > 0)
         {
-            throw new BuildException("Unable to open file " + inputFile, e);
+            throw new BuildException("Tidy was unable to process file "
+                + inputFile
+                + ", "
+                + result.errors
+                + " returned.");
         }
+    }
 
-        // cleanup empty files
-        if (tidy.getParseErrors() > 0 && !tidy.getForceOutput())
+    /**
+     * Run tidy on a file, and writes the output. Called for every file in order; the file may already have been
+     * tidied by a worker through {@link #tidyFile(TidyParseContext, File, OutputStream)}, otherwise it is tidied
+     * here.
+     *
+     * @param inputFile  input file
+     * @param outputFile output file
+     */
+    protected void processFile(File inputFile, File outputFile)
+    {
+
+        log("Processing " + inputFile.getAbsolutePath(), Project.MSG_DEBUG);
+
+        Tidied result;
+        if (!submitted.isEmpty() && submitted.peekFirst().inputFile == inputFile)
         {
             try
             {
-                Files.delete(outputFile.toPath());
+                result = submitted.removeFirst().result.join();
             }
-            catch (IOException e)
+            catch (CompletionException e)
             {
-                throw new BuildException("Failed trying to delete output file " + outputFile, e);
+                if (e.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error)
+                {
+                    throw (Error) e.getCause();
+                }
+                throw e;
             }
         }
-
-        if (failonerror && tidy.getParseErrors() > 0)
+        else
         {
-            throw new BuildException("Tidy was unable to process file "
-                + inputFile
-                + ", "
-                + tidy.getParseErrors()
-                + " returned.");
+            engine();
+            result = tidy(contexts.get(), inputFile);
         }
+
+        writeResult(inputFile, outputFile, result);
     }
 }
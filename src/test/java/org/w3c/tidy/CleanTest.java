@@ -0,0 +1,126 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for the style rules generated by Clean.
+ * @version $Revision $ ($Author $)
+ */
+public class CleanTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public CleanTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Tidies the given body with <code>clean</code> enabled.
+     * @param body body content
+     * @return tidied document
+     */
+    private static String clean(String body)
+    {
+        Tidy tidy = new Tidy();
+        tidy.setMakeClean(true);
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        StringWriter out = new StringWriter();
+        tidy.parse(new StringReader("<html><head><title>t</title></head><body>" + body + "</body></html>"), out);
+        return out.toString();
+    }
+
+    /**
+     * Equal styles share a class, whatever the number of styled elements, and classes are numbered in order of first
+     * use.
+     */
+    public void testStyleRules()
+    {
+        StringBuilder body = new StringBuilder();
+        for (int j = 0; j < 3000; j++)
+        {
+            body.append("<p><font face=arial color=red>x</font><span style=\"color: blue\">").append(j).append(
+                "</span><div style=\"color: blue\">").append(j % 3).append("</div></p>");
+        }
+        String out = clean(body.toString());
+
+        assertTrue(out, out.indexOf(" div.c3 {color: blue}\n span.c2 {color: blue}\n"
+            + " span.c1 {color: red; font-family: arial}\n</style>") != -1);
+        assertEquals(3000, out.split("<span class=\"c1\">x</span>", -1).length - 1);
+        assertEquals(3000, out.split("<span class=\"c2\">", -1).length - 1);
+        assertEquals(3000, out.split("<div class=\"c3\">", -1).length - 1);
+        assertEquals(-1, out.indexOf("c4"));
+    }
+
+    /**
+     * Merged properties are sorted by name, and the first value given for a property is kept.
+     */
+    public void testMergedProperties()
+    {
+        String out = clean("<p style=\"margin: 0; color: red\"><font color=blue size=+1>x</font></p>");
+
+        assertTrue(out, out.indexOf(" p.c1 {color: red; font-size: 120%; margin: 0}\n") != -1);
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+
+/**
+ * Test cases for the element lookups of DOMDocumentImpl.
+ * @version $Revision $ ($Author $)
+ */
+public class DOMDocumentImplTest extends TidyTestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public DOMDocumentImplTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Builds a document with a table of the given number of rows, each row with an id.
+     * @param rows number of rows
+     * @return DOM document
+     */
+    private static Document table(int rows)
+    {
+        StringBuilder sb = new StringBuilder("<html><head><title>t</title></head><body><table>");
+        for (int j = 0; j < rows; j++)
+        {
+            sb.append("<tr id=\"r").append(j).append("\"><td>").append(j).append("</td><td><b>b</b></td></tr>");
+        }
+        return parseDom(sb.append("</table></body></html>").toString());
+    }
+
+    /**
+     * Elements are listed in document order, for the document and for an element.
+     */
+    public void testGetElementsByTagName()
+    {
+        Document document = table(5000);
+
+        NodeList cells = document.getElementsByTagName("td");
+        assertEquals(10000, cells.getLength());
+        for (int j = 0; j < cells.getLength(); j += 2)
+        {
+            assertEquals(String.valueOf(j / 2), cells.item(j).getFirstChild().getNodeValue());
+        }
+        assertNull(cells.item(10000));
+        assertNull(cells.item(-1));
+
+        assertEquals(0, document.getElementsByTagName("p").getLength());
+        assertEquals("html", document.getElementsByTagName("*").item(0).getNodeName());
+
+        Element row = (Element) document.getElementsByTagName("tr").item(42);
+        NodeList rowCells = row.getElementsByTagName("td");
+        assertEquals(2, rowCells.getLength());
+        assertEquals("42", rowCells.item(0).getFirstChild().getNodeValue());
+        assertEquals(4, row.getElementsByTagName("*").getLength());
+    }
+
+    /**
+     * Elements are found by id, the first in document order winning.
+     */
+    public void testGetElementById()
+    {
+        Document document = table(5000);
+
+        for (int j = 0; j < 5000; j += 7)
+        {
+            Element row = document.getElementById("r" + j);
+            assertNotNull(row);
+            assertEquals(String.valueOf(j), row.getFirstChild().getFirstChild().getNodeValue());
+        }
+        assertNull(document.getElementById("nope"));
+
+        document = parseDom("<p id=\"x\">first</p><p id=\"x\">second</p>");
+        assertEquals("first", document.getElementById("x").getFirstChild().getNodeValue());
+    }
+
+    /**
+     * Lists and lookups reflect changes made through the DOM.
+     */
+    public void testChanges()
+    {
+        Document document = table(10);
+        NodeList rows = document.getElementsByTagName("tr");
+        assertEquals(10, rows.getLength());
+
+        Element row = document.getElementById("r3");
+        row.getParentNode().removeChild(row);
+        assertEquals(9, rows.getLength());
+        assertNull(document.getElementById("r3"));
+
+        Element added = document.createElement("tr");
+        added.setAttribute("id", "added");
+        document.getElementById("r4").getParentNode().appendChild(added);
+        assertEquals(10, rows.getLength());
+        assertSame(added, rows.item(9));
+        assertSame(added, document.getElementById("added"));
+
+        added.setAttribute("id", "renamed");
+        assertNull(document.getElementById("added"));
+        assertSame(added, document.getElementById("renamed"));
+
+        document.getElementById("r5").getAttributeNode("id").setValue("moved");
+        assertNull(document.getElementById("r5"));
+        assertEquals("moved", document.getElementById("moved").getAttribute("id"));
+    }
+
+    /**
+     * Ids renamed through Attr.setValue() and setNodeValue() are seen by the lookups, including an id which was
+     * looked up and missed before.
+     */
+    public void testRenameIdThroughAttr()
+    {
+        Document document = table(10);
+        assertNull(document.getElementById("b"));
+
+        Element row = document.getElementById("r6");
+        Attr id = row.getAttributeNode("id");
+        assertSame(row, id.getOwnerElement());
+        id.setValue("b");
+        assertNull(document.getElementById("r6"));
+        assertSame(row, document.getElementById("b"));
+
+        row = document.getElementById("r7");
+        row.getAttributes().getNamedItem("id").setNodeValue("c");
+        assertNull(document.getElementById("r7"));
+        assertSame(row, document.getElementById("c"));
+
+        // other attributes don't invalidate the index
+        int builds = ((DOMDocumentImpl) document).getIndexBuilds();
+        row.setAttributeNode(document.createAttribute("title"));
+        ((Attr) row.getAttributes().getNamedItem("title")).setValue("t");
+        assertSame(row, document.getElementById("c"));
+        assertEquals(builds + 1, ((DOMDocumentImpl) document).getIndexBuilds());
+    }
+
+    /**
+     * Lookups of missing ids use the index, without walking the tree again.
+     */
+    public void testMissDoesNotRescan()
+    {
+        Document document = table(1000);
+        assertNotNull(document.getElementById("r1"));
+        int builds = ((DOMDocumentImpl) document).getIndexBuilds();
+
+        for (int j = 0; j < 2000; j++)
+        {
+            assertNull(document.getElementById("missing" + j));
+        }
+        assertNotNull(document.getElementById("r999"));
+        assertEquals(builds, ((DOMDocumentImpl) document).getIndexBuilds());
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.NodeList;
+
+
+/**
+ * Test cases for the child lists and attribute maps of DOMNodeImpl.
+ * @version $Revision $ ($Author $)
+ */
+public class DOMNodeImplTest extends TidyTestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public DOMNodeImplTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Children of a wide element are listed in order, and the list follows changes made through the DOM.
+     */
+    public void testChildNodes()
+    {
+        StringBuilder sb = new StringBuilder("<table>");
+        for (int j = 0; j < 20000; j++)
+        {
+            sb.append("<tr><td>").append(j).append("</td></tr>");
+        }
+        Document document = parseDom(sb.append("</table>").toString());
+
+        Element table = (Element) document.getElementsByTagName("table").item(0);
+        NodeList rows = table.getChildNodes();
+        assertEquals(20000, rows.getLength());
+        for (int j = 0; j < rows.getLength(); j++)
+        {
+            assertEquals(String.valueOf(j), rows.item(j).getFirstChild().getFirstChild().getNodeValue());
+        }
+        assertNull(rows.item(20000));
+        assertNull(rows.item(-1));
+
+        org.w3c.dom.Node first = rows.item(0);
+        table.removeChild(first);
+        assertEquals(19999, rows.getLength());
+        assertEquals("1", rows.item(0).getFirstChild().getFirstChild().getNodeValue());
+
+        table.appendChild(first);
+        assertEquals(20000, rows.getLength());
+        assertSame(first, rows.item(19999));
+
+        org.w3c.dom.Node added = document.createElement("tr");
+        table.insertBefore(added, rows.item(0));
+        assertSame(added, rows.item(0));
+        assertEquals(20001, rows.getLength());
+    }
+
+    /**
+     * Children can be walked with a call to getChildNodes() for each of them, as the list is kept by the node.
+     */
+    public void testRepeatedGetChildNodes()
+    {
+        StringBuilder sb = new StringBuilder("<table>");
+        for (int j = 0; j < 20000; j++)
+        {
+            sb.append("<tr><td>").append(j).append("</td></tr>");
+        }
+        Document document = parseDom(sb.append("</table>").toString());
+        Element table = (Element) document.getElementsByTagName("table").item(0);
+
+        for (int j = 0; j < table.getChildNodes().getLength(); j++)
+        {
+            org.w3c.dom.Node row = table.getChildNodes().item(j);
+            assertEquals(String.valueOf(j), row.getChildNodes().item(0).getChildNodes().item(0).getNodeValue());
+            assertEquals(0, row.getAttributes().getLength());
+        }
+        assertSame(table.getChildNodes(), table.getChildNodes());
+        assertSame(table.getAttributes(), table.getAttributes());
+
+        // the kept list follows changes made through the DOM
+        table.removeChild(table.getChildNodes().item(0));
+        assertEquals(19999, table.getChildNodes().getLength());
+        assertEquals("1", table.getChildNodes().item(0).getFirstChild().getFirstChild().getNodeValue());
+    }
+
+    /**
+     * Attributes are listed in order, and the map follows changes made through the DOM.
+     */
+    public void testAttributes()
+    {
+        Document document = parseDom("<p id=\"a\" class=\"b\" title=\"c\">x</p>");
+        Element p = (Element) document.getElementsByTagName("p").item(0);
+
+        NamedNodeMap attributes = p.getAttributes();
+        assertEquals(3, attributes.getLength());
+        assertEquals("title", attributes.item(0).getNodeName());
+        assertEquals("id", attributes.item(2).getNodeName());
+        assertNull(attributes.item(3));
+
+        p.setAttribute("lang", "en");
+        assertEquals(4, attributes.getLength());
+        assertEquals("lang", attributes.item(0).getNodeName());
+
+        p.removeAttribute("class");
+        assertEquals(3, attributes.getLength());
+        assertNull(attributes.getNamedItem("class"));
+
+        attributes.removeNamedItem("lang");
+        assertEquals(2, attributes.getLength());
+        assertEquals("", p.getAttribute("lang"));
+        assertEquals(2, p.getAttributes().getLength());
+    }
+
+}
@@ -53,6 +53,10 @@
  */
 package org.w3c.tidy;
 
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import junit.framework.TestCase;
 
 
@@ -112,4 +116,100 @@ public class LexerTest extends TestCase
         assertTrue("abc\\8 is a valid css selector", Lexer.isCSS1Selector("abc\\8"));
     }
 
-}
\ No newline at end of file
+    /**
+     * Text nodes read across several lexer text chunks, including a token larger than a chunk, keep their content.
+     */
+    public final void testTokensSpanningTextChunks()
+    {
+        StringBuilder longText = new StringBuilder();
+        for (int j = 0; j < 3000; j++)
+        {
+            longText.append("long").append(j);
+        }
+
+        StringBuilder html = new StringBuilder();
+        for (int j = 0; j < 2000; j++)
+        {
+            html.append("<p>paragraph ").append(j).append("</p>");
+            if (j == 1000)
+            {
+                html.append("<p>").append(longText).append("</p>");
+            }
+        }
+
+        Report report = new Report();
+        Configuration configuration = new Configuration(report);
+        configuration.tt = new TagTable();
+        configuration.tt.setConfiguration(configuration);
+        Lexer lexer = new Lexer(StreamInFactory.getStreamIn(configuration, new StringReader(html.toString())),
+            configuration, report);
+
+        int count = 0;
+        Node node;
+        while ((node = lexer.getToken(Lexer.MIXED_CONTENT)) != null)
+        {
+            if (node.type == Node.TEXT_NODE)
+            {
+                String text = TidyUtils.getString(node.textarray, node.start, node.end - node.start);
+                String expected = count == 1001 ? longText.toString() : "paragraph " + (count > 1001 ? count - 1 : count);
+                assertEquals(expected, text);
+                count++;
+            }
+        }
+        assertEquals(2001, count);
+    }
+
+    /**
+     * Lexing text and attributes allocates little more than the text storage itself, not objects for each char.
+     */
+    public final void testAllocationsPerChar()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+            || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported())
+        {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        StringBuilder html = new StringBuilder();
+        for (int j = 0; j < 2000; j++)
+        {
+            html.append("<p class=\"text\" title=\"paragraph ").append(j).append("\">");
+            for (int k = 0; k < 8; k++)
+            {
+                html.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit, \u00e9l\u00e8ve \u4e2d\u6587. ");
+            }
+            html.append("</p>\n");
+        }
+
+        // lex the document once before measuring, so that classes and shared tables are loaded
+        String input = html.toString();
+        lexAll(input);
+        long before = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+        lexAll(input);
+        long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        double perChar = (double) allocated / input.length();
+        assertTrue("Allocated " + perChar + " bytes per input char", perChar < 4);
+    }
+
+    /**
+     * Reads all the tokens of a document, using the buffered input.
+     * @param html document
+     */
+    private static void lexAll(String html)
+    {
+        Report report = new Report();
+        Configuration configuration = new Configuration(report);
+        configuration.tt = new TagTable();
+        configuration.tt.setConfiguration(configuration);
+        configuration.bufferedInput = true;
+        Lexer lexer = new Lexer(StreamInFactory.getStreamIn(configuration, new StringReader(html)), configuration, report);
+        while (lexer.getToken(Lexer.MIXED_CONTENT) != null)
+        {
+            // just read
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for OutBufferedImpl.
+ * @version $Revision $ ($Author $)
+ */
+public class OutBufferedImplTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public OutBufferedImplTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Writes the same chars through both implementations, mixing single and bulk writes.
+     * @param encoding output encoding
+     * @param chars chars to write
+     * @throws Exception any exception generated during the test
+     */
+    private static void assertSameBytes(String encoding, int[] chars) throws Exception
+    {
+        Configuration configuration = new Configuration(new Report());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        Out javaOut = new OutJavaImpl(configuration, encoding, expected);
+        Out bufferedOut = new OutBufferedImpl(configuration, encoding, actual);
+
+        int i = 0;
+        int step = 1;
+        while (i < chars.length)
+        {
+            int n = Math.min(step, chars.length - i);
+            if (n == 1)
+            {
+                javaOut.outc(chars[i]);
+                bufferedOut.outc(chars[i]);
+            }
+            else
+            {
+                javaOut.outc(chars, i, n);
+                bufferedOut.outc(chars, i, n);
+            }
+            javaOut.outAscii("  <p>", 1, 3);
+            bufferedOut.outAscii("  <p>", 1, 3);
+            javaOut.newline(step % 3);
+            bufferedOut.newline(step % 3);
+            i += n;
+            step = step * 7 % 101;
+        }
+        javaOut.flush();
+        bufferedOut.flush();
+
+        assertTrue(encoding, Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    }
+
+    /**
+     * Builds a sequence of chars mixing ASCII, Latin-1, BMP and supplementary chars, and some lone surrogates.
+     * @param random random source
+     * @return chars
+     */
+    private static int[] sampleChars(Random random)
+    {
+        int[] chars = new int[20000];
+        for (int i = 0; i < chars.length; i++)
+        {
+            switch (random.nextInt(6))
+            {
+                case 0 :
+                    chars[i] = 0x80 + random.nextInt(0x80);
+                    break;
+                case 1 :
+                    chars[i] = 0x100 + random.nextInt(0xD700);
+                    break;
+                case 2 :
+                    chars[i] = 0x10000 + random.nextInt(0x100000);
+                    break;
+                case 3 :
+                    chars[i] = random.nextInt(50) == 0 ? 0xD800 + random.nextInt(0x800) : 'x';
+                    break;
+                default :
+                    chars[i] = 0x20 + random.nextInt(0x60);
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Output is byte for byte the same as for OutJavaImpl.
+     * @throws Exception any exception generated during the test
+     */
+    public void testSameAsJavaImpl() throws Exception
+    {
+        String[] encodings = {"UTF8", "ISO8859_1", "ASCII", "UnicodeBig", "Cp1252", "SJIS"};
+        Random random = new Random(7);
+        for (int j = 0; j < encodings.length; j++)
+        {
+            assertSameBytes(encodings[j], sampleChars(random));
+        }
+    }
+
+    /**
+     * The first error of the stream is thrown by flush, in both implementations.
+     * @throws Exception any exception generated during the test
+     */
+    public void testWriteErrorThrownByFlush() throws Exception
+    {
+        Configuration configuration = new Configuration(new Report());
+        final List<IOException> errors = new ArrayList<>();
+        OutputStream failing = new OutputStream()
+        {
+
+            public void write(int b) throws IOException
+            {
+                IOException error = new IOException("write " + errors.size());
+                errors.add(error);
+                throw error;
+            }
+
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                write(0);
+            }
+        };
+
+        Out[] outs = {
+            new OutBufferedImpl(configuration, "UTF8", failing),
+            new OutJavaImpl(configuration, "UTF8", failing)};
+        for (Out out : outs)
+        {
+            errors.clear();
+            for (int i = 0; i < 20000; i++)
+            {
+                out.outAscii("text", 0, 4);
+                out.newline();
+            }
+            try
+            {
+                out.flush();
+                fail("flush should have thrown");
+            }
+            catch (UncheckedIOException e)
+            {
+                assertFalse(errors.isEmpty());
+                assertSame(errors.get(0), e.getCause());
+            }
+        }
+    }
+
+}
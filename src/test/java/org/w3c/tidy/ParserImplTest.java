@@ -0,0 +1,288 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Tests for ParserImpl.
+ * @version $Revision $ ($Author $)
+ */
+public class ParserImplTest extends TestCase
+{
+
+    /**
+     * nesting of the test documents, far deeper than the thread stack would allow for recursive parsers.
+     */
+    private static final int DEPTH = 100000;
+
+    /**
+     * Creates a lexer over the given document.
+     * @param html document
+     * @param maxNesting maximum nesting allowed
+     * @return lexer
+     */
+    private static Lexer newLexer(String html, int maxNesting)
+    {
+        Report report = new Report();
+        Configuration configuration = new Configuration(report);
+        configuration.tt = new TagTable();
+        configuration.tt.setConfiguration(configuration);
+        configuration.maxNesting = maxNesting;
+        Lexer lexer = new Lexer(StreamInFactory.getStreamIn(configuration, new StringReader(html)), configuration, report);
+        lexer.errout = new PrintWriter(new StringWriter());
+        return lexer;
+    }
+
+    /**
+     * Returns the number of nested elements with the given name, following first children from node.
+     * @param node node to start from
+     * @param name element name
+     * @return depth
+     */
+    private static int depth(Node node, String name)
+    {
+        int depth = 0;
+        while (node != null && name.equals(node.element))
+        {
+            depth++;
+            node = node.content;
+        }
+        return depth;
+    }
+
+    /**
+     * Deeply nested block, inline and table elements are parsed when allowed by max-nesting.
+     */
+    public void testDeepNesting()
+    {
+        StringBuilder html = new StringBuilder("<html><head><title>deep</title></head><body>");
+        for (int j = 0; j < DEPTH; j++)
+        {
+            html.append("<div>");
+        }
+        html.append("<table><tr><td>");
+        for (int j = 0; j < DEPTH; j++)
+        {
+            html.append("<b>");
+        }
+        html.append("text");
+        for (int j = 0; j < DEPTH; j++)
+        {
+            html.append("</b>");
+        }
+        html.append("</td></tr></table>");
+        for (int j = 0; j < DEPTH; j++)
+        {
+            html.append("</div>");
+        }
+        html.append("</body></html>");
+
+        Lexer lexer = newLexer(html.toString(), 3 * DEPTH);
+        Node document = ParserImpl.parseDocument(lexer);
+        assertEquals(0, lexer.errors);
+
+        Node div = document.findBody(lexer.configuration.tt).content;
+        assertEquals(DEPTH, depth(div, "div"));
+
+        Node table = div;
+        while (table.tag == lexer.configuration.tt.tagDiv)
+        {
+            table = table.content;
+        }
+        assertEquals("table", table.element);
+        Node td = table.content.content;
+        assertEquals("td", td.element);
+        assertEquals(DEPTH, depth(td.content, "b"));
+    }
+
+    /**
+     * Nesting beyond max-nesting is still reported as an error.
+     */
+    public void testExcessiveNesting()
+    {
+        StringBuilder html = new StringBuilder();
+        for (int j = 0; j < DEPTH; j++)
+        {
+            html.append("<div>");
+        }
+
+        Lexer lexer = newLexer(html.toString(), 1000);
+        ParserImpl.parseDocument(lexer);
+        assertEquals(1, lexer.errors);
+    }
+
+    /**
+     * Deeply nested xml elements are parsed.
+     */
+    public void testDeepXmlNesting()
+    {
+        StringBuilder xml = new StringBuilder();
+        for (int j = 0; j < DEPTH; j++)
+        {
+            xml.append("<e>");
+        }
+        xml.append(" text ");
+        for (int j = 0; j < DEPTH; j++)
+        {
+            xml.append("</e>");
+        }
+
+        Lexer lexer = newLexer(xml.toString(), 1000);
+        Node document = ParserImpl.parseXMLDocument(lexer);
+        assertEquals(DEPTH, depth(document.content, "e"));
+    }
+
+    /**
+     * A deeply nested document is parsed, cleaned and printed, the walks over the tree not being limited by the
+     * thread stack.
+     */
+    public void testDeepNestingTidied()
+    {
+        String[] tags = {"div", "blockquote", "ul", "li", "center", "dl", "dd"};
+        int count = DEPTH / tags.length;
+        StringBuilder html = new StringBuilder("<html><head><title>deep</title></head><body>");
+        for (int j = 0; j < count; j++)
+        {
+            for (String tag : tags)
+            {
+                html.append('<').append(tag).append('>');
+            }
+        }
+        for (int j = 0; j < count; j++)
+        {
+            html.append("<font><i><span>");
+        }
+        html.append("text");
+        for (int j = 0; j < count; j++)
+        {
+            html.append("</span></i></font>");
+        }
+        html.append("</body></html>");
+
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        tidy.setMakeClean(true);
+        tidy.setLogicalEmphasis(true);
+        tidy.setWord2000(true);
+        tidy.setMaxNesting(2 * DEPTH);
+        tidy.setErrout(new PrintWriter(new StringWriter()));
+        StringWriter out = new StringWriter();
+        tidy.parse(new StringReader(html.toString()), out);
+
+        String tidied = out.toString();
+        assertEquals(count, tidied.split("</blockquote>", -1).length - 1);
+        assertEquals(count, tidied.split("</li>", -1).length - 1);
+        assertEquals(count, tidied.split("</dd>", -1).length - 1);
+        assertEquals(count, tidied.split("</em>", -1).length - 1);
+        assertEquals(count, tidied.split("</span>", -1).length - 1);
+        assertEquals(-1, tidied.indexOf("<font"));
+        assertEquals(-1, tidied.indexOf("<center"));
+    }
+
+    /**
+     * The initial space of an inline element moves to the text before it within the same lexer chunk.
+     */
+    public void testTrimInitialSpaceKeepsChunk()
+    {
+        Lexer lexer = newLexer("<p>text<b> word</b> more<i> it</i></p>", 1000);
+        Node document = ParserImpl.parseDocument(lexer);
+        Node p = document.findBody(lexer.configuration.tt).content;
+
+        Node text = p.content;
+        Node b = text.next;
+        assertEquals("text ", TidyUtils.getString(text.textarray, text.start, text.end - text.start));
+        assertSame(b.content.textarray, text.textarray);
+        assertEquals("word", TidyUtils.getString(b.content.textarray, b.content.start, b.content.end - b.content.start));
+
+        Node more = b.next;
+        assertEquals(" more ", TidyUtils.getString(more.textarray, more.start, more.end - more.start));
+        assertSame(more.next.content.textarray, more.textarray);
+    }
+
+    /**
+     * Blank text in a block after a closed inline is kept, and the blank moved before an inferred inline is trimmed,
+     * as they were when all the text was read from a single lexer buffer.
+     */
+    public void testBlankTextAfterInline()
+    {
+        assertEquals("x\n<p> </p>", tidyBody("x<b><p> </p>"));
+        assertEquals("x\n<ul>\n<li> </li>\n</ul>", tidyBody("x<b><ul><li> </li>"));
+        assertEquals("x\n<address> </address>", tidyBody("x<b><address> </address>"));
+        assertEquals("<div>x</div>", tidyBody("<b><div> </i>x"));
+    }
+
+    /**
+     * Tidies a document and returns the printed body content, trimmed.
+     * @param html document
+     * @return body content
+     */
+    private static String tidyBody(String html)
+    {
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        tidy.setPrintBodyOnly(true);
+        tidy.setErrout(new PrintWriter(new StringWriter()));
+        StringWriter out = new StringWriter();
+        tidy.parse(new StringReader(html), out);
+        return out.toString().trim();
+    }
+}
@@ -53,6 +53,11 @@
  */
 package org.w3c.tidy;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 
@@ -807,4 +812,65 @@ public class ReportTest extends TestCase
         assertEquals("no warnings, 33 errors were found!", message);
     }
 
-}
\ No newline at end of file
+    /**
+     * Messages passed to a listener carry code, position, key and raw arguments, and format their text on demand.
+     */
+    public void testMessageListener()
+    {
+        StringWriter errout = new StringWriter();
+        lexer.errout = new PrintWriter(errout, true);
+        final List<TidyMessage> messages = new ArrayList<TidyMessage>();
+        this.report.addMessageListener(new TidyMessageListener()
+        {
+
+            public void messageReceived(TidyMessage message)
+            {
+                messages.add(message);
+            }
+        });
+
+        this.report.entityError(lexer, Report.UNKNOWN_ENTITY, "&foo", 0);
+
+        assertEquals(1, messages.size());
+        TidyMessage message = messages.get(0);
+        assertEquals(Report.UNKNOWN_ENTITY, message.getErrorCode());
+        assertEquals(TidyMessage.Level.WARNING, message.getLevel());
+        assertEquals(12, message.getLine());
+        assertEquals(34, message.getColumn());
+        assertEquals("unknown_entity", message.getKey());
+        assertEquals(1, message.getArguments().length);
+        assertEquals("&foo", message.getArguments()[0]);
+        assertEquals("Warning: unescaped & or unknown entity \"&foo\"", message.getMessage());
+        assertEquals("line 12 column 34 - Warning: " + message.getMessage(), errout.toString().trim());
+    }
+
+    /**
+     * Messages dropped by a filter are not printed, and those it keeps are.
+     */
+    public void testMessageFilter()
+    {
+        StringWriter errout = new StringWriter();
+        lexer.errout = new PrintWriter(errout, true);
+        final List<TidyMessage> messages = new ArrayList<TidyMessage>();
+        this.report.setMessageFilter(new TidyMessageFilter()
+        {
+
+            public boolean messageReceived(TidyMessage message)
+            {
+                messages.add(message);
+                return message.getLevel() == TidyMessage.Level.ERROR;
+            }
+        });
+
+        this.report.entityError(lexer, Report.UNKNOWN_ENTITY, "&foo", 0);
+        assertEquals(1, messages.size());
+        assertEquals("", errout.toString());
+
+        this.report.badTree(lexer.errout);
+        assertEquals(2, messages.size());
+        assertEquals("bad_tree", messages.get(1).getKey());
+        assertNull(messages.get(1).getArguments());
+        assertEquals("Error: " + messages.get(1).getMessage(), errout.toString().trim());
+    }
+
+}
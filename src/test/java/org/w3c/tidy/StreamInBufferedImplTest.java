@@ -0,0 +1,276 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for StreamInBufferedImpl.
+ * @version $Revision $ ($Author $)
+ */
+public class StreamInBufferedImplTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public StreamInBufferedImplTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Builds an input with tabs, line ends of every kind and multi-byte chars crossing block boundaries.
+     * @return test input
+     */
+    private static String sampleInput()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < 3000; j++)
+        {
+            sb.append("a\tb\r\nc\rd\né中😀 ").append(j).append('\t');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads both streams char by char, pushing some chars back, and checks they agree on chars and positions.
+     * @param expected reference implementation
+     * @param actual buffered implementation
+     */
+    private static void assertSameChars(StreamIn expected, StreamIn actual)
+    {
+        int count = 0;
+        int c;
+        do
+        {
+            c = expected.readChar();
+            assertEquals("char " + count, c, actual.readChar());
+            if (count % 7 == 0 && c != StreamIn.END_OF_STREAM)
+            {
+                expected.ungetChar(c);
+                actual.ungetChar(c);
+                assertEquals(c, expected.readChar());
+                assertEquals(c, actual.readChar());
+            }
+            assertEquals("line at char " + count, expected.getCurline(), actual.getCurline());
+            assertEquals("column at char " + count, expected.getCurcol(), actual.getCurcol());
+            assertEquals(expected.isEndOfStream(), actual.isEndOfStream());
+            count++;
+        }
+        while (c != StreamIn.END_OF_STREAM);
+    }
+
+    /**
+     * Test decoding an UTF-8 stream.
+     * @throws Exception any exception generated during the test
+     */
+    public void testInputStream() throws Exception
+    {
+        byte[] input = sampleInput().getBytes(StandardCharsets.UTF_8);
+        assertSameChars(
+            new StreamInJavaImpl(new ByteArrayInputStream(input), "UTF8", 8),
+            new StreamInBufferedImpl(new ByteArrayInputStream(input), "UTF8", 8));
+    }
+
+    /**
+     * Test decoding an UTF-16 stream, with a byte order mark.
+     * @throws Exception any exception generated during the test
+     */
+    public void testInputStreamUtf16() throws Exception
+    {
+        byte[] input = sampleInput().getBytes(StandardCharsets.UTF_16);
+        assertSameChars(
+            new StreamInJavaImpl(new ByteArrayInputStream(input), "Unicode", 4),
+            new StreamInBufferedImpl(new ByteArrayInputStream(input), "Unicode", 4));
+    }
+
+    /**
+     * Test decoding an UTF-8 buffer, as used for memory mapped files.
+     * @throws Exception any exception generated during the test
+     */
+    public void testByteBuffer() throws Exception
+    {
+        byte[] input = sampleInput().getBytes(StandardCharsets.UTF_8);
+        assertSameChars(
+            new StreamInJavaImpl(new ByteArrayInputStream(input), "UTF8", 8),
+            new StreamInBufferedImpl(ByteBuffer.wrap(input).asReadOnlyBuffer(), "UTF8", 8));
+    }
+
+    /**
+     * Malformed and truncated sequences are replaced as the decoder does, in every encoding with a fast path.
+     * @throws Exception any exception generated during the test
+     */
+    public void testMalformedInput() throws Exception
+    {
+        String[] encodings = {"UTF8", "ISO8859_1", "ASCII"};
+        Random random = new Random(42);
+        for (int j = 0; j < 200; j++)
+        {
+            // mostly well formed text, with random bytes mixed in and a truncated sequence at the end
+            byte[] text = sampleInput().substring(0, random.nextInt(3000)).getBytes(StandardCharsets.UTF_8);
+            byte[] input = new byte[text.length + 2];
+            System.arraycopy(text, 0, input, 0, text.length);
+            for (int k = random.nextInt(4); k > 0 && text.length > 0; k--)
+            {
+                input[random.nextInt(text.length)] = (byte) random.nextInt(256);
+            }
+            input[text.length] = (byte) 0xE4;
+            input[text.length + 1] = (byte) 0xB8;
+
+            String encoding = encodings[j % encodings.length];
+            assertSameChars(
+                new StreamInJavaImpl(new ByteArrayInputStream(input), encoding, 8),
+                new StreamInBufferedImpl(ByteBuffer.wrap(input), encoding, 8));
+            assertSameChars(
+                new StreamInJavaImpl(new ByteArrayInputStream(input), encoding, 8),
+                new StreamInBufferedImpl(new ByteArrayInputStream(input), encoding, 8));
+        }
+    }
+
+    /**
+     * Tidying a memory mapped file gives the same output as tidying its content from a stream.
+     * @throws Exception any exception generated during the test
+     */
+    public void testParseMappedFile() throws Exception
+    {
+        StringBuilder sb = new StringBuilder("<html><head><title>mapped</title></head><body>\n");
+        for (int j = 0; j < 1000; j++)
+        {
+            sb.append("<p>paragraph ").append(j).append(" \u00e9\u4e2d<b>bold<i>both</b> italic\n");
+        }
+        byte[] input = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        Path file = Files.createTempFile("jtidy", ".html");
+        try
+        {
+            Files.write(file, input);
+
+            Tidy tidy = new Tidy();
+            tidy.setInputEncoding("UTF-8");
+            tidy.setOutputEncoding("UTF-8");
+            tidy.setQuiet(true);
+            tidy.setShowWarnings(false);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            tidy.parse(new ByteArrayInputStream(input), expected);
+
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            assertNotNull(tidy.parse(file, actual));
+            assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test reading from a reader.
+     */
+    public void testReader()
+    {
+        String input = sampleInput();
+        assertSameChars(
+            new StreamInJavaImpl(new StringReader(input), 8),
+            new StreamInBufferedImpl(new StringReader(input), 8));
+    }
+
+    /**
+     * Chars pushed back are all returned, in reverse order.
+     */
+    public void testLongPushback()
+    {
+        StreamIn in = new StreamInBufferedImpl(new StringReader("x"), 8);
+        for (int j = 0; j < 100; j++)
+        {
+            in.ungetChar('a' + (j % 26));
+        }
+        for (int j = 99; j >= 0; j--)
+        {
+            assertEquals('a' + (j % 26), in.readChar());
+        }
+        assertEquals('x', in.readChar());
+        assertEquals(StreamIn.END_OF_STREAM, in.readChar());
+        assertTrue(in.isEndOfStream());
+    }
+
+    /**
+     * Unknown encodings are reported as for the java implementation.
+     */
+    public void testUnsupportedEncoding()
+    {
+        try
+        {
+            new StreamInBufferedImpl(new ByteArrayInputStream(new byte[0]), "no-such-encoding", 8);
+            fail("Expected UnsupportedEncodingException not thrown");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // ok, this is expected
+        }
+    }
+
+}
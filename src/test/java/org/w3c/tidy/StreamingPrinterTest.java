@@ -0,0 +1,428 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for StreamingPrinter.
+ * @version $Revision $ ($Author $)
+ */
+public class StreamingPrinterTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public StreamingPrinterTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Builds a large document with paragraphs, lists turned into blockquotes, nested emphasis and tables.
+     * @return test input
+     */
+    private static byte[] sampleInput()
+    {
+        StringBuilder sb = new StringBuilder("<html><head><title>streaming</title></head><body>\n");
+        for (int j = 0; j < 300; j++)
+        {
+            sb.append("<p>paragraph ").append(j).append(" caf\u00e9 <b><b>bold</b> <i>it</i></b> text\n");
+            if (j % 50 == 0)
+            {
+                sb.append("<ul><p>indented ").append(j).append("</p></ul>\n");
+                sb.append("<table border=1><caption>t").append(j).append("</caption><tbody>\n");
+                for (int k = 0; k < 40; k++)
+                {
+                    sb.append("<tr><td>").append(k);
+                    sb.append("<td><b>cell</b> <a href=\"#").append(k).append("\">a</a>\n");
+                }
+                sb.append("</tbody></table>\n");
+            }
+        }
+        sb.append("</body></html>\n");
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns a Tidy instance for the tests.
+     * @param docType doctype mode
+     * @param stream whether output is streamed
+     * @return Tidy instance
+     */
+    private static Tidy newTidy(String docType, boolean stream)
+    {
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        tidy.setErrout(new PrintWriter(new StringWriter()));
+        tidy.setDocType(docType);
+        tidy.setForceOutput(true);
+        tidy.setStreamOutput(stream);
+        return tidy;
+    }
+
+    /**
+     * Counts the children of the body of a document.
+     * @param tidy Tidy instance which parsed the document
+     * @param document parsed document
+     * @return number of children
+     */
+    private static int countBodyChildren(Tidy tidy, Node document)
+    {
+        Node body = document.findBody(tidy.getConfiguration().tt);
+        int children = 0;
+        for (Node node = body.content; node != null; node = node.next)
+        {
+            children++;
+        }
+        return children;
+    }
+
+    /**
+     * Tidies a document.
+     * @param tidy Tidy instance
+     * @param input document
+     * @return output
+     */
+    private static String tidy(Tidy tidy, byte[] input)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tidy.parse(new ByteArrayInputStream(input), out);
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Input which records how much output has been printed when its end is reached.
+     */
+    private static final class TrackingInput extends ByteArrayInputStream
+    {
+
+        /**
+         * output written while reading.
+         */
+        private final ByteArrayOutputStream out;
+
+        /**
+         * size of the output when the end of the input was reached, -1 before.
+         */
+        int printed = -1;
+
+        /**
+         * Instantiates a new tracking input.
+         * @param input bytes to read
+         * @param out output written while reading
+         */
+        TrackingInput(byte[] input, ByteArrayOutputStream out)
+        {
+            super(input);
+            this.out = out;
+        }
+
+        /**
+         * @see java.io.ByteArrayInputStream#read(byte[], int, int)
+         */
+        public synchronized int read(byte[] b, int off, int len)
+        {
+            return track(super.read(b, off, len));
+        }
+
+        /**
+         * @see java.io.ByteArrayInputStream#read()
+         */
+        public synchronized int read()
+        {
+            return track(super.read());
+        }
+
+        /**
+         * Records the output size at the end of the input.
+         * @param n result of a read
+         * @return n
+         */
+        private int track(int n)
+        {
+            if (n < 0 && this.printed < 0)
+            {
+                this.printed = this.out.size();
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Tidies a document, returning the messages followed by the output.
+     * @param input document
+     * @param docType doctype mode
+     * @param stream whether output is streamed
+     * @return messages and output
+     */
+    private static String tidyWithMessages(String input, String docType, boolean stream)
+    {
+        Tidy tidy = newTidy(docType, stream);
+        StringWriter messages = new StringWriter();
+        tidy.setQuiet(false);
+        tidy.setShowWarnings(true);
+        tidy.setErrout(new PrintWriter(messages));
+        String output = tidy(tidy, input.getBytes(StandardCharsets.ISO_8859_1));
+        return messages + output;
+    }
+
+    /**
+     * Streamed output is the same as the output of the whole tree, for each doctype, xhtml and indenting.
+     */
+    public void testSameOutput()
+    {
+        byte[] input = sampleInput();
+        String[] docTypes = {"strict", "loose", "omit", "\"-//W3C//DTD HTML 4.01 Transitional//EN\""};
+
+        for (int j = 0; j < docTypes.length; j++)
+        {
+            for (int k = 0; k < 4; k++)
+            {
+                Tidy expected = newTidy(docTypes[j], false);
+                Tidy actual = newTidy(docTypes[j], true);
+                boolean xhtml = (k & 1) != 0;
+                boolean indent = (k & 2) != 0;
+                expected.setXHTML(xhtml);
+                actual.setXHTML(xhtml);
+                expected.setIndentContent(indent);
+                actual.setIndentContent(indent);
+                expected.setSmartIndent(indent);
+                actual.setSmartIndent(indent);
+                expected.setLogicalEmphasis(indent);
+                actual.setLogicalEmphasis(indent);
+
+                assertEquals(docTypes[j] + " " + k, tidy(expected, input), tidy(actual, input));
+            }
+        }
+    }
+
+    /**
+     * Body children are printed while the input is still being read, and released afterwards.
+     */
+    public void testOutputWhileParsing()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackingInput in = new TrackingInput(sampleInput(), out);
+
+        Tidy tidy = newTidy("strict", true);
+        Node document = tidy.parse(in, out);
+        assertTrue("printed " + in.printed + " of " + out.size(), in.printed > out.size() / 2);
+
+        // only the last printed child is kept
+        Node body = document.findBody(tidy.getConfiguration().tt);
+        assertNotNull(body);
+        assertNotNull(body.content);
+        assertTrue(body.content.next == null || body.content.next.next == null);
+    }
+
+    /**
+     * The children of a single wrapper element, and the rows of a huge table in it, are printed while parsing.
+     */
+    public void testOutputInContainers()
+    {
+        StringBuilder sb = new StringBuilder("<title>t</title><div>\n");
+        for (int j = 0; j < 2000; j++)
+        {
+            sb.append("<p>paragraph ").append(j).append(" <b>bold</b>\n");
+        }
+        sb.append("<table>\n");
+        for (int j = 0; j < 20000; j++)
+        {
+            sb.append("<tr><td>row ").append(j).append("</td><td>cell</td></tr>\n");
+        }
+        sb.append("</table>\n<p>end</div>\n");
+        byte[] input = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackingInput in = new TrackingInput(input, out);
+        Tidy tidy = newTidy("strict", true);
+        Node document = tidy.parse(in, out);
+
+        assertEquals(tidy(newTidy("strict", false), input), new String(out.toByteArray(), StandardCharsets.ISO_8859_1));
+        assertTrue("printed " + in.printed + " of " + out.size(), in.printed > out.size() * 9 / 10);
+
+        // the wrapper and the table only keep their last printed children
+        Node div = document.findBody(tidy.getConfiguration().tt).content;
+        assertEquals("div", div.element);
+        assertTrue(div.content.next == null || div.content.next.next == null);
+    }
+
+    /**
+     * Content the parser moves out of a table is printed before it, unless the table was written out already.
+     */
+    public void testContentMovedBeforeTable()
+    {
+        String input = "<div><p>one<table><tr><td>1</td></tr>moved<tr><td>2</td></tr></table><p>two</div>";
+        assertEquals(tidyWithMessages(input, "strict", false), tidyWithMessages(input, "strict", true));
+
+        StringBuilder sb = new StringBuilder("<title>t</title><p>one<table>");
+        for (int j = 0; sb.length() < StreamingPrinter.HELD_LIMIT * 2; j++)
+        {
+            sb.append("<tr><td>row ").append(j).append("</td></tr>\n");
+        }
+        sb.append("moved<tr><td>last</td></tr></table><p>two");
+        String output = tidyWithMessages(sb.toString(), "strict", true);
+
+        assertTrue(output, output.contains("moved before a table already printed, printed after the table"));
+        assertTrue(output, output.indexOf("moved\n") > output.indexOf("</table>"));
+        assertTrue(output, output.contains("last"));
+    }
+
+    /**
+     * Fixes made with the start of the document are reported as for a document printed whole.
+     */
+    public void testStartFixesReported()
+    {
+        // a doctype-like element in the body, see 837023
+        String input = "<html><head><title>t</title></head><body>\nJust text.\n<!done>\n</body></html>";
+        String expected = tidyWithMessages(input, "loose", false);
+        assertTrue(expected, expected.contains("Doctype given is \"\""));
+        assertEquals(expected, tidyWithMessages(input, "loose", true));
+
+        input = "<html xmlns=\"urn:other\"><head><title>t</title></head><body><p>text</body></html>";
+        Tidy normal = newTidy("strict", false);
+        Tidy streamed = newTidy("strict", true);
+        normal.setXHTML(true);
+        streamed.setXHTML(true);
+        StringWriter normalMessages = new StringWriter();
+        StringWriter streamedMessages = new StringWriter();
+        normal.setShowWarnings(true);
+        streamed.setShowWarnings(true);
+        normal.setErrout(new PrintWriter(normalMessages));
+        streamed.setErrout(new PrintWriter(streamedMessages));
+        byte[] bytes = input.getBytes(StandardCharsets.ISO_8859_1);
+
+        assertEquals(tidy(normal, bytes), tidy(streamed, bytes));
+        assertTrue(normalMessages.toString(), normalMessages.toString().contains("namespace"));
+        assertEquals(normalMessages.toString(), streamedMessages.toString());
+
+        // a second doctype is kept in a document printed whole only
+        input = "<!DOCTYPE html><title>t</title><p>one</p><!DOCTYPE html><p>two";
+        String output = tidyWithMessages(input, "loose", true);
+        assertTrue(output, output.contains("<!DOCTYPE> found after the start of the document was printed"));
+    }
+
+    /**
+     * Documents whose doctype depends on their content are printed as usual.
+     */
+    public void testAutoDoctype()
+    {
+        byte[] input = sampleInput();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Tidy tidy = newTidy("auto", true);
+        Node document = tidy.parse(new ByteArrayInputStream(input), out);
+
+        assertEquals(tidy(newTidy("auto", false), input), new String(out.toByteArray(), StandardCharsets.ISO_8859_1));
+        assertTrue(countBodyChildren(tidy, document) > 300);
+    }
+
+    /**
+     * Output isn't streamed unless it is wanted whatever the errors.
+     */
+    public void testNeedsForceOutput()
+    {
+        byte[] input = sampleInput();
+        Tidy tidy = newTidy("strict", true);
+        tidy.setForceOutput(false);
+        Node document = tidy.parse(new ByteArrayInputStream(input), new ByteArrayOutputStream());
+
+        assertTrue(countBodyChildren(tidy, document) > 300);
+    }
+
+    /**
+     * Head elements and body attributes found once the head has been printed are reported.
+     */
+    public void testLateHeadContent()
+    {
+        String[] inputs = {
+            "<title>t</title><p>one<p>two<style>p {}</style><p>three",
+            "<title>t</title><p>one<p>two<body bgcolor=\"red\"><p>three"};
+
+        for (int j = 0; j < inputs.length; j++)
+        {
+            byte[] input = inputs[j].getBytes(StandardCharsets.ISO_8859_1);
+            Tidy tidy = newTidy("strict", true);
+            StringWriter messages = new StringWriter();
+            tidy.setQuiet(false);
+            tidy.setShowWarnings(true);
+            tidy.setErrout(new PrintWriter(messages));
+            String output = tidy(tidy, input);
+
+            assertTrue(messages.toString(), messages.toString().contains("missing from the output"));
+            assertFalse(output, output.contains("p {}") || output.contains("red"));
+            assertTrue(output, output.contains("three"));
+        }
+
+        // a head element found before the body has started is printed
+        Tidy tidy = newTidy("strict", true);
+        StringWriter messages = new StringWriter();
+        tidy.setShowWarnings(true);
+        tidy.setErrout(new PrintWriter(messages));
+        String output = tidy(tidy, "<title>t</title><style>p {}</style><p>one".getBytes(StandardCharsets.ISO_8859_1));
+        assertFalse(messages.toString(), messages.toString().contains("missing from the output"));
+        assertTrue(output, output.contains("p {}"));
+    }
+
+}
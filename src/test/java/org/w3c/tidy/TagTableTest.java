@@ -0,0 +1,161 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for TagTable.
+ * @version $Revision $ ($Author $)
+ */
+public class TagTableTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public TagTableTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * New tables share the known tag definitions.
+     */
+    public void testKnownTagsShared()
+    {
+        TagTable first = TagTable.newTagTable();
+        TagTable second = TagTable.newTagTable();
+        assertSame(first.lookup("p"), second.lookup("p"));
+        assertSame(first.tagP, first.lookup("p"));
+        assertNotNull(first.lookup("embed"));
+    }
+
+    /**
+     * Tags defined in a table are not seen by other tables.
+     */
+    public void testDefinedTagNotShared()
+    {
+        TagTable first = TagTable.newTagTable();
+        TagTable second = TagTable.newTagTable();
+        first.defineTag(Dict.TAGTYPE_BLOCK, "custom");
+        assertNotNull(first.lookup("custom"));
+        assertNull(second.lookup("custom"));
+        assertNull(TagTable.newTagTable().lookup("custom"));
+    }
+
+    /**
+     * Redefining a known tag only changes it in the table where it is redefined.
+     */
+    public void testRedefinedTagCopied()
+    {
+        TagTable first = TagTable.newTagTable();
+        TagTable second = TagTable.newTagTable();
+        int model = second.lookup("b").model;
+
+        first.defineTag(Dict.TAGTYPE_BLOCK, "b");
+
+        assertTrue((first.lookup("b").model & Dict.CM_BLOCK) != 0);
+        assertSame(first.tagB, first.lookup("b"));
+        assertEquals(model, second.lookup("b").model);
+        assertSame(second.tagB, second.lookup("b"));
+        assertEquals(model, TagTable.newTagTable().lookup("b").model);
+    }
+
+    /**
+     * Anchor names are compared ignoring case.
+     */
+    public void testAnchorCase()
+    {
+        TagTable tt = TagTable.newTagTable();
+        Node first = new Node();
+        Node second = new Node();
+        tt.addAnchor("Intro", first);
+        tt.addAnchor("intro", second);
+        assertSame(first, tt.getNodeByAnchor("INTRO"));
+        assertNull(tt.getNodeByAnchor("intro2"));
+
+        // only removed for the node it leads to
+        tt.removeAnchor("intro", second);
+        assertSame(first, tt.getNodeByAnchor("intro"));
+        tt.removeAnchor("iNTRO", first);
+        assertNull(tt.getNodeByAnchor("intro"));
+    }
+
+    /**
+     * Anchors of a document don't conflict with the ones of the previous documents parsed by the same Tidy.
+     */
+    public void testAnchorsPerParse()
+    {
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        StringWriter errors = new StringWriter();
+        tidy.setErrout(new PrintWriter(errors));
+
+        String html = "<html><head><title>t</title></head><body><p id=\"intro\">a</p></body></html>";
+        tidy.parse(new StringReader(html), new StringWriter());
+        tidy.parse(new StringReader(html), new StringWriter());
+        assertFalse(errors.toString(), errors.toString().contains("already defined"));
+
+        tidy.parse(new StringReader(html.replace("a</p>", "a</p><p id=\"INTRO\">b</p>")), new StringWriter());
+        assertTrue(errors.toString(), errors.toString().contains("already defined"));
+    }
+
+}
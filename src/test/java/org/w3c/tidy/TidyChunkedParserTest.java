@@ -0,0 +1,260 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for TidyChunkedParser.
+ * @version $Revision $ ($Author $)
+ */
+public class TidyChunkedParserTest extends TestCase
+{
+
+    /**
+     * executor running the parses.
+     */
+    private ExecutorService executor;
+
+    /**
+     * engine used in the tests.
+     */
+    private TidyEngine engine;
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public TidyChunkedParserTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        Properties props = new Properties();
+        props.setProperty("input-encoding", "utf8");
+        props.setProperty("output-encoding", "utf8");
+        props.setProperty("output-xhtml", "yes");
+        props.setProperty("tidy-mark", "no");
+        this.engine = new TidyEngine(props);
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown() throws Exception
+    {
+        this.executor.shutdownNow();
+        super.tearDown();
+    }
+
+    /**
+     * Builds a document with multi-byte chars, which are split between chunks.
+     * @return test document
+     */
+    private static byte[] sampleDocument()
+    {
+        StringBuilder sb = new StringBuilder("<html><head><title>chunks</title></head><body>\n");
+        for (int j = 0; j < 500; j++)
+        {
+            sb.append("<p>paragraph ").append(j).append(" caf\u00e9 \u4e2d<b>bold<i>both</b> italic &foo;\n");
+        }
+        return sb.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A document fed in chunks of random sizes gives the same output and messages as a document read at once.
+     * @throws Exception any exception generated during the test
+     */
+    public void testChunks() throws Exception
+    {
+        byte[] input = sampleDocument();
+
+        TidyParseContext context = this.engine.newContext();
+        StringWriter messages = new StringWriter();
+        context.setErrout(new PrintWriter(messages));
+        context.setInputStreamName("chunks.html");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        context.parse(new ByteArrayInputStream(input), expected);
+        context.getErrout().flush();
+
+        TidyChunkedParser parser = this.engine.newChunkedParser("chunks.html", null, this.executor);
+        Random random = new Random(42);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        for (int pos = 0; pos < input.length;)
+        {
+            int n = Math.min(1 + random.nextInt(64), input.length - pos);
+            buffer.clear();
+            buffer.put(input, pos, n);
+            buffer.flip();
+            parser.feed(buffer);
+            assertFalse(buffer.hasRemaining());
+            pos += n;
+        }
+
+        TidyResult result = parser.end().get(30, TimeUnit.SECONDS);
+        assertEquals(expected.toString("UTF-8"), new String(result.getOutput(), StandardCharsets.UTF_8));
+        assertEquals(messages.toString(), result.getReport());
+        assertEquals(context.getParseWarnings(), result.getWarnings());
+        assertTrue(result.getWarnings() > 0);
+        assertEquals(0, parser.getPendingBytes());
+    }
+
+    /**
+     * Chunks are parsed as they are fed, before the end of the document, and the output can go to a stream.
+     * @throws Exception any exception generated during the test
+     */
+    public void testParsedBeforeEnd() throws Exception
+    {
+        byte[] input = sampleDocument();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TidyChunkedParser parser = this.engine.newChunkedParser("chunks.html", out, this.executor);
+
+        parser.feed(ByteBuffer.wrap(input, 0, input.length / 2));
+        long deadline = System.currentTimeMillis() + 30000;
+        while (parser.getPendingBytes() > 0 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(0, parser.getPendingBytes());
+        assertFalse(parser.getResult().isDone());
+
+        parser.feed(ByteBuffer.wrap(input, input.length / 2, input.length - input.length / 2));
+        TidyResult result = parser.end().get(30, TimeUnit.SECONDS);
+        assertEquals(0, result.getOutput().length);
+        assertTrue(out.toString("UTF-8").contains("paragraph 499"));
+    }
+
+    /**
+     * feed() asks the caller to pause once the capacity is reached, still queues chunks fed while the queue is full,
+     * and ready() completes once the parse has caught up.
+     * @throws Exception any exception generated during the test
+     */
+    public void testBackPressure() throws Exception
+    {
+        byte[] input = sampleDocument();
+        final Runnable[] tasks = new Runnable[1];
+        TidyChunkedParser parser = this.engine.newChunkedParser("chunks.html", null, task -> tasks[0] = task, 1024);
+
+        int pos = 0;
+        boolean ready = true;
+        while (ready)
+        {
+            ready = parser.feed(ByteBuffer.wrap(input, pos, 300));
+            pos += 300;
+        }
+        assertEquals(1200, parser.getPendingBytes());
+        assertFalse(parser.isReady());
+        assertFalse(parser.ready().isDone());
+        assertFalse(parser.feed(ByteBuffer.wrap(input, pos, 300)));
+        assertEquals(1500, parser.getPendingBytes());
+        pos += 300;
+
+        // start the parse only now
+        this.executor.execute(tasks[0]);
+        while (pos < input.length)
+        {
+            parser.ready().get(30, TimeUnit.SECONDS);
+            int n = Math.min(300, input.length - pos);
+            parser.feed(ByteBuffer.wrap(input, pos, n));
+            assertTrue(parser.getPendingBytes() < 1024 + 300);
+            pos += n;
+        }
+
+        TidyResult result = parser.end().get(30, TimeUnit.SECONDS);
+        assertTrue(new String(result.getOutput(), StandardCharsets.UTF_8).contains("paragraph 499"));
+        assertTrue(parser.ready().isDone());
+    }
+
+    /**
+     * Nothing can be fed after the end of the document.
+     * @throws Exception any exception generated during the test
+     */
+    public void testFeedAfterEnd() throws Exception
+    {
+        TidyChunkedParser parser = this.engine.newChunkedParser("chunks.html", null, this.executor);
+        parser.feed(ByteBuffer.wrap("<p>text".getBytes(StandardCharsets.UTF_8)));
+        parser.end();
+        try
+        {
+            parser.feed(ByteBuffer.wrap("more".getBytes(StandardCharsets.UTF_8)));
+            assertTrue("feed after end must fail unless the parse is over", parser.getResult().isDone());
+        }
+        catch (IllegalStateException e)
+        {
+            // ok, this is expected
+        }
+        assertNotNull(parser.getResult().get(30, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for the command line interface.
+ * @version $Revision $ ($Author $)
+ */
+public class TidyCommandLineTest extends TestCase
+{
+
+    /**
+     * directory with the test documents.
+     */
+    private Path dir;
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public TidyCommandLineTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dir = Files.createTempDirectory("jtidy");
+        for (int j = 0; j < 12; j++)
+        {
+            // only the first document has errors
+            String body = j == 0 ? "<foo>unknown</foo>" : "<p>paragraph " + j + "<b>bold";
+            Files.write(
+                dir.resolve("doc" + (char) ('a' + j) + ".html"),
+                ("<html><head><title>doc " + j + "</title></head><body>" + body).getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        try (Stream<Path> files = Files.list(dir))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+            {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+        super.tearDown();
+    }
+
+    /**
+     * Runs the command line interface, returning standard output and error output.
+     * @param expectedReturnCode expected return code
+     * @param args command line arguments
+     * @return standard output, followed by error output
+     */
+    private static String run(int expectedReturnCode, String... args)
+    {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringWriter errors = new StringWriter();
+        try
+        {
+            System.setOut(new PrintStream(out, true));
+            Tidy tidy = new Tidy();
+            tidy.setErrout(new PrintWriter(errors));
+            assertEquals(Arrays.toString(args), expectedReturnCode, tidy.mainExec(args));
+        }
+        finally
+        {
+            System.setOut(stdout);
+        }
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII) + errors;
+    }
+
+    /**
+     * Files tidied at the same time give the same output and messages, in order, as files tidied one at a time, and
+     * the return code is the most severe of all files.
+     */
+    public void testJobs()
+    {
+        String expected = run(2, "-jobs", "1", dir.toString());
+        assertTrue(expected, expected.contains("<foo> is not recognized!"));
+        assertEquals(expected, run(2, "-jobs", "4", dir.toString()));
+
+        // without the document with errors
+        assertEquals(
+            run(1, "-jobs", "1", dir.resolve("docb.html").toString(), dir.resolve("docc.html").toString()),
+            run(1, "-jobs", "4", dir.resolve("docb.html").toString(), dir.resolve("docc.html").toString()));
+    }
+
+    /**
+     * Glob patterns and list files name the same files as directories.
+     * @throws Exception any exception generated during the test
+     */
+    public void testFileArguments() throws Exception
+    {
+        String expected = run(2, "-jobs", "4", dir.toString());
+        assertEquals(expected, run(2, "-jobs", "4", dir.resolve("doc*.html").toString()));
+
+        Path list = dir.resolve("files.lst");
+        StringBuilder sb = new StringBuilder("# test documents\n");
+        for (int j = 0; j < 12; j++)
+        {
+            sb.append(dir.resolve("doc" + (char) ('a' + j) + ".html")).append('\n');
+        }
+        Files.write(list, sb.toString().getBytes(StandardCharsets.US_ASCII));
+        assertEquals(expected, run(2, "-jobs", "4", "@" + list));
+    }
+
+}
@@ -0,0 +1,441 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for TidyEngine.
+ * @version $Revision $ ($Author $)
+ */
+public class TidyEngineTest extends TestCase
+{
+
+    /**
+     * documents to tidy: without doctype (switches to numeric entities), with one, and with a script printed as CDATA.
+     */
+    private static final String[] DOCUMENTS = {
+        "<title>a</title><p>caf\u00e9 &nbsp; <b><i>x</b></i><a name=x>1</a><a name=x>2</a>",
+        "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN\">\n"
+            + "<html><head><title>b</title></head><body><p>caf\u00e9 &nbsp; \"q\"</p></body></html>",
+        "<html><head><title>c</title><script>if (a < b) { x(); }</script></head>"
+            + "<body><pre>  a\n  b</pre><font color=red>red</font></body></html>"};
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public TidyEngineTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Returns the options used in the tests.
+     * @return options
+     */
+    private static Properties options()
+    {
+        Properties props = new Properties();
+        props.setProperty("output-xhtml", "yes");
+        props.setProperty("indent", "auto");
+        props.setProperty("wrap", "40");
+        props.setProperty("clean", "yes");
+        props.setProperty("tidy-mark", "no");
+        return props;
+    }
+
+    /**
+     * Tidies a document with a new Tidy instance.
+     * @param document document
+     * @return output, followed by messages and counters
+     */
+    private static String tidy(String document)
+    {
+        Tidy tidy = new Tidy();
+        tidy.setConfigurationFromProps(options());
+        StringWriter messages = new StringWriter();
+        tidy.setErrout(new PrintWriter(messages));
+        StringWriter out = new StringWriter();
+        tidy.parse(new StringReader(document), out);
+        return out + "\n" + messages + "\n" + tidy.getParseErrors() + "/" + tidy.getParseWarnings();
+    }
+
+    /**
+     * Tidies a document with a context.
+     * @param context parse context
+     * @param document document
+     * @return output, followed by messages and counters
+     */
+    private static String tidy(TidyParseContext context, String document)
+    {
+        StringWriter messages = new StringWriter();
+        context.setErrout(new PrintWriter(messages));
+        StringWriter out = new StringWriter();
+        context.parse(new StringReader(document), out);
+        return out + "\n" + messages + "\n" + context.getParseErrors() + "/" + context.getParseWarnings();
+    }
+
+    /**
+     * An engine gives the same results as a Tidy instance with the same configuration, and a context reused for
+     * several documents gives the same results as new ones.
+     */
+    public void testSameAsTidy()
+    {
+        TidyEngine engine = new TidyEngine(options());
+        TidyParseContext context = engine.newContext();
+        for (int j = 0; j < DOCUMENTS.length; j++)
+        {
+            String expected = tidy(DOCUMENTS[j]);
+            assertEquals(expected, tidy(engine.newContext(), DOCUMENTS[j]));
+            assertEquals(expected, tidy(context, DOCUMENTS[j]));
+        }
+    }
+
+    /**
+     * One engine shared by several threads.
+     * @throws Exception any exception generated during the test
+     */
+    public void testConcurrentParses() throws Exception
+    {
+        final TidyEngine engine = new TidyEngine(options());
+        final String[] expected = new String[DOCUMENTS.length];
+        for (int j = 0; j < DOCUMENTS.length; j++)
+        {
+            expected[j] = tidy(DOCUMENTS[j]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++)
+            {
+                final int offset = t;
+                results.add(executor.submit(() -> {
+                    TidyParseContext context = engine.newContext();
+                    for (int j = 0; j < 300; j++)
+                    {
+                        int doc = (j + offset) % DOCUMENTS.length;
+                        assertEquals(expected[doc], tidy(context, DOCUMENTS[doc]));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results)
+            {
+                result.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Writes the test documents to files in a new directory.
+     * @return files, one for each document
+     * @throws IOException if a file can't be written
+     */
+    private static List<Path> writeDocuments() throws IOException
+    {
+        Path dir = Files.createTempDirectory("jtidy");
+        List<Path> files = new ArrayList<>();
+        for (int j = 0; j < DOCUMENTS.length; j++)
+        {
+            Path file = dir.resolve("doc" + j + ".html");
+            Files.write(file, DOCUMENTS[j].getBytes(StandardCharsets.ISO_8859_1));
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Deletes the test files and their directory.
+     * @param files files
+     * @throws IOException if a file can't be deleted
+     */
+    private static void deleteDocuments(List<Path> files) throws IOException
+    {
+        for (Path file : files)
+        {
+            Files.deleteIfExists(file);
+        }
+        Files.delete(files.get(0).getParent());
+    }
+
+    /**
+     * A document tidied asynchronously gives the same output and counters as a context, and its messages.
+     * @throws Exception any exception generated during the test
+     */
+    public void testTidyAsync() throws Exception
+    {
+        TidyEngine engine = new TidyEngine(options());
+        List<Path> files = writeDocuments();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            TidyResult result = engine.tidyAsync(files.get(0), executor).get();
+            assertEquals(files.get(0).toString(), result.getInputName());
+            assertNull(result.getException());
+
+            TidyParseContext context = engine.newContext();
+            context.setErrout(new PrintWriter(new StringWriter()));
+            context.setInputStreamName(files.get(0).toString());
+            StringWriter out = new StringWriter();
+            context.parse(new StringReader(DOCUMENTS[0]), out);
+            assertEquals(out.toString(), new String(result.getOutput(), StandardCharsets.ISO_8859_1));
+            assertEquals(context.getParseErrors(), result.getErrors());
+            assertEquals(context.getParseWarnings(), result.getWarnings());
+            assertTrue(result.getWarnings() > 0);
+            assertFalse(result.getMessages().isEmpty());
+            assertTrue(result.getReport().contains(result.getMessages().get(0).getMessage()));
+            assertTrue(result.getTime() > 0);
+
+            CompletableFuture<TidyResult> missing = engine.tidyAsync(files.get(0).resolveSibling("none.html"), executor);
+            try
+            {
+                missing.get();
+                fail("Expected ExecutionException not thrown");
+            }
+            catch (ExecutionException e)
+            {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            deleteDocuments(files);
+        }
+    }
+
+    /**
+     * A batch gives the results in the order of the files, including those which can't be read.
+     * @throws Exception any exception generated during the test
+     */
+    public void testTidyAll() throws Exception
+    {
+        TidyEngine engine = new TidyEngine(options());
+        List<Path> files = writeDocuments();
+        List<Path> batch = new ArrayList<>();
+        for (int j = 0; j < 30; j++)
+        {
+            batch.add(files.get(j % files.size()));
+        }
+        batch.add(5, files.get(0).resolveSibling("none.html"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (Stream<TidyResult> stream = engine.tidyAll(batch, 4, executor))
+        {
+            List<TidyResult> results = stream.collect(Collectors.toList());
+            assertEquals(batch.size(), results.size());
+            for (int j = 0; j < batch.size(); j++)
+            {
+                TidyResult result = results.get(j);
+                assertEquals(batch.get(j).toString(), result.getInputName());
+                if (j == 5)
+                {
+                    assertNotNull(result.getException());
+                    assertEquals(0, result.getOutput().length);
+                }
+                else
+                {
+                    TidyResult expected = engine.tidy(batch.get(j));
+                    assertNull(result.getException());
+                    assertEquals(new String(expected.getOutput(), StandardCharsets.ISO_8859_1),
+                        new String(result.getOutput(), StandardCharsets.ISO_8859_1));
+                    assertEquals(expected.getReport(), result.getReport());
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            deleteDocuments(files);
+        }
+    }
+
+    /**
+     * No more documents than the parallelism are submitted ahead of the consumer.
+     * @throws Exception any exception generated during the test
+     */
+    public void testTidyAllBackPressure() throws Exception
+    {
+        TidyEngine engine = new TidyEngine(options());
+        List<Path> files = writeDocuments();
+        List<Path> batch = new ArrayList<>();
+        for (int j = 0; j < 20; j++)
+        {
+            batch.add(files.get(j % files.size()));
+        }
+
+        final AtomicInteger submitted = new AtomicInteger();
+        try (Stream<TidyResult> stream = engine.tidyAll(batch, 3, task -> {
+            submitted.incrementAndGet();
+            task.run();
+        }))
+        {
+            Iterator<TidyResult> results = stream.iterator();
+            assertEquals(0, submitted.get());
+            results.next();
+            assertEquals(3, submitted.get());
+            results.next();
+            assertEquals(4, submitted.get());
+        }
+        finally
+        {
+            deleteDocuments(files);
+        }
+    }
+
+    /**
+     * Closing the stream early cancels the documents submitted but not consumed, and their files are not read.
+     * @throws Exception any exception generated during the test
+     */
+    public void testTidyAllClosedEarly() throws Exception
+    {
+        TidyEngine engine = new TidyEngine(options());
+        List<Path> files = writeDocuments();
+        final AtomicInteger touched = new AtomicInteger();
+        List<Path> batch = new ArrayList<>();
+        batch.add(files.get(0));
+        for (int j = 1; j < 10; j++)
+        {
+            final Path file = files.get(j % files.size());
+            batch.add((Path) Proxy.newProxyInstance(
+                Path.class.getClassLoader(),
+                new Class<?>[]{Path.class},
+                (proxy, method, args) -> {
+                    touched.incrementAndGet();
+                    return method.invoke(file, args);
+                }));
+        }
+
+        // the first document is tidied when submitted, the others wait for the stream to be closed
+        final List<Runnable> queued = new ArrayList<>();
+        try
+        {
+            try (Stream<TidyResult> stream = engine.tidyAll(batch, 4, task -> {
+                if (queued.isEmpty())
+                {
+                    queued.add(null);
+                    task.run();
+                }
+                else
+                {
+                    queued.add(task);
+                }
+            }))
+            {
+                TidyResult result = stream.iterator().next();
+                assertEquals(files.get(0).toString(), result.getInputName());
+                assertNull(result.getException());
+            }
+
+            assertEquals(4, queued.size());
+            for (Runnable task : queued.subList(1, queued.size()))
+            {
+                task.run();
+            }
+            assertEquals(0, touched.get());
+        }
+        finally
+        {
+            deleteDocuments(files);
+        }
+    }
+
+    /**
+     * Unknown options are rejected when the engine is created.
+     */
+    public void testUnknownOption()
+    {
+        Properties props = new Properties();
+        props.setProperty("no-such-option", "yes");
+        try
+        {
+            new TidyEngine(props);
+            fail("Expected IllegalArgumentException not thrown");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // ok, this is expected
+        }
+    }
+
+}
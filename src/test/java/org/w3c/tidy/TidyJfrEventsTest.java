@@ -0,0 +1,208 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for the flight recorder events.
+ * @version $Revision $ ($Author $)
+ */
+public class TidyJfrEventsTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public TidyJfrEventsTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Tidies the given input while recording the Tidy events.
+     * @param html input
+     * @return recorded events
+     * @throws Exception any exception generated during the test
+     */
+    private static List<RecordedEvent> record(String html) throws Exception
+    {
+        Path file = Files.createTempFile("jtidy", ".jfr");
+        try
+        {
+            Recording recording = new Recording();
+            try
+            {
+                recording.enable("org.w3c.tidy.Document");
+                recording.enable("org.w3c.tidy.Stage");
+                recording.enable("org.w3c.tidy.Condition");
+                recording.start();
+
+                Tidy tidy = new Tidy();
+                tidy.setQuiet(true);
+                tidy.setShowWarnings(false);
+                tidy.setInputStreamName("test.html");
+                tidy.parse(new StringReader(html), new StringWriter());
+
+                recording.stop();
+                recording.dump(file);
+            }
+            finally
+            {
+                recording.close();
+            }
+
+            List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file))
+            {
+                if (event.getEventType().getName().startsWith("org.w3c.tidy."))
+                {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Returns the events of the given type.
+     * @param events recorded events
+     * @param name event type name
+     * @return matching events
+     */
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name)
+    {
+        List<RecordedEvent> result = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : events)
+        {
+            if (event.getEventType().getName().equals(name))
+            {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A document gives one document event and an event for each stage.
+     * @throws Exception any exception generated during the test
+     */
+    public void testDocumentEvents() throws Exception
+    {
+        assertNotNull(TidyEvents.RECORDER);
+        String html = "<html><head><title>t</title></head><body><p>text &foo; <b>bold</body></html>";
+        List<RecordedEvent> events = record(html);
+
+        List<RecordedEvent> documents = named(events, "org.w3c.tidy.Document");
+        assertEquals(1, documents.size());
+        RecordedEvent document = documents.get(0);
+        assertEquals("test.html", document.getString("inputName"));
+        assertEquals(html.length(), document.getLong("charsRead"));
+        assertTrue(document.getInt("nodes") > 5);
+        assertTrue(document.getInt("warnings") > 0);
+
+        List<String> stages = new ArrayList<String>();
+        for (RecordedEvent stage : named(events, "org.w3c.tidy.Stage"))
+        {
+            stages.add(stage.getString("stage"));
+        }
+        assertTrue(stages.toString(), stages.contains("PARSE"));
+        assertTrue(stages.toString(), stages.contains("PRINT"));
+        assertTrue(named(events, "org.w3c.tidy.Condition").isEmpty());
+    }
+
+    /**
+     * Runaway unclosed inline elements and long tokens are reported as conditions.
+     * @throws Exception any exception generated during the test
+     */
+    public void testConditionEvents() throws Exception
+    {
+        StringBuilder sb = new StringBuilder("<html><head><title>t</title></head><body><p>");
+        for (int j = 0; j < TidyEvents.INLINE_STACK_THRESHOLD; j++)
+        {
+            sb.append("<div><font color=red>");
+        }
+        sb.append("<p title=\"");
+        for (int j = 0; j < 10000; j++)
+        {
+            sb.append('x');
+        }
+        sb.append("\">text</body></html>");
+
+        List<String> conditions = new ArrayList<String>();
+        for (RecordedEvent condition : named(record(sb.toString()), "org.w3c.tidy.Condition"))
+        {
+            conditions.add(condition.getString("condition"));
+        }
+        assertTrue(conditions.toString(), conditions.contains(TidyEvents.INLINE_STACK));
+        assertTrue(conditions.toString(), conditions.contains(TidyEvents.BUFFER_GROWTH));
+    }
+
+}
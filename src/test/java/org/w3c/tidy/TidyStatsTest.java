@@ -0,0 +1,144 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for the metrics passed to a TidyMetricsListener.
+ * @version $Revision $ ($Author $)
+ */
+public class TidyStatsTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public TidyStatsTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Tidies the given input, collecting the metrics if a list is given.
+     * @param html input
+     * @param clean whether <code>clean</code> is enabled
+     * @param stats list receiving the metrics, or null
+     * @return output
+     */
+    private static String tidy(String html, boolean clean, final List<TidyStats> stats)
+    {
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        tidy.setMakeClean(clean);
+        tidy.setInputStreamName("test.html");
+        if (stats != null)
+        {
+            tidy.setMetricsListener(new TidyMetricsListener()
+            {
+
+                public void metricsReceived(TidyStats received)
+                {
+                    stats.add(received);
+                }
+            });
+        }
+        StringWriter out = new StringWriter();
+        tidy.parse(new StringReader(html), out);
+        return out.toString();
+    }
+
+    /**
+     * Metrics cover the stages which ran, and the output is the same as without metrics.
+     */
+    public void testStats()
+    {
+        StringBuilder sb = new StringBuilder("<html><head><title>t</title></head><body>");
+        for (int j = 0; j < 200; j++)
+        {
+            sb.append("<div><center><font color=red>").append(j).append("</font></center></div>");
+        }
+        String html = sb.append("</body></html>").toString();
+
+        List<TidyStats> stats = new ArrayList<TidyStats>();
+        String out = tidy(html, true, stats);
+        assertEquals(tidy(html, true, null), out);
+
+        assertEquals(1, stats.size());
+        TidyStats parse = stats.get(0);
+        assertEquals("test.html", parse.getInputName());
+        assertTrue(parse.getTime(TidyStats.Stage.PARSE) > 0);
+        assertTrue(parse.getTime(TidyStats.Stage.CLEAN_TREE) > 0);
+        assertTrue(parse.getTime(TidyStats.Stage.PRINT) > 0);
+        assertEquals(0, parse.getTime(TidyStats.Stage.DROP_SECTIONS));
+        assertTrue(parse.getTotalTime() >= parse.getTime(TidyStats.Stage.PARSE) + parse.getTime(TidyStats.Stage.PRINT));
+        assertTrue(parse.getAllocatedBytes(TidyStats.Stage.PARSE) != 0);
+
+        assertEquals(html.length(), parse.getCharsRead());
+        assertEquals(out.length(), parse.getCharsWritten());
+        assertTrue(parse.getNodesCreated() > 600);
+        assertEquals(4, parse.getMaxNestingLevel());
+        assertTrue(parse.getMaxLexbufSize() > 0);
+        assertTrue(parse.toString(), parse.toString().startsWith("test.html: "));
+    }
+
+}
@@ -320,6 +320,19 @@ public abstract class TidyTestCase extends TestCase
         return doc;
     }
 
+    /**
+     * Parses a document given as a string to a DOM, with the default configuration and without messages.
+     * @param html input
+     * @return parsed Document
+     */
+    protected static Document parseDom(String html)
+    {
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        return tidy.parseDOM(new StringReader(html), null);
+    }
+
     /**
      * assert generated output and test file are equals.
      * @param tidyOutput tidy output as string
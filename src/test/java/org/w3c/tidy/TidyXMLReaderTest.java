@@ -0,0 +1,297 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.ext.DefaultHandler2;
+
+
+/**
+ * Test cases for TidyXMLReader and TidySource.
+ * @version $Revision $ ($Author $)
+ */
+public class TidyXMLReaderTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public TidyXMLReaderTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Writes a DOM tree as text, leaving out doctypes and processing instructions, which the Tidy DOM does not fully
+     * support.
+     * @param node DOM node
+     * @param sb text
+     */
+    private static void write(org.w3c.dom.Node node, StringBuilder sb)
+    {
+        switch (node.getNodeType())
+        {
+            case org.w3c.dom.Node.ELEMENT_NODE :
+                sb.append('<').append(node.getNodeName());
+                TreeMap<String, String> attributes = new TreeMap<>();
+                for (int j = 0; j < node.getAttributes().getLength(); j++)
+                {
+                    org.w3c.dom.Node attribute = node.getAttributes().item(j);
+                    attributes.put(attribute.getNodeName(), attribute.getNodeValue());
+                }
+                sb.append(attributes).append('>');
+                break;
+            case org.w3c.dom.Node.TEXT_NODE :
+            case org.w3c.dom.Node.CDATA_SECTION_NODE :
+                sb.append(node.getNodeValue());
+                break;
+            case org.w3c.dom.Node.COMMENT_NODE :
+                sb.append("<!--").append(node.getNodeValue()).append("-->");
+                break;
+            default :
+                break;
+        }
+        for (org.w3c.dom.Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            write(child, sb);
+        }
+        if (node.getNodeType() == org.w3c.dom.Node.ELEMENT_NODE)
+        {
+            sb.append("</").append(node.getNodeName()).append('>');
+        }
+    }
+
+    /**
+     * Writes a DOM tree as text.
+     * @param node DOM node
+     * @return text
+     */
+    static String write(org.w3c.dom.Node node)
+    {
+        StringBuilder sb = new StringBuilder();
+        write(node, sb);
+        return sb.toString();
+    }
+
+    /**
+     * A DOM built from the sax events of the test documents is the same as the Tidy DOM.
+     * @throws Exception any exception generated during the test
+     */
+    public void testSameAsDom() throws Exception
+    {
+        TidyEngine engine = new TidyEngine(new Properties());
+        TidyXMLReader reader = new TidyXMLReader(engine);
+        reader.setErrout(new PrintWriter(new StringWriter()));
+
+        File[] files = new File("src/test/resources").listFiles((dir, name) -> name.endsWith(".html"));
+        assertTrue(files.length > 0);
+        int compared = 0;
+        for (File file : files)
+        {
+            byte[] input = Files.readAllBytes(file.toPath());
+
+            Tidy tidy = new Tidy();
+            tidy.setErrout(new PrintWriter(new StringWriter()));
+            org.w3c.dom.Document expected = tidy.parseDOM(new ByteArrayInputStream(input), null);
+            if (expected == null)
+            {
+                continue;
+            }
+
+            DOMResult result = new DOMResult();
+            try
+            {
+                TransformerFactory.newInstance().newTransformer().transform(
+                    new TidySource(reader, new InputSource(new ByteArrayInputStream(input))),
+                    result);
+            }
+            catch (javax.xml.transform.TransformerException e)
+            {
+                // names that are not valid in xml can't go in a DOM
+                continue;
+            }
+            assertEquals(file.getName(), write(expected), write(result.getNode()));
+            compared++;
+        }
+        assertTrue(compared > files.length / 2);
+    }
+
+    /**
+     * Namespace declarations are reported as prefix mappings, and the namespace-prefixes feature brings them back as
+     * attributes.
+     * @throws Exception any exception generated during the test
+     */
+    public void testNamespaces() throws Exception
+    {
+        Properties props = new Properties();
+        props.setProperty("output-xhtml", "yes");
+        TidyXMLReader reader = new TidyXMLReader(new TidyEngine(props));
+        reader.setErrout(new PrintWriter(new StringWriter()));
+
+        final List<String> events = new ArrayList<>();
+        reader.setContentHandler(new DefaultHandler2()
+        {
+
+            public void startPrefixMapping(String prefix, String uri)
+            {
+                events.add("prefix " + prefix + "=" + uri);
+            }
+
+            public void startElement(String uri, String localName, String qName, Attributes atts)
+            {
+                StringBuilder sb = new StringBuilder("start {" + uri + "}" + qName);
+                for (int j = 0; j < atts.getLength(); j++)
+                {
+                    sb.append(' ').append(atts.getQName(j)).append('=').append(atts.getValue(j));
+                }
+                events.add(sb.toString());
+            }
+        });
+
+        String html = "<html><head><title>t</title></head><body><p lang=\"en\">x</p></body></html>";
+        reader.parse(new InputSource(new StringReader(html)));
+        assertEquals("prefix =http://www.w3.org/1999/xhtml", events.get(0));
+        assertEquals("start {http://www.w3.org/1999/xhtml}html", events.get(1));
+        assertTrue(events.toString(), events.contains("start {http://www.w3.org/1999/xhtml}p lang=en"));
+
+        events.clear();
+        reader.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+        reader.parse(new InputSource(new StringReader(html)));
+        assertEquals("start {http://www.w3.org/1999/xhtml}html xmlns=http://www.w3.org/1999/xhtml", events.get(1));
+
+        events.clear();
+        reader.setFeature("http://xml.org/sax/features/namespaces", false);
+        reader.parse(new InputSource(new StringReader(html)));
+        assertEquals("start {}html xmlns=http://www.w3.org/1999/xhtml", events.get(0));
+    }
+
+    /**
+     * The doctype, comments and cdata sections go to the lexical handler; text is read in the encoding of the input
+     * source.
+     * @throws Exception any exception generated during the test
+     */
+    public void testLexicalEvents() throws Exception
+    {
+        final StringBuilder sb = new StringBuilder();
+        DefaultHandler2 handler = new DefaultHandler2()
+        {
+
+            public void startDTD(String name, String publicId, String systemId)
+            {
+                sb.append("[dtd ").append(name).append(' ').append(publicId).append(' ').append(systemId).append(']');
+            }
+
+            public void comment(char[] ch, int start, int length)
+            {
+                sb.append("[comment").append(ch, start, length).append(']');
+            }
+
+            public void startCDATA()
+            {
+                sb.append("[cdata ");
+            }
+
+            public void endCDATA()
+            {
+                sb.append(']');
+            }
+
+            public void characters(char[] ch, int start, int length)
+            {
+                sb.append(ch, start, length);
+            }
+
+            public void processingInstruction(String target, String data)
+            {
+                sb.append("[pi ").append(target).append('|').append(data).append(']');
+            }
+        };
+
+        Properties props = new Properties();
+        props.setProperty("input-xml", "yes");
+        TidyXMLReader reader = new TidyXMLReader(new TidyEngine(props));
+        reader.setErrout(new PrintWriter(new StringWriter()));
+        reader.setContentHandler(handler);
+        reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+
+        String xml = "<!DOCTYPE doc PUBLIC \"-//ex//DTD doc//EN\" \"doc.dtd\">"
+            + "<doc><!-- note --><?go now?><a>caf\u00e9 \u4e2d</a><![CDATA[x<y]]></doc>";
+        InputSource input = new InputSource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        input.setEncoding("UTF-8");
+        reader.parse(input);
+        assertEquals(
+            "[dtd doc -//ex//DTD doc//EN doc.dtd][comment note ][pi go|now]caf\u00e9 \u4e2d[cdata x<y]",
+            sb.toString());
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Test cases for TidyXMLStreamReader.
+ * @version $Revision $ ($Author $)
+ */
+public class TidyXMLStreamReaderTest extends TestCase
+{
+
+    /**
+     * instantiates a new test.
+     * @param name test name
+     */
+    public TidyXMLStreamReaderTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Parses a document with the given options.
+     * @param html input
+     * @param props configuration options
+     * @return stream reader over the document
+     */
+    private static XMLStreamReader read(String html, Properties props)
+    {
+        TidyParseContext context = new TidyEngine(props).newContext();
+        context.setErrout(new PrintWriter(new StringWriter()));
+        Node document = context.parse(new StringReader(html), (Writer) null);
+        return new TidyXMLStreamReader(document);
+    }
+
+    /**
+     * Writes the events of a stream reader as text, as {@link TidyXMLReaderTest#write(org.w3c.dom.Node)} writes a DOM
+     * tree, with namespace declarations back as attributes.
+     * @param reader stream reader
+     * @return text
+     * @throws XMLStreamException if the reader throws it
+     */
+    private static String write(XMLStreamReader reader) throws XMLStreamException
+    {
+        StringBuilder sb = new StringBuilder();
+        while (reader.hasNext())
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT :
+                    TreeMap<String, String> attributes = new TreeMap<>();
+                    for (int j = 0; j < reader.getNamespaceCount(); j++)
+                    {
+                        String prefix = reader.getNamespacePrefix(j);
+                        attributes.put(prefix == null ? "xmlns" : "xmlns:" + prefix, reader.getNamespaceURI(j));
+                    }
+                    for (int j = 0; j < reader.getAttributeCount(); j++)
+                    {
+                        String prefix = reader.getAttributePrefix(j);
+                        String name = prefix.length() > 0 ? prefix + ":" + reader.getAttributeLocalName(j)
+                            : reader.getAttributeLocalName(j);
+                        attributes.put(name, reader.getAttributeValue(j));
+                    }
+                    sb.append('<').append(qualifiedName(reader)).append(attributes).append('>');
+                    break;
+                case XMLStreamConstants.END_ELEMENT :
+                    sb.append("</").append(qualifiedName(reader)).append('>');
+                    break;
+                case XMLStreamConstants.CHARACTERS :
+                case XMLStreamConstants.CDATA :
+                    sb.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.COMMENT :
+                    sb.append("<!--").append(reader.getText()).append("-->");
+                    break;
+                default :
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Qualified name of the current element.
+     * @param reader stream reader
+     * @return qualified name
+     */
+    private static String qualifiedName(XMLStreamReader reader)
+    {
+        String prefix = reader.getPrefix();
+        return prefix != null && prefix.length() > 0 ? prefix + ":" + reader.getLocalName() : reader.getLocalName();
+    }
+
+    /**
+     * The stream events of the test documents give the same content as the Tidy DOM.
+     * @throws Exception any exception generated during the test
+     */
+    public void testSameAsDom() throws Exception
+    {
+        TidyEngine engine = new TidyEngine(new Properties());
+        TidyParseContext context = engine.newContext();
+        context.setErrout(new PrintWriter(new StringWriter()));
+
+        File[] files = new File("src/test/resources").listFiles((dir, name) -> name.endsWith(".html"));
+        assertTrue(files.length > 0);
+        int compared = 0;
+        for (File file : files)
+        {
+            byte[] input = Files.readAllBytes(file.toPath());
+            org.w3c.dom.Document expected = context.parseDOM(new ByteArrayInputStream(input), null);
+            if (expected == null)
+            {
+                continue;
+            }
+
+            Node document = context.parse(new ByteArrayInputStream(input), (OutputStream) null);
+            assertEquals(file.getName(), TidyXMLReaderTest.write(expected), write(new TidyXMLStreamReader(document)));
+            compared++;
+        }
+        assertTrue(compared > files.length / 2);
+    }
+
+    /**
+     * Events, names, attributes and text of a small document.
+     * @throws Exception any exception generated during the test
+     */
+    public void testEvents() throws Exception
+    {
+        XMLStreamReader reader = read(
+            "<!-- c --><title>t</title><p class=a>one <b>two</b><br>\u00e9",
+            new Properties());
+
+        assertEquals(XMLStreamConstants.START_DOCUMENT, reader.getEventType());
+        assertEquals(XMLStreamConstants.COMMENT, reader.next());
+        assertEquals(" c ", reader.getText());
+        assertEquals(XMLStreamConstants.DTD, reader.next());
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("html", reader.getLocalName());
+        assertNull(reader.getNamespaceURI());
+        assertEquals("html", reader.getName().getLocalPart());
+        reader.nextTag();
+        assertEquals("head", reader.getLocalName());
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("meta", reader.getLocalName());
+        assertEquals("generator", reader.getAttributeValue(null, "name"));
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.next());
+        assertEquals("meta", reader.getLocalName());
+        reader.nextTag();
+        assertEquals("title", reader.getLocalName());
+        assertEquals("t", reader.getElementText());
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.getEventType());
+        assertEquals("title", reader.getLocalName());
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.nextTag());
+        assertEquals("head", reader.getLocalName());
+
+        reader.nextTag();
+        assertEquals("body", reader.getLocalName());
+        reader.nextTag();
+        assertEquals("p", reader.getLocalName());
+        assertEquals(1, reader.getAttributeCount());
+        assertEquals("class", reader.getAttributeLocalName(0));
+        assertEquals("a", reader.getAttributeValue(0));
+        assertEquals(XMLStreamConstants.CHARACTERS, reader.next());
+        assertEquals("one ", new String(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength()));
+        assertFalse(reader.isWhiteSpace());
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.next());
+        assertEquals("two", reader.getElementText());
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.next());
+        assertEquals("br", reader.getLocalName());
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.next());
+        assertEquals(XMLStreamConstants.CHARACTERS, reader.next());
+        assertEquals("\u00e9", reader.getText());
+
+        for (String name : new String[]{"p", "body", "html"})
+        {
+            assertEquals(XMLStreamConstants.END_ELEMENT, reader.next());
+            assertEquals(name, reader.getLocalName());
+        }
+        assertEquals(XMLStreamConstants.END_DOCUMENT, reader.next());
+        assertFalse(reader.hasNext());
+    }
+
+    /**
+     * Namespace declarations are reported as namespaces, and names are resolved against them.
+     * @throws Exception any exception generated during the test
+     */
+    public void testNamespaces() throws Exception
+    {
+        Properties props = new Properties();
+        props.setProperty("input-xml", "yes");
+        XMLStreamReader reader = read(
+            "<a xmlns=\"urn:a\" xmlns:b=\"urn:b\" b:x=\"1\" y=\"2\"><b:c/><d xmlns=\"\"/></a>",
+            props);
+
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("urn:a", reader.getNamespaceURI());
+        assertEquals(2, reader.getNamespaceCount());
+        assertEquals("urn:a", reader.getNamespaceURI(""));
+        assertEquals("urn:b", reader.getNamespaceURI("b"));
+        assertEquals(2, reader.getAttributeCount());
+        assertEquals("1", reader.getAttributeValue("urn:b", "x"));
+        assertEquals("2", reader.getAttributeValue(null, "y"));
+        assertNull(reader.getAttributeValue("urn:a", "y"));
+        assertEquals("b", reader.getNamespaceContext().getPrefix("urn:b"));
+
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("urn:b", reader.getNamespaceURI());
+        assertEquals("c", reader.getLocalName());
+        assertEquals("b", reader.getPrefix());
+        reader.nextTag();
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertNull(reader.getNamespaceURI());
+        reader.nextTag();
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.nextTag());
+        assertEquals("urn:a", reader.getNamespaceURI());
+        assertEquals(XMLStreamConstants.END_DOCUMENT, reader.next());
+    }
+
+}
@@ -56,13 +56,20 @@ package org.w3c.tidy.ant;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.types.FileSet;
 import org.apache.tools.ant.types.Parameter;
 import org.apache.tools.ant.util.FileUtils;
+import org.w3c.tidy.TidyParseContext;
 
 import junit.framework.TestCase;
 
@@ -293,6 +300,139 @@ public class JTidyTaskTest extends TestCase
         new File(tempDir, "file2.html").delete();
     }
 
+    /**
+     * Reads a whole file.
+     * @param file file to read
+     * @return file content
+     * @throws IOException if the file can't be read
+     */
+    private static String readFile(File file) throws IOException
+    {
+        try (Reader reader = new FileReader(file))
+        {
+            return FileUtils.readFully(reader);
+        }
+    }
+
+    /**
+     * Tidying files in parallel gives the same output as tidying them one at a time.
+     * @throws IOException if an output file can't be read
+     */
+    public void testFilesetWithThreads() throws IOException
+    {
+        File sequentialDir = new File(tempDir, "sequential");
+        File parallelDir = new File(tempDir, "parallel");
+
+        JTidyTask sequential = new JTidyTask();
+        sequential.setProject(new Project());
+        sequential.init();
+        FileSet fileset = new FileSet();
+        fileset.setDir(new File(testDir, "ant"));
+        sequential.addFileset(fileset);
+        sequential.setDestdir(sequentialDir);
+        sequential.setThreads(1);
+        sequential.execute();
+
+        JTidyTask parallel = new JTidyTask();
+        parallel.setProject(new Project());
+        parallel.init();
+        fileset = new FileSet();
+        fileset.setDir(new File(testDir, "ant"));
+        parallel.addFileset(fileset);
+        parallel.setDestdir(parallelDir);
+        parallel.setThreads(4);
+        parallel.execute();
+
+        String[] names = sequentialDir.list();
+        assertNotNull("Expected output directory not created", names);
+        assertTrue("Expected output files not created", names.length >= 2);
+        for (String name : names)
+        {
+            File file = new File(parallelDir, name);
+            assertTrue("Expected output file not created: " + name, file.exists());
+            assertEquals(name, readFile(new File(sequentialDir, name)), readFile(file));
+            new File(sequentialDir, name).delete();
+            file.delete();
+        }
+        sequentialDir.delete();
+        parallelDir.delete();
+    }
+
+    /**
+     * Fileset files go through processFile() whatever the number of threads, so subclasses overriding it still see
+     * every file.
+     */
+    public void testFilesetCallsProcessFile()
+    {
+        final List<String> processed = new ArrayList<>();
+        JTidyTask subclass = new JTidyTask()
+        {
+
+            @Override
+            protected void processFile(File inputFile, File outputFile)
+            {
+                processed.add(inputFile.getName());
+            }
+        };
+        subclass.setProject(new Project());
+        subclass.init();
+        FileSet fileset = new FileSet();
+        fileset.setDir(new File(testDir));
+        fileset.setIncludes("ant/*.html");
+        subclass.addFileset(fileset);
+        subclass.setDestdir(new File(tempDir));
+        subclass.setThreads(4);
+        subclass.execute();
+
+        assertTrue(processed.toString(), processed.contains("file1.html"));
+        assertTrue(processed.toString(), processed.contains("file2.html"));
+    }
+
+    /**
+     * Files are tidied through tidyFile() in the workers, each worker with its own parse context.
+     * @throws IOException if an output file can't be read
+     */
+    public void testFilesetCallsTidyFile() throws IOException
+    {
+        final List<String> tidied = Collections.synchronizedList(new ArrayList<String>());
+        final Map<TidyParseContext, Thread> contexts = Collections.synchronizedMap(
+            new IdentityHashMap<TidyParseContext, Thread>());
+        JTidyTask subclass = new JTidyTask()
+        {
+
+            @Override
+            protected void tidyFile(TidyParseContext context, File inputFile, OutputStream out) throws IOException
+            {
+                Thread previous = contexts.put(context, Thread.currentThread());
+                assertTrue(previous == null || previous == Thread.currentThread());
+                tidied.add(inputFile.getName());
+                super.tidyFile(context, inputFile, out);
+            }
+        };
+        subclass.setProject(new Project());
+        subclass.init();
+        FileSet fileset = new FileSet();
+        fileset.setDir(new File(testDir));
+        fileset.setIncludes("ant/file1.html,ant/file2.html");
+        subclass.addFileset(fileset);
+        File outputDir = new File(tempDir, "hooked");
+        subclass.setDestdir(outputDir);
+        subclass.setThreads(4);
+        subclass.execute();
+
+        assertEquals(tidied.toString(), 2, tidied.size());
+        assertTrue(tidied.toString(), tidied.contains("file1.html"));
+        assertTrue(tidied.toString(), tidied.contains("file2.html"));
+        for (String name : new String[]{"file1.html", "file2.html"})
+        {
+            File file = new File(outputDir, "ant/" + name);
+            assertTrue("Expected output file not created: " + name, readFile(file).length() > 0);
+            file.delete();
+        }
+        new File(outputDir, "ant").delete();
+        outputDir.delete();
+    }
+
     /**
      * Test nested parameter element.
      */